@@ -0,0 +1,15 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa;
+
+import java.util.List;
+
+/**
+ * @param <T> the type of record the operation is working with
+ */
+public interface CreateRecordsOperation<T> extends RecordOperation<List<RecordResult>> {
+    List<T> getRecords();
+}
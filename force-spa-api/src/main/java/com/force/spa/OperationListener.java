@@ -0,0 +1,32 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa;
+
+import java.io.Serializable;
+
+/**
+ * A listener which is told about every {@link RecordOperation} once it is done, mostly for purposes of gathering
+ * metrics such as latency percentiles.
+ * <p/>
+ * The listener is called on whichever thread completes the operation, often an I/O thread, so it should be quick and
+ * must be thread safe. Anything it throws is logged and otherwise ignored.
+ */
+public interface OperationListener extends Serializable {
+    /**
+     * Called when an operation is done, successfully or not. Operations which are cancelled before they are done are
+     * not reported.
+     * <p/>
+     * The statistics say how many bytes went each way, how many rows were processed, how long the operation took and
+     * whether it was batched with others.
+     *
+     * @param operationType the kind of operation
+     * @param objectName    the name of the Salesforce object the operation worked with or <code>null</code> if not
+     *                      known
+     * @param statistics    the statistics for the operation
+     * @param exception     the reason the operation failed or <code>null</code> if it succeeded
+     */
+    void operationCompleted(OperationType operationType, String objectName, Statistics statistics, Throwable exception);
+}
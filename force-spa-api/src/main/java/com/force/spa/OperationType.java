@@ -0,0 +1,61 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa;
+
+/**
+ * The kinds of {@link RecordOperation}, as reported to an {@link OperationListener}.
+ */
+public enum OperationType {
+    /**
+     * A {@link CreateRecordOperation}.
+     */
+    CREATE,
+
+    /**
+     * A {@link CreateRecordsOperation}.
+     */
+    CREATE_RECORDS,
+
+    /**
+     * A {@link DeleteRecordOperation}.
+     */
+    DELETE,
+
+    /**
+     * A {@link DeleteRecordsOperation}.
+     */
+    DELETE_RECORDS,
+
+    /**
+     * A {@link DescribeObjectOperation}.
+     */
+    DESCRIBE,
+
+    /**
+     * A {@link GetRecordOperation}.
+     */
+    GET,
+
+    /**
+     * A {@link PatchRecordOperation}.
+     */
+    PATCH,
+
+    /**
+     * A {@link QueryRecordsOperation}.
+     */
+    QUERY,
+
+    /**
+     * An {@link UpdateRecordOperation}.
+     */
+    UPDATE,
+
+    /**
+     * An {@link UpdateRecordsOperation}.
+     */
+    UPDATE_RECORDS
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A SOQL query which has been processed once so that it can be executed many times with different values.
+ * <p/>
+ * The template of a prepared query can contain named bind parameters, written as a colon followed by a name, for
+ * example <code>SELECT * FROM Account WHERE Name = :name AND Industry IN :industries</code>. Parameters are only
+ * recognized outside of quoted strings. Each time the query is bound the parameters are replaced with SOQL literals
+ * for the given values, with strings quoted and escaped, so values can't alter the structure of the query.
+ * <p/>
+ * The values which can be bound are <code>null</code>, strings, characters, enums (by name), booleans, numbers,
+ * {@link java.util.Date}, {@link java.util.Calendar} and Joda-Time instants (as date-time literals in UTC), Joda-Time
+ * <code>LocalDate</code> (as date literals), and non-empty collections or arrays of those (as a parenthesized list for
+ * use with <code>IN</code>).
+ * <p/>
+ * A prepared query is thread-safe and is meant to be kept and reused.
+ *
+ * @param <T> the type of record the query is working with
+ */
+public interface PreparedRecordQuery<T> {
+    /**
+     * Returns the names of the bind parameters in the template.
+     *
+     * @return the names of the parameters
+     */
+    Set<String> getParameterNames();
+
+    /**
+     * Binds values to the parameters of the query.
+     *
+     * @param parameters the values of the parameters, keyed by name. There must be a value for every parameter and
+     *                   nothing else.
+     * @return a {@link RecordQuery} which can be executed
+     * @throws IllegalArgumentException if a parameter is missing or unknown, or a value can't be bound
+     */
+    RecordQuery<T> bind(Map<String, ?> parameters);
+}
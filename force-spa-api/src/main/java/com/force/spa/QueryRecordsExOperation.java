@@ -6,6 +6,7 @@
 package com.force.spa;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @param <T> the type of record the operation is working with
@@ -25,4 +26,25 @@ public interface QueryRecordsExOperation<T, R> extends RecordOperation<List<R>>
     void setMaxResults(int limit);
 
     int getMaxResults();
+
+    /**
+     * Returns the SOQL sent to the server, which is the template expanded for the record class and result window.
+     */
+    String getSoql();
+
+    /**
+     * Sets how long the results of the query may be cached, as a hint to a caching record accessor. A time of zero,
+     * the default, leaves it up to the cache. The hint is ignored if the results aren't cached.
+     *
+     * @param timeToLive how long the results may be cached
+     * @param unit       the unit of the time
+     */
+    void setCacheTimeToLive(long timeToLive, TimeUnit unit);
+
+    /**
+     * Returns how long the results of the query may be cached, or zero if that is up to the cache.
+     *
+     * @param unit the unit of the returned time
+     */
+    long getCacheTimeToLive(TimeUnit unit);
 }
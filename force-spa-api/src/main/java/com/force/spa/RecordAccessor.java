@@ -89,6 +89,20 @@ public interface RecordAccessor {
      */
     <T> RecordQuery<T> createQuery(String soqlTemplate, Class<T> recordClass);
 
+    /**
+     * Creates an instance of {@link PreparedRecordQuery} for executing a SOQL query many times with different values.
+     * <p/>
+     * The template is processed once, when the query is prepared, rather than every time it is executed. See {@link
+     * PreparedRecordQuery} for how to write bind parameters.
+     *
+     * @param soqlTemplate a template for the SOQL query, with wildcards as for {@link #createQuery} and named bind
+     *                     parameters.
+     * @param recordClass  the annotated class of the result record's bean
+     * @param <T>          the type of record
+     * @return a {@link PreparedRecordQuery} which can be bound and executed
+     */
+    <T> PreparedRecordQuery<T> prepareQuery(String soqlTemplate, Class<T> recordClass);
+
     /**
      * Describes an object.
      *
@@ -176,6 +190,46 @@ public interface RecordAccessor {
      */
     <T> UpdateRecordOperation<T> newUpdateRecordOperation(String id, T record);
 
+    /**
+     * Returns a new operation that creates several records with a single request. The operation can be executed at a
+     * later time using {@link #execute}, along with any others.
+     * <p/>
+     * Each record is created independently of the others and the outcome for each record is reported in the
+     * corresponding entry of the operation's result list. This requires API version 42.0 or later.
+     *
+     * @param records the beans holding values to be persisted in the new records. No more than 200 records can be
+     *                created by a single operation.
+     * @return the operation
+     */
+    <T> CreateRecordsOperation<T> newCreateRecordsOperation(List<T> records);
+
+    /**
+     * Returns a new operation that deletes several records with a single request. The operation can be executed at a
+     * later time using {@link #execute}, along with any others.
+     * <p/>
+     * Each record is deleted independently of the others and the outcome for each record is reported in the
+     * corresponding entry of the operation's result list. This requires API version 42.0 or later.
+     *
+     * @param ids         the Salesforce ids of the persistent records. No more than 200 records can be deleted by a
+     *                    single operation.
+     * @param recordClass the annotated class of the records' beans
+     * @return the operation
+     */
+    <T> DeleteRecordsOperation<T> newDeleteRecordsOperation(List<String> ids, Class<T> recordClass);
+
+    /**
+     * Returns a new operation that updates all fields in several existing records with a single request. The
+     * operation can be executed at a later time using {@link #execute}, along with any others.
+     * <p/>
+     * Each record is updated independently of the others and the outcome for each record is reported in the
+     * corresponding entry of the operation's result list. This requires API version 42.0 or later.
+     *
+     * @param records the beans containing new values to be persisted. Each bean must contain a populated "id" field.
+     *                No more than 200 records can be updated by a single operation.
+     * @return the operation
+     */
+    <T> UpdateRecordsOperation<T> newUpdateRecordsOperation(List<T> records);
+
     /**
      * Returns a new query operation that can be combined into a batch. The operation, along with any others that it is
      * batched with, can be executed at a later time using {@link #execute}.
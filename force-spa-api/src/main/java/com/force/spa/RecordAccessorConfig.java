@@ -7,6 +7,7 @@ package com.force.spa;
 
 import java.io.Serializable;
 
+import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ReflectionToStringBuilder;
@@ -20,11 +21,16 @@ public class RecordAccessorConfig implements Serializable {
 
     private static final long serialVersionUID = -8186749282640975493L;
 
-    private final AuthorizationConnector authorizationConnector;
-    private final ApiVersion apiVersion;
-    private final boolean auditFieldWritingAllowed;
-    private final boolean objectAnnotationRequired;
-    private final boolean fieldAnnotationRequired;
+    // Only ever assigned while a new instance is being set up by one of the "with" methods
+    private AuthorizationConnector authorizationConnector;
+    private ApiVersion apiVersion;
+    private boolean auditFieldWritingAllowed;
+    private boolean objectAnnotationRequired;
+    private boolean fieldAnnotationRequired;
+    private int maxConcurrentBatches = 1;
+    private int queryPrefetchDepth;
+    private boolean changeTrackingEnabled;
+    private OperationListener operationListener;
 
     public RecordAccessorConfig() {
         this(null, null, false, false, false);
@@ -41,6 +47,18 @@ public class RecordAccessorConfig implements Serializable {
         this.fieldAnnotationRequired = fieldAnnotationRequired;
     }
 
+    private RecordAccessorConfig(RecordAccessorConfig config) {
+        this.authorizationConnector = config.authorizationConnector;
+        this.apiVersion = config.apiVersion;
+        this.auditFieldWritingAllowed = config.auditFieldWritingAllowed;
+        this.objectAnnotationRequired = config.objectAnnotationRequired;
+        this.fieldAnnotationRequired = config.fieldAnnotationRequired;
+        this.maxConcurrentBatches = config.maxConcurrentBatches;
+        this.queryPrefetchDepth = config.queryPrefetchDepth;
+        this.changeTrackingEnabled = config.changeTrackingEnabled;
+        this.operationListener = config.operationListener;
+    }
+
     /**
      * Returns the {@link AuthorizationConnector} to use for {@link RecordAccessor} instances created with this
      * configuration.
@@ -103,6 +121,68 @@ public class RecordAccessorConfig implements Serializable {
         return fieldAnnotationRequired;
     }
 
+    /**
+     * Returns the maximum number of batch requests that may be outstanding with the server at the same time when a
+     * large number of operations are executed together. Operations are sent to the server in batches of limited size
+     * so a large group of operations results in multiple batch requests. A value of one means that the batch requests
+     * are sent one after another.
+     * <p/>
+     * Sending batch requests in parallel also requires an {@link java.util.concurrent.Executor} to be made available
+     * to the {@link RecordAccessor} implementation. Without one the batch requests are sent one after another
+     * regardless of this setting.
+     * <p/>
+     * The default is "1".
+     *
+     * @return the maximum number of batch requests outstanding at the same time
+     */
+    public final int getMaxConcurrentBatches() {
+        return maxConcurrentBatches;
+    }
+
+    /**
+     * Returns the number of query result pages to fetch ahead of the caller when iterating over the results of a query
+     * (see {@link RecordQuery#iterate()}). Fetching ahead hides most of the network latency between pages of a large
+     * query at the cost of holding up to this many extra pages in memory. A value of zero means that each page is only
+     * fetched once the caller has consumed the previous one.
+     * <p/>
+     * Fetching ahead requires either an asynchronous connection to the server or an {@link
+     * java.util.concurrent.Executor} to be made available to the {@link RecordAccessor} implementation. Without one,
+     * pages are not fetched ahead regardless of this setting.
+     * <p/>
+     * The default is "0".
+     *
+     * @return the number of query result pages to fetch ahead
+     */
+    public final int getQueryPrefetchDepth() {
+        return queryPrefetchDepth;
+    }
+
+    /**
+     * Indicates whether updates only send the fields that have changed. If <code>true</code> then the field values of
+     * the Javabeans returned by {@link RecordAccessor#get} and by queries are remembered, and {@link
+     * RecordAccessor#update} of such a Javabean only sends the fields whose values have since changed, or sends nothing
+     * at all if none have. Values are compared with <code>equals</code>, so mutable values such as lists must be
+     * replaced rather than modified in place to be noticed. Javabeans that weren't returned by the record accessor are
+     * updated in full as usual.
+     * <p/>
+     * The default is "false".
+     *
+     * @return an indication of whether change tracking is enabled
+     */
+    public final boolean isChangeTrackingEnabled() {
+        return changeTrackingEnabled;
+    }
+
+    /**
+     * Returns the {@link OperationListener} which is told about every operation executed by {@link RecordAccessor}
+     * instances created with this configuration. This is the place to gather latency and size metrics.
+     *
+     * @return the operation listener or <code>null</code> if not specified
+     */
+    public final OperationListener getOperationListener() {
+        return operationListener;
+    }
+
     /**
      * Returns a new instance with the specified setting for the {@link AuthorizationConnector} to use for {@link
      * RecordAccessor} instances created with this configuration.
@@ -111,9 +191,9 @@ public class RecordAccessorConfig implements Serializable {
      * @see #getAuthorizationConnector()
      */
     public RecordAccessorConfig withAuthorizationConnector(AuthorizationConnector authorizationConnector) {
-        return new RecordAccessorConfig(
-            authorizationConnector, getApiVersion(),
-            auditFieldWritingAllowed, objectAnnotationRequired, fieldAnnotationRequired);
+        RecordAccessorConfig config = new RecordAccessorConfig(this);
+        config.authorizationConnector = authorizationConnector;
+        return config;
     }
 
     /**
@@ -124,9 +204,9 @@ public class RecordAccessorConfig implements Serializable {
      * @see #getApiVersion()
      */
     public RecordAccessorConfig withApiVersion(ApiVersion apiVersion) {
-        return new RecordAccessorConfig(
-            getAuthorizationConnector(), apiVersion,
-            auditFieldWritingAllowed, objectAnnotationRequired, fieldAnnotationRequired);
+        RecordAccessorConfig config = new RecordAccessorConfig(this);
+        config.apiVersion = apiVersion;
+        return config;
     }
 
     /**
@@ -136,9 +216,9 @@ public class RecordAccessorConfig implements Serializable {
      * @see #isAuditFieldWritingAllowed()
      */
     public RecordAccessorConfig withAuditFieldWritingAllowed(boolean auditFieldWritingAllowed) {
-        return new RecordAccessorConfig(
-            getAuthorizationConnector(), getApiVersion(),
-            auditFieldWritingAllowed, objectAnnotationRequired, fieldAnnotationRequired);
+        RecordAccessorConfig config = new RecordAccessorConfig(this);
+        config.auditFieldWritingAllowed = auditFieldWritingAllowed;
+        return config;
     }
 
     /**
@@ -149,9 +229,9 @@ public class RecordAccessorConfig implements Serializable {
      * @see #isObjectAnnotationRequired()
      */
     public RecordAccessorConfig withObjectAnnotationRequired(boolean objectAnnotationRequired) {
-        return new RecordAccessorConfig(
-            getAuthorizationConnector(), getApiVersion(),
-            auditFieldWritingAllowed, objectAnnotationRequired, fieldAnnotationRequired);
+        RecordAccessorConfig config = new RecordAccessorConfig(this);
+        config.objectAnnotationRequired = objectAnnotationRequired;
+        return config;
     }
 
     /**
@@ -162,9 +242,63 @@ public class RecordAccessorConfig implements Serializable {
      * @see #isFieldAnnotationRequired()
      */
     public RecordAccessorConfig withFieldAnnotationRequired(boolean fieldAnnotationRequired) {
-        return new RecordAccessorConfig(
-            getAuthorizationConnector(), getApiVersion(),
-            auditFieldWritingAllowed, objectAnnotationRequired, fieldAnnotationRequired);
+        RecordAccessorConfig config = new RecordAccessorConfig(this);
+        config.fieldAnnotationRequired = fieldAnnotationRequired;
+        return config;
+    }
+
+    /**
+     * Returns a new instance with the specified setting for the maximum number of batch requests outstanding at the
+     * same time.
+     *
+     * @param maxConcurrentBatches the maximum number of batch requests outstanding at the same time
+     * @see #getMaxConcurrentBatches()
+     */
+    public RecordAccessorConfig withMaxConcurrentBatches(int maxConcurrentBatches) {
+        Validate.isTrue(maxConcurrentBatches > 0, "maxConcurrentBatches must be positive");
+
+        RecordAccessorConfig config = new RecordAccessorConfig(this);
+        config.maxConcurrentBatches = maxConcurrentBatches;
+        return config;
+    }
+
+    /**
+     * Returns a new instance with the specified setting for the number of query result pages to fetch ahead.
+     *
+     * @param queryPrefetchDepth the number of query result pages to fetch ahead
+     * @see #getQueryPrefetchDepth()
+     */
+    public RecordAccessorConfig withQueryPrefetchDepth(int queryPrefetchDepth) {
+        Validate.isTrue(queryPrefetchDepth >= 0, "queryPrefetchDepth must not be negative");
+
+        RecordAccessorConfig config = new RecordAccessorConfig(this);
+        config.queryPrefetchDepth = queryPrefetchDepth;
+        return config;
+    }
+
+    /**
+     * Returns a new instance with the specified setting for whether change tracking is enabled.
+     *
+     * @param changeTrackingEnabled an indication of whether change tracking is enabled
+     * @see #isChangeTrackingEnabled()
+     */
+    public RecordAccessorConfig withChangeTrackingEnabled(boolean changeTrackingEnabled) {
+        RecordAccessorConfig config = new RecordAccessorConfig(this);
+        config.changeTrackingEnabled = changeTrackingEnabled;
+        return config;
+    }
+
+    /**
+     * Returns a new instance with the specified setting for the {@link OperationListener} which is told about every
+     * operation.
+     *
+     * @param operationListener the operation listener
+     * @see #getOperationListener()
+     */
+    public RecordAccessorConfig withOperationListener(OperationListener operationListener) {
+        RecordAccessorConfig config = new RecordAccessorConfig(this);
+        config.operationListener = operationListener;
+        return config;
     }
 
     @Override
@@ -179,6 +313,10 @@ public class RecordAccessorConfig implements Serializable {
             .append(this.auditFieldWritingAllowed, that.auditFieldWritingAllowed)
             .append(this.objectAnnotationRequired, that.objectAnnotationRequired)
             .append(this.fieldAnnotationRequired, that.fieldAnnotationRequired)
+            .append(this.maxConcurrentBatches, that.maxConcurrentBatches)
+            .append(this.queryPrefetchDepth, that.queryPrefetchDepth)
+            .append(this.changeTrackingEnabled, that.changeTrackingEnabled)
+            .append(this.operationListener, that.operationListener)
             .isEquals();
     }
 
@@ -190,6 +328,10 @@ public class RecordAccessorConfig implements Serializable {
             .append(auditFieldWritingAllowed)
             .append(objectAnnotationRequired)
             .append(fieldAnnotationRequired)
+            .append(maxConcurrentBatches)
+            .append(queryPrefetchDepth)
+            .append(changeTrackingEnabled)
+            .append(operationListener)
             .toHashCode();
     }
 
@@ -0,0 +1,27 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * An iterator over the records satisfying a SOQL query which retrieves the records from the server a page at a time,
+ * only as they are needed. No matter how large the result, at most one page of records is held in memory.
+ * <p/>
+ * Failures while retrieving a page surface from {@link #hasNext()} or {@link #next()} as a {@link SpaException}.
+ * Cursors are not thread safe and don't support {@link #remove()}.
+ *
+ * @param <R> the type of result records
+ */
+public interface RecordCursor<R> extends Iterator<R>, Closeable {
+    /**
+     * Releases the cursor. Any records that haven't been retrieved yet are abandoned and subsequent calls to {@link
+     * #hasNext()} return <code>false</code>.
+     */
+    @Override
+    void close();
+}
@@ -6,6 +6,7 @@
 package com.force.spa;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * An interface for controlling the execution of SOQL queries.
@@ -34,6 +35,24 @@ public interface RecordQuery<T> {
      */
     <R> List<R> execute(Class<R> resultClass) throws UnauthorizedException;
 
+    /**
+     * Execute a SOQL query and return a cursor over the records satisfying the query. Records are retrieved from the
+     * server a page at a time as the cursor advances, so this is the better choice for queries with large results.
+     *
+     * @return a cursor over the records satisfying the query
+     */
+    RecordCursor<T> iterate() throws UnauthorizedException;
+
+    /**
+     * Execute a SOQL query and return a cursor over the records satisfying the query, in an alternate Java form (see
+     * {@link #execute(Class)}).
+     *
+     * @param resultClass the class of the desired return type
+     * @param <R>         the type of result records
+     * @return a cursor over the records satisfying the query
+     */
+    <R> RecordCursor<R> iterate(Class<R> resultClass) throws UnauthorizedException;
+
     /**
      * Sets the maximum number of results to retrieve.
      *
@@ -49,4 +68,14 @@ public interface RecordQuery<T> {
      * @return the same query instance
      */
     RecordQuery<T> setFirstResult(int startPosition);
+
+    /**
+     * Sets how long the results of the query may be cached, as a hint to a caching record accessor. A time of zero,
+     * the default, leaves it up to the cache. The hint is ignored if the results aren't cached.
+     *
+     * @param timeToLive how long the results may be cached
+     * @param unit       the unit of the time
+     * @return the same query instance
+     */
+    RecordQuery<T> setCacheTimeToLive(long timeToLive, TimeUnit unit);
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa;
+
+import java.io.Serializable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * The outcome for a single record of a multiple record operation such as {@link CreateRecordsOperation}.
+ * <p/>
+ * Each record succeeds or fails on its own so a failure is reported here rather than failing the whole operation.
+ */
+public final class RecordResult implements Serializable {
+
+    private static final long serialVersionUID = -2468517397402375541L;
+
+    private final String id;
+    private final boolean success;
+    private final String errorMessage;
+
+    public RecordResult(String id, boolean success, String errorMessage) {
+        this.id = id;
+        this.success = success;
+        this.errorMessage = errorMessage;
+    }
+
+    /**
+     * Returns the Salesforce id of the record. For a create this is the id of the new record. The id may be
+     * <code>null</code> if the record failed.
+     *
+     * @return the Salesforce id of the record
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns an indication of whether the record was successfully processed.
+     *
+     * @return an indication of whether the record was successfully processed
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * Returns a description of the errors for a record that failed.
+     *
+     * @return a description of the errors or <code>null</code> if the record was successfully processed
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+    }
+}
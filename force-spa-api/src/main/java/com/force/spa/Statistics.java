@@ -31,6 +31,8 @@ public class Statistics implements Serializable {
 
     private final long bytesSent;
     private final long bytesReceived;
+    private final long wireBytesSent;
+    private final long wireBytesReceived;
     private final long elapsedNanos;
     private final long rowsProcessed;
     private final long totalRows;
@@ -39,6 +41,8 @@ public class Statistics implements Serializable {
     protected Statistics(Builder builder) {
         this.bytesSent = builder.bytesSent;
         this.bytesReceived = builder.bytesReceived;
+        this.wireBytesSent = builder.wireBytesSent;
+        this.wireBytesReceived = builder.wireBytesReceived;
         this.elapsedNanos = builder.elapsedNanos;
         this.rowsProcessed = builder.rowsProcessed;
         this.totalRows = builder.totalRows;
@@ -63,6 +67,30 @@ public class Statistics implements Serializable {
         return bytesReceived;
     }
 
+    /**
+     * Returns the number of bytes sent to the server as they went over the wire, which is less than {@link
+     * #getBytesSent()} when the request was compressed.
+     * <p/>
+     * The value is zero if the connector doesn't know, for example because the operation was batched.
+     *
+     * @return the number of bytes sent to the server over the wire
+     */
+    public final long getWireBytesSent() {
+        return wireBytesSent;
+    }
+
+    /**
+     * Returns the number of bytes received from the server as they came over the wire, which is less than {@link
+     * #getBytesReceived()} when the response was compressed.
+     * <p/>
+     * The value is zero if the connector doesn't know, for example because the operation was batched.
+     *
+     * @return the number of bytes received from the server over the wire
+     */
+    public final long getWireBytesReceived() {
+        return wireBytesReceived;
+    }
+
     /**
      * Returns the number of nanoseconds elapsed during operation processing.
      *
@@ -123,6 +151,8 @@ public class Statistics implements Serializable {
         builder.append("elapsed", elapsedDisplayFormat.get().format(getElapsedSeconds()));
         builder.append("sent", bytesSent);
         builder.append("received", bytesReceived);
+        builder.append("wireSent", wireBytesSent);
+        builder.append("wireReceived", wireBytesReceived);
         builder.append("rows", rowsProcessed);
         builder.append("totalRows", totalRows);
         builder.append("batched", batched);
@@ -134,6 +164,8 @@ public class Statistics implements Serializable {
 
         private long bytesSent;
         private long bytesReceived;
+        private long wireBytesSent;
+        private long wireBytesReceived;
         private long elapsedNanos;
         private long rowsProcessed;
         private long totalRows;
@@ -142,6 +174,8 @@ public class Statistics implements Serializable {
         public Builder() {
             bytesSent = 0;
             bytesReceived = 0;
+            wireBytesSent = 0;
+            wireBytesReceived = 0;
             elapsedNanos = 0;
             rowsProcessed = 0;
             totalRows = 0;
@@ -151,6 +185,8 @@ public class Statistics implements Serializable {
         public Builder(Statistics that) {
             this.bytesSent = that.bytesSent;
             this.bytesReceived = that.bytesReceived;
+            this.wireBytesSent = that.wireBytesSent;
+            this.wireBytesReceived = that.wireBytesReceived;
             this.elapsedNanos = that.elapsedNanos;
             this.rowsProcessed = that.rowsProcessed;
             this.totalRows = that.totalRows;
@@ -171,6 +207,16 @@ public class Statistics implements Serializable {
             return this;
         }
 
+        public Builder wireBytesSent(long wireBytesSent) {
+            this.wireBytesSent = wireBytesSent;
+            return this;
+        }
+
+        public Builder wireBytesReceived(long wireBytesReceived) {
+            this.wireBytesReceived = wireBytesReceived;
+            return this;
+        }
+
         public Builder elapsedNanos(long elapsedNanos) {
             this.elapsedNanos = elapsedNanos;
             return this;
@@ -197,17 +243,27 @@ public class Statistics implements Serializable {
         }
 
         public Builder additionalBytesReceived(long additionalBytesReceived) {
-            this.bytesReceived = additionalBytesReceived;
+            this.bytesReceived += additionalBytesReceived;
+            return this;
+        }
+
+        public Builder additionalWireBytesSent(long additionalWireBytesSent) {
+            this.wireBytesSent += additionalWireBytesSent;
+            return this;
+        }
+
+        public Builder additionalWireBytesReceived(long additionalWireBytesReceived) {
+            this.wireBytesReceived += additionalWireBytesReceived;
             return this;
         }
 
         public Builder additionalElapsedNanos(long additionalElapsedNanos) {
-            this.elapsedNanos = additionalElapsedNanos;
+            this.elapsedNanos += additionalElapsedNanos;
             return this;
         }
 
         public Builder additionalRowsProcessed(long additionalRowsProcessed) {
-            this.rowsProcessed = additionalRowsProcessed;
+            this.rowsProcessed += additionalRowsProcessed;
             return this;
         }
 
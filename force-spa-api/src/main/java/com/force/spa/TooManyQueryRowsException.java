@@ -7,7 +7,11 @@ package com.force.spa;
 
 /**
  * Thrown to indicate a query resulted in more rows than could be fetched using an asynchronous request.
+ *
+ * @deprecated Queries executed asynchronously, such as those executed together with other operations, now follow on
+ *             with requests for the remaining rows so this is no longer thrown.
  */
+@Deprecated
 public class TooManyQueryRowsException extends RecordRequestException {
 
     private static final long serialVersionUID = 1772902936994694082L;
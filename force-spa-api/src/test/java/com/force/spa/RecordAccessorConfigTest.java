@@ -11,6 +11,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
 
 public class RecordAccessorConfigTest {
@@ -21,6 +22,10 @@ public class RecordAccessorConfigTest {
         assertThat(config.isAuditFieldWritingAllowed(), is(equalTo(false)));
         assertThat(config.isObjectAnnotationRequired(), is(equalTo(false)));
         assertThat(config.isFieldAnnotationRequired(), is(equalTo(false)));
+        assertThat(config.getMaxConcurrentBatches(), is(equalTo(1)));
+        assertThat(config.getQueryPrefetchDepth(), is(equalTo(0)));
+        assertThat(config.isChangeTrackingEnabled(), is(equalTo(false)));
+        assertThat(config.getOperationListener(), is(nullValue()));
     }
 
     @Test
@@ -53,6 +58,58 @@ public class RecordAccessorConfigTest {
         assertThat(config2.isFieldAnnotationRequired(), is(equalTo(true)));
     }
 
+    @Test
+    public void testWithMaxConcurrentBatches() {
+        RecordAccessorConfig config = new RecordAccessorConfig();
+        RecordAccessorConfig config2 = config.withMaxConcurrentBatches(4);
+
+        assertThat(config, is(not(sameInstance(config2))));
+        assertThat(config.getMaxConcurrentBatches(), is(equalTo(1)));
+        assertThat(config2.getMaxConcurrentBatches(), is(equalTo(4)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithInvalidMaxConcurrentBatches() {
+        new RecordAccessorConfig().withMaxConcurrentBatches(0);
+    }
+
+    @Test
+    public void testWithQueryPrefetchDepth() {
+        RecordAccessorConfig config = new RecordAccessorConfig();
+        RecordAccessorConfig config2 = config.withQueryPrefetchDepth(2);
+
+        assertThat(config, is(not(sameInstance(config2))));
+        assertThat(config.getQueryPrefetchDepth(), is(equalTo(0)));
+        assertThat(config2.getQueryPrefetchDepth(), is(equalTo(2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithInvalidQueryPrefetchDepth() {
+        new RecordAccessorConfig().withQueryPrefetchDepth(-1);
+    }
+
+    @Test
+    public void testWithChangeTrackingEnabled() {
+        RecordAccessorConfig config = new RecordAccessorConfig();
+        RecordAccessorConfig config2 = config.withChangeTrackingEnabled(true);
+
+        assertThat(config, is(not(sameInstance(config2))));
+        assertThat(config.isChangeTrackingEnabled(), is(equalTo(false)));
+        assertThat(config2.isChangeTrackingEnabled(), is(equalTo(true)));
+    }
+
+    @Test
+    public void testWithOperationListener() {
+        OperationListener listener = new NullOperationListener();
+        RecordAccessorConfig config = new RecordAccessorConfig();
+        RecordAccessorConfig config2 = config.withOperationListener(listener);
+
+        assertThat(config, is(not(sameInstance(config2))));
+        assertThat(config.getOperationListener(), is(nullValue()));
+        assertThat(config2.getOperationListener(), is(sameInstance(listener)));
+        assertThat(config2.withChangeTrackingEnabled(true).getOperationListener(), is(sameInstance(listener)));
+    }
+
     @Test
     public void testEquals() {
         RecordAccessorConfig config1 = new RecordAccessorConfig();
@@ -63,10 +120,17 @@ public class RecordAccessorConfigTest {
         assertThat(config1, is(not(equalTo(config1.withAuditFieldWritingAllowed(true)))));
         assertThat(config1, is(not(equalTo(config1.withObjectAnnotationRequired(true)))));
         assertThat(config1, is(not(equalTo(config1.withFieldAnnotationRequired(true)))));
+        assertThat(config1, is(not(equalTo(config1.withMaxConcurrentBatches(4)))));
+        assertThat(config1, is(not(equalTo(config1.withQueryPrefetchDepth(2)))));
+        assertThat(config1, is(not(equalTo(config1.withChangeTrackingEnabled(true)))));
+        assertThat(config1, is(not(equalTo(config1.withOperationListener(new NullOperationListener())))));
 
         assertThat(config1.withAuditFieldWritingAllowed(true), is(equalTo(config2.withAuditFieldWritingAllowed(true))));
         assertThat(config1.withObjectAnnotationRequired(true), is(equalTo(config2.withObjectAnnotationRequired(true))));
         assertThat(config1.withFieldAnnotationRequired(true), is(equalTo(config2.withFieldAnnotationRequired(true))));
+        assertThat(config1.withMaxConcurrentBatches(4), is(equalTo(config2.withMaxConcurrentBatches(4))));
+        assertThat(config1.withQueryPrefetchDepth(2), is(equalTo(config2.withQueryPrefetchDepth(2))));
+        assertThat(config1.withChangeTrackingEnabled(true), is(equalTo(config2.withChangeTrackingEnabled(true))));
     }
 
     @Test
@@ -79,9 +143,24 @@ public class RecordAccessorConfigTest {
         assertThat(config1.hashCode(), is(not(equalTo(config1.withAuditFieldWritingAllowed(true).hashCode()))));
         assertThat(config1.hashCode(), is(not(equalTo(config1.withObjectAnnotationRequired(true).hashCode()))));
         assertThat(config1.hashCode(), is(not(equalTo(config1.withFieldAnnotationRequired(true).hashCode()))));
+        assertThat(config1.hashCode(), is(not(equalTo(config1.withMaxConcurrentBatches(4).hashCode()))));
+        assertThat(config1.hashCode(), is(not(equalTo(config1.withQueryPrefetchDepth(2).hashCode()))));
+        assertThat(config1.hashCode(), is(not(equalTo(config1.withChangeTrackingEnabled(true).hashCode()))));
+        assertThat(config1.hashCode(), is(not(equalTo(config1.withOperationListener(new NullOperationListener()).hashCode()))));
 
         assertThat(config1.withAuditFieldWritingAllowed(true).hashCode(), is(equalTo(config2.withAuditFieldWritingAllowed(true).hashCode())));
         assertThat(config1.withObjectAnnotationRequired(true).hashCode(), is(equalTo(config2.withObjectAnnotationRequired(true).hashCode())));
         assertThat(config1.withFieldAnnotationRequired(true).hashCode(), is(equalTo(config2.withFieldAnnotationRequired(true).hashCode())));
+        assertThat(config1.withMaxConcurrentBatches(4).hashCode(), is(equalTo(config2.withMaxConcurrentBatches(4).hashCode())));
+        assertThat(config1.withQueryPrefetchDepth(2).hashCode(), is(equalTo(config2.withQueryPrefetchDepth(2).hashCode())));
+        assertThat(config1.withChangeTrackingEnabled(true).hashCode(), is(equalTo(config2.withChangeTrackingEnabled(true).hashCode())));
+    }
+
+    private static final class NullOperationListener implements OperationListener {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void operationCompleted(OperationType operationType, String objectName, Statistics statistics, Throwable exception) {
+        }
     }
 }
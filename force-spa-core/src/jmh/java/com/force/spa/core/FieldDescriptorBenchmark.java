@@ -0,0 +1,72 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.force.spa.core.testbeans.SimpleBean;
+
+/**
+ * Compares reading and writing a field through a {@link FieldDescriptor}, which uses method handles, with calling the
+ * getter and setter through reflection, which is what Jackson's {@link
+ * com.fasterxml.jackson.databind.introspect.AnnotatedMember} does and what the descriptor falls back to.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FieldDescriptorBenchmark {
+
+    private final String value = "Description";
+
+    private SimpleBean record;
+    private FieldDescriptor field;
+    private Method getter;
+    private Method setter;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        record = new SimpleBean();
+        record.setDescription(value);
+        field = new MappingContext().getObjectDescriptor(SimpleBean.class).getField("Description");
+        getter = SimpleBean.class.getMethod("getDescription");
+        setter = SimpleBean.class.getMethod("setDescription", String.class);
+    }
+
+    @Benchmark
+    public Object getWithMethodHandle() {
+        return field.getValue(record);
+    }
+
+    @Benchmark
+    public Object getWithReflection() throws ReflectiveOperationException {
+        return getter.invoke(record);
+    }
+
+    @Benchmark
+    public void setWithMethodHandle() {
+        field.setValue(record, value);
+    }
+
+    @Benchmark
+    public void setWithReflection() throws ReflectiveOperationException {
+        setter.invoke(record, value);
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.force.spa.ApiVersion;
+import com.force.spa.Statistics;
+import com.force.spa.core.MappingContext;
+import com.force.spa.core.testbeans.SimpleBean;
+import com.force.spa.core.utils.CountingJsonParser;
+
+/**
+ * Measures the handling of a full batch of query results by {@link BatchRestConnector}, in particular the cost of
+ * deferring results when the batch has errors (see <code>Request.deserializeAndSaveResult</code>). The first request
+ * of the batch fails and the others return a page of records each. When the status of each request comes before its
+ * result only the failure is deferred, otherwise every result is.
+ * <p/>
+ * The replay benchmarks compare deferring a single result with a buffer of tokens, as the connector does, with the
+ * tree of nodes it used to build.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BatchResultBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int BATCH_SIZE = 25;
+    private static final int RECORDS_PER_RESULT = 200;
+
+    private static final URI QUERY_URI = URI.create("/query?q=select+Id,Name,Description+from+SimpleBean");
+
+    @Param({"false", "true"})
+    public boolean hasErrors;
+
+    @Param({"true", "false"})
+    public boolean statusFirst;
+
+    private MappingContext mappingContext;
+    private byte[] batchResponse;
+    private byte[] queryResponse;
+
+    @Setup
+    public void setUp() {
+        mappingContext = new MappingContext();
+        queryResponse = buildQueryResponse().getBytes(UTF_8);
+        batchResponse = buildBatchResponse(new String(queryResponse, UTF_8)).getBytes(UTF_8);
+    }
+
+    @Benchmark
+    public int batch() {
+        BatchRestConnector connector = new BatchRestConnector(new CannedRestConnector());
+        QueryResponseHandler[] handlers = new QueryResponseHandler[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            handlers[i] = new QueryResponseHandler();
+            connector.get(QUERY_URI, handlers[i]);
+        }
+        connector.join();
+
+        int recordCount = 0;
+        for (QueryResponseHandler handler : handlers) {
+            recordCount += handler.recordCount;
+        }
+        return recordCount;
+    }
+
+    @Benchmark
+    public QueryResult<SimpleBean> replayWithTokenBuffer() throws IOException {
+        JsonParser parser = mappingContext.createParser(new ByteArrayInputStream(queryResponse));
+        parser.nextToken();
+        TokenBuffer buffer = new TokenBuffer(parser.getCodec());
+        buffer.copyCurrentStructure(parser);
+        JsonParser bufferedParser = new BatchRestConnector.BufferedResultParser(buffer.asParser(parser.getCodec()));
+        return QueryResult.deserialize(new CountingJsonParser(bufferedParser), SimpleBean.class);
+    }
+
+    @Benchmark
+    public QueryResult<SimpleBean> replayWithTree() throws IOException {
+        JsonParser parser = mappingContext.createParser(new ByteArrayInputStream(queryResponse));
+        parser.nextToken();
+        return QueryResult.deserialize(new CountingJsonParser(parser.getCodec().treeAsTokens(parser.readValueAsTree())), SimpleBean.class);
+    }
+
+    private static String buildQueryResponse() {
+        StringBuilder builder = new StringBuilder(RECORDS_PER_RESULT * 200);
+        builder.append("{\"totalSize\":").append(RECORDS_PER_RESULT).append(",\"done\":true,\"records\":[");
+        for (int i = 0; i < RECORDS_PER_RESULT; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append("{\"attributes\":{\"type\":\"SimpleBean\"},")
+                .append("\"Id\":\"a01i0000000").append(String.format("%04d", i)).append("AAC\",")
+                .append("\"Name\":\"Name ").append(i).append("\",")
+                .append("\"Description\":\"Description of record ").append(i).append("\"}");
+        }
+        return builder.append("]}").toString();
+    }
+
+    private String buildBatchResponse(String queryResult) {
+        String errorResult = "[{\"message\":\"Something went wrong\",\"errorCode\":\"UNKNOWN_EXCEPTION\"}]";
+        StringBuilder builder = new StringBuilder(BATCH_SIZE * (queryResult.length() + 50));
+        builder.append("{\"hasErrors\":").append(hasErrors).append(",\"results\":[");
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            boolean failed = hasErrors && i == 0;
+            String status = "\"statusCode\":" + (failed ? 400 : 200);
+            String result = "\"result\":" + (failed ? errorResult : queryResult);
+            builder.append('{').append(statusFirst ? status : result).append(',').append(statusFirst ? result : status).append('}');
+        }
+        return builder.append("]}").toString();
+    }
+
+    /**
+     * Answers every batch request with the same canned response, as the server would.
+     */
+    private final class CannedRestConnector implements RestConnector {
+        @Override
+        public <T> void post(URI uri, RestRequestBody body, RestResponseHandler<T> responseHandler) {
+            try {
+                body.writeTo(new NullOutputStream());
+                CountingJsonParser parser = mappingContext.createParser(new ByteArrayInputStream(batchResponse));
+                responseHandler.handleStatus(200, parser);
+                responseHandler.completed(responseHandler.deserialize(parser), new Statistics.Builder().build());
+            } catch (IOException | RuntimeException e) {
+                responseHandler.failed(e, new Statistics.Builder().build());
+            }
+        }
+
+        @Override
+        public <T> void delete(URI uri, RestResponseHandler<T> responseHandler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> void get(URI uri, RestResponseHandler<T> responseHandler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> void getWithoutAuthorization(URI instanceUrl, URI uri, RestResponseHandler<T> responseHandler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public <T> void patch(URI uri, RestRequestBody body, RestResponseHandler<T> responseHandler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean isSynchronous() {
+            return true;
+        }
+
+        @Override
+        public void join() {
+        }
+
+        @Override
+        public Runnable bindToCurrentAuthorization(Runnable task) {
+            return task;
+        }
+
+        @Override
+        public URI getInstanceUrl() {
+            return URI.create("https://na1.salesforce.com");
+        }
+
+        @Override
+        public ApiVersion getApiVersion() {
+            return new ApiVersion("29.0");
+        }
+    }
+
+    private static final class QueryResponseHandler extends RestResponseHandler<QueryResult<SimpleBean>> {
+        private int recordCount;
+
+        @Override
+        public QueryResult<SimpleBean> deserialize(CountingJsonParser parser) throws IOException {
+            return QueryResult.deserialize(parser, SimpleBean.class);
+        }
+
+        @Override
+        public void completed(QueryResult<SimpleBean> result, Statistics statistics) {
+            recordCount = result.getRecords().size();
+        }
+
+        @Override
+        public void failed(Throwable exception, Statistics statistics) {
+            recordCount = 0;
+        }
+    }
+}
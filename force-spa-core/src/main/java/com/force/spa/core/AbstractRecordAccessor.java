@@ -17,9 +17,11 @@ import com.force.spa.DeleteRecordOperation;
 import com.force.spa.DescribeObjectOperation;
 import com.force.spa.GetRecordOperation;
 import com.force.spa.PatchRecordOperation;
+import com.force.spa.PreparedRecordQuery;
 import com.force.spa.QueryRecordsExOperation;
 import com.force.spa.RecordAccessor;
 import com.force.spa.RecordAccessorConfig;
+import com.force.spa.RecordCursor;
 import com.force.spa.RecordOperation;
 import com.force.spa.RecordQuery;
 import com.force.spa.RecordRequestException;
@@ -126,7 +128,15 @@ public abstract class AbstractRecordAccessor implements RecordAccessor {
         Validate.notNull(soqlTemplate, "template must not be null");
         Validate.notNull(type, "type must not be null");
 
-        return new RecordQueryImpl<>(soqlTemplate, type);
+        return new RecordQueryImpl<>(this, this, soqlTemplate, type);
+    }
+
+    @Override
+    public final <T> PreparedRecordQuery<T> prepareQuery(final String soqlTemplate, final Class<T> type) {
+        Validate.notNull(soqlTemplate, "template must not be null");
+        Validate.notNull(type, "type must not be null");
+
+        return new PreparedRecordQueryImpl<>(this, this, soqlTemplate, type);
     }
 
     @Override
@@ -142,16 +152,45 @@ public abstract class AbstractRecordAccessor implements RecordAccessor {
         }
     }
 
+    /**
+     * Returns the description of an object as the current user sees it. This decides which fields the wildcards of
+     * metadata-aware objects expand to (see {@link SoqlBuilder}).
+     * <p/>
+     * This implementation describes the object every time. Subclasses which can keep descriptions for a while should.
+     *
+     * @param name the name of the object
+     * @return the description of the object
+     */
+    protected ObjectMetadata getVisibleObjectMetadata(String name) {
+        return describeObject(name);
+    }
+
     @Override
     public final RecordAccessorConfig getConfig() {
         return config;
     }
 
+    /**
+     * Opens a cursor over the records satisfying a query. The query is described by an operation, which supplies the
+     * SOQL template, the record and result classes and the result window, but the operation itself is not executed.
+     *
+     * @param operation the query operation
+     * @return a cursor over the query results
+     */
+    protected abstract <T, R> RecordCursor<R> openRecordCursor(QueryRecordsExOperation<T, R> operation);
+
     public final MappingContext getMappingContext() {
         return mappingContext;
     }
 
-    private String getRecordId(Object record) {
+    /**
+     * Returns the id of a record bean.
+     *
+     * @param record the record bean
+     * @return the id
+     * @throws RecordRequestException if the record class doesn't have an id member or the record doesn't have an id
+     */
+    public final String getRecordId(Object record) {
         ObjectDescriptor object = mappingContext.getObjectDescriptor(record.getClass());
         if (object.hasIdField()) {
             String id = object.getIdField().getValue(record);
@@ -163,53 +202,4 @@ public abstract class AbstractRecordAccessor implements RecordAccessor {
             throw new RecordRequestException("Record class doesn't have an id member");
         }
     }
-
-    private final class RecordQueryImpl<T> implements RecordQuery<T> {
-        private final Class<T> type;
-        private final String soqlTemplate;
-        private int maxResults;
-        private int startPosition;
-
-
-        private RecordQueryImpl(String soqlTemplate, Class<T> type) {
-            this.type = type;
-            this.soqlTemplate = soqlTemplate;
-        }
-
-        @Override
-        public List<T> execute() {
-            return execute(type);
-        }
-
-        @Override
-        public <R> List<R> execute(Class<R> resultClass) {
-            QueryRecordsExOperation<T, R> operation = newQueryRecordsOperation(soqlTemplate, type, resultClass);
-            if (startPosition != 0)
-                operation.setStartPosition(startPosition);
-            if (maxResults != 0)
-                operation.setMaxResults(maxResults);
-
-            AbstractRecordAccessor.this.execute(operation);
-
-            try {
-                return operation.get();
-            } catch (InterruptedException e) {
-                throw SpaException.valueOf(e);
-            } catch (ExecutionException e) {
-                throw SpaException.valueOf(e.getCause());
-            }
-        }
-
-        @Override
-        public RecordQuery<T> setMaxResults(int maxResults) {
-            this.maxResults = maxResults;
-            return this;
-        }
-
-        @Override
-        public RecordQuery<T> setFirstResult(int startPosition) {
-            this.startPosition = startPosition;
-            return this;
-        }
-    }
 }
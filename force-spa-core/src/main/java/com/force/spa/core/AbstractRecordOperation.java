@@ -6,23 +6,36 @@
 package com.force.spa.core;
 
 import java.nio.channels.CompletionHandler;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
+import com.force.spa.OperationListener;
+import com.force.spa.OperationType;
 import com.force.spa.RecordOperation;
 import com.force.spa.Statistics;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.ListenableFuture;
 
 /**
+ * An abstract base class for record operations. Operations are thread safe futures which are completed by the
+ * connector machinery through the {@link CompletionHandler} interface. They are also {@link ListenableFuture}s so that
+ * further processing can be chained onto their completion.
+ * <p/>
+ * Every operation that completes or fails is reported to the {@link OperationListener} of the record accessor
+ * configuration, if there is one. Successful operations are only logged at debug level, so percentiles and the like
+ * should be gathered through the listener rather than from the log.
+ * <p/>
+ * Cancelling an operation completes it immediately. A request that has not been sent yet is never sent and one that is
+ * in flight is aborted if the connector supports that. Any completion that arrives after cancellation is ignored.
+ *
  * @param <T> the type of record the operation is working with
  * @param <R> the type of result expected from the operation
  */
-public abstract class AbstractRecordOperation<T, R> implements RecordOperation<R>, CompletionHandler<R, Statistics> {
+public abstract class AbstractRecordOperation<T, R> extends AbstractFuture<R> implements RecordOperation<R>, CompletionHandler<R, Statistics> {
 
     private static final String STATISTICS_MDC_KEY = "spa.statistics";
     private static final String STATISTICS_SIMPLE_MDC_KEY = "spa.statistics.simple";
@@ -32,67 +45,61 @@ public abstract class AbstractRecordOperation<T, R> implements RecordOperation<R
     private final AbstractRecordAccessor recordAccessor;
     private final ObjectDescriptor objectDescriptor;
 
-    private R result;
-    private Throwable exception;
-    private boolean done;
-    private boolean cancelled;
-    private Statistics statistics;
+    private volatile Statistics statistics;
+    private volatile Future<?> request;
 
     protected AbstractRecordOperation(AbstractRecordAccessor recordAccessor, Class<T> recordClass) {
         this.recordAccessor = recordAccessor;
-        this.done = false;
-        this.cancelled = false;
 
         // Get the descriptor at early to make sure mapping context is loaded and ready to handle inbound polymorphism.
         this.objectDescriptor = (recordClass != null) ? getMappingContext().getObjectDescriptor(recordClass) : null;
     }
 
-    @Override
-    public final boolean isDone() {
-        return done;
-    }
-
-    @Override
-    public final boolean isCancelled() {
-        return cancelled;
-    }
-
     @Override
     public boolean cancel(boolean mayInterruptIfRunning) {
-        throw new UnsupportedOperationException("Not implemented yet"); // TODO
-    }
-
-    @Override
-    public R get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-        throw new UnsupportedOperationException("Not implemented yet"); // TODO
-    }
-
-    @Override
-    public final R get() throws ExecutionException {
-        if (done) {
-            if (exception != null) {
-                throw new ExecutionException(exception);
-            } else {
-                return result;
+        if (super.cancel(mayInterruptIfRunning)) {
+            Future<?> request = this.request;
+            if (request != null) {
+                request.cancel(mayInterruptIfRunning);
+            }
+            if (getLogger().isDebugEnabled()) {
+                getLogger().debug("Cancelled: " + this.toString());
             }
+            return true;
         } else {
-            throw new IllegalStateException("Operation is not done yet");
+            return false;
+        }
+    }
+
+    /**
+     * Records the request that is currently in flight on behalf of this operation so that it can be aborted if the
+     * operation is cancelled.
+     *
+     * @param request a future representing the request
+     */
+    public final void requestStarted(Future<?> request) {
+        this.request = request;
+        if (isCancelled()) {
+            request.cancel(true); // Lost a race with cancel
         }
     }
 
     @Override
     public void completed(R result, Statistics statistics) {
-        if (done) {
+        this.statistics = statistics;
+        if (!set(result)) {
+            if (isCancelled()) {
+                return; // Nobody is interested anymore
+            }
             throw new IllegalStateException("Operation is already done");
         }
-        done = true;
-        this.result = result;
-        this.statistics = statistics;
 
-        if (getLogger().isInfoEnabled()) {
+        notifyListener(statistics, null);
+
+        if (getLogger().isDebugEnabled()) {
             MDC.put(STATISTICS_MDC_KEY, statistics.toString(KeyValueToStringStyle.INSTANCE));
             MDC.put(STATISTICS_SIMPLE_MDC_KEY, statistics.toString(ToStringStyle.SIMPLE_STYLE));
-            getLogger().info(this.toString());
+            getLogger().debug(this.toString());
             MDC.remove(STATISTICS_SIMPLE_MDC_KEY);
             MDC.remove(STATISTICS_MDC_KEY);
         }
@@ -100,12 +107,15 @@ public abstract class AbstractRecordOperation<T, R> implements RecordOperation<R
 
     @Override
     public void failed(Throwable exception, Statistics statistics) {
-        if (done) {
+        this.statistics = statistics;
+        if (!setException(exception)) {
+            if (isCancelled()) {
+                return; // Nobody is interested anymore
+            }
             throw new IllegalStateException("Operation is already done");
         }
-        done = true;
-        this.exception = exception;
-        this.statistics = statistics;
+
+        notifyListener(statistics, exception);
 
         if (getLogger().isInfoEnabled()) {
             MDC.put(STATISTICS_MDC_KEY, statistics.toString(KeyValueToStringStyle.INSTANCE));
@@ -116,6 +126,17 @@ public abstract class AbstractRecordOperation<T, R> implements RecordOperation<R
         }
     }
 
+    private void notifyListener(Statistics statistics, Throwable exception) {
+        OperationListener listener = recordAccessor.getConfig().getOperationListener();
+        if (listener != null) {
+            try {
+                listener.operationCompleted(getOperationType(), getObjectName(), statistics, exception);
+            } catch (RuntimeException e) {
+                getLogger().warn("Operation listener failed", e);
+            }
+        }
+    }
+
     @Override
     public Statistics getStatistics() {
         return statistics;
@@ -129,10 +150,36 @@ public abstract class AbstractRecordOperation<T, R> implements RecordOperation<R
         return objectDescriptor;
     }
 
+    /**
+     * Returns the kind of operation, as reported to the {@link OperationListener}.
+     *
+     * @return the kind of operation
+     */
+    public abstract OperationType getOperationType();
+
+    /**
+     * Returns the name of the Salesforce object the operation works with, as reported to the {@link OperationListener}.
+     *
+     * @return the name of the object or <code>null</code> if not known
+     */
+    protected String getObjectName() {
+        return (objectDescriptor != null) ? objectDescriptor.getName() : null;
+    }
+
     protected final MappingContext getMappingContext() {
         return recordAccessor.getMappingContext();
     }
 
+    /**
+     * Returns the tracker of record changes if change tracking is enabled (see {@link
+     * com.force.spa.RecordAccessorConfig#isChangeTrackingEnabled()}).
+     *
+     * @return the tracker or <code>null</code> if change tracking isn't enabled
+     */
+    protected final ChangeTracker getChangeTracker() {
+        return recordAccessor.getConfig().isChangeTrackingEnabled() ? getMappingContext().getChangeTracker() : null;
+    }
+
     protected final Logger getLogger() {
         return logger;
     }
@@ -0,0 +1,335 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import java.net.URI;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.lang3.Validate;
+
+import com.force.spa.AuthorizationConnector;
+import com.force.spa.DeleteRecordOperation;
+import com.force.spa.DeleteRecordsOperation;
+import com.force.spa.GetRecordOperation;
+import com.force.spa.PatchRecordOperation;
+import com.force.spa.RecordAccessor;
+import com.force.spa.RecordOperation;
+import com.force.spa.Statistics;
+import com.force.spa.UpdateRecordOperation;
+import com.force.spa.UpdateRecordsOperation;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * A {@link RecordAccessor} decorator that keeps the records read with {@link GetRecordOperation}s, and therefore with
+ * {@link RecordAccessor#get}, in a bounded cache so that reading them again doesn't need a request to the server.
+ * <p/>
+ * Records are cached separately for each user (see {@link AuthorizationConnector#getUserId()}) because what a user can
+ * see depends on their sharing rules, and separately for each record class. Each of these versions of a record is an
+ * entry of its own, so the maximum size bounds the number of versions. Entries expire a fixed time after they were
+ * cached and the least recently used ones are evicted when the cache is full. Any update, patch or delete issued
+ * through this accessor removes all versions of the record from the cache, both when the write is executed and again
+ * when it completes, so a read that raced with the write can't leave the old version behind. Writes made some other
+ * way are only picked up when the entry expires. Without an {@link AuthorizationConnector} to tell users apart
+ * nothing is cached.
+ * <p/>
+ * Cached records are handed to every caller that reads them, so this decorator is only suitable when callers treat
+ * the records they read as read only.
+ */
+public final class CachingRecordAccessor extends RecordAccessorDecorator {
+
+    private static final int ID_LENGTH_CASE_SENSITIVE = 15;
+    private static final int INVALIDATION_STRIPES = 64;
+
+    private final Cache<VersionKey, Object> cache;
+
+    // The keys of the versions in the cache by record, so that a write can find all the versions of its record. Also
+    // serves as the lock which keeps the index in step with the cache.
+    private final SetMultimap<String, VersionKey> keysByRecord = HashMultimap.create();
+
+    // Counts of the invalidations of the records hashed to each stripe, which tell a read whether a write came along
+    // while it was in flight.
+    private final AtomicLongArray invalidationCounts = new AtomicLongArray(INVALIDATION_STRIPES);
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Creates a caching decorator.
+     *
+     * @param delegate    the accessor which reads records that aren't cached
+     * @param maximumSize the maximum number of record versions to keep in the cache
+     * @param timeToLive  how long a record is kept in the cache
+     * @param unit        the unit of the time to live
+     */
+    public CachingRecordAccessor(RecordAccessor delegate, long maximumSize, long timeToLive, TimeUnit unit) {
+        super(delegate);
+
+        Validate.isTrue(maximumSize >= 0, "maximumSize must not be negative");
+        Validate.isTrue(timeToLive >= 0, "timeToLive must not be negative");
+        Validate.notNull(unit, "unit must not be null");
+
+        this.cache = CacheBuilder.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(timeToLive, unit)
+            .recordStats()
+            .removalListener(new RemovalListener<VersionKey, Object>() {
+                @Override
+                public void onRemoval(RemovalNotification<VersionKey, Object> notification) {
+                    unindex(notification.getKey());
+                }
+            })
+            .build();
+    }
+
+    @Override
+    public void execute(List<RecordOperation<?>> operations) {
+        if (getConfig().getAuthorizationConnector() == null) {
+            super.execute(operations);
+            return;
+        }
+
+        List<RecordOperation<?>> operationsToExecute = new ArrayList<>(operations.size());
+        for (RecordOperation<?> operation : operations) {
+            if (operation instanceof GetRecordOperation && isCacheable(operation)) {
+                if (!readThrough((GetRecordOperation<?>) operation)) {
+                    operationsToExecute.add(operation);
+                }
+            } else {
+                invalidateWrittenRecords(operation);
+                operationsToExecute.add(operation);
+            }
+        }
+
+        if (!operationsToExecute.isEmpty()) {
+            super.execute(operationsToExecute);
+        }
+    }
+
+    /**
+     * Returns the number of reads that were answered from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of reads that had to go to the server.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of record versions evicted from the cache because it was full or they had expired. Versions
+     * removed because their record was written are not counted.
+     */
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * Returns the approximate number of record versions in the cache.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Removes all records from the cache.
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < INVALIDATION_STRIPES; i++) {
+            invalidationCounts.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    private static boolean isCacheable(RecordOperation<?> operation) {
+        return operation instanceof CompletionHandler && operation instanceof ListenableFuture && !operation.isCancelled();
+    }
+
+    /**
+     * Answers a read from the cache if possible, and otherwise arranges for its result to be cached.
+     *
+     * @return <code>true</code> if the read was answered from the cache and must not be executed
+     */
+    private <T> boolean readThrough(GetRecordOperation<T> operation) {
+        final VersionKey key = new VersionKey(
+            getRecordKey(operation.getId()), getConfig().getAuthorizationConnector().getUserId(), operation.getRecordClass());
+        Object record = cache.getIfPresent(key);
+        if (record != null) {
+            hitCount.incrementAndGet();
+            @SuppressWarnings("unchecked")
+            CompletionHandler<T, Statistics> handler = (CompletionHandler<T, Statistics>) operation;
+            handler.completed(operation.getRecordClass().cast(record), new Statistics.Builder().rowsProcessed(1).build());
+            return true;
+        }
+
+        missCount.incrementAndGet();
+        final int stripe = getStripe(key.recordKey);
+        final long invalidationCount = invalidationCounts.get(stripe);
+        @SuppressWarnings("unchecked")
+        ListenableFuture<T> future = (ListenableFuture<T>) operation;
+        Futures.addCallback(future, new FutureCallback<T>() {
+            @Override
+            public void onSuccess(T result) {
+                if (result != null) {
+                    cache(key, result, stripe, invalidationCount);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable exception) {
+                // Nothing to cache
+            }
+        });
+        return false;
+    }
+
+    /**
+     * Caches a version of a record unless the record was invalidated after the read started. The check comes after
+     * the version is in the cache so that an invalidation either sees the version and removes it or is seen here.
+     */
+    private void cache(VersionKey key, Object record, int stripe, long invalidationCount) {
+        synchronized (keysByRecord) {
+            keysByRecord.put(key.recordKey, key);
+            cache.put(key, record);
+        }
+        if (invalidationCounts.get(stripe) != invalidationCount) {
+            cache.invalidate(key); // A write came along while the record was being read
+        }
+    }
+
+    /**
+     * Removes a version from the index once it has left the cache. It may have been put back in the meantime, in
+     * which case it stays.
+     */
+    private void unindex(VersionKey key) {
+        synchronized (keysByRecord) {
+            if (!cache.asMap().containsKey(key)) {
+                keysByRecord.remove(key.recordKey, key);
+            }
+        }
+    }
+
+    private void invalidateWrittenRecords(RecordOperation<?> operation) {
+        final List<String> ids = getWrittenIds(operation);
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        invalidate(ids);
+        if (operation instanceof ListenableFuture) {
+            ((ListenableFuture<?>) operation).addListener(new Runnable() {
+                @Override
+                public void run() {
+                    invalidate(ids);
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+    }
+
+    private void invalidate(List<String> ids) {
+        for (String id : ids) {
+            String recordKey = getRecordKey(id);
+            invalidationCounts.incrementAndGet(getStripe(recordKey));
+
+            List<VersionKey> keys;
+            synchronized (keysByRecord) {
+                keys = new ArrayList<>(keysByRecord.get(recordKey));
+            }
+            cache.invalidateAll(keys);
+        }
+    }
+
+    private List<String> getWrittenIds(RecordOperation<?> operation) {
+        if (operation instanceof UpdateRecordOperation) {
+            return Collections.singletonList(((UpdateRecordOperation<?>) operation).getId());
+        } else if (operation instanceof PatchRecordOperation) {
+            return Collections.singletonList(((PatchRecordOperation<?>) operation).getId());
+        } else if (operation instanceof DeleteRecordOperation) {
+            return Collections.singletonList(((DeleteRecordOperation<?>) operation).getId());
+        } else if (operation instanceof DeleteRecordsOperation) {
+            return ((DeleteRecordsOperation<?>) operation).getIds();
+        } else if (operation instanceof UpdateRecordsOperation) {
+            AbstractRecordAccessor accessor = getUndecoratedAccessor();
+            if (accessor == null) {
+                invalidateAll(); // No way to tell which records are being written
+                return Collections.emptyList();
+            }
+            List<String> ids = new ArrayList<>();
+            for (Object record : ((UpdateRecordsOperation<?>) operation).getRecords()) {
+                ids.add(accessor.getRecordId(record));
+            }
+            return ids;
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Builds the key which identifies a record. Salesforce ids are unique across all objects so the key doesn't need
+     * to mention the object. The case-sensitive 15 character form of the id is used so that the 15 and 18 character
+     * forms of the same id find the same versions.
+     */
+    private String getRecordKey(String id) {
+        URI instanceUrl = getConfig().getAuthorizationConnector().getInstanceUrl();
+        String shortId = (id != null && id.length() > ID_LENGTH_CASE_SENSITIVE) ? id.substring(0, ID_LENGTH_CASE_SENSITIVE) : id;
+        return instanceUrl + "/" + shortId;
+    }
+
+    private static int getStripe(String recordKey) {
+        return (recordKey.hashCode() & Integer.MAX_VALUE) % INVALIDATION_STRIPES;
+    }
+
+    /**
+     * The key of a version of a record, as read by one user with one record class.
+     */
+    private static final class VersionKey {
+        private final String recordKey;
+        private final String userId;
+        private final Class<?> recordClass;
+
+        VersionKey(String recordKey, String userId, Class<?> recordClass) {
+            this.recordKey = recordKey;
+            this.userId = userId;
+            this.recordClass = recordClass;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof VersionKey)) {
+                return false;
+            }
+            VersionKey that = (VersionKey) o;
+            return recordKey.equals(that.recordKey) && Objects.equals(userId, that.userId) && Objects.equals(recordClass, that.recordClass);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(recordKey, userId, recordClass);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import static com.force.spa.core.IntrospectionUtils.getRelationshipIdName;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import org.apache.commons.lang3.ObjectUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Remembers the field values of records handed out by record accessors so that an update can send only the fields that
+ * have changed since (see {@link com.force.spa.RecordAccessorConfig#isChangeTrackingEnabled()}).
+ * <p/>
+ * Only fields which are sent on update (see {@link FieldDescriptor#isUpdatable()}) are remembered. Values are compared
+ * with <code>equals</code>, except for relationships which are compared by the id of the related record. Records are
+ * held weakly and compared by identity, so tracking doesn't keep them alive or depend on their <code>equals</code>.
+ * <p/>
+ * Values which can be changed in place are copied when they're remembered: dates, collections, maps and arrays (which
+ * are compared with {@link Arrays#deepEquals}), along with everything inside them. A value of any other type which
+ * isn't known to be immutable can't be copied safely, so its field is always taken to have changed.
+ */
+public final class ChangeTracker {
+
+    /**
+     * Classes of values which can't change once created, so they needn't be copied.
+     */
+    private static final Set<Class<?>> IMMUTABLE_CLASSES = ImmutableSet.<Class<?>>of(
+        String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class,
+        Double.class, BigDecimal.class, BigInteger.class, URI.class, UUID.class, Locale.class);
+
+    /**
+     * Immutable Joda-Time classes, which are named rather than referenced so as not to need Joda-Time. They're all
+     * final so a match on the name is as good as one on the class.
+     */
+    private static final Set<String> IMMUTABLE_CLASS_NAMES = ImmutableSet.of(
+        "org.joda.time.DateTime", "org.joda.time.Instant", "org.joda.time.LocalDate", "org.joda.time.LocalDateTime",
+        "org.joda.time.LocalTime");
+
+    private final MappingContext mappingContext;
+    private final Cache<Object, Object[]> snapshots = CacheBuilder.newBuilder().weakKeys().build();
+
+    ChangeTracker(MappingContext mappingContext) {
+        this.mappingContext = mappingContext;
+    }
+
+    /**
+     * Remembers the current field values of records.
+     *
+     * @param records the records
+     */
+    public void track(Collection<?> records) {
+        for (Object record : records) {
+            track(record);
+        }
+    }
+
+    /**
+     * Remembers the current field values of a record.
+     *
+     * @param record the record
+     */
+    public void track(Object record) {
+        if (record != null) {
+            snapshots.put(record, takeSnapshot(mappingContext.getObjectDescriptor(record.getClass()), record));
+        }
+    }
+
+    /**
+     * Forgets the field values of a record.
+     *
+     * @param record the record
+     */
+    public void forget(Object record) {
+        snapshots.invalidate(record);
+    }
+
+    /**
+     * Works out which fields of a record have changed since it was tracked.
+     *
+     * @param record the record
+     * @return the changes or <code>null</code> if the record isn't tracked
+     */
+    public ChangeSet getChanges(Object record) {
+        Object[] snapshot = snapshots.getIfPresent(record);
+        if (snapshot == null) {
+            return null;
+        }
+
+        ObjectDescriptor object = mappingContext.getObjectDescriptor(record.getClass());
+        Object[] currentSnapshot = takeSnapshot(object, record);
+        List<FieldDescriptor> fields = object.getFields();
+        List<String> unchangedPropertyNames = new ArrayList<>();
+        boolean changed = false;
+        for (int i = 0; i < currentSnapshot.length; i++) {
+            FieldDescriptor field = fields.get(i);
+            if (!field.isUpdatable()) {
+                continue;
+            }
+            if (ObjectUtils.equals(snapshot[i], currentSnapshot[i])) {
+                unchangedPropertyNames.add(field.getName());
+                if (field.isRelationship()) {
+                    unchangedPropertyNames.add(getRelationshipIdName(field.getName()));
+                }
+            } else {
+                changed = true;
+            }
+        }
+        return new ChangeSet(record, currentSnapshot, changed, unchangedPropertyNames);
+    }
+
+    private Object[] takeSnapshot(ObjectDescriptor object, Object record) {
+        List<FieldDescriptor> fields = object.getFields();
+        Object[] snapshot = new Object[fields.size()];
+        for (int i = 0; i < snapshot.length; i++) {
+            FieldDescriptor field = fields.get(i);
+            if (field.isUpdatable()) {
+                snapshot[i] = snapshotValue(field, field.getValue(record));
+            }
+        }
+        return snapshot;
+    }
+
+    private Object snapshotValue(FieldDescriptor field, Object value) {
+        if (value == null) {
+            return null;
+        } else if (field.isRelationship()) {
+            ObjectDescriptor relatedObject = mappingContext.getObjectDescriptor(value.getClass());
+            if (relatedObject.hasIdField()) {
+                Object id = relatedObject.getIdField().getValue(value);
+                if (id != null) {
+                    return id; // The relationship is sent as the id so that's all that matters
+                }
+            }
+            return new IdentityValue(value);
+        } else {
+            return copyValue(value);
+        }
+    }
+
+    /**
+     * Copies a value, and everything inside it, so that changes made to it in place show up as changes.
+     */
+    private static Object copyValue(Object value) {
+        if (value == null || value instanceof Enum
+            || IMMUTABLE_CLASSES.contains(value.getClass()) || IMMUTABLE_CLASS_NAMES.contains(value.getClass().getName())) {
+            return value;
+        } else if (value instanceof Date) {
+            return new Date(((Date) value).getTime());
+        } else if (value instanceof Set) {
+            Set<Object> copy = new LinkedHashSet<>();
+            for (Object element : (Set<?>) value) {
+                copy.add(copyValue(element));
+            }
+            return copy;
+        } else if (value instanceof Collection) {
+            List<Object> copy = new ArrayList<>();
+            for (Object element : (Collection<?>) value) {
+                copy.add(copyValue(element));
+            }
+            return copy;
+        } else if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(copyValue(entry.getKey()), copyValue(entry.getValue()));
+            }
+            return copy;
+        } else if (value.getClass().isArray()) {
+            return new ArrayValue(value);
+        } else {
+            return new UncopyableValue();
+        }
+    }
+
+    /**
+     * The fields of a record that have changed since it was tracked.
+     */
+    public final class ChangeSet {
+        private final Object record;
+        private final Object[] snapshot;
+        private final boolean changed;
+        private final List<String> unchangedPropertyNames;
+
+        private ChangeSet(Object record, Object[] snapshot, boolean changed, List<String> unchangedPropertyNames) {
+            this.record = record;
+            this.snapshot = snapshot;
+            this.changed = changed;
+            this.unchangedPropertyNames = Collections.unmodifiableList(unchangedPropertyNames);
+        }
+
+        public boolean isEmpty() {
+            return !changed;
+        }
+
+        /**
+         * Returns the JSON property names of the fields which haven't changed and so needn't be sent.
+         */
+        public List<String> getUnchangedPropertyNames() {
+            return unchangedPropertyNames;
+        }
+
+        /**
+         * Makes the values the changes were worked out from the ones that later changes are compared with. This is
+         * meant to be called once the changes have been saved.
+         */
+        public void commit() {
+            snapshots.put(record, snapshot);
+        }
+    }
+
+    /**
+     * A copy of an array, which is compared with another by its elements.
+     */
+    private static final class ArrayValue {
+        private final Object array;
+
+        ArrayValue(Object array) {
+            if (array instanceof Object[]) {
+                Object[] elements = (Object[]) array;
+                Object[] copy = new Object[elements.length];
+                for (int i = 0; i < elements.length; i++) {
+                    copy[i] = copyValue(elements[i]);
+                }
+                this.array = copy;
+            } else {
+                int length = Array.getLength(array);
+                Object copy = Array.newInstance(array.getClass().getComponentType(), length);
+                System.arraycopy(array, 0, copy, 0, length);
+                this.array = copy;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ArrayValue && Arrays.deepEquals(new Object[]{array}, new Object[]{((ArrayValue) o).array});
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.deepHashCode(new Object[]{array});
+        }
+    }
+
+    /**
+     * Stands in for a value that couldn't be copied. Each snapshot has its own, which is only equal to itself, so the
+     * value is never considered unchanged because it may have changed in place.
+     */
+    private static final class UncopyableValue {
+    }
+
+    /**
+     * A related record without an id, which is only considered unchanged if it's the same instance.
+     */
+    private static final class IdentityValue {
+        private final Object value;
+
+        IdentityValue(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IdentityValue && ((IdentityValue) o).value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(value);
+        }
+    }
+}
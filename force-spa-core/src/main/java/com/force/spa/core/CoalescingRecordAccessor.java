@@ -0,0 +1,273 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import java.net.URI;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.force.spa.AuthorizationConnector;
+import com.force.spa.CreateRecordOperation;
+import com.force.spa.DeleteRecordOperation;
+import com.force.spa.PatchRecordOperation;
+import com.force.spa.RecordAccessor;
+import com.force.spa.RecordOperation;
+import com.force.spa.RecordResponseException;
+import com.force.spa.Statistics;
+import com.force.spa.UpdateRecordOperation;
+
+/**
+ * A {@link RecordAccessor} decorator that gathers single record writes (creates, updates, patches and deletes) from
+ * many threads and executes them together, so that the underlying accessor can send them in a batch request instead
+ * of making a round trip for each of them.
+ * <p/>
+ * The first write to arrive opens a batch and the thread that issued it waits for more writes to join, up to the
+ * configured delay. The batch is executed as soon as it is full, by the thread that filled it, or otherwise when the
+ * delay has passed, by the thread that opened it. Every other thread returns from {@link #execute(List)} as soon as
+ * its writes have joined a batch and finds out how they went through the operations themselves, which complete
+ * individually.
+ * <p/>
+ * Writes are only gathered together when they are issued with the same authorization and instance URL, as captured
+ * from the {@link AuthorizationConnector} on the calling thread, so that a batch is always sent on behalf of a single
+ * user. All other operations are passed straight to the underlying accessor, and so is any list which mixes writes
+ * with other operations, so that the operations in a list are always executed in the order given.
+ */
+public final class CoalescingRecordAccessor extends RecordAccessorDecorator {
+
+    /**
+     * The default maximum number of writes in a batch, which matches the limit of a single Salesforce batch request.
+     */
+    public static final int DEFAULT_MAX_BATCH_SIZE = 25;
+
+    private static final Logger LOG = LoggerFactory.getLogger(CoalescingRecordAccessor.class);
+
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+
+    // Batches which are still open for more writes to join, guarded by "openBatches".
+    private final Map<BatchKey, PendingBatch> openBatches = new HashMap<>();
+
+    /**
+     * Creates a decorator with the default maximum batch size.
+     *
+     * @param delegate the accessor which executes the batches
+     * @param maxDelay the longest time a write waits for others to join its batch
+     * @param unit     the unit of the delay
+     */
+    public CoalescingRecordAccessor(RecordAccessor delegate, long maxDelay, TimeUnit unit) {
+        this(delegate, DEFAULT_MAX_BATCH_SIZE, maxDelay, unit);
+    }
+
+    /**
+     * Creates a decorator.
+     *
+     * @param delegate     the accessor which executes the batches
+     * @param maxBatchSize the largest number of writes executed together
+     * @param maxDelay     the longest time a write waits for others to join its batch
+     * @param unit         the unit of the delay
+     */
+    public CoalescingRecordAccessor(RecordAccessor delegate, int maxBatchSize, long maxDelay, TimeUnit unit) {
+        super(delegate);
+
+        Validate.isTrue(maxBatchSize > 0, "maxBatchSize must be positive");
+        Validate.isTrue(maxDelay >= 0, "maxDelay must not be negative");
+        Validate.notNull(unit, "unit must not be null");
+
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * If all the operations are single record writes they are added to the open batch for the caller's authorization.
+     * If the caller opened a batch this waits until the batch has been executed, otherwise it returns once the writes
+     * have been added. Any other list, or any list without an {@link AuthorizationConnector} to tell callers apart, is
+     * passed straight to the delegate.
+     */
+    @Override
+    public void execute(List<RecordOperation<?>> operations) {
+        if (getConfig().getAuthorizationConnector() == null) {
+            super.execute(operations);
+            return;
+        }
+
+        if (operations.isEmpty() || !areAllCoalescable(operations)) {
+            super.execute(operations); // Splitting a mixed list would change the order of execution
+            return;
+        }
+
+        coalesce(operations);
+    }
+
+    private static boolean areAllCoalescable(List<RecordOperation<?>> operations) {
+        for (RecordOperation<?> operation : operations) {
+            if (!isCoalescable(operation)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCoalescable(RecordOperation<?> operation) {
+        return operation instanceof CreateRecordOperation
+            || operation instanceof DeleteRecordOperation
+            || operation instanceof PatchRecordOperation
+            || operation instanceof UpdateRecordOperation;
+    }
+
+    private void coalesce(List<RecordOperation<?>> writes) {
+        AuthorizationConnector authorizationConnector = getConfig().getAuthorizationConnector();
+        BatchKey key = new BatchKey(authorizationConnector.getInstanceUrl(), authorizationConnector.getAuthorization());
+
+        List<PendingBatch> openedBatches = new ArrayList<>(1);
+        for (RecordOperation<?> write : writes) {
+            PendingBatch fullBatch = null;
+            synchronized (openBatches) {
+                PendingBatch batch = openBatches.get(key);
+                if (batch == null) {
+                    batch = new PendingBatch(key, System.nanoTime() + maxDelayNanos);
+                    openBatches.put(key, batch);
+                    openedBatches.add(batch);
+                }
+                batch.operations.add(write);
+                if (batch.operations.size() >= maxBatchSize) {
+                    close(batch);
+                    fullBatch = batch;
+                }
+            }
+            if (fullBatch != null) {
+                executeBatch(fullBatch);
+            }
+        }
+
+        for (PendingBatch batch : openedBatches) {
+            if (awaitDeadline(batch)) {
+                executeBatch(batch);
+            }
+        }
+    }
+
+    /**
+     * Waits until a batch is full or has reached its deadline, whichever comes first. An interrupt cuts the wait
+     * short.
+     *
+     * @return <code>true</code> if the batch was closed by the deadline and is now up to the caller to execute
+     */
+    private boolean awaitDeadline(PendingBatch batch) {
+        boolean interrupted = false;
+        try {
+            synchronized (openBatches) {
+                long remainingNanos = batch.deadline - System.nanoTime();
+                while (!batch.closed && remainingNanos > 0 && !interrupted) {
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(openBatches, remainingNanos);
+                    } catch (InterruptedException e) {
+                        interrupted = true; // Send what we have right away
+                    }
+                    remainingNanos = batch.deadline - System.nanoTime();
+                }
+                if (batch.closed) {
+                    return false; // Somebody filled it and executed it
+                }
+                close(batch);
+                return true;
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void close(PendingBatch batch) {
+        batch.closed = true;
+        openBatches.remove(batch.key);
+        openBatches.notifyAll();
+    }
+
+    /**
+     * Executes a batch with the underlying accessor. Should that fail outright, the operations are failed individually
+     * because their owners may not be around to hear about it any other way.
+     */
+    private void executeBatch(PendingBatch batch) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Executing %d coalesced writes", batch.operations.size()));
+        }
+
+        try {
+            super.execute(batch.operations);
+        } catch (RuntimeException e) {
+            Exception exception = new RecordResponseException("Coalesced batch failed", e);
+            for (RecordOperation<?> operation : batch.operations) {
+                if (!operation.isDone()) {
+                    fail(operation, exception);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void fail(RecordOperation<?> operation, Exception exception) {
+        if (operation instanceof CompletionHandler) {
+            try {
+                ((CompletionHandler<?, Statistics>) operation).failed(exception, new Statistics.Builder().build());
+                return;
+            } catch (IllegalStateException e) {
+                return; // Lost a race with the operation completing some other way
+            }
+        }
+        operation.cancel(false);
+    }
+
+    private static final class BatchKey {
+        private final URI instanceUrl;
+        private final String authorization;
+
+        BatchKey(URI instanceUrl, String authorization) {
+            this.instanceUrl = instanceUrl;
+            this.authorization = authorization;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BatchKey)) {
+                return false;
+            }
+            BatchKey that = (BatchKey) o;
+            return Objects.equals(instanceUrl, that.instanceUrl) && Objects.equals(authorization, that.authorization);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(instanceUrl, authorization);
+        }
+    }
+
+    private static final class PendingBatch {
+        private final BatchKey key;
+        private final long deadline;
+        private final List<RecordOperation<?>> operations = new ArrayList<>();
+        private boolean closed;
+
+        PendingBatch(BatchKey key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+}
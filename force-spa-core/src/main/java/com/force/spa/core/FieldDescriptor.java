@@ -6,36 +6,127 @@
 package com.force.spa.core;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.List;
 
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 
 import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.introspect.AnnotatedField;
 import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMethod;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import com.google.common.base.Throwables;
 
 /**
  * Extra metadata about a Salesforce Field above and beyond that normally managed by Jackson. The information is
  * collected at the same time as the core Jackson metadata (introspection time) and references some of the standard
  * Jackson classes.
+ * <p/>
+ * Field values are read and written through a {@link GeneratedMemberAccessor} if one was generated for the class, and
+ * otherwise through {@link MethodHandle}s which are looked up once when the descriptor is created. Reflection is only
+ * used when neither is available, for example after the descriptor has been deserialized.
  */
 public final class FieldDescriptor implements Serializable {
 
     private static final long serialVersionUID = 4291181727751149768L;
 
+    private static final MethodType ACCESSOR_HANDLE_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType MUTATOR_HANDLE_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
     private final String name;
     private final JavaType javaType;
     private final AnnotatedMember accessor;
     private final AnnotatedMember mutator;
     private final ObjectDescriptor relatedObject;
     private final List<ObjectDescriptor> polymorphicChoices;
-
-    FieldDescriptor(String name, AnnotatedMember accessor, AnnotatedMember mutator, JavaType javaType, ObjectDescriptor relatedObject, List<ObjectDescriptor> polymorphicChoices) {
-        this.name = name;
-        this.accessor = accessor;
-        this.mutator = mutator;
+    private final boolean insertable;
+    private final boolean updatable;
+
+    // A generated accessor isn't serialized. A deserialized descriptor falls back to reflection.
+    private final transient GeneratedMemberAccessor generatedAccessor;
+    private final int generatedAccessorIndex;
+    private final int generatedMutatorIndex;
+
+    // Method handles aren't serializable either.
+    private final transient MethodHandle accessorHandle;
+    private final transient MethodHandle mutatorHandle;
+
+    FieldDescriptor(BeanPropertyDefinition property, JavaType javaType, ObjectDescriptor relatedObject, List<ObjectDescriptor> polymorphicChoices, Class<?>[] views, GeneratedMemberAccessor generatedAccessor) {
+        this.name = property.getName();
+        this.accessor = property.getAccessor();
+        this.mutator = property.getMutator();
         this.javaType = javaType;
         this.relatedObject = relatedObject;
         this.polymorphicChoices = polymorphicChoices;
+        this.insertable = isIncludedInView(views, SerializationViews.Create.class);
+        this.updatable = isIncludedInView(views, SerializationViews.Update.class);
+        this.generatedAccessor = generatedAccessor;
+        this.generatedAccessorIndex = findGeneratedIndex(generatedAccessor, accessor);
+        this.generatedMutatorIndex = findGeneratedIndex(generatedAccessor, mutator);
+        this.accessorHandle = (generatedAccessorIndex < 0) ? findAccessorHandle(accessor) : null;
+        this.mutatorHandle = (generatedMutatorIndex < 0) ? findMutatorHandle(mutator) : null;
+    }
+
+    /**
+     * Determines whether a property with the given serialization views (<code>null</code> meaning all of them) is
+     * included in the JSON written for a view.
+     */
+    private static boolean isIncludedInView(Class<?>[] views, Class<?> view) {
+        return views == null || ArrayUtils.contains(views, view);
+    }
+
+    private static int findGeneratedIndex(GeneratedMemberAccessor generatedAccessor, AnnotatedMember member) {
+        if (generatedAccessor == null || member == null) {
+            return -1;
+        }
+        String memberKey = GeneratedMemberAccessor.getMemberKey(member);
+        return (memberKey != null) ? generatedAccessor.indexOf(memberKey) : -1;
+    }
+
+    /**
+     * Looks up a method handle which reads a field or calls a getter, or returns <code>null</code> if there is no
+     * such member or it can't be made accessible.
+     */
+    private static MethodHandle findAccessorHandle(AnnotatedMember member) {
+        try {
+            if (member instanceof AnnotatedField) {
+                member.fixAccess();
+                return MethodHandles.lookup().unreflectGetter((Field) member.getMember()).asType(ACCESSOR_HANDLE_TYPE);
+            } else if (member instanceof AnnotatedMethod && ((AnnotatedMethod) member).getParameterCount() == 0) {
+                member.fixAccess();
+                return MethodHandles.lookup().unreflect((Method) member.getMember()).asType(ACCESSOR_HANDLE_TYPE);
+            } else {
+                return null;
+            }
+        } catch (IllegalAccessException | RuntimeException e) {
+            return null; // Fall back to reflection, which will report the problem if the member is ever used
+        }
+    }
+
+    /**
+     * Looks up a method handle which writes a field or calls a setter, or returns <code>null</code> if there is no
+     * such member or it can't be made accessible (a final field for example).
+     */
+    private static MethodHandle findMutatorHandle(AnnotatedMember member) {
+        try {
+            if (member instanceof AnnotatedField) {
+                member.fixAccess();
+                return MethodHandles.lookup().unreflectSetter((Field) member.getMember()).asType(MUTATOR_HANDLE_TYPE);
+            } else if (member instanceof AnnotatedMethod && ((AnnotatedMethod) member).getParameterCount() == 1) {
+                member.fixAccess();
+                return MethodHandles.lookup().unreflect((Method) member.getMember()).asType(MUTATOR_HANDLE_TYPE);
+            } else {
+                return null;
+            }
+        } catch (IllegalAccessException | RuntimeException e) {
+            return null; // Fall back to reflection, which will report the problem if the member is ever used
+        }
     }
 
     public String getName() {
@@ -62,9 +153,33 @@ public final class FieldDescriptor implements Serializable {
         return polymorphicChoices != null && polymorphicChoices.size() > 0;
     }
 
+    /**
+     * Returns an indication of whether the field is sent when a record is created. This matches the field's inclusion
+     * in the JSON written by {@link MappingContext#getObjectWriterForCreate()}.
+     */
+    public boolean isInsertable() {
+        return insertable;
+    }
+
+    /**
+     * Returns an indication of whether the field is sent when a record is updated. This matches the field's inclusion
+     * in the JSON written by {@link MappingContext#getObjectWriterForUpdate()}.
+     */
+    public boolean isUpdatable() {
+        return updatable;
+    }
+
     @SuppressWarnings("unchecked")
     public <T> T getValue(Object record) {
-        if (accessor != null) {
+        if (generatedAccessor != null && generatedAccessorIndex >= 0) {
+            return (T) generatedAccessor.getValue(record, generatedAccessorIndex);
+        } else if (accessorHandle != null) {
+            try {
+                return (T) (Object) accessorHandle.invokeExact(record);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        } else if (accessor != null) {
             return (T) accessor.getValue(record);
         } else {
             throw new IllegalStateException("Field has no accessor");
@@ -73,13 +188,30 @@ public final class FieldDescriptor implements Serializable {
 
     @SuppressWarnings("unchecked")
     public <T> void setValue(Object record, T value) {
-        if (mutator != null) {
+        if (generatedAccessor != null && generatedMutatorIndex >= 0) {
+            generatedAccessor.setValue(record, generatedMutatorIndex, value);
+        } else if (mutatorHandle != null) {
+            try {
+                mutatorHandle.invokeExact(record, (Object) value);
+            } catch (Throwable t) {
+                throw propagate(t);
+            }
+        } else if (mutator != null) {
             mutator.setValue(record, value);
         } else {
             throw new IllegalStateException("Field has no mutator");
         }
     }
 
+    /**
+     * Wraps a failure of a method handle the way {@link AnnotatedMember} wraps a failure of reflection, so callers see
+     * the same exceptions whichever way the field is accessed.
+     */
+    private RuntimeException propagate(Throwable t) {
+        Throwables.propagateIfInstanceOf(t, Error.class);
+        return new IllegalArgumentException("Failed to access field '" + name + "': " + t.getMessage(), t);
+    }
+
     @Override
     public String toString() {
         return ToStringBuilder.reflectionToString(this);
@@ -0,0 +1,67 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.force.spa.metadata.ChildRelationshipMetadata;
+import com.force.spa.metadata.FieldMetadata;
+import com.force.spa.metadata.ObjectMetadata;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+/**
+ * The fields, relationships and child relationships of an object that a user can see, as told by the description of
+ * the object, which only includes what the user has access to.
+ * <p/>
+ * Users who see the same names share a fingerprint, so expansions that depend on the visibility can be cached by it
+ * rather than by user (see {@link SoqlBuilder}).
+ */
+final class FieldVisibility {
+    private final Set<String> visibleNames;
+    private final String fingerprint;
+
+    FieldVisibility(ObjectMetadata metadata) {
+        Set<String> names = new TreeSet<>();
+        if (metadata.getFields() != null) {
+            for (FieldMetadata field : metadata.getFields()) {
+                addName(names, field.getName());
+                addName(names, field.getRelationshipName());
+            }
+        }
+        if (metadata.getChildRelationships() != null) {
+            for (ChildRelationshipMetadata childRelationship : metadata.getChildRelationships()) {
+                addName(names, childRelationship.getRelationshipName());
+            }
+        }
+
+        this.visibleNames = Collections.unmodifiableSet(names);
+        this.fingerprint = Hashing.sha1().hashString(StringUtils.join(names, ","), Charsets.UTF_8).toString();
+    }
+
+    private static void addName(Set<String> names, String name) {
+        if (!StringUtils.isEmpty(name)) {
+            names.add(normalize(name));
+        }
+    }
+
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ENGLISH); // Names are case-insensitive
+    }
+
+    boolean isVisible(FieldDescriptor field) {
+        return visibleNames.contains(normalize(field.getName()));
+    }
+
+    String getFingerprint() {
+        return fingerprint;
+    }
+}
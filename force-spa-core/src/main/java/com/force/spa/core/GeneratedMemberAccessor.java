@@ -0,0 +1,96 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import com.fasterxml.jackson.databind.introspect.AnnotatedField;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMethod;
+
+/**
+ * Straight-line access to the fields and properties of a persistent class, without reflection.
+ * <p/>
+ * Implementations are generated at build time by the optional annotation processor in the force-spa-processor
+ * module. The generated class lives in the same package as the persistent class and is named after it with a suffix
+ * of {@value #CLASS_NAME_SUFFIX}. {@link MappingContext} looks for one when it introspects a class and, when found,
+ * {@link FieldDescriptor} uses it instead of reflection.
+ * <p/>
+ * Members are identified by a key which is the name of a field, or the name of a method followed by the canonical
+ * names of its parameter types in parentheses, for example <code>getName()</code> or
+ * <code>setName(java.lang.String)</code>.
+ */
+public abstract class GeneratedMemberAccessor {
+
+    public static final String CLASS_NAME_SUFFIX = "_SpaMemberAccessor";
+
+    /**
+     * Returns the index of a member.
+     *
+     * @param memberKey the key of the member
+     * @return the index, or -1 if the member isn't accessible
+     */
+    public abstract int indexOf(String memberKey);
+
+    public abstract Object getValue(Object record, int index);
+
+    public abstract void setValue(Object record, int index, Object value);
+
+    /**
+     * Finds the generated accessor for a class.
+     *
+     * @param type the class
+     * @return the accessor or <code>null</code> if none was generated for the class
+     */
+    static GeneratedMemberAccessor find(Class<?> type) {
+        ClassLoader classLoader = type.getClassLoader();
+        if (classLoader == null) {
+            return null; // A system class, which certainly has no accessor.
+        }
+
+        Class<?> accessorClass;
+        try {
+            accessorClass = Class.forName(type.getName() + CLASS_NAME_SUFFIX, true, classLoader);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+
+        if (!GeneratedMemberAccessor.class.isAssignableFrom(accessorClass)) {
+            return null;
+        }
+        try {
+            return (GeneratedMemberAccessor) accessorClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Failed to instantiate " + accessorClass.getName(), e);
+        }
+    }
+
+    /**
+     * Returns the key of a member as understood by {@link #indexOf}.
+     *
+     * @param member the member
+     * @return the key or <code>null</code> if the member is neither a field nor a method
+     */
+    static String getMemberKey(AnnotatedMember member) {
+        if (member instanceof AnnotatedField) {
+            return ((Field) member.getMember()).getName();
+        } else if (member instanceof AnnotatedMethod) {
+            Method method = (Method) member.getMember();
+            StringBuilder builder = new StringBuilder(method.getName()).append('(');
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            for (int i = 0; i < parameterTypes.length; i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(parameterTypes[i].getCanonicalName());
+            }
+            return builder.append(')').toString();
+        } else {
+            return null;
+        }
+    }
+}
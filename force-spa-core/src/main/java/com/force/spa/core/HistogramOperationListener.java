@@ -0,0 +1,222 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.Validate;
+
+import com.force.spa.OperationListener;
+import com.force.spa.OperationType;
+import com.force.spa.Statistics;
+import com.force.spa.core.utils.Histogram;
+
+/**
+ * An {@link OperationListener} which keeps histograms of the latency and size of operations for each kind of operation
+ * and Salesforce object, so that percentiles can be reported without logging every operation.
+ * <p/>
+ * Recording an operation doesn't take any locks. The histograms are kept until {@link #reset()} is called.
+ *
+ * @see com.force.spa.RecordAccessorConfig#withOperationListener(OperationListener)
+ */
+public final class HistogramOperationListener implements OperationListener {
+
+    private static final long serialVersionUID = 4311880263394517437L;
+
+    private final ConcurrentMap<Key, OperationMetrics> metrics = new ConcurrentHashMap<>();
+
+    @Override
+    public void operationCompleted(OperationType operationType, String objectName, Statistics statistics, Throwable exception) {
+        Key key = new Key(operationType, objectName);
+        OperationMetrics operationMetrics = metrics.get(key);
+        if (operationMetrics == null) {
+            OperationMetrics newMetrics = new OperationMetrics();
+            operationMetrics = ObjectUtils.defaultIfNull(metrics.putIfAbsent(key, newMetrics), newMetrics);
+        }
+        operationMetrics.record(statistics, exception);
+    }
+
+    /**
+     * Returns the metrics for a kind of operation on a Salesforce object.
+     *
+     * @param operationType the kind of operation
+     * @param objectName    the name of the Salesforce object
+     * @return the metrics or <code>null</code> if there haven't been any such operations
+     */
+    public OperationMetrics getMetrics(OperationType operationType, String objectName) {
+        return metrics.get(new Key(operationType, objectName));
+    }
+
+    /**
+     * Returns the metrics for every kind of operation and Salesforce object there has been. The map is a live view
+     * which grows as new combinations are seen.
+     *
+     * @return the metrics by kind of operation and Salesforce object
+     */
+    public Map<Key, OperationMetrics> getAllMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * Forgets all the metrics gathered so far.
+     */
+    public void reset() {
+        metrics.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "HistogramOperationListener" + metrics;
+    }
+
+    /**
+     * The kind of operation and name of the Salesforce object which metrics are kept for.
+     */
+    public static final class Key implements Serializable {
+        private static final long serialVersionUID = -2047351926013475522L;
+
+        private final OperationType operationType;
+        private final String objectName;
+
+        public Key(OperationType operationType, String objectName) {
+            Validate.notNull(operationType, "operationType must not be null");
+
+            this.operationType = operationType;
+            this.objectName = objectName;
+        }
+
+        public OperationType getOperationType() {
+            return operationType;
+        }
+
+        /**
+         * Returns the name of the Salesforce object or <code>null</code> if not known.
+         */
+        public String getObjectName() {
+            return objectName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key that = (Key) o;
+            return operationType == that.operationType && ObjectUtils.equals(objectName, that.objectName);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * operationType.hashCode() + ObjectUtils.hashCode(objectName);
+        }
+
+        @Override
+        public String toString() {
+            return operationType + " " + objectName;
+        }
+    }
+
+    /**
+     * Histograms and counts for a kind of operation on a Salesforce object. Failed operations are included in the
+     * histograms as well as being counted separately.
+     */
+    public static final class OperationMetrics implements Serializable {
+        private static final long serialVersionUID = 6770151398716036412L;
+
+        private static final long HIGHEST_ELAPSED_NANOS = TimeUnit.HOURS.toNanos(1);
+        private static final long HIGHEST_BYTES = Integer.MAX_VALUE;
+        private static final long HIGHEST_ROWS = 10000000;
+
+        private final Histogram elapsedNanos = new Histogram(HIGHEST_ELAPSED_NANOS);
+        private final Histogram bytesSent = new Histogram(HIGHEST_BYTES);
+        private final Histogram bytesReceived = new Histogram(HIGHEST_BYTES);
+        private final Histogram rowsProcessed = new Histogram(HIGHEST_ROWS);
+        private final AtomicLong failureCount = new AtomicLong();
+        private final AtomicLong batchedCount = new AtomicLong();
+
+        OperationMetrics() {
+        }
+
+        void record(Statistics statistics, Throwable exception) {
+            elapsedNanos.recordValue(Math.max(statistics.getElapsedNanos(), 0));
+            bytesSent.recordValue(statistics.getBytesSent());
+            bytesReceived.recordValue(statistics.getBytesReceived());
+            rowsProcessed.recordValue(statistics.getRowsProcessed());
+            if (exception != null) {
+                failureCount.incrementAndGet();
+            }
+            if (statistics.isBatched()) {
+                batchedCount.incrementAndGet();
+            }
+        }
+
+        /**
+         * Returns the number of operations.
+         */
+        public long getCount() {
+            return elapsedNanos.getTotalCount();
+        }
+
+        /**
+         * Returns the number of operations which failed.
+         */
+        public long getFailureCount() {
+            return failureCount.get();
+        }
+
+        /**
+         * Returns the number of operations which were batched with others.
+         */
+        public long getBatchedCount() {
+            return batchedCount.get();
+        }
+
+        /**
+         * Returns the histogram of the time operations took, in nanoseconds. Anything over an hour counts as an hour.
+         */
+        public Histogram getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Returns the histogram of the number of data bytes sent to the server.
+         */
+        public Histogram getBytesSent() {
+            return bytesSent;
+        }
+
+        /**
+         * Returns the histogram of the number of data bytes received from the server.
+         */
+        public Histogram getBytesReceived() {
+            return bytesReceived;
+        }
+
+        /**
+         * Returns the histogram of the number of rows processed.
+         */
+        public Histogram getRowsProcessed() {
+            return rowsProcessed;
+        }
+
+        @Override
+        public String toString() {
+            return "OperationMetrics{count=" + getCount()
+                + ", failures=" + getFailureCount()
+                + ", elapsedNanos=" + elapsedNanos
+                + ", bytesSent=" + bytesSent
+                + ", bytesReceived=" + bytesReceived
+                + ", rowsProcessed=" + rowsProcessed + "}";
+        }
+    }
+}
@@ -56,6 +56,20 @@ public final class IntrospectionUtils {
         throw new UnsupportedOperationException("Can not be instantiated");
     }
 
+    /**
+     * Returns the name of the field which holds the id of the related object for a relationship.
+     *
+     * @param relationshipName the relationship name
+     * @return the name of the field holding the id of the related object
+     */
+    public static String getRelationshipIdName(String relationshipName) {
+        if (relationshipName.endsWith("__r")) {
+            return relationshipName.substring(0, relationshipName.length() - 1) + "c"; // Id for a Custom Object
+        } else {
+            return relationshipName + "Id"; // Id for a Standard Salesforce object
+        }
+    }
+
     @SuppressWarnings("BooleanMethodIsAlwaysInverted")
     static boolean isStandardProperty(String name) {
         return STANDARD_PROPERTIES.contains(name);
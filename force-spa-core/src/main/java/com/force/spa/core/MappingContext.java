@@ -63,6 +63,8 @@ public final class MappingContext implements Serializable {
     private final ObjectWriter objectWriterForCreate;
     private final ObjectWriter objectWriterForUpdate;
     private final ObjectWriter objectWriterForPatch;
+    private final SoqlExpansionCache soqlExpansionCache = new SoqlExpansionCache();
+    private final ChangeTracker changeTracker = new ChangeTracker(this);
 
     // Updates happen infrequently once the context is primed so no need for special concurrent map parameters.
     private final Map<String, ObjectDescriptor> descriptorsByName = new ConcurrentHashMap<>();
@@ -142,6 +144,22 @@ public final class MappingContext implements Serializable {
         return objectWriterForUpdate;
     }
 
+    /**
+     * Returns the cache of SOQL expansions used by {@link SoqlBuilder}s working with this context, mostly so that its
+     * statistics can be monitored.
+     */
+    public SoqlExpansionCache getSoqlExpansionCache() {
+        return soqlExpansionCache;
+    }
+
+    /**
+     * Returns the tracker of record changes used by record accessors working with this context when change tracking is
+     * enabled (see {@link RecordAccessorConfig#isChangeTrackingEnabled()}).
+     */
+    public ChangeTracker getChangeTracker() {
+        return changeTracker;
+    }
+
     /**
      * Gets the {@link ObjectDescriptor} for the specified class.
      * <p/>
@@ -217,7 +235,7 @@ public final class MappingContext implements Serializable {
 
                 descriptorsUnderConstruction.put(type, descriptor); // Stash partial progress before handling fields that might recurse
 
-                descriptor.initializeFields(buildFieldDescriptors(beanDescription));
+                descriptor.initializeFields(buildFieldDescriptors(beanDescription, GeneratedMemberAccessor.find(type)));
 
                 if (!recursiveCall) {
                     publishCompletedDescriptors(descriptorsUnderConstruction);
@@ -265,19 +283,26 @@ public final class MappingContext implements Serializable {
         return (annotation != null) && annotation.primary();
     }
 
-    private List<FieldDescriptor> buildFieldDescriptors(BasicBeanDescription bean) {
+    private List<FieldDescriptor> buildFieldDescriptors(BasicBeanDescription bean, GeneratedMemberAccessor generatedAccessor) {
         List<FieldDescriptor> fields = new ArrayList<>();
         for (BeanPropertyDefinition property : bean.findProperties()) {
-            fields.add(buildFieldDescriptor(bean, property));
+            fields.add(buildFieldDescriptor(bean, property, generatedAccessor));
         }
         return fields;
     }
 
-    private FieldDescriptor buildFieldDescriptor(BasicBeanDescription bean, BeanPropertyDefinition property) {
+    private FieldDescriptor buildFieldDescriptor(BasicBeanDescription bean, BeanPropertyDefinition property, GeneratedMemberAccessor generatedAccessor) {
         JavaType javaType = getJavaTypeFor(property, bean);
         ObjectDescriptor baseRelatedObject = findRelatedObject(javaType);
         List<ObjectDescriptor> polymorphicChoices = getPolymorphicChoices(property, baseRelatedObject);
-        return new FieldDescriptor(property.getName(), property.getAccessor(), property.getMutator(), javaType, baseRelatedObject, polymorphicChoices);
+        return new FieldDescriptor(property, javaType, baseRelatedObject, polymorphicChoices, findViews(property), generatedAccessor);
+    }
+
+    private Class<?>[] findViews(BeanPropertyDefinition property) {
+        if (property.getAccessor() == null) {
+            return new Class<?>[0]; // Can't be serialized at all
+        }
+        return objectMapper.getSerializationConfig().getAnnotationIntrospector().findViews(property.getAccessor());
     }
 
     private ObjectDescriptor findRelatedObject(JavaType javaType) {
@@ -0,0 +1,128 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+
+import com.force.spa.PreparedRecordQuery;
+import com.force.spa.RecordAccessor;
+import com.force.spa.RecordQuery;
+import com.force.spa.core.utils.SoqlUtils;
+
+/**
+ * The {@link PreparedRecordQuery} implementation shared by record accessors and their decorators.
+ * <p/>
+ * The template is expanded and split at its bind parameters once, when the query is prepared. Binding then just
+ * concatenates the pieces with the literals for the values, and the result needs no further expansion. Expansions which
+ * depend on per-user metadata can't be kept, so for those the template is expanded again on every bind.
+ *
+ * @param <T> the type of record the query is working with
+ */
+final class PreparedRecordQueryImpl<T> implements PreparedRecordQuery<T> {
+    private final RecordAccessor accessor;
+    private final AbstractRecordAccessor cursorAccessor;
+    private final String soqlTemplate;
+    private final Class<T> type;
+    private final Plan plan; // Null if the plan can't be reused
+    private final Set<String> parameterNames;
+
+    PreparedRecordQueryImpl(RecordAccessor accessor, AbstractRecordAccessor cursorAccessor, String soqlTemplate, Class<T> type) {
+        this.accessor = accessor;
+        this.cursorAccessor = cursorAccessor;
+        this.soqlTemplate = soqlTemplate;
+        this.type = type;
+
+        SoqlBuilder soqlBuilder = newSoqlBuilder();
+        Plan plan = new Plan(soqlBuilder.build());
+        this.plan = soqlBuilder.isCacheable() ? plan : null;
+        this.parameterNames = Collections.unmodifiableSet(new LinkedHashSet<>(plan.parameterNames));
+    }
+
+    @Override
+    public Set<String> getParameterNames() {
+        return parameterNames;
+    }
+
+    @Override
+    public RecordQuery<T> bind(Map<String, ?> parameters) {
+        Validate.notNull(parameters, "parameters must not be null");
+        for (String name : parameterNames) {
+            Validate.isTrue(parameters.containsKey(name), "No value for parameter %s", name);
+        }
+        for (String name : parameters.keySet()) {
+            Validate.isTrue(parameterNames.contains(name), "Unknown parameter %s", name);
+        }
+
+        Plan plan = (this.plan != null) ? this.plan : new Plan(newSoqlBuilder().build());
+        return new RecordQueryImpl<>(accessor, cursorAccessor, plan.bind(parameters), type);
+    }
+
+    private SoqlBuilder newSoqlBuilder() {
+        return new SoqlBuilder(cursorAccessor).object(type).template(soqlTemplate);
+    }
+
+    @Override
+    public String toString() {
+        return "PreparedRecordQuery{type=" + type.getName() + ", parameters=" + parameterNames + "}";
+    }
+
+    /**
+     * An expanded template split at its bind parameters. A parameter is a colon followed by a Java identifier outside
+     * of quotes. The identifier requirement leaves the colons of date literals such as <code>LAST_N_DAYS:30</code> and
+     * times alone.
+     */
+    private static final class Plan {
+        private final List<String> segments = new ArrayList<>();
+        private final List<String> parameterNames = new ArrayList<>();
+        private final int length;
+
+        Plan(String soql) {
+            this.length = soql.length();
+
+            char quoteChar = 0;
+            int pendingCursor = 0;  // Scanned characters waiting to be transferred to a segment
+            for (int i = 0, limit = soql.length(); i < limit; i++) {
+                char c = soql.charAt(i);
+                if (c == '\\') {
+                    i++; // Skip over the next character
+                } else if (quoteChar != 0) {
+                    if (c == quoteChar) {
+                        quoteChar = 0;  // No longer inside of a quote
+                    }
+                } else if (c == '\'' || c == '\"') {
+                    quoteChar = c;
+                } else if (c == ':' && i + 1 < limit && Character.isJavaIdentifierStart(soql.charAt(i + 1))) {
+                    int nameEnd = i + 2;
+                    while (nameEnd < limit && Character.isJavaIdentifierPart(soql.charAt(nameEnd)))
+                        nameEnd += 1;
+
+                    segments.add(soql.substring(pendingCursor, i));
+                    parameterNames.add(soql.substring(i + 1, nameEnd));
+                    pendingCursor = nameEnd;
+                    i = nameEnd - 1;
+                }
+            }
+            segments.add(soql.substring(pendingCursor));
+        }
+
+        String bind(Map<String, ?> parameters) {
+            StringBuilder builder = new StringBuilder(length + 16 * parameterNames.size());
+            for (int i = 0, count = parameterNames.size(); i < count; i++) {
+                builder.append(segments.get(i));
+                SoqlUtils.appendLiteral(builder, parameters.get(parameterNames.get(i)));
+            }
+            builder.append(segments.get(segments.size() - 1));
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.Validate;
+
+import com.force.spa.AuthorizationConnector;
+import com.force.spa.CreateRecordOperation;
+import com.force.spa.CreateRecordsOperation;
+import com.force.spa.DeleteRecordOperation;
+import com.force.spa.DeleteRecordsOperation;
+import com.force.spa.PatchRecordOperation;
+import com.force.spa.QueryRecordsExOperation;
+import com.force.spa.RecordAccessor;
+import com.force.spa.RecordOperation;
+import com.force.spa.RecordQuery;
+import com.force.spa.Statistics;
+import com.force.spa.UpdateRecordOperation;
+import com.force.spa.UpdateRecordsOperation;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * A {@link RecordAccessor} decorator that caches the results of queries, which suits lookups of slowly changing
+ * reference data.
+ * <p/>
+ * Results are cached under the SOQL that is sent to the server, the result class and the user (see {@link
+ * AuthorizationConnector#getUserId()}), because what a user can see depends on their sharing rules. They are kept for
+ * the time to live given to the query (see {@link RecordQuery#setCacheTimeToLive}), or else for the default time to
+ * live of the cache. The cache is bounded by the total size of the cached results, and the least recently used results
+ * are evicted to make room. The size of a result is estimated from the number of records and the number of fields of
+ * the object, because the number of bytes received for it says little about the memory the records take up (and
+ * nothing at all when the response was shared with other requests).
+ * <p/>
+ * Any write issued through this accessor invalidates the cached results of all queries of the object written to,
+ * both when the write is executed and again when it completes. Only the object the query is made against is
+ * considered, not the objects of relationship fields or subqueries, and writes made some other way are only picked up
+ * when the results expire. Results can also be invalidated explicitly with {@link #invalidateObject(String)}.
+ * <p/>
+ * Cached records are handed to every caller that reads them (in a list of their own), so this decorator is only
+ * suitable when callers treat the records they read as read only. Cursors (see {@link RecordQuery#iterate()}) are not
+ * cached, and nothing is cached without an {@link AuthorizationConnector} to tell users apart.
+ */
+public final class QueryCachingRecordAccessor extends RecordAccessorDecorator {
+
+    // Rough sizes of a record bean and of each of its field values, boxed or otherwise, once they are in memory.
+    private static final int ESTIMATED_RECORD_BYTES = 32;
+    private static final int ESTIMATED_FIELD_BYTES = 64;
+
+    private final long defaultTimeToLiveNanos;
+    private final Cache<List<Object>, CachedResult> cache;
+    private final ConcurrentMap<String, AtomicLong> objectGenerations = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Creates a query caching decorator.
+     *
+     * @param delegate          the accessor which runs queries whose results aren't cached
+     * @param maximumBytes      the maximum total estimated size of the cached results
+     * @param defaultTimeToLive how long results are cached when the query doesn't say
+     * @param unit              the unit of the default time to live
+     */
+    public QueryCachingRecordAccessor(RecordAccessor delegate, long maximumBytes, long defaultTimeToLive, TimeUnit unit) {
+        super(delegate);
+
+        Validate.isTrue(maximumBytes >= 0, "maximumBytes must not be negative");
+        Validate.isTrue(defaultTimeToLive >= 0, "defaultTimeToLive must not be negative");
+        Validate.notNull(unit, "unit must not be null");
+
+        this.defaultTimeToLiveNanos = unit.toNanos(defaultTimeToLive);
+        this.cache = CacheBuilder.newBuilder()
+            .maximumWeight(maximumBytes)
+            .weigher(new Weigher<List<Object>, CachedResult>() {
+                @Override
+                public int weigh(List<Object> key, CachedResult value) {
+                    return value.weight;
+                }
+            })
+            .recordStats()
+            .build();
+    }
+
+    @Override
+    public void execute(List<RecordOperation<?>> operations) {
+        AbstractRecordAccessor accessor = getUndecoratedAccessor();
+        if (accessor == null) {
+            super.execute(operations); // No way to tell which objects are involved
+            return;
+        }
+        if (getConfig().getAuthorizationConnector() == null) {
+            super.execute(operations); // No way to tell users apart
+            return;
+        }
+
+        List<RecordOperation<?>> operationsToExecute = new ArrayList<>(operations.size());
+        for (RecordOperation<?> operation : operations) {
+            if (operation instanceof QueryRecordsExOperation && isCacheable(operation)) {
+                if (!readThrough(accessor.getMappingContext(), (QueryRecordsExOperation<?, ?>) operation)) {
+                    operationsToExecute.add(operation);
+                }
+            } else {
+                invalidateWrittenObjects(accessor.getMappingContext(), operation);
+                operationsToExecute.add(operation);
+            }
+        }
+
+        if (!operationsToExecute.isEmpty()) {
+            super.execute(operationsToExecute);
+        }
+    }
+
+    /**
+     * Invalidates the cached results of all queries of an object.
+     *
+     * @param objectName the name of the Salesforce object
+     */
+    public void invalidateObject(String objectName) {
+        getGeneration(objectName).incrementAndGet();
+    }
+
+    /**
+     * Removes all results from the cache.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Returns the number of queries that were answered from the cache.
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of queries that had to go to the server.
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the number of results evicted from the cache to make room for others. Results which expired or were
+     * invalidated are not counted.
+     */
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * Returns the approximate number of results in the cache.
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    private static boolean isCacheable(RecordOperation<?> operation) {
+        return operation instanceof CompletionHandler && operation instanceof ListenableFuture && !operation.isCancelled();
+    }
+
+    /**
+     * Answers a query from the cache if possible, and otherwise arranges for its results to be cached.
+     *
+     * @return <code>true</code> if the query was answered from the cache and must not be executed
+     */
+    private <R> boolean readThrough(MappingContext mappingContext, final QueryRecordsExOperation<?, R> operation) {
+        AuthorizationConnector authorizationConnector = getConfig().getAuthorizationConnector();
+        final List<Object> key = Arrays.<Object>asList(
+            authorizationConnector.getInstanceUrl(), authorizationConnector.getUserId(), operation.getSoql(), operation.getResultClass());
+        ObjectDescriptor object = mappingContext.getObjectDescriptor(operation.getRecordClass());
+        final AtomicLong generation = getGeneration(object.getName());
+        final long estimatedRecordBytes = estimateRecordBytes(object);
+        final long startingGeneration = generation.get();
+
+        CachedResult cachedResult = cache.getIfPresent(key);
+        if (cachedResult != null) {
+            if (cachedResult.isValid(generation.get())) {
+                hitCount.incrementAndGet();
+                @SuppressWarnings("unchecked")
+                CompletionHandler<List<R>, Statistics> handler = (CompletionHandler<List<R>, Statistics>) operation;
+                @SuppressWarnings("unchecked")
+                List<R> records = new ArrayList<>((List<R>) cachedResult.records);
+                handler.completed(records, new Statistics.Builder()
+                    .rowsProcessed(records.size())
+                    .totalRows(cachedResult.totalRows)
+                    .build());
+                return true;
+            }
+            cache.invalidate(key);
+        }
+
+        missCount.incrementAndGet();
+        long timeToLiveNanos = operation.getCacheTimeToLive(TimeUnit.NANOSECONDS);
+        final long expiresAt = System.nanoTime() + ((timeToLiveNanos != 0) ? timeToLiveNanos : defaultTimeToLiveNanos);
+        @SuppressWarnings("unchecked")
+        ListenableFuture<List<R>> future = (ListenableFuture<List<R>>) operation;
+        Futures.addCallback(future, new FutureCallback<List<R>>() {
+            @Override
+            public void onSuccess(List<R> records) {
+                Statistics statistics = operation.getStatistics();
+                if (records != null && statistics != null && generation.get() == startingGeneration) {
+                    cache.put(key, new CachedResult(records, statistics, estimatedRecordBytes, startingGeneration, expiresAt));
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable exception) {
+                // Nothing to cache
+            }
+        });
+        return false;
+    }
+
+    /**
+     * Estimates the memory taken up by a record of an object.
+     */
+    static long estimateRecordBytes(ObjectDescriptor object) {
+        return ESTIMATED_RECORD_BYTES + (long) object.getFields().size() * ESTIMATED_FIELD_BYTES;
+    }
+
+    private void invalidateWrittenObjects(MappingContext mappingContext, RecordOperation<?> operation) {
+        final List<AtomicLong> generations = new ArrayList<>(1);
+        for (Class<?> writtenClass : getWrittenClasses(operation)) {
+            AtomicLong generation = getGeneration(mappingContext.getObjectDescriptor(writtenClass).getName());
+            if (!generations.contains(generation)) {
+                generations.add(generation);
+            }
+        }
+        if (generations.isEmpty()) {
+            return;
+        }
+
+        Runnable invalidation = new Runnable() {
+            @Override
+            public void run() {
+                for (AtomicLong generation : generations) {
+                    generation.incrementAndGet();
+                }
+            }
+        };
+        invalidation.run();
+        if (operation instanceof ListenableFuture) {
+            ((ListenableFuture<?>) operation).addListener(invalidation, MoreExecutors.sameThreadExecutor());
+        }
+    }
+
+    private static List<Class<?>> getWrittenClasses(RecordOperation<?> operation) {
+        if (operation instanceof CreateRecordOperation) {
+            return Collections.<Class<?>>singletonList(((CreateRecordOperation<?>) operation).getRecord().getClass());
+        } else if (operation instanceof UpdateRecordOperation) {
+            return Collections.<Class<?>>singletonList(((UpdateRecordOperation<?>) operation).getRecord().getClass());
+        } else if (operation instanceof PatchRecordOperation) {
+            return Collections.<Class<?>>singletonList(((PatchRecordOperation<?>) operation).getRecord().getClass());
+        } else if (operation instanceof DeleteRecordOperation) {
+            return Collections.<Class<?>>singletonList(((DeleteRecordOperation<?>) operation).getRecordClass());
+        } else if (operation instanceof DeleteRecordsOperation) {
+            return Collections.<Class<?>>singletonList(((DeleteRecordsOperation<?>) operation).getRecordClass());
+        } else if (operation instanceof CreateRecordsOperation) {
+            return getClasses(((CreateRecordsOperation<?>) operation).getRecords());
+        } else if (operation instanceof UpdateRecordsOperation) {
+            return getClasses(((UpdateRecordsOperation<?>) operation).getRecords());
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    private static List<Class<?>> getClasses(List<?> records) {
+        List<Class<?>> classes = new ArrayList<>(1);
+        for (Object record : records) {
+            if (!classes.contains(record.getClass())) {
+                classes.add(record.getClass());
+            }
+        }
+        return classes;
+    }
+
+    private AtomicLong getGeneration(String objectName) {
+        AtomicLong generation = objectGenerations.get(objectName);
+        if (generation == null) {
+            AtomicLong newGeneration = new AtomicLong();
+            generation = objectGenerations.putIfAbsent(objectName, newGeneration);
+            if (generation == null) {
+                generation = newGeneration;
+            }
+        }
+        return generation;
+    }
+
+    /**
+     * The cached results of a query. They are only valid until they expire or the generation of the object they were
+     * queried from moves on.
+     */
+    private static final class CachedResult {
+        private final List<?> records;
+        private final long totalRows;
+        private final int weight;
+        private final long validGeneration;
+        private final long expiresAt;
+
+        CachedResult(List<?> records, Statistics statistics, long estimatedRecordBytes, long validGeneration, long expiresAt) {
+            this.records = new ArrayList<>(records);
+            this.totalRows = statistics.getTotalRows();
+            this.weight = (int) Math.max(1, Math.min(Integer.MAX_VALUE, records.size() * estimatedRecordBytes));
+            this.validGeneration = validGeneration;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isValid(long currentGeneration) {
+            return currentGeneration == validGeneration && expiresAt - System.nanoTime() > 0;
+        }
+    }
+}
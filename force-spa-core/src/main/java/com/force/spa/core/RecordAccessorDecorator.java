@@ -5,20 +5,29 @@
  */
 package com.force.spa.core;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.lang3.Validate;
 
 import com.force.spa.CreateRecordOperation;
+import com.force.spa.CreateRecordsOperation;
 import com.force.spa.DeleteRecordOperation;
+import com.force.spa.DeleteRecordsOperation;
 import com.force.spa.DescribeObjectOperation;
 import com.force.spa.GetRecordOperation;
 import com.force.spa.QueryRecordsExOperation;
 import com.force.spa.RecordOperation;
 import com.force.spa.PatchRecordOperation;
+import com.force.spa.PreparedRecordQuery;
 import com.force.spa.QueryRecordsOperation;
 import com.force.spa.RecordAccessor;
 import com.force.spa.RecordAccessorConfig;
 import com.force.spa.RecordQuery;
+import com.force.spa.SpaException;
 import com.force.spa.UpdateRecordOperation;
+import com.force.spa.UpdateRecordsOperation;
 import com.force.spa.metadata.ObjectMetadata;
 
 /**
@@ -31,6 +40,11 @@ import com.force.spa.metadata.ObjectMetadata;
  * decorated. If the method is final in {@link AbstractRecordAccessor} then it is marked final here as well. This is
  * because  proper batching semantics rely upon a common execution funnel. You should be able to achieve your goal by
  * only decorating the remaining, non-final, methods.
+ * <p/>
+ * The final convenience methods, such as {@link #create}, {@link #get} and the queries from {@link #createQuery} and
+ * {@link #prepareQuery}, build their operations with this decorator's factory methods and run them through this
+ * decorator's {@link #execute(List)}, just like {@link AbstractRecordAccessor} does, so a decorator sees every operation
+ * whichever way it was issued.
  */
 public abstract class RecordAccessorDecorator implements RecordAccessor {
 
@@ -50,11 +64,21 @@ public abstract class RecordAccessorDecorator implements RecordAccessor {
         return delegate.newCreateRecordOperation(record);
     }
 
+    @Override
+    public <T> CreateRecordsOperation<T> newCreateRecordsOperation(List<T> records) {
+        return delegate.newCreateRecordsOperation(records);
+    }
+
     @Override
     public <T> DeleteRecordOperation<T> newDeleteRecordOperation(String id, Class<T> recordClass) {
         return delegate.newDeleteRecordOperation(id, recordClass);
     }
 
+    @Override
+    public <T> DeleteRecordsOperation<T> newDeleteRecordsOperation(List<String> ids, Class<T> recordClass) {
+        return delegate.newDeleteRecordsOperation(ids, recordClass);
+    }
+
     @Override
     public DescribeObjectOperation newDescribeObjectOperation(String name) {
         return delegate.newDescribeObjectOperation(name);
@@ -85,6 +109,11 @@ public abstract class RecordAccessorDecorator implements RecordAccessor {
         return delegate.newUpdateRecordOperation(id, record);
     }
 
+    @Override
+    public <T> UpdateRecordsOperation<T> newUpdateRecordsOperation(List<T> records) {
+        return delegate.newUpdateRecordsOperation(records);
+    }
+
     @Override
     public String toString() {
         return delegate.toString();
@@ -92,22 +121,54 @@ public abstract class RecordAccessorDecorator implements RecordAccessor {
 
     @Override
     public final <T> String create(T record) {
-        return delegate.create(record);
+        CreateRecordOperation<T> operation = newCreateRecordOperation(record);
+        execute(operation);
+        return getResult(operation);
     }
 
     @Override
     public final <T> RecordQuery<T> createQuery(String soqlTemplate, Class<T> recordClass) {
-        return delegate.createQuery(soqlTemplate, recordClass);
+        AbstractRecordAccessor accessor = getUndecoratedAccessor();
+        if (accessor != null) {
+            Validate.notNull(soqlTemplate, "template must not be null");
+            Validate.notNull(recordClass, "type must not be null");
+
+            return new RecordQueryImpl<>(this, accessor, soqlTemplate, recordClass);
+        } else {
+            return delegate.createQuery(soqlTemplate, recordClass);
+        }
+    }
+
+    @Override
+    public final <T> PreparedRecordQuery<T> prepareQuery(String soqlTemplate, Class<T> recordClass) {
+        AbstractRecordAccessor accessor = getUndecoratedAccessor();
+        if (accessor != null) {
+            Validate.notNull(soqlTemplate, "template must not be null");
+            Validate.notNull(recordClass, "type must not be null");
+
+            return new PreparedRecordQueryImpl<>(this, accessor, soqlTemplate, recordClass);
+        } else {
+            return delegate.prepareQuery(soqlTemplate, recordClass);
+        }
     }
 
     @Override
     public final <T> void delete(String id, Class<T> recordClass) {
-        delegate.delete(id, recordClass);
+        DeleteRecordOperation<T> operation = newDeleteRecordOperation(id, recordClass);
+        execute(operation);
+        getResult(operation);
     }
 
     @Override
     public final <T> void delete(T record) {
-        delegate.delete(record);
+        Validate.notNull(record, "record must not be null");
+
+        AbstractRecordAccessor accessor = getUndecoratedAccessor();
+        if (accessor != null) {
+            delete(accessor.getRecordId(record), record.getClass());
+        } else {
+            delegate.delete(record);
+        }
     }
 
     @Override
@@ -117,31 +178,67 @@ public abstract class RecordAccessorDecorator implements RecordAccessor {
 
     @Override
     public final void execute(RecordOperation<?>... operations) {
-        delegate.execute(operations);
+        execute(Arrays.asList(operations));
     }
 
     @Override
     public final <T> T get(String id, Class<T> recordClass) {
-        return delegate.get(id, recordClass);
+        GetRecordOperation<T> operation = newGetRecordOperation(id, recordClass);
+        execute(operation);
+        return getResult(operation);
     }
 
     @Override
     public final <T> void patch(String id, T recordChanges) {
-        delegate.patch(id, recordChanges);
+        PatchRecordOperation<T> operation = newPatchRecordOperation(id, recordChanges);
+        execute(operation);
+        getResult(operation);
     }
 
     @Override
     public final <T> void update(String id, T record) {
-        delegate.update(id, record);
+        UpdateRecordOperation<T> operation = newUpdateRecordOperation(id, record);
+        execute(operation);
+        getResult(operation);
     }
 
     @Override
     public final <T> void update(T record) {
-        delegate.update(record);
+        Validate.notNull(record, "record must not be null");
+
+        AbstractRecordAccessor accessor = getUndecoratedAccessor();
+        if (accessor != null) {
+            update(accessor.getRecordId(record), record);
+        } else {
+            delegate.update(record);
+        }
     }
 
     @Override
     public final RecordAccessorConfig getConfig() {
         return delegate.getConfig();
     }
+
+    /**
+     * Finds the record accessor at the bottom of the chain of decorators, which knows how to find the id of a record.
+     *
+     * @return the undecorated record accessor, or <code>null</code> if it isn't an {@link AbstractRecordAccessor}
+     */
+    final AbstractRecordAccessor getUndecoratedAccessor() {
+        RecordAccessor accessor = delegate;
+        while (accessor instanceof RecordAccessorDecorator) {
+            accessor = ((RecordAccessorDecorator) accessor).delegate;
+        }
+        return (accessor instanceof AbstractRecordAccessor) ? (AbstractRecordAccessor) accessor : null;
+    }
+
+    private static <R> R getResult(RecordOperation<R> operation) {
+        try {
+            return operation.get();
+        } catch (InterruptedException e) {
+            throw SpaException.valueOf(e);
+        } catch (ExecutionException e) {
+            throw SpaException.valueOf(e.getCause());
+        }
+    }
 }
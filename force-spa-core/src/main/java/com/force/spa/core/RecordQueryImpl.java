@@ -0,0 +1,104 @@
+/*
+ * Copyright, 2012-2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+
+import com.force.spa.QueryRecordsExOperation;
+import com.force.spa.RecordAccessor;
+import com.force.spa.RecordCursor;
+import com.force.spa.RecordQuery;
+import com.force.spa.SpaException;
+
+/**
+ * The {@link RecordQuery} implementation shared by record accessors and their decorators. Query operations are built
+ * and executed by the outermost record accessor, so that decorators see them, while cursors are opened by the
+ * undecorated accessor which knows how to fetch pages.
+ *
+ * @param <T> the type of record the query is working with
+ */
+final class RecordQueryImpl<T> implements RecordQuery<T> {
+    private final RecordAccessor accessor;
+    private final AbstractRecordAccessor cursorAccessor;
+    private final Class<T> type;
+    private final String soqlTemplate;
+    private int maxResults;
+    private int startPosition;
+    private long cacheTimeToLiveNanos;
+
+    RecordQueryImpl(RecordAccessor accessor, AbstractRecordAccessor cursorAccessor, String soqlTemplate, Class<T> type) {
+        this.accessor = accessor;
+        this.cursorAccessor = cursorAccessor;
+        this.type = type;
+        this.soqlTemplate = soqlTemplate;
+    }
+
+    @Override
+    public List<T> execute() {
+        return execute(type);
+    }
+
+    @Override
+    public <R> List<R> execute(Class<R> resultClass) {
+        QueryRecordsExOperation<T, R> operation = accessor.newQueryRecordsOperation(soqlTemplate, type, resultClass);
+        if (startPosition != 0)
+            operation.setStartPosition(startPosition);
+        if (maxResults != 0)
+            operation.setMaxResults(maxResults);
+        if (cacheTimeToLiveNanos != 0)
+            operation.setCacheTimeToLive(cacheTimeToLiveNanos, TimeUnit.NANOSECONDS);
+
+        accessor.execute(operation);
+
+        try {
+            return operation.get();
+        } catch (InterruptedException e) {
+            throw SpaException.valueOf(e);
+        } catch (ExecutionException e) {
+            throw SpaException.valueOf(e.getCause());
+        }
+    }
+
+    @Override
+    public RecordCursor<T> iterate() {
+        return iterate(type);
+    }
+
+    @Override
+    public <R> RecordCursor<R> iterate(Class<R> resultClass) {
+        QueryRecordsExOperation<T, R> operation = accessor.newQueryRecordsOperation(soqlTemplate, type, resultClass);
+        if (startPosition != 0)
+            operation.setStartPosition(startPosition);
+        if (maxResults != 0)
+            operation.setMaxResults(maxResults);
+
+        return cursorAccessor.openRecordCursor(operation);
+    }
+
+    @Override
+    public RecordQuery<T> setMaxResults(int maxResults) {
+        this.maxResults = maxResults;
+        return this;
+    }
+
+    @Override
+    public RecordQuery<T> setFirstResult(int startPosition) {
+        this.startPosition = startPosition;
+        return this;
+    }
+
+    @Override
+    public RecordQuery<T> setCacheTimeToLive(long timeToLive, TimeUnit unit) {
+        Validate.isTrue(timeToLive >= 0, "timeToLive must not be negative");
+
+        this.cacheTimeToLiveNanos = unit.toNanos(timeToLive);
+        return this;
+    }
+}
@@ -5,6 +5,8 @@
  */
 package com.force.spa.core;
 
+import static com.force.spa.core.IntrospectionUtils.getRelationshipIdName;
+
 import org.apache.commons.lang3.StringUtils;
 
 import com.fasterxml.jackson.core.JsonGenerator;
@@ -32,7 +34,7 @@ class RelationshipBeanPropertyWriter extends BeanPropertyWriter {
     RelationshipBeanPropertyWriter(BeanPropertyWriter base, MappingContext mappingContext) {
         super(base);
         this.mappingContext = mappingContext;
-        this.idPropertyName = translateToIdName(base.getName());
+        this.idPropertyName = getRelationshipIdName(base.getName());
     }
 
     @Override
@@ -53,12 +55,4 @@ class RelationshipBeanPropertyWriter extends BeanPropertyWriter {
             jgen.writeStringField(idPropertyName, null);
         }
     }
-
-    private static String translateToIdName(String relationshipName) {
-        if (relationshipName.endsWith("__r")) {
-            return relationshipName.substring(0, relationshipName.length() - 1) + "c"; // Id for a Custom Object
-        } else {
-            return relationshipName + "Id"; // Id for a Standard Salesforce object
-        }
-    }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.force.spa.AuthorizationConnector;
+import com.force.spa.GetRecordOperation;
+import com.force.spa.QueryRecordsExOperation;
+import com.force.spa.QueryRecordsOperation;
+import com.force.spa.RecordAccessor;
+import com.force.spa.RecordOperation;
+import com.force.spa.Statistics;
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+/**
+ * A {@link RecordAccessor} decorator that lets identical reads share a single request to the server. When a get or a
+ * query is executed while an identical one is still in flight, the later operation is not sent. It is completed with
+ * the result (or the failure) of the operation that is already in flight instead.
+ * <p/>
+ * Reads are identical when they are issued on behalf of the same user (see {@link AuthorizationConnector#getUserId()})
+ * and instance and ask for the same thing: the same record id and class for a get, or the same SOQL template, record
+ * and result classes and result window for a query, which between them determine the SOQL that is sent.
+ * <p/>
+ * The operations which share a request are given the very same result objects, so this decorator is only suitable
+ * when callers treat the records they read as read only. The statistics of an operation which didn't send a request
+ * of its own have no bytes sent or received. If the operation in flight is cancelled the operations waiting on it fail
+ * with the {@link java.util.concurrent.CancellationException}. They are not executed in their own right because the
+ * cancelling thread may be acting for somebody else. Without an {@link AuthorizationConnector} to tell users apart
+ * nothing is shared.
+ */
+public final class SingleFlightRecordAccessor extends RecordAccessorDecorator {
+
+    private final ConcurrentMap<List<Object>, RecordOperation<?>> operationsInFlight = new ConcurrentHashMap<>();
+
+    public SingleFlightRecordAccessor(RecordAccessor delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public void execute(List<RecordOperation<?>> operations) {
+        if (getConfig().getAuthorizationConnector() == null) {
+            super.execute(operations);
+            return;
+        }
+
+        List<RecordOperation<?>> operationsToExecute = new ArrayList<>(operations.size());
+        for (RecordOperation<?> operation : operations) {
+            List<Object> key = getKey(operation);
+            if (key == null || operation.isCancelled() || !isShareable(operation)) {
+                operationsToExecute.add(operation);
+            } else if (!joinFlight(key, operation)) {
+                operationsToExecute.add(operation);
+            }
+        }
+
+        if (!operationsToExecute.isEmpty()) {
+            super.execute(operationsToExecute);
+        }
+    }
+
+    private static boolean isShareable(RecordOperation<?> operation) {
+        return operation instanceof CompletionHandler && operation instanceof ListenableFuture;
+    }
+
+    /**
+     * Attaches an operation to an identical one that is in flight, or else registers it as in flight itself.
+     *
+     * @return <code>true</code> if the operation was attached to another and must not be executed
+     */
+    private boolean joinFlight(final List<Object> key, final RecordOperation<?> operation) {
+        while (true) {
+            RecordOperation<?> leader = operationsInFlight.putIfAbsent(key, operation);
+            if (leader == null) {
+                ((ListenableFuture<?>) operation).addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        operationsInFlight.remove(key, operation);
+                    }
+                }, MoreExecutors.sameThreadExecutor());
+                return false;
+            }
+            if (!leader.isDone()) {
+                follow(leader, operation);
+                return true;
+            }
+            operationsInFlight.remove(key, leader); // Finished but not cleared away yet
+        }
+    }
+
+    private <R> void follow(final RecordOperation<?> leader, final RecordOperation<R> follower) {
+        final Stopwatch stopwatch = Stopwatch.createStarted();
+        @SuppressWarnings("unchecked")
+        final CompletionHandler<R, Statistics> handler = (CompletionHandler<R, Statistics>) follower;
+        @SuppressWarnings("unchecked")
+        ListenableFuture<R> leaderFuture = (ListenableFuture<R>) leader;
+        Futures.addCallback(leaderFuture, new FutureCallback<R>() {
+            @Override
+            public void onSuccess(R result) {
+                handler.completed(result, buildStatistics(leader, stopwatch));
+            }
+
+            @Override
+            public void onFailure(Throwable exception) {
+                handler.failed(exception, buildStatistics(leader, stopwatch));
+            }
+        });
+    }
+
+    private static Statistics buildStatistics(RecordOperation<?> leader, Stopwatch stopwatch) {
+        Statistics.Builder builder = new Statistics.Builder();
+        Statistics leaderStatistics = leader.getStatistics();
+        if (leaderStatistics != null) {
+            builder.rowsProcessed(leaderStatistics.getRowsProcessed()).totalRows(leaderStatistics.getTotalRows());
+        }
+        return builder.elapsedNanos(stopwatch.elapsed(TimeUnit.NANOSECONDS)).build();
+    }
+
+    private List<Object> getKey(RecordOperation<?> operation) {
+        if (operation instanceof GetRecordOperation) {
+            GetRecordOperation<?> get = (GetRecordOperation<?>) operation;
+            return newKey("get", get.getRecordClass(), get.getId());
+        } else if (operation instanceof QueryRecordsExOperation) {
+            QueryRecordsExOperation<?, ?> query = (QueryRecordsExOperation<?, ?>) operation;
+            return newKey("query", query.getSoqlTemplate(), query.getRecordClass(), query.getResultClass(),
+                query.getStartPosition(), query.getMaxResults());
+        } else if (operation instanceof QueryRecordsOperation) {
+            QueryRecordsOperation<?> query = (QueryRecordsOperation<?>) operation;
+            return newKey("query", query.getSoqlTemplate(), query.getResultClass(), query.getResultClass(),
+                query.getStartPosition(), query.getMaxResults());
+        } else {
+            return null;
+        }
+    }
+
+    private List<Object> newKey(Object... parts) {
+        AuthorizationConnector authorizationConnector = getConfig().getAuthorizationConnector();
+        List<Object> key = new ArrayList<>(parts.length + 2);
+        key.add(authorizationConnector.getInstanceUrl());
+        key.add(authorizationConnector.getUserId());
+        key.addAll(Arrays.asList(parts));
+        return key;
+    }
+}
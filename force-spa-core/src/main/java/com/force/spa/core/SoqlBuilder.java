@@ -6,9 +6,9 @@
 package com.force.spa.core;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
@@ -24,21 +24,30 @@ import org.apache.commons.lang3.Validate;
  * of fields from the associated object descriptor. Wildcard specifications can look like this:
  * <p/>
  * TODO Need more documentation here
+ * <p/>
+ * Wildcards for metadata-aware objects only expand to the fields the current user can see, according to the object
+ * description from {@link AbstractRecordAccessor#getVisibleObjectMetadata}.
+ * <p/>
+ * Expansions are cached in the {@link SoqlExpansionCache} of the accessor's {@link MappingContext}, both per object and
+ * for the template as a whole. Expansions which depend on the field visibility of metadata-aware objects are cached
+ * with a fingerprint of that visibility so that users who see the same fields share them.
  */
 public final class SoqlBuilder {
     private static final int DEFAULT_DEPTH = 5;
 
-    private static final Map<CacheKey, String> sharedExpansionsCache = new ConcurrentHashMap<>();
-
     private final AbstractRecordAccessor accessor;
+    private final SoqlExpansionCache expansionCache;
     private ObjectDescriptor object;
     private String template;
     private int offset = 0;
     private int limit = 0;
     private int depth = DEFAULT_DEPTH;
+    private Map<ObjectDescriptor, FieldVisibility> visibilities = new HashMap<>();
+    private Map<ObjectDescriptor, String> fingerprints = new HashMap<>(); // The visibility the expansion depends on
 
     public SoqlBuilder(AbstractRecordAccessor accessor) {
         this.accessor = accessor;
+        this.expansionCache = accessor.getMappingContext().getSoqlExpansionCache();
     }
 
     public SoqlBuilder template(String template) {
@@ -76,7 +85,7 @@ public final class SoqlBuilder {
         Validate.notNull(object, "No object was specified");
         Validate.notEmpty(template, "No template was specified");
 
-        StringBuilder sb = expandWildcards();
+        StringBuilder sb = new StringBuilder(expandTemplate());
         if (limit > 0)
             sb.append(" LIMIT ").append(limit);
         if (offset > 0)
@@ -84,6 +93,46 @@ public final class SoqlBuilder {
         return sb.toString();
     }
 
+    /**
+     * Returns an indication of whether the SOQL built last can be reused by other users. It can't if the expansion
+     * depended on per-user metadata.
+     */
+    boolean isCacheable() {
+        return fingerprints.isEmpty();
+    }
+
+    private String expandTemplate() {
+        if (template.indexOf('*') < 0) {
+            return template; // Nothing to expand, and caching would only fill the cache with one-off literals
+        }
+
+        TemplateKey templateKey = new TemplateKey(template, object, depth, getOwnFingerprint(object));
+        String expansion = getCachedExpansion(templateKey);
+        if (expansion == null) {
+            expansion = expandWildcards().toString();
+            expansionCache.put(templateKey, new SoqlExpansionCache.Entry(expansion, fingerprints));
+        }
+        return expansion;
+    }
+
+    /**
+     * Returns a cached expansion if there is one and the field visibility it was built from hasn't changed. The
+     * visibility the expansion depends on becomes a dependency of the expansion in progress.
+     */
+    private String getCachedExpansion(Object key) {
+        SoqlExpansionCache.Entry entry = expansionCache.get(key);
+        if (entry == null) {
+            return null;
+        }
+        for (Map.Entry<ObjectDescriptor, String> fingerprint : entry.getFingerprints().entrySet()) {
+            if (!getFieldVisibility(fingerprint.getKey()).getFingerprint().equals(fingerprint.getValue())) {
+                return null;
+            }
+        }
+        fingerprints.putAll(entry.getFingerprints());
+        return entry.getSoql();
+    }
+
     @SuppressWarnings("ConstantConditions")
     private StringBuilder expandWildcards() {
 
@@ -128,12 +177,18 @@ public final class SoqlBuilder {
     }
 
     private String expandObject(ObjectDescriptor object, Context context) {
-        CacheKey cacheKey = new CacheKey(object, context);
-        String expansion = sharedExpansionsCache.get(cacheKey);
+        CacheKey cacheKey = new CacheKey(object, context, getOwnFingerprint(object));
+        String expansion = getCachedExpansion(cacheKey);
         if (expansion != null)
             return expansion;
 
         if (context.getRemainingDepth() >= 0) {
+            Map<ObjectDescriptor, String> outerFingerprints = fingerprints;
+            fingerprints = new HashMap<>();
+            if (object.isMetadataAware()) {
+                fingerprints.put(object, getFieldVisibility(object).getFingerprint());
+            }
+
             List<String> accumulator = new ArrayList<>();
             for (FieldDescriptor field : object.getFields()) {
                 if (isFieldVisible(object, field)) {
@@ -144,29 +199,48 @@ public final class SoqlBuilder {
                 }
             }
             expansion = StringUtils.join(accumulator, ",");
-            if (isCacheable(object)) {
-                sharedExpansionsCache.put(cacheKey, expansion);
-            }
+            expansionCache.put(cacheKey, new SoqlExpansionCache.Entry(expansion, fingerprints));
+
+            outerFingerprints.putAll(fingerprints); // Anything that contains this expansion depends on the same
+            fingerprints = outerFingerprints;
         }
         return expansion;
     }
 
-    private static boolean isFieldVisible(ObjectDescriptor object, FieldDescriptor field) {
+    private boolean isFieldVisible(ObjectDescriptor object, FieldDescriptor field) {
         if (isAttributesField(object, field)) {
             return false;
         } else if (object.isMetadataAware()) {
-            throw new UnsupportedOperationException("Not implemented yet"); //TODO Use metadata to determine field visibility
+            return getFieldVisibility(object).isVisible(field);
         } else {
             return true;
         }
     }
 
-    private static boolean isAttributesField(ObjectDescriptor object, FieldDescriptor field) {
-        return object.hasAttributesField() && field.equals(object.getAttributesField());
+    /**
+     * Returns what the current user can see of an object. It is looked up at most once per build so that all of the
+     * SOQL is built from the same view.
+     */
+    private FieldVisibility getFieldVisibility(ObjectDescriptor object) {
+        FieldVisibility visibility = visibilities.get(object);
+        if (visibility == null) {
+            visibility = expansionCache.getFieldVisibility(accessor.getVisibleObjectMetadata(object.getName()));
+            visibilities.put(object, visibility);
+        }
+        return visibility;
+    }
+
+    /**
+     * Returns the fingerprint of the field visibility of an object, or <code>null</code> if the object isn't
+     * metadata-aware. It goes into cache keys so that users who see different fields don't displace each other's
+     * expansions.
+     */
+    private String getOwnFingerprint(ObjectDescriptor object) {
+        return object.isMetadataAware() ? getFieldVisibility(object).getFingerprint() : null;
     }
 
-    private static boolean isCacheable(ObjectDescriptor object) {
-        return !object.isMetadataAware(); // Leveraging per-user metadata makes it useless in a shared cache
+    private static boolean isAttributesField(ObjectDescriptor object, FieldDescriptor field) {
+        return object.hasAttributesField() && field.equals(object.getAttributesField());
     }
 
     private String expandField(FieldDescriptor field, Context context) {
@@ -217,11 +291,14 @@ public final class SoqlBuilder {
             throw new IllegalArgumentException("Beans with parent-to-child fields cannot be referenced polymorphically");
 
         } else if (StringUtils.isEmpty(context.getPrefix())) {
-            return new SoqlBuilder(accessor)
+            SoqlBuilder subqueryBuilder = new SoqlBuilder(accessor)
                 .object(field.getRelatedObject())
                 .template("(SELECT * from " + expandSimpleField(field, context) + ")")
-                .depth(context.getRemainingDepth() - 1)
-                .build();
+                .depth(context.getRemainingDepth() - 1);
+            subqueryBuilder.visibilities = visibilities;
+            String subquery = subqueryBuilder.build();
+            fingerprints.putAll(subqueryBuilder.fingerprints);
+            return subquery;
         } else {
             // The server can't handle this kind of nesting. The server complains with "First SObject of a nested query
             // must be a child of its outer query".
@@ -276,13 +353,53 @@ public final class SoqlBuilder {
         }
     }
 
+    private static final class TemplateKey {
+        private final String template;
+        private final ObjectDescriptor descriptor;
+        private final int depth;
+        private final String fingerprint;
+
+        TemplateKey(String template, ObjectDescriptor descriptor, int depth, String fingerprint) {
+            this.template = template;
+            this.descriptor = descriptor;
+            this.depth = depth;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            TemplateKey templateKey = (TemplateKey) o;
+
+            if (depth != templateKey.depth) return false;
+            if (!descriptor.equals(templateKey.descriptor)) return false;
+            if (!template.equals(templateKey.template)) return false;
+            if (fingerprint != null ? !fingerprint.equals(templateKey.fingerprint) : templateKey.fingerprint != null) return false;
+
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = template.hashCode();
+            result = 31 * result + descriptor.hashCode();
+            result = 31 * result + depth;
+            result = 31 * result + (fingerprint != null ? fingerprint.hashCode() : 0);
+            return result;
+        }
+    }
+
     private static final class CacheKey {
         private final ObjectDescriptor descriptor;
         private final Context context;
+        private final String fingerprint;
 
-        CacheKey(ObjectDescriptor descriptor, Context context) {
+        CacheKey(ObjectDescriptor descriptor, Context context, String fingerprint) {
             this.descriptor = descriptor;
             this.context = context;
+            this.fingerprint = fingerprint;
         }
 
         @Override
@@ -294,6 +411,7 @@ public final class SoqlBuilder {
 
             if (!context.equals(cacheKey.context)) return false;
             if (!descriptor.equals(cacheKey.descriptor)) return false;
+            if (fingerprint != null ? !fingerprint.equals(cacheKey.fingerprint) : cacheKey.fingerprint != null) return false;
 
             return true;
         }
@@ -302,6 +420,7 @@ public final class SoqlBuilder {
         public int hashCode() {
             int result = descriptor.hashCode();
             result = 31 * result + context.hashCode();
+            result = 31 * result + (fingerprint != null ? fingerprint.hashCode() : 0);
             return result;
         }
     }
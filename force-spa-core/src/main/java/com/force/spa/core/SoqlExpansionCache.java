@@ -0,0 +1,123 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.Validate;
+
+import com.force.spa.metadata.ObjectMetadata;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * A bounded cache of the SOQL produced by {@link SoqlBuilder}, owned by a {@link MappingContext}.
+ * <p/>
+ * Two kinds of entries share the cache: the field list a wildcard expands to for an object, and the whole statement a
+ * template expands to for an object and depth. A repeated query therefore costs a single lookup rather than a scan of
+ * the template. The least recently used entries are evicted once the maximum size is reached.
+ * <p/>
+ * Expansions which depend on per-user metadata are cached along with fingerprints of the field visibility they were
+ * built from, and are only used again while the visibility is the same. Users with the same visibility therefore share
+ * expansions.
+ */
+public final class SoqlExpansionCache implements Serializable {
+
+    private static final long serialVersionUID = -2651287342094710389L;
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 1000;
+
+    private final Cache<Object, Entry> expansions;
+    private final Cache<ObjectMetadata, FieldVisibility> visibilities;
+
+    public SoqlExpansionCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maximumSize the maximum number of expansions to keep
+     */
+    public SoqlExpansionCache(long maximumSize) {
+        Validate.isTrue(maximumSize >= 0, "maximumSize must not be negative");
+
+        this.expansions = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+        this.visibilities = CacheBuilder.newBuilder().weakKeys().build();
+    }
+
+    public long getHitCount() {
+        return expansions.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return expansions.stats().missCount();
+    }
+
+    public long getEvictionCount() {
+        return expansions.stats().evictionCount();
+    }
+
+    /**
+     * Returns the approximate number of expansions in the cache.
+     */
+    public long size() {
+        return expansions.size();
+    }
+
+    public void invalidateAll() {
+        expansions.invalidateAll();
+        visibilities.invalidateAll();
+    }
+
+    Entry get(Object key) {
+        return expansions.getIfPresent(key);
+    }
+
+    void put(Object key, Entry entry) {
+        expansions.put(key, entry);
+    }
+
+    /**
+     * Returns the field visibility for an object description. The visibility is kept for as long as the description
+     * is, which lets cached descriptions skip the work of working it out again.
+     */
+    FieldVisibility getFieldVisibility(ObjectMetadata metadata) {
+        FieldVisibility visibility = visibilities.getIfPresent(metadata);
+        if (visibility == null) {
+            visibility = new FieldVisibility(metadata);
+            visibilities.put(metadata, visibility);
+        }
+        return visibility;
+    }
+
+    /**
+     * A cached expansion along with the fingerprints of the field visibility of each metadata-aware object it
+     * depends on.
+     */
+    static final class Entry {
+        private final String soql;
+        private final Map<ObjectDescriptor, String> fingerprints;
+
+        Entry(String soql, Map<ObjectDescriptor, String> fingerprints) {
+            this.soql = soql;
+            this.fingerprints = fingerprints.isEmpty()
+                ? Collections.<ObjectDescriptor, String>emptyMap()
+                : Collections.unmodifiableMap(new HashMap<>(fingerprints));
+        }
+
+        String getSoql() {
+            return soql;
+        }
+
+        Map<ObjectDescriptor, String> getFingerprints() {
+            return fingerprints;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.bulk;
+
+import java.net.URI;
+
+import com.force.spa.ApiVersion;
+
+/**
+ * An interface for connecting to the Bulk API 2.0 resources of Salesforce persistence.
+ * <p/>
+ * Unlike {@link com.force.spa.core.rest.RestConnector}, requests are synchronous and the connector does no
+ * interpretation of the response. Bulk jobs exchange large amounts of CSV which is streamed in both directions so the
+ * caller supplies the request body as a {@link BulkRequestBody} and reads the response body from {@link BulkResponse}.
+ */
+public interface BulkConnector {
+    /**
+     * Sends a request and returns the response without looking at its status. The caller must close the response.
+     *
+     * @param method the HTTP method
+     * @param uri    the URI of the resource, relative to the versioned data services path (for example
+     *               "/jobs/ingest") unless it starts with "/services/data"
+     * @param body   the request body or <code>null</code> if there isn't one
+     * @return the response
+     */
+    BulkResponse send(String method, URI uri, BulkRequestBody body);
+
+    /**
+     * Returns the version of the API in use.
+     */
+    ApiVersion getApiVersion();
+}
@@ -0,0 +1,18 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.bulk;
+
+/**
+ * A factory that returns fully configured instances of {@link BulkConnector}.
+ */
+public interface BulkConnectorFactory {
+    /**
+     * Creates a new fully configured instance of {@link BulkConnector} using values configured for the factory.
+     *
+     * @return the bulk connector
+     */
+    BulkConnector getBulkConnector();
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.bulk;
+
+import java.io.Serializable;
+
+import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.builder.ToStringStyle;
+
+/**
+ * The outcome of a completed bulk ingest job.
+ * <p/>
+ * Records succeed or fail on their own so a job can complete with some failed records. The details of those are
+ * available from {@link BulkRecordAccessor#getFailedResults(BulkJobResult)}.
+ */
+public final class BulkJobResult implements Serializable {
+
+    private static final long serialVersionUID = 6016337829874203581L;
+
+    private final String jobId;
+    private final long numberRecordsProcessed;
+    private final long numberRecordsFailed;
+
+    BulkJobResult(String jobId, long numberRecordsProcessed, long numberRecordsFailed) {
+        this.jobId = jobId;
+        this.numberRecordsProcessed = numberRecordsProcessed;
+        this.numberRecordsFailed = numberRecordsFailed;
+    }
+
+    /**
+     * Returns the Salesforce id of the job.
+     *
+     * @return the Salesforce id of the job
+     */
+    public String getJobId() {
+        return jobId;
+    }
+
+    /**
+     * Returns the number of records processed by the job, including those that failed.
+     *
+     * @return the number of records processed
+     */
+    public long getNumberRecordsProcessed() {
+        return numberRecordsProcessed;
+    }
+
+    /**
+     * Returns the number of records that failed.
+     *
+     * @return the number of records that failed
+     */
+    public long getNumberRecordsFailed() {
+        return numberRecordsFailed;
+    }
+
+    @Override
+    public String toString() {
+        return ToStringBuilder.reflectionToString(this, ToStringStyle.SHORT_PREFIX_STYLE);
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.bulk;
+
+/**
+ * The kinds of ingest job.
+ */
+enum BulkOperation {
+    INSERT("insert"),
+    UPDATE("update"),
+    DELETE("delete");
+
+    private final String apiName;
+
+    BulkOperation(String apiName) {
+        this.apiName = apiName;
+    }
+
+    /**
+     * Returns the name of the operation used by the job resources.
+     */
+    String getApiName() {
+        return apiName;
+    }
+}
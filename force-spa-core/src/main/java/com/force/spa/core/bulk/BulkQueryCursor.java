@@ -0,0 +1,151 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.bulk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.force.spa.RecordCursor;
+import com.force.spa.RecordResponseException;
+import com.force.spa.core.MappingContext;
+
+/**
+ * A {@link RecordCursor} that streams the CSV results of a completed bulk query job.
+ * <p/>
+ * The results come in pages which are chained together by the "Sforce-Locator" response header. Each page is read
+ * from the connection as the caller consumes it, so only the current row needs to be in memory. Each row is mapped to
+ * the result class through a tree in which the dotted column names of relationship fields (such as "Owner.Name") become
+ * nested objects. Empty values are left out so the corresponding bean properties are left at their defaults.
+ *
+ * @param <R> the type of result records
+ */
+final class BulkQueryCursor<R> implements RecordCursor<R> {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String LOCATOR_HEADER = "Sforce-Locator";
+    private static final String NO_MORE_PAGES = "null";
+
+    private final BulkRecordAccessor accessor;
+    private final URI resultsUri;
+    private final ObjectReader objectReader;
+
+    private BulkResponse response;
+    private CsvReader reader;
+    private List<String[]> columns;
+    private List<String> nextRow;
+    private String locator;
+    private boolean morePages = true;
+
+    BulkQueryCursor(BulkRecordAccessor accessor, MappingContext mappingContext, URI resultsUri, Class<R> resultClass) {
+        this.accessor = accessor;
+        this.resultsUri = resultsUri;
+        this.objectReader = mappingContext.getObjectReader().withType(resultClass);
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (nextRow == null) {
+                if (reader == null) {
+                    if (!morePages) {
+                        return false;
+                    }
+                    openNextPage();
+                }
+                nextRow = reader.readRow();
+                if (nextRow == null) {
+                    closePage();
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            close();
+            throw new RecordResponseException("Failed to read bulk query results", e);
+        }
+    }
+
+    @Override
+    public R next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<String> row = nextRow;
+        nextRow = null;
+        try {
+            return objectReader.readValue(toTree(row));
+        } catch (IOException e) {
+            throw new RecordResponseException("Failed to map bulk query result", e);
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Query results can't be removed through a cursor");
+    }
+
+    @Override
+    public void close() {
+        closePage();
+        nextRow = null;
+        morePages = false;
+    }
+
+    private void openNextPage() throws IOException {
+        URI pageUri = (locator != null) ? URI.create(resultsUri + "?locator=" + locator) : resultsUri;
+        response = accessor.send("GET", pageUri, null);
+
+        locator = response.getHeader(LOCATOR_HEADER);
+        morePages = StringUtils.isNotEmpty(locator) && !NO_MORE_PAGES.equals(locator);
+
+        reader = new CsvReader(new BufferedReader(new InputStreamReader(response.getBody(), UTF_8)));
+        List<String> header = reader.readRow();
+        if (header == null) {
+            header = new ArrayList<>();
+        }
+        columns = new ArrayList<>(header.size());
+        for (String name : header) {
+            columns.add(StringUtils.split(name, '.'));
+        }
+    }
+
+    private void closePage() {
+        if (response != null) {
+            response.close();
+        }
+        response = null;
+        reader = null;
+    }
+
+    private JsonNode toTree(List<String> row) {
+        ObjectNode root = JsonNodeFactory.instance.objectNode();
+        for (int i = 0, limit = Math.min(columns.size(), row.size()); i < limit; i++) {
+            String value = row.get(i);
+            if (value.isEmpty()) {
+                continue;
+            }
+            String[] path = columns.get(i);
+            ObjectNode parent = root;
+            for (int j = 0; j < path.length - 1; j++) {
+                JsonNode child = parent.get(path[j]);
+                parent = (child instanceof ObjectNode) ? (ObjectNode) child : parent.putObject(path[j]);
+            }
+            parent.put(path[path.length - 1], value);
+        }
+        return root;
+    }
+}
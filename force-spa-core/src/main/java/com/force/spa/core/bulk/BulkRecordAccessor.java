@@ -0,0 +1,383 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.bulk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.force.spa.ApiVersion;
+import com.force.spa.RecordCursor;
+import com.force.spa.RecordRequestException;
+import com.force.spa.RecordResponseException;
+import com.force.spa.RecordResult;
+import com.force.spa.SpaException;
+import com.force.spa.Statistics;
+import com.force.spa.core.AbstractRecordAccessor;
+import com.force.spa.core.MappingContext;
+import com.force.spa.core.ObjectDescriptor;
+import com.force.spa.core.SoqlBuilder;
+import com.force.spa.core.rest.RestResponseHandler;
+
+/**
+ * Loads and queries large numbers of records through Bulk API 2.0 jobs.
+ * <p/>
+ * This is a companion to a regular {@link AbstractRecordAccessor}, whose mapping context supplies the object metadata,
+ * for work that is too big for the REST resources. Records are streamed to the server as CSV while the upload is in
+ * progress so an ingest job can be fed from a lazy {@link Iterable} of any size. The job is then polled with an
+ * exponentially increasing interval until it completes. Query results are streamed back as CSV and mapped to the same
+ * annotated beans.
+ * <p/>
+ * Bulk jobs have some limitations compared to the REST resources. Related records can only be referred to by id,
+ * polymorphic (TYPEOF) and parent-to-child (subquery) relationships can't be queried, and there is no support for
+ * record types or other "attributes". Ingest jobs need API version 41.0 or later and query jobs need 47.0 or later.
+ * <p/>
+ * A single ingest job takes at most {@value #DEFAULT_MAX_UPLOAD_BYTES} bytes of CSV, so records that don't fit are
+ * uploaded to further jobs, one after the other. All the jobs are then left to run on the server together. Should an
+ * upload fail, the jobs which were uploaded before it still run.
+ */
+public final class BulkRecordAccessor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkRecordAccessor.class);
+
+    private static final ApiVersion MINIMUM_VERSION_FOR_INGEST = new ApiVersion(41, 0);
+    private static final ApiVersion MINIMUM_VERSION_FOR_QUERY = new ApiVersion(47, 0);
+
+    private static final String INGEST_PATH = "/jobs/ingest";
+    private static final String QUERY_PATH = "/jobs/query";
+
+    private static final long DEFAULT_INITIAL_POLL_INTERVAL = 1000;
+    private static final long DEFAULT_MAX_POLL_INTERVAL = 30000;
+
+    /**
+     * The largest upload for a single ingest job, which the server takes as 150 MB once it is base64 encoded.
+     */
+    static final long DEFAULT_MAX_UPLOAD_BYTES = 100000000;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String JSON_CONTENT_TYPE = "application/json";
+    private static final StatusHandler STATUS_HANDLER = new StatusHandler();
+
+    private final AbstractRecordAccessor recordAccessor;
+    private final BulkConnector connector;
+    private final long initialPollIntervalMillis;
+    private final long maxPollIntervalMillis;
+    private final long maxUploadBytes;
+
+    public BulkRecordAccessor(AbstractRecordAccessor recordAccessor, BulkConnector connector) {
+        this(recordAccessor, connector, DEFAULT_INITIAL_POLL_INTERVAL, DEFAULT_MAX_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates an accessor with a specific polling schedule. The interval between checks on a job starts at the
+     * initial interval and doubles after each check until it reaches the maximum interval.
+     *
+     * @param recordAccessor      the record accessor whose mapping context describes the records
+     * @param connector           the bulk connector
+     * @param initialPollInterval the initial interval between checks on a job
+     * @param maxPollInterval     the maximum interval between checks on a job
+     * @param unit                the unit of the intervals
+     */
+    public BulkRecordAccessor(AbstractRecordAccessor recordAccessor, BulkConnector connector, long initialPollInterval, long maxPollInterval, TimeUnit unit) {
+        this(recordAccessor, connector, initialPollInterval, maxPollInterval, unit, DEFAULT_MAX_UPLOAD_BYTES);
+    }
+
+    BulkRecordAccessor(AbstractRecordAccessor recordAccessor, BulkConnector connector, long initialPollInterval, long maxPollInterval, TimeUnit unit, long maxUploadBytes) {
+        Validate.notNull(recordAccessor, "recordAccessor must not be null");
+        Validate.notNull(connector, "connector must not be null");
+        Validate.isTrue(initialPollInterval > 0, "initialPollInterval must be positive");
+        Validate.isTrue(maxPollInterval >= initialPollInterval, "maxPollInterval must not be less than initialPollInterval");
+        Validate.notNull(unit, "unit must not be null");
+
+        this.recordAccessor = recordAccessor;
+        this.connector = connector;
+        this.initialPollIntervalMillis = unit.toMillis(initialPollInterval);
+        this.maxPollIntervalMillis = unit.toMillis(maxPollInterval);
+        this.maxUploadBytes = maxUploadBytes;
+    }
+
+    /**
+     * Creates records with ingest jobs and waits for the jobs to complete.
+     *
+     * @param records     the records, which are read once while they are uploaded
+     * @param recordClass the class of the records
+     * @return the outcomes of the jobs, of which there is more than one if the records didn't fit in a single job
+     */
+    public <T> List<BulkJobResult> insert(Iterable<T> records, Class<T> recordClass) {
+        return ingest(BulkOperation.INSERT, records, recordClass);
+    }
+
+    /**
+     * Updates records with ingest jobs and waits for the jobs to complete. Every record must have an id.
+     *
+     * @param records     the records, which are read once while they are uploaded
+     * @param recordClass the class of the records
+     * @return the outcomes of the jobs, of which there is more than one if the records didn't fit in a single job
+     */
+    public <T> List<BulkJobResult> update(Iterable<T> records, Class<T> recordClass) {
+        return ingest(BulkOperation.UPDATE, records, recordClass);
+    }
+
+    /**
+     * Deletes records with ingest jobs and waits for the jobs to complete.
+     *
+     * @param ids         the ids of the records, which are read once while they are uploaded
+     * @param recordClass the class of the records
+     * @return the outcomes of the jobs, of which there is more than one if the records didn't fit in a single job
+     */
+    public <T> List<BulkJobResult> delete(Iterable<String> ids, Class<T> recordClass) {
+        return ingest(BulkOperation.DELETE, ids, recordClass);
+    }
+
+    /**
+     * Gets the outcomes of the records that failed in a completed ingest job.
+     *
+     * @param jobResult the outcome of the job
+     * @return the outcomes of the failed records
+     */
+    public List<RecordResult> getFailedResults(BulkJobResult jobResult) {
+        Validate.notNull(jobResult, "jobResult must not be null");
+
+        List<RecordResult> results = new ArrayList<>();
+        if (jobResult.getNumberRecordsFailed() == 0) {
+            return results;
+        }
+
+        BulkResponse response = send("GET", URI.create(INGEST_PATH + "/" + jobResult.getJobId() + "/failedResults/"), null);
+        try {
+            CsvReader reader = new CsvReader(new BufferedReader(new InputStreamReader(response.getBody(), UTF_8)));
+            List<String> header = reader.readRow();
+            int idColumn = (header != null) ? header.indexOf("sf__Id") : -1;
+            int errorColumn = (header != null) ? header.indexOf("sf__Error") : -1;
+            for (List<String> row = reader.readRow(); row != null; row = reader.readRow()) {
+                String id = (idColumn >= 0 && idColumn < row.size()) ? row.get(idColumn) : null;
+                String error = (errorColumn >= 0 && errorColumn < row.size()) ? row.get(errorColumn) : null;
+                results.add(new RecordResult((id == null || id.isEmpty()) ? null : id, false, error));
+            }
+        } catch (IOException e) {
+            throw new RecordResponseException("Failed to read bulk job results", e);
+        } finally {
+            response.close();
+        }
+        return results;
+    }
+
+    /**
+     * Runs a query job and returns a cursor over the results once the job has completed. The template is expanded
+     * just like it is for {@link com.force.spa.RecordAccessor#createQuery(String, Class)}.
+     *
+     * @param soqlTemplate the SOQL template
+     * @param recordClass  the class of the result records
+     * @return a cursor over the results, which must be closed if it isn't read to the end
+     */
+    public <T> RecordCursor<T> query(String soqlTemplate, Class<T> recordClass) {
+        Validate.notEmpty(soqlTemplate, "soqlTemplate must not be empty");
+        Validate.notNull(recordClass, "recordClass must not be null");
+
+        checkVersion(MINIMUM_VERSION_FOR_QUERY, "Bulk queries");
+
+        String soql = new SoqlBuilder(recordAccessor).object(recordClass).template(soqlTemplate).build();
+
+        Map<String, String> job = new LinkedHashMap<>();
+        job.put("operation", "query");
+        job.put("query", soql);
+        job.put("contentType", "CSV");
+        job.put("lineEnding", "LF");
+        JobInfo jobInfo = readJobInfo(send("POST", URI.create(QUERY_PATH), jsonBody(job)));
+        URI jobUri = URI.create(QUERY_PATH + "/" + jobInfo.getId());
+
+        awaitCompletion(jobUri);
+        LOG.info("Bulk query job " + jobInfo.getId() + " completed: " + soql);
+
+        return new BulkQueryCursor<>(this, getMappingContext(), URI.create(jobUri + "/results"), recordClass);
+    }
+
+    private List<BulkJobResult> ingest(BulkOperation operation, Iterable<?> records, Class<?> recordClass) {
+        Validate.notNull(records, "records must not be null");
+        Validate.notNull(recordClass, "recordClass must not be null");
+
+        checkVersion(MINIMUM_VERSION_FOR_INGEST, "Bulk jobs");
+
+        ObjectDescriptor object = getMappingContext().getObjectDescriptor(recordClass);
+        RecordsCsvBody csvBody = new RecordsCsvBody(getMappingContext(), object, records, operation, maxUploadBytes);
+
+        List<URI> jobUris = new ArrayList<>();
+        do {
+            jobUris.add(upload(operation, object, csvBody));
+        } while (csvBody.hasMoreRecords());
+
+        List<BulkJobResult> results = new ArrayList<>(jobUris.size());
+        for (URI jobUri : jobUris) {
+            JobInfo jobInfo = awaitCompletion(jobUri);
+            BulkJobResult result = new BulkJobResult(jobInfo.getId(), jobInfo.getNumberRecordsProcessed(), jobInfo.getNumberRecordsFailed());
+            LOG.info("Bulk " + operation.getApiName() + " of " + object.getName() + " records completed: " + result);
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Creates an ingest job and uploads the next part of the records to it.
+     *
+     * @return the URI of the job
+     */
+    private URI upload(BulkOperation operation, ObjectDescriptor object, RecordsCsvBody csvBody) {
+        Map<String, String> job = new LinkedHashMap<>();
+        job.put("object", object.getName());
+        job.put("operation", operation.getApiName());
+        job.put("contentType", "CSV");
+        job.put("lineEnding", "LF");
+        JobInfo jobInfo = readJobInfo(send("POST", URI.create(INGEST_PATH), jsonBody(job)));
+        URI jobUri = URI.create(INGEST_PATH + "/" + jobInfo.getId());
+
+        try {
+            send("PUT", URI.create(jobUri + "/batches"), csvBody).close();
+            send("PATCH", jobUri, jsonBody(stateChange("UploadComplete"))).close();
+        } catch (RuntimeException e) {
+            abortQuietly(jobUri);
+            throw e;
+        }
+        return jobUri;
+    }
+
+    /**
+     * Polls a job until it completes, backing off between checks.
+     *
+     * @param jobUri the URI of the job
+     * @return the final state of the job
+     */
+    private JobInfo awaitCompletion(URI jobUri) {
+        long pollIntervalMillis = initialPollIntervalMillis;
+        while (true) {
+            JobInfo jobInfo = readJobInfo(send("GET", jobUri, null));
+            String state = jobInfo.getState();
+            if ("JobComplete".equals(state)) {
+                return jobInfo;
+            } else if ("Failed".equals(state) || "Aborted".equals(state)) {
+                String message = "Bulk job " + jobInfo.getId() + " ended in state " + state;
+                if (jobInfo.getErrorMessage() != null) {
+                    message += ": " + jobInfo.getErrorMessage();
+                }
+                throw new RecordRequestException(message);
+            }
+
+            try {
+                TimeUnit.MILLISECONDS.sleep(pollIntervalMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                abortQuietly(jobUri);
+                throw SpaException.valueOf(e);
+            }
+            pollIntervalMillis = Math.min(pollIntervalMillis * 2, maxPollIntervalMillis);
+        }
+    }
+
+    private void abortQuietly(URI jobUri) {
+        try {
+            send("PATCH", jobUri, jsonBody(stateChange("Aborted"))).close();
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to abort bulk job " + jobUri, e);
+        }
+    }
+
+    /**
+     * Sends a request and checks the response status. The caller must close the response.
+     */
+    BulkResponse send(String method, URI uri, BulkRequestBody body) {
+        BulkResponse response = connector.send(method, uri, body);
+        if (response.getStatus() >= 300) {
+            try {
+                STATUS_HANDLER.handleStatus(response.getStatus(), getMappingContext().createParser(response.getBody()));
+            } finally {
+                response.close();
+            }
+        }
+        return response;
+    }
+
+    private JobInfo readJobInfo(BulkResponse response) {
+        try {
+            return getMappingContext().getObjectReader().withType(JobInfo.class).readValue(response.getBody());
+        } catch (IOException e) {
+            throw new RecordResponseException("Failed to parse bulk job information", e);
+        } finally {
+            response.close();
+        }
+    }
+
+    private void checkVersion(ApiVersion minimumVersion, String description) {
+        ApiVersion apiVersion = connector.getApiVersion();
+        if (minimumVersion.compareTo(apiVersion) > 0) {
+            throw new RecordRequestException(description + " require API version " + minimumVersion + " or later, not " + apiVersion);
+        }
+    }
+
+    private MappingContext getMappingContext() {
+        return recordAccessor.getMappingContext();
+    }
+
+    private static Map<String, String> stateChange(String state) {
+        Map<String, String> change = new LinkedHashMap<>();
+        change.put("state", state);
+        return change;
+    }
+
+    private BulkRequestBody jsonBody(Map<String, String> properties) {
+        final String json;
+        try {
+            StringWriter writer = new StringWriter(256);
+            JsonGenerator generator = getMappingContext().getObjectReader().getFactory().createGenerator(writer);
+            generator.writeStartObject();
+            for (Map.Entry<String, String> entry : properties.entrySet()) {
+                generator.writeStringField(entry.getKey(), entry.getValue());
+            }
+            generator.writeEndObject();
+            generator.close();
+            json = writer.toString();
+        } catch (IOException e) {
+            throw new RecordRequestException("Failed to serialize bulk job request", e);
+        }
+
+        return new BulkRequestBody() {
+            @Override
+            public String getContentType() {
+                return JSON_CONTENT_TYPE;
+            }
+
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                outputStream.write(json.getBytes(UTF_8));
+            }
+        };
+    }
+
+    /**
+     * Maps error statuses to exceptions in the same way as the REST resources.
+     */
+    private static final class StatusHandler extends RestResponseHandler<Void> {
+        @Override
+        public void completed(Void result, Statistics statistics) {
+        }
+
+        @Override
+        public void failed(Throwable exception, Statistics statistics) {
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.bulk;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The body of a request sent through a {@link BulkConnector}. The body is written straight to the connection so that
+ * large uploads never have to be held in memory.
+ */
+public interface BulkRequestBody {
+    /**
+     * Returns the media type of the body, for example "text/csv".
+     */
+    String getContentType();
+
+    /**
+     * Writes the body. The stream is owned by the connector and must not be closed.
+     *
+     * @param outputStream the stream to write to
+     * @throws IOException if the body can't be written
+     */
+    void writeTo(OutputStream outputStream) throws IOException;
+}
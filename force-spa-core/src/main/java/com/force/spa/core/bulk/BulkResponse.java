@@ -0,0 +1,35 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.bulk;
+
+import java.io.Closeable;
+import java.io.InputStream;
+
+/**
+ * The response to a request sent through a {@link BulkConnector}. Closing the response releases the connection.
+ */
+public interface BulkResponse extends Closeable {
+    /**
+     * Returns the HTTP response status.
+     */
+    int getStatus();
+
+    /**
+     * Returns the first value of a response header.
+     *
+     * @param name the name of the header
+     * @return the value or <code>null</code> if the header is absent
+     */
+    String getHeader(String name);
+
+    /**
+     * Returns a stream for reading the response body.
+     */
+    InputStream getBody();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.bulk;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.force.spa.RecordResponseException;
+
+/**
+ * A minimal reader of comma separated values in the RFC 4180 format returned by the Bulk API. Quoted values may contain
+ * commas, doubled quotes and line breaks. Rows may end with either a line feed or a carriage return and line feed.
+ */
+final class CsvReader {
+
+    private final Reader reader;
+    private final StringBuilder value = new StringBuilder(64);
+    private int pushedBack = -1;
+
+    /**
+     * Creates a reader. The reader should be buffered because it is read a character at a time.
+     */
+    CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next row.
+     *
+     * @return the values of the row, where empty values are empty strings, or <code>null</code> at the end of the
+     *         input
+     */
+    List<String> readRow() throws IOException {
+        int c = read();
+        if (c == -1) {
+            return null;
+        }
+
+        List<String> values = new ArrayList<>();
+        while (true) {
+            value.setLength(0);
+            if (c == '"') {
+                c = readQuotedValue();
+            } else {
+                while (c != ',' && c != '\n' && c != '\r' && c != -1) {
+                    value.append((char) c);
+                    c = read();
+                }
+            }
+            values.add(value.toString());
+
+            if (c == ',') {
+                c = read();
+            } else {
+                if (c == '\r') {
+                    c = read();
+                    if (c != '\n') {
+                        pushedBack = c;
+                    }
+                }
+                return values;
+            }
+        }
+    }
+
+    /**
+     * Reads a quoted value into {@link #value}, starting after the opening quote.
+     *
+     * @return the character after the closing quote
+     */
+    private int readQuotedValue() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) {
+                throw new RecordResponseException("Unterminated quoted value in CSV response");
+            } else if (c == '"') {
+                c = read();
+                if (c != '"') {
+                    return c;
+                }
+            }
+            value.append((char) c);
+        }
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != -1) {
+            int c = pushedBack;
+            pushedBack = -1;
+            return c;
+        }
+        return reader.read();
+    }
+}
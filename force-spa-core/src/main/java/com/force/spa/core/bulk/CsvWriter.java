@@ -0,0 +1,70 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.bulk;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A minimal writer of comma separated values in the RFC 4180 format accepted by the Bulk API. Rows end with a single
+ * line feed and values are only quoted when they need to be.
+ */
+final class CsvWriter {
+
+    private final Writer writer;
+    private boolean rowStarted;
+
+    CsvWriter(Writer writer) {
+        this.writer = writer;
+    }
+
+    /**
+     * Writes the next value of the current row.
+     *
+     * @param value the value, where <code>null</code> is written as an empty value
+     */
+    void writeValue(String value) throws IOException {
+        if (rowStarted) {
+            writer.write(',');
+        }
+        rowStarted = true;
+
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        if (needsQuotes(value)) {
+            writer.write('"');
+            for (int i = 0, length = value.length(); i < length; i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    writer.write('"');
+                }
+                writer.write(c);
+            }
+            writer.write('"');
+        } else {
+            writer.write(value);
+        }
+    }
+
+    /**
+     * Ends the current row.
+     */
+    void endRow() throws IOException {
+        writer.write('\n');
+        rowStarted = false;
+    }
+
+    private static boolean needsQuotes(String value) {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
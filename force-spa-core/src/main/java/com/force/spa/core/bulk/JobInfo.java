@@ -0,0 +1,66 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.bulk;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * The state of a bulk job as reported by the job resources.
+ */
+@SuppressWarnings("UnusedDeclaration")
+@JsonIgnoreProperties(ignoreUnknown = true)
+class JobInfo {
+
+    private String id;
+
+    private String state;
+
+    private long numberRecordsProcessed;
+
+    private long numberRecordsFailed;
+
+    private String errorMessage;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public long getNumberRecordsProcessed() {
+        return numberRecordsProcessed;
+    }
+
+    public void setNumberRecordsProcessed(long numberRecordsProcessed) {
+        this.numberRecordsProcessed = numberRecordsProcessed;
+    }
+
+    public long getNumberRecordsFailed() {
+        return numberRecordsFailed;
+    }
+
+    public void setNumberRecordsFailed(long numberRecordsFailed) {
+        this.numberRecordsFailed = numberRecordsFailed;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.bulk;
+
+import static com.force.spa.core.IntrospectionUtils.getRelationshipIdName;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.force.spa.RecordRequestException;
+import com.force.spa.core.FieldDescriptor;
+import com.force.spa.core.MappingContext;
+import com.force.spa.core.ObjectDescriptor;
+
+/**
+ * A request body that streams record beans as CSV for an ingest job.
+ * <p/>
+ * The columns come from the {@link FieldDescriptor} metadata of the object: the fields that are sent on create for an
+ * insert, the id and the fields that are sent on update for an update, and just the id for a delete (in which case the
+ * "records" are the ids themselves). A relationship is
+ * written as the id of the related record, in the column of the relationship's id field. Values are formatted the same
+ * way as they are for the REST API. A <code>null</code> value is written as an empty value, except for an update where
+ * it is written as "#N/A" so that the field is cleared just like it is by a REST update.
+ * <p/>
+ * The records are serialized while they are uploaded so only one of them needs to be in memory at a time. A job only
+ * takes so much data, so the body writes as many rows as fit within a maximum number of bytes, header included, and
+ * leaves the rest for the next part. The same body is written once for each part until {@link #hasMoreRecords()}
+ * says that all the records have been written.
+ */
+final class RecordsCsvBody implements BulkRequestBody {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 65536;
+    private static final String CLEARED_VALUE = "#N/A";
+
+    private final MappingContext mappingContext;
+    private final Iterator<?> records;
+    private final long maxBytes;
+    private final List<FieldDescriptor> fields = new ArrayList<>();
+    private final boolean idsOnly;
+    private final String nullValue;
+    private final ObjectWriter valueWriter;
+
+    private final StringWriter rowBuffer = new StringWriter(256);
+    private final CsvWriter rowWriter = new CsvWriter(rowBuffer);
+    private byte[] pendingRow; // A row which didn't fit in the previous part
+
+    RecordsCsvBody(MappingContext mappingContext, ObjectDescriptor object, Iterable<?> records, BulkOperation operation, long maxBytes) {
+        this.mappingContext = mappingContext;
+        this.records = records.iterator();
+        this.maxBytes = maxBytes;
+        this.nullValue = (operation == BulkOperation.UPDATE) ? CLEARED_VALUE : null;
+        this.valueWriter = mappingContext.getObjectWriterForCreate();
+        this.idsOnly = (operation == BulkOperation.DELETE);
+
+        if (operation != BulkOperation.INSERT) {
+            if (!object.hasIdField()) {
+                throw new RecordRequestException("Record class doesn't have an id member");
+            }
+            fields.add(object.getIdField());
+        }
+        if (operation != BulkOperation.DELETE) {
+            for (FieldDescriptor field : object.getFields()) {
+                if (isColumn(field, operation)) {
+                    fields.add(field);
+                }
+            }
+        }
+    }
+
+    private static boolean isColumn(FieldDescriptor field, BulkOperation operation) {
+        String name = field.getName();
+        if (name.equals(ObjectDescriptor.ID_FIELD_NAME) || name.equals(ObjectDescriptor.ATTRIBUTES_FIELD_NAME)) {
+            return false;
+        }
+        return (operation == BulkOperation.INSERT) ? field.isInsertable() : field.isUpdatable();
+    }
+
+    @Override
+    public String getContentType() {
+        return "text/csv";
+    }
+
+    /**
+     * Returns an indication of whether there are records which haven't been written yet, and so need another part.
+     */
+    boolean hasMoreRecords() {
+        return pendingRow != null || records.hasNext();
+    }
+
+    /**
+     * Writes the header and then the next records, for as long as they fit.
+     */
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        OutputStream bufferedStream = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        for (FieldDescriptor field : fields) {
+            rowWriter.writeValue(field.isRelationship() ? getRelationshipIdName(field.getName()) : field.getName());
+        }
+        byte[] header = endRow();
+        bufferedStream.write(header);
+
+        long bytesWritten = header.length;
+        int rowsWritten = 0;
+        while (hasMoreRecords()) {
+            byte[] row = (pendingRow != null) ? pendingRow : formatRow(records.next());
+            pendingRow = null;
+            if (bytesWritten + row.length > maxBytes) {
+                if (rowsWritten == 0) {
+                    throw new RecordRequestException(
+                        "A record takes " + row.length + " bytes of CSV, which is more than a bulk job can take");
+                }
+                pendingRow = row;
+                break;
+            }
+            bufferedStream.write(row);
+            bytesWritten += row.length;
+            rowsWritten++;
+        }
+        bufferedStream.flush();
+    }
+
+    private byte[] formatRow(Object record) throws IOException {
+        if (record == null) {
+            throw new RecordRequestException("Bulk jobs can't contain null records");
+        }
+        if (idsOnly) {
+            rowWriter.writeValue(formatValue(fields.get(0), record));
+        } else {
+            for (FieldDescriptor field : fields) {
+                rowWriter.writeValue(formatValue(field, field.getValue(record)));
+            }
+        }
+        return endRow();
+    }
+
+    private byte[] endRow() throws IOException {
+        rowWriter.endRow();
+        byte[] row = rowBuffer.toString().getBytes(UTF_8);
+        rowBuffer.getBuffer().setLength(0);
+        return row;
+    }
+
+    private String formatValue(FieldDescriptor field, Object value) throws IOException {
+        if (value == null) {
+            if (field.getName().equals(ObjectDescriptor.ID_FIELD_NAME)) {
+                throw new RecordRequestException("Record bean does not have an id value set");
+            }
+            return nullValue;
+        } else if (field.isRelationship()) {
+            return formatRelatedRecordId(value);
+        } else if (value instanceof String) {
+            return (String) value;
+        } else if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        } else if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        } else {
+            return formatScalarValue(value);
+        }
+    }
+
+    private String formatRelatedRecordId(Object relatedRecord) {
+        ObjectDescriptor relatedObject = mappingContext.getObjectDescriptor(relatedRecord.getClass());
+        String id = relatedObject.hasIdField() ? relatedObject.getIdField().<String>getValue(relatedRecord) : null;
+        if (StringUtils.isEmpty(id)) {
+            throw new RecordRequestException("Bulk jobs can only refer to related records by id");
+        }
+        return id;
+    }
+
+    /**
+     * Formats any other kind of value, such as a date, with the same serializer that is used for the REST API.
+     */
+    private String formatScalarValue(Object value) throws IOException {
+        TokenBuffer buffer = new TokenBuffer(null);
+        valueWriter.writeValue(buffer, value);
+        JsonParser parser = buffer.asParser();
+        JsonToken token = parser.nextToken();
+        if (token == null || !token.isScalarValue()) {
+            throw new RecordRequestException("Values of type " + value.getClass().getName() + " can't be written as CSV");
+        }
+        return (token == JsonToken.VALUE_NULL) ? nullValue : parser.getText();
+    }
+}
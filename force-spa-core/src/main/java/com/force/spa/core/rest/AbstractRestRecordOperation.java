@@ -5,6 +5,8 @@
  */
 package com.force.spa.core.rest;
 
+import java.util.concurrent.Future;
+
 import com.force.spa.Statistics;
 import com.force.spa.core.AbstractRecordOperation;
 
@@ -30,11 +32,28 @@ public abstract class AbstractRestRecordOperation<T, R> extends AbstractRecordOp
      */
     protected abstract void start(RestConnector connector);
 
+    /**
+     * A base for the REST response handlers of an operation which ties the requests to the operation's cancellation.
+     *
+     * @param <X> the type of result expected from the request
+     */
+    protected abstract class OperationResponseHandler<X> extends RestResponseHandler<X> {
+        @Override
+        public boolean isCancelled() {
+            return AbstractRestRecordOperation.this.isCancelled();
+        }
+
+        @Override
+        public void started(Future<?> request) {
+            requestStarted(request);
+        }
+    }
+
     /**
      * A default REST response handler with many methods implemented appropriately for an all operations. Individual
      * operations only need to override those things they need to handle differently.
      */
-    protected class ResponseHandler extends RestResponseHandler<R> {
+    protected class ResponseHandler extends OperationResponseHandler<R> {
         @Override
         public void completed(R result, Statistics statistics) {
             AbstractRestRecordOperation.this.completed(result, statistics);
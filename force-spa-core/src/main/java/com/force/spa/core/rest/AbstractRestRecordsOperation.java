@@ -0,0 +1,193 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.rest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.force.spa.ApiVersion;
+import com.force.spa.RecordRequestException;
+import com.force.spa.RecordResult;
+import com.force.spa.Statistics;
+import com.force.spa.core.ObjectDescriptor;
+import com.force.spa.core.utils.CountingJsonParser;
+
+/**
+ * An abstract base class for operations that work with many records in a single request through the sObject
+ * Collections resources ("/composite/sobjects").
+ * <p/>
+ * Each record succeeds or fails independently of the others ("allOrNone" is false) so the result of the operation is
+ * a list of {@link RecordResult}s, one per record and in the same order as the records. The operation itself only fails
+ * if the request as a whole fails.
+ *
+ * @param <T> the type of record the operation is working with
+ */
+abstract class AbstractRestRecordsOperation<T> extends AbstractRestRecordOperation<T, List<RecordResult>> {
+
+    /**
+     * The maximum number of records that the server accepts in a single collections request.
+     */
+    static final int MAX_RECORDS = 200;
+
+    static final String COLLECTIONS_PATH = "/composite/sobjects";
+
+    private static final String ID_FIELD_NAME = "Id";
+
+    private static final ApiVersion MINIMUM_VERSION_FOR_COLLECTIONS = new ApiVersion(42, 0);
+
+    protected AbstractRestRecordsOperation(RestRecordAccessor accessor, Class<T> recordClass) {
+        super(accessor, recordClass);
+    }
+
+    /**
+     * Checks that the server understands the sObject Collections resources, and fails the operation if it doesn't.
+     * The operation is failed rather than an exception thrown so that the other operations being started along with
+     * it are unaffected.
+     *
+     * @param connector the connector that is going to be used to issue the request
+     * @return <code>true</code> if the operation can go ahead
+     */
+    protected final boolean checkCollectionsSupported(RestConnector connector) {
+        ApiVersion apiVersion = connector.getApiVersion();
+        if (MINIMUM_VERSION_FOR_COLLECTIONS.compareTo(apiVersion) > 0) {
+            failed(new RecordRequestException(
+                "Operations on multiple records require API version " + MINIMUM_VERSION_FOR_COLLECTIONS + " or later, not " + apiVersion),
+                new Statistics.Builder().build());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Builds the body for a create or update collections request.
+     * <p/>
+     * Each record needs "attributes" with the object type, and update needs the "Id" in the body as well, neither of
+     * which the regular writers produce at the top level. Each record is serialized into a token buffer and its fields
+     * are copied into the body after the ones added here, so the body is streamed to the connection without going
+     * through an intermediate tree or string.
+     *
+     * @param writer  the writer with the appropriate serialization view
+     * @param records the records
+     * @param ids     the ids to include with each record, or <code>null</code> for none
+     * @return the body
+     */
+    protected final RestRequestBody serializeRecords(final ObjectWriter writer, final List<T> records, final List<String> ids) {
+        return RequestBodies.forContent(getMappingContext().getObjectReader().getFactory(), new RequestBodies.JsonContent() {
+            @Override
+            public void writeTo(JsonGenerator generator) throws IOException {
+                generator.writeStartObject();
+                generator.writeBooleanField("allOrNone", false);
+                generator.writeArrayFieldStart("records");
+                for (int i = 0; i < records.size(); i++) {
+                    T record = records.get(i);
+                    String typeName = getMappingContext().getObjectDescriptor(record.getClass()).getName();
+                    writeRecord(generator, writer, record, typeName, (ids != null) ? ids.get(i) : null);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+        });
+    }
+
+    private static void writeRecord(JsonGenerator generator, ObjectWriter writer, Object record, String typeName, String id) throws IOException {
+        TokenBuffer buffer = new TokenBuffer(null);
+        writer.writeValue(buffer, record);
+
+        generator.writeStartObject();
+        generator.writeObjectFieldStart(ObjectDescriptor.ATTRIBUTES_FIELD_NAME);
+        generator.writeStringField("type", typeName);
+        JsonParser parser = buffer.asParser();
+        if (skipToField(parser, ObjectDescriptor.ATTRIBUTES_FIELD_NAME) && parser.nextToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if (!"type".equals(name)) {
+                    generator.writeFieldName(name);
+                    generator.copyCurrentStructure(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        generator.writeEndObject();
+        if (id != null) {
+            generator.writeStringField(ID_FIELD_NAME, id);
+        }
+
+        parser = buffer.asParser();
+        parser.nextToken();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if (ObjectDescriptor.ATTRIBUTES_FIELD_NAME.equals(name) || (id != null && ID_FIELD_NAME.equals(name))) {
+                parser.skipChildren(); // Already written
+            } else {
+                generator.writeFieldName(name);
+                generator.copyCurrentStructure(parser);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Moves a parser positioned before a serialized record to the name of one of its top level fields.
+     *
+     * @return <code>true</code> if the field was found
+     */
+    private static boolean skipToField(JsonParser parser, String fieldName) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return false;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (fieldName.equals(parser.getCurrentName())) {
+                return true;
+            }
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        return false;
+    }
+
+    private static List<RecordResult> deserializeResults(CountingJsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            parser.nextToken();
+            return Collections.emptyList();
+        }
+
+        SaveResult[] saveResults = parser.readValueAs(SaveResult[].class);
+        List<RecordResult> results = new ArrayList<>(saveResults.length);
+        for (SaveResult saveResult : saveResults) {
+            String errorMessage = null;
+            if (!saveResult.isSuccess()) {
+                errorMessage = (saveResult.getErrors() != null)
+                    ? RestResponseHandler.formatErrorResults(saveResult.getErrors())
+                    : null;
+                if (errorMessage == null) {
+                    errorMessage = "Salesforce REST error with no message";
+                }
+            }
+            results.add(new RecordResult(saveResult.getId(), saveResult.isSuccess(), errorMessage));
+        }
+        return results;
+    }
+
+    /**
+     * A response handler that turns the collections response into a list of {@link RecordResult}s.
+     */
+    protected class RecordsResponseHandler extends ResponseHandler {
+        @Override
+        public List<RecordResult> deserialize(CountingJsonParser parser) throws IOException {
+            return deserializeResults(parser);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.force.spa.ApiVersion;
+import com.google.common.util.concurrent.Striped;
+
+/**
+ * A cache of the highest API version supported by each instance, for use by {@link RestVersionManager}s.
+ * <p/>
+ * A version is good for an hour after it was discovered. After that it is still used but it is discovered again: in
+ * the background if the cache has an {@link Executor}, and otherwise on the calling thread. The versions can also be
+ * kept in a file so that a freshly started process doesn't have to discover them again, and discovered ahead of time
+ * for a list of instances (see {@link RestVersionManager#prewarm}). Problems with the file are logged and otherwise
+ * ignored because the versions can always be discovered again.
+ * <p/>
+ * A cache can be shared by many connectors and is thread-safe.
+ */
+public final class ApiVersionCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ApiVersionCache.class);
+
+    static final long REFRESH_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private static final int DISCOVERY_LOCK_STRIPES = 64;
+
+    private static final ObjectMapper FILE_MAPPER = new ObjectMapper();
+
+    private final File file;
+    private final Executor executor;
+    private final ConcurrentMap<URI, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<URI> refreshesInProgress = Collections.newSetFromMap(new ConcurrentHashMap<URI, Boolean>());
+    private final Striped<Lock> discoveryLocks = Striped.lock(DISCOVERY_LOCK_STRIPES);
+
+    /**
+     * Creates a cache which only keeps versions in memory and discovers them again on the calling thread.
+     */
+    public ApiVersionCache() {
+        this(null, null);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param file     the file in which to keep versions across restarts, or <code>null</code> to only keep them in
+     *                 memory. Versions are loaded from the file straight away.
+     * @param executor the executor with which to discover versions again in the background, or <code>null</code> to
+     *                 discover them on the calling thread
+     */
+    public ApiVersionCache(File file, Executor executor) {
+        this.file = file;
+        this.executor = executor;
+
+        if (file != null) {
+            load();
+        }
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    Entry get(URI instanceUrl) {
+        return entries.get(instanceUrl);
+    }
+
+    /**
+     * Records a version which has just been discovered.
+     *
+     * @param instanceUrl the instance
+     * @param version     the highest version supported by the instance
+     * @param persistent  an indication of whether the version should be kept in the file. Guesses made when the
+     *                    version couldn't be discovered are only kept in memory.
+     */
+    void put(URI instanceUrl, ApiVersion version, boolean persistent) {
+        entries.put(instanceUrl, new Entry(version, System.currentTimeMillis(), persistent));
+        if (file != null && persistent) {
+            store();
+        }
+    }
+
+    /**
+     * Keeps using a version for another refresh interval, without writing it to the file, because it couldn't be
+     * discovered again.
+     */
+    void postponeRefresh(URI instanceUrl, Entry entry) {
+        entries.replace(instanceUrl, entry, new Entry(entry.version, System.currentTimeMillis(), entry.persistent));
+    }
+
+    /**
+     * Returns the lock to hold while discovering the version of an instance which isn't known at all, so that callers
+     * who need it at the same time wait for a single discovery rather than all asking the server.
+     */
+    Lock getDiscoveryLock(URI instanceUrl) {
+        return discoveryLocks.get(instanceUrl);
+    }
+
+    /**
+     * Claims the refresh of an instance's version so that only one thread refreshes it at a time.
+     *
+     * @return <code>true</code> if the caller should go ahead with the refresh and call {@link #endRefresh} when done
+     */
+    boolean beginRefresh(URI instanceUrl) {
+        return refreshesInProgress.add(instanceUrl);
+    }
+
+    void endRefresh(URI instanceUrl) {
+        refreshesInProgress.remove(instanceUrl);
+    }
+
+    private void load() {
+        if (!file.isFile()) {
+            return;
+        }
+        try {
+            JsonNode root = FILE_MAPPER.readTree(file);
+            Iterator<Map.Entry<String, JsonNode>> fields = root.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                ApiVersion version = new ApiVersion(field.getValue().get("version").asText());
+                long discovered = field.getValue().get("discovered").asLong();
+                entries.putIfAbsent(URI.create(field.getKey()), new Entry(version, discovered, true));
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to read API versions from " + file, e);
+        }
+    }
+
+    /**
+     * Writes the versions to the file. They are written to a temporary file first and then moved into place so that
+     * other processes sharing the file never see half of it.
+     */
+    private synchronized void store() {
+        ObjectNode root = FILE_MAPPER.createObjectNode();
+        for (Map.Entry<URI, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().persistent) {
+                ObjectNode node = root.putObject(entry.getKey().toString());
+                node.put("version", entry.getValue().version.toString());
+                node.put("discovered", entry.getValue().discovered);
+            }
+        }
+
+        File temporaryFile = null;
+        try {
+            File directory = file.getAbsoluteFile().getParentFile();
+            Validate.validState(directory.isDirectory() || directory.mkdirs(), "Failed to create %s", directory);
+            temporaryFile = File.createTempFile("versions", ".tmp", directory);
+            FILE_MAPPER.writeValue(temporaryFile, root);
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to write API versions to " + file, e);
+            if (temporaryFile != null && temporaryFile.exists() && !temporaryFile.delete()) {
+                LOG.warn("Failed to delete " + temporaryFile);
+            }
+        }
+    }
+
+    /**
+     * The highest version supported by an instance along with when it was discovered.
+     */
+    static final class Entry {
+        private final ApiVersion version;
+        private final long discovered;
+        private final boolean persistent;
+
+        Entry(ApiVersion version, long discovered, boolean persistent) {
+            this.version = version;
+            this.discovered = discovered;
+            this.persistent = persistent;
+        }
+
+        ApiVersion getVersion() {
+            return version;
+        }
+
+        boolean isStale() {
+            return System.currentTimeMillis() - discovered >= REFRESH_INTERVAL_MILLIS;
+        }
+    }
+}
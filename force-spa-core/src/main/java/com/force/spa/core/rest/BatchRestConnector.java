@@ -10,22 +10,33 @@ import static com.force.spa.core.utils.JsonParserUtils.checkExpectedTokenThenNex
 import static com.force.spa.core.utils.JsonParserUtils.establishCurrentToken;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.channels.CompletionHandler;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-
-import javax.xml.ws.Holder;
-
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.output.CountingOutputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.fasterxml.jackson.core.JsonLocation;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
 import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.force.spa.ApiVersion;
 import com.force.spa.RecordResponseException;
 import com.force.spa.Statistics;
@@ -41,17 +52,40 @@ class BatchRestConnector implements RestConnector {
 
     private static final int MAX_BATCH_SIZE = 25; // Hardcoded limit in Salesforce core
 
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
     private final RestConnector innerConnector;
-    private final List<Request> pendingRequests;
+    private final Executor executor;
+    private final int maxConcurrentBatches;
+    private final Queue<Request<?>> pendingRequests;
+    private final AtomicInteger numberOfFailures;
+    private final AtomicInteger numberOfSuccesses;
+    private int outstandingBatches;
 
     public BatchRestConnector(RestConnector innerConnector) {
+        this(innerConnector, null, 1);
+    }
+
+    /**
+     * Creates a connector that can have several batch requests outstanding with the server at the same time.
+     *
+     * @param innerConnector       the connector used to post the batch requests
+     * @param executor             the executor used to post batch requests in parallel when the inner connector is
+     *                             synchronous, or <code>null</code> to post them from the calling thread
+     * @param maxConcurrentBatches the maximum number of batch requests outstanding at the same time
+     */
+    public BatchRestConnector(RestConnector innerConnector, Executor executor, int maxConcurrentBatches) {
         this.innerConnector = innerConnector;
-        this.pendingRequests = new ArrayList<>();
+        this.executor = executor;
+        this.maxConcurrentBatches = maxConcurrentBatches;
+        this.pendingRequests = new ConcurrentLinkedQueue<>();
+        this.numberOfFailures = new AtomicInteger();
+        this.numberOfSuccesses = new AtomicInteger();
     }
 
     @Override
-    public void delete(URI uri, RestResponseHandler<Void> responseHandler) {
-        pendingRequests.add(new DeleteRequest(toVersionedRelativeUri(uri), responseHandler));
+    public <R> void delete(URI uri, RestResponseHandler<R> responseHandler) {
+        pendingRequests.add(new DeleteRequest<>(toVersionedRelativeUri(uri), responseHandler));
     }
 
     @Override
@@ -60,13 +94,18 @@ class BatchRestConnector implements RestConnector {
     }
 
     @Override
-    public void patch(URI uri, String jsonBody, RestResponseHandler<Void> responseHandler) {
-        pendingRequests.add(new PatchRequest(toVersionedRelativeUri(uri), jsonBody, responseHandler));
+    public <R> void getWithoutAuthorization(URI instanceUrl, URI uri, RestResponseHandler<R> responseHandler) {
+        innerConnector.getWithoutAuthorization(instanceUrl, uri, responseHandler); // Can't be part of a batch
+    }
+
+    @Override
+    public <R> void patch(URI uri, RestRequestBody body, RestResponseHandler<R> responseHandler) {
+        pendingRequests.add(new PatchRequest<>(toVersionedRelativeUri(uri), body, responseHandler));
     }
 
     @Override
-    public <R> void post(URI uri, String jsonBody, RestResponseHandler<R> responseHandler) {
-        pendingRequests.add(new PostRequest<>(toVersionedRelativeUri(uri), jsonBody, responseHandler));
+    public <R> void post(URI uri, RestRequestBody body, RestResponseHandler<R> responseHandler) {
+        pendingRequests.add(new PostRequest<>(toVersionedRelativeUri(uri), body, responseHandler));
     }
 
     @Override
@@ -84,74 +123,119 @@ class BatchRestConnector implements RestConnector {
         return false;
     }
 
+    @Override
+    public Runnable bindToCurrentAuthorization(Runnable task) {
+        return innerConnector.bindToCurrentAuthorization(task);
+    }
+
     @Override
     public void join() {
         join(false);
     }
 
-    void join(final boolean haltOnError) {
+    void join(boolean haltOnError) {
 
         if (LOG.isDebugEnabled()) {
             LOG.debug(String.format("Starting to process %d pending requests", pendingRequests.size()));
         }
 
-        final Holder<Integer> numberOfFailures = new Holder<>(0);
-        final Holder<Integer> numberOfSuccesses = new Holder<>(0);
-        while ((pendingRequests.size() > 0) && !(numberOfFailures.value > 0 && haltOnError)) {
-            final int batchSize = Math.min(pendingRequests.size(), MAX_BATCH_SIZE);
-            final List<Request> batchRequests = pendingRequests.subList(0, batchSize);
-            String jsonBody = toBatchJson(batchRequests, haltOnError);
+        numberOfFailures.set(0);
+        numberOfSuccesses.set(0);
+        postBatches(haltOnError);
+        if (!innerConnector.isSynchronous()) {
+            innerConnector.join();
+        }
 
-            if (LOG.isDebugEnabled()) {
-                LOG.debug(String.format("Posting batch of %d requests", batchSize));
-            }
+        // Under successful circumstances there should be nothing left. If there is, fail them all.
+        Exception exception = new RecordResponseException("Request skipped because of an earlier failure in the batch");
+        for (Request<?> request = pendingRequests.poll(); request != null; request = pendingRequests.poll()) {
+            numberOfFailures.incrementAndGet();
+            request.failed(exception, 0L);
+        }
 
-            innerConnector.post(URI.create("/connect/batch"), jsonBody, new RestResponseHandler<Void>() {
-                @Override
-                public Void deserialize(CountingJsonParser parser) throws IOException {
-                    return deserializeBatchResult(parser, batchRequests);
-                }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(String.format("Processed %d requests with %d failures",
+                (numberOfSuccesses.get() + numberOfFailures.get()), numberOfFailures.get()));
+        }
+    }
 
-                @Override
-                public void completed(Void ignored, Statistics statistics) {
-                    long elapsedNanosPerRequest = statistics.getElapsedNanos() / batchSize;
-                    while (batchRequests.size() > 0) {
-                        Request request = batchRequests.remove(0);
+    /**
+     * Posts batches until there are no more pending requests, keeping up to {@link #maxConcurrentBatches} of them
+     * outstanding at the same time. The pending queue is rechecked every time a batch finishes because completion
+     * processing is allowed to queue up more requests.
+     * <p/>
+     * Batches are posted from the calling thread unless the inner connector is synchronous and an executor is
+     * available, in which case they are posted from the executor so that they can overlap. Those batches are bound to
+     * the authorization of the calling thread (see {@link RestConnector#bindToCurrentAuthorization}) before they are
+     * handed over, because the executor's threads may have none of their own. When halting on errors, batches which
+     * are already outstanding are allowed to finish but no new batches are started once a failure has been seen.
+     */
+    private void postBatches(boolean haltOnError) {
+        boolean useExecutor = innerConnector.isSynchronous() && executor != null && maxConcurrentBatches > 1;
+        boolean interrupted = false;
+        try {
+            while (true) {
+                synchronized (this) {
+                    while (outstandingBatches > 0
+                        && (outstandingBatches >= maxConcurrentBatches || pendingRequests.isEmpty() || isHalted(haltOnError))) {
                         try {
-                            request.handleStatus();
-                            request.completed(null, elapsedNanosPerRequest);
-                            numberOfSuccesses.value = numberOfSuccesses.value + 1;
-                        } catch (Exception e) {
-                            numberOfFailures.value = numberOfFailures.value + 1;
-                            request.failed(e, elapsedNanosPerRequest);
+                            wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true; // Outstanding batches must still finish so keep waiting
                         }
                     }
+                    if (pendingRequests.isEmpty() || isHalted(haltOnError)) {
+                        break;
+                    }
+                    outstandingBatches++;
                 }
 
-                @Override
-                public void failed(Throwable exception, Statistics statistics) {
-                    long elapsedNanosPerRequest = statistics.getElapsedNanos() / batchSize;
-                    exception = new RecordResponseException("Entire batch failed", exception);
-                    while (batchRequests.size() > 0) {
-                        numberOfFailures.value = numberOfFailures.value + 1;
-                        batchRequests.remove(0).failed(exception, elapsedNanosPerRequest);
+                List<Request<?>> batchRequests = takeNextBatch();
+                if (batchRequests.isEmpty()) {
+                    batchFinished(); // Everything left was cancelled
+                    continue;
+                }
+
+                Batch batch = new Batch(batchRequests, haltOnError);
+                if (useExecutor) {
+                    try {
+                        executor.execute(innerConnector.bindToCurrentAuthorization(batch));
+                    } catch (RejectedExecutionException e) {
+                        LOG.debug("Executor rejected batch, posting it from the calling thread instead");
+                        batch.run();
                     }
+                } else {
+                    batch.run();
                 }
-            });
-            innerConnector.join();
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
         }
+    }
 
-        // Under successful circumstances there should be nothing left. If there is, fail them all.
-        Exception exception = new RecordResponseException("Request skipped because of an earlier failure in the batch");
-        while (pendingRequests.size() > 0) {
-            numberOfFailures.value = numberOfFailures.value + 1;
-            pendingRequests.remove(0).failed(exception, 0L);
-        }
+    private boolean isHalted(boolean haltOnError) {
+        return haltOnError && numberOfFailures.get() > 0;
+    }
 
-        if (LOG.isDebugEnabled()) {
-            LOG.debug(String.format("Processed %d requests with %d failures",
-                (numberOfSuccesses.value + numberOfFailures.value), numberOfFailures.value));
+    private synchronized void batchFinished() {
+        outstandingBatches--;
+        notifyAll();
+    }
+
+    private List<Request<?>> takeNextBatch() {
+        List<Request<?>> batchRequests = new ArrayList<>(MAX_BATCH_SIZE);
+        for (Request<?> request = pendingRequests.poll(); request != null; request = pendingRequests.poll()) {
+            if (request.responseHandler.isCancelled()) {
+                continue; // Nobody is interested so don't bother sending it
+            }
+            batchRequests.add(request);
+            if (batchRequests.size() == MAX_BATCH_SIZE) {
+                break;
+            }
         }
+        return batchRequests;
     }
 
     private URI toVersionedRelativeUri(URI uri) {
@@ -166,23 +250,34 @@ class BatchRestConnector implements RestConnector {
         }
     }
 
-    private static String toBatchJson(List<Request> requests, boolean haltOnError) {
-        StringBuilder builder = new StringBuilder(256);
-        builder.append("{\"haltOnError\":").append(haltOnError);
-        builder.append(",\"batchRequests\":[");
-        boolean addComma = false;
-        for (Request request : requests) {
-            if (addComma) {
-                builder.append(',');
+    /**
+     * Returns the body of a batch request. The body of each request is written straight into the batch envelope, and
+     * counted along the way, rather than being rendered as a string first.
+     */
+    private static RestRequestBody toBatchBody(final List<Request<?>> requests, final boolean haltOnError) {
+        return new RestRequestBody() {
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                outputStream.write(("{\"haltOnError\":" + haltOnError + ",\"batchRequests\":[").getBytes(UTF_8));
+                boolean addComma = false;
+                for (Request<?> request : requests) {
+                    if (addComma) {
+                        outputStream.write(',');
+                    }
+                    request.writeTo(outputStream);
+                    addComma = true;
+                }
+                outputStream.write("]}".getBytes(UTF_8));
             }
-            builder.append(request.toJson());
-            addComma = true;
-        }
-        builder.append("]}");
-        return builder.toString();
+
+            @Override
+            public String toString() {
+                return RequestBodies.toString(this);
+            }
+        };
     }
 
-    private Void deserializeBatchResult(CountingJsonParser parser, List<Request> requests) throws IOException {
+    private Void deserializeBatchResult(CountingJsonParser parser, List<Request<?>> requests) throws IOException {
         boolean hasErrors = false;
         establishCurrentToken(parser);
         checkExpectedTokenThenNext(parser, JsonToken.START_OBJECT);
@@ -201,9 +296,9 @@ class BatchRestConnector implements RestConnector {
         return null;
     }
 
-    private static void deserializeResults(CountingJsonParser parser, List<Request> requests, boolean batchHasErrors) throws IOException {
+    private static void deserializeResults(CountingJsonParser parser, List<Request<?>> requests, boolean batchHasErrors) throws IOException {
         checkExpectedTokenThenNext(parser, JsonToken.START_ARRAY);
-        Iterator<Request> requestCursor = requests.iterator();
+        Iterator<Request<?>> requestCursor = requests.iterator();
         while (parser.getCurrentToken() == JsonToken.START_OBJECT) {
             if (!requestCursor.hasNext()) {
                 throw new JsonParseException("Too many batch results were returned", parser.getCurrentLocation());
@@ -217,7 +312,7 @@ class BatchRestConnector implements RestConnector {
         }
     }
 
-    private static void deserializeResult(CountingJsonParser parser, Request request, boolean batchHasErrors) throws IOException {
+    private static void deserializeResult(CountingJsonParser parser, Request<?> request, boolean batchHasErrors) throws IOException {
         checkExpectedTokenThenNext(parser, JsonToken.START_OBJECT);
         while (parser.getCurrentToken() != JsonToken.END_OBJECT) {
             parser.nextValue();
@@ -231,11 +326,34 @@ class BatchRestConnector implements RestConnector {
         checkExpectedTokenThenNext(parser, JsonToken.END_OBJECT);
     }
 
+    /**
+     * A parser over a buffer of tokens which reports the name of the field that an object or array is the value of
+     * while positioned at its start, as a parser over the original text does. The parser of a {@link TokenBuffer}
+     * reports <code>null</code> there instead, which trips up deserializers that look at the name after {@link
+     * JsonParser#nextValue()}, such as the one for query results.
+     */
+    static final class BufferedResultParser extends JsonParserDelegate {
+        BufferedResultParser(JsonParser delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public String getCurrentName() throws IOException {
+            JsonToken token = getCurrentToken();
+            if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+                JsonStreamContext parentContext = getParsingContext().getParent();
+                return (parentContext != null) ? parentContext.getCurrentName() : null;
+            } else {
+                return super.getCurrentName();
+            }
+        }
+    }
+
     private static class Request<R> implements CompletionHandler<Void, Long> {
 
         private final String method;
         private final URI uri;
-        private final String jsonBody;
+        private final RestRequestBody body;
         private final RestResponseHandler<R> responseHandler;
 
         private R result;
@@ -244,27 +362,43 @@ class BatchRestConnector implements RestConnector {
         private long bytesReceived;
         private JsonParser deferredResultParser;
 
-        Request(String method, URI uri, String jsonBody, RestResponseHandler<R> responseHandler) {
+        Request(String method, URI uri, RestRequestBody body, RestResponseHandler<R> responseHandler) {
             this.method = method;
             this.uri = uri;
-            this.jsonBody = jsonBody;
+            this.body = body;
             this.responseHandler = responseHandler;
             this.result = null;
             this.deferredResultParser = null;
         }
 
-        final String toJson() {
-            bytesSent = (jsonBody != null) ? jsonBody.length() : 0;
-            return String.format("{\"url\":\"%s\",\"method\":\"%s\",\"richInput\": %s}", uri.toString(), method, jsonBody);
+        final void writeTo(OutputStream outputStream) throws IOException {
+            String url = new String(JsonStringEncoder.getInstance().quoteAsString(uri.toString()));
+            outputStream.write(String.format("{\"url\":\"%s\",\"method\":\"%s\",\"richInput\": ", url, method).getBytes(UTF_8));
+            if (body != null) {
+                CountingOutputStream countingStream = new CountingOutputStream(outputStream);
+                body.writeTo(countingStream);
+                bytesSent = countingStream.getByteCount();
+            } else {
+                outputStream.write("null".getBytes(UTF_8));
+                bytesSent = 0;
+            }
+            outputStream.write('}');
         }
 
+        /**
+         * Deserializes the result of the request, or saves it for later when it might be an error. A result is only
+         * saved when the batch has errors and the status of the request is either a failure or isn't known yet
+         * because it follows the result. The saved copy is a buffer of tokens, which is much cheaper to build and to
+         * replay than a tree.
+         */
         final void deserializeAndSaveResult(CountingJsonParser parser, boolean batchHasErrors) throws IOException {
             JsonLocation startLocation = parser.getCurrentLocation();
-            if (batchHasErrors) {
-                // Save for later inspection in case this entry has an error. (This is less efficient so we try to avoid).
-                deferredResultParser = parser.getCodec().treeAsTokens(parser.readValueAsTree());
+            if (batchHasErrors && (status == 0 || status >= 300)) {
+                TokenBuffer buffer = new TokenBuffer(parser.getCodec());
+                buffer.copyCurrentStructure(parser);
+                parser.clearCurrentToken();
+                deferredResultParser = new BufferedResultParser(buffer.asParser(parser.getCodec()));
             } else {
-                // With no errors to worry about we can do things simpler and faster!
                 result = responseHandler.deserialize(parser);
             }
             bytesReceived = CountingJsonParser.differenceBetween(startLocation, parser.getCurrentLocation());
@@ -316,8 +450,90 @@ class BatchRestConnector implements RestConnector {
         }
     }
 
-    private static class DeleteRequest extends Request<Void> {
-        DeleteRequest(URI uri, RestResponseHandler<Void> responseHandler) {
+    /**
+     * A single batch request to the server which covers a chunk of the pending requests.
+     */
+    private final class Batch implements Runnable {
+        private final List<Request<?>> batchRequests;
+        private final boolean haltOnError;
+        private final AtomicBoolean finished;
+
+        Batch(List<Request<?>> batchRequests, boolean haltOnError) {
+            this.batchRequests = batchRequests;
+            this.haltOnError = haltOnError;
+            this.finished = new AtomicBoolean(false);
+        }
+
+        @Override
+        public void run() {
+            try {
+                post();
+            } catch (RuntimeException e) {
+                failed(new RecordResponseException("Entire batch failed", e), 0L);
+            }
+        }
+
+        private void post() {
+            final int batchSize = batchRequests.size();
+            RestRequestBody body = toBatchBody(batchRequests, haltOnError);
+
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Posting batch of %d requests", batchSize));
+            }
+
+            innerConnector.post(URI.create("/connect/batch"), body, new RestResponseHandler<Void>() {
+                @Override
+                public Void deserialize(CountingJsonParser parser) throws IOException {
+                    return deserializeBatchResult(parser, batchRequests);
+                }
+
+                @Override
+                public void completed(Void ignored, Statistics statistics) {
+                    Batch.this.completed(statistics.getElapsedNanos() / batchSize);
+                }
+
+                @Override
+                public void failed(Throwable exception, Statistics statistics) {
+                    Batch.this.failed(new RecordResponseException("Entire batch failed", exception), statistics.getElapsedNanos() / batchSize);
+                }
+            });
+        }
+
+        private void completed(long elapsedNanosPerRequest) {
+            if (finished.compareAndSet(false, true)) {
+                try {
+                    for (Request<?> request : batchRequests) {
+                        try {
+                            request.handleStatus();
+                            request.completed(null, elapsedNanosPerRequest);
+                            numberOfSuccesses.incrementAndGet();
+                        } catch (Exception e) {
+                            numberOfFailures.incrementAndGet();
+                            request.failed(e, elapsedNanosPerRequest);
+                        }
+                    }
+                } finally {
+                    batchFinished();
+                }
+            }
+        }
+
+        private void failed(Throwable exception, long elapsedNanosPerRequest) {
+            if (finished.compareAndSet(false, true)) {
+                try {
+                    for (Request<?> request : batchRequests) {
+                        numberOfFailures.incrementAndGet();
+                        request.failed(exception, elapsedNanosPerRequest);
+                    }
+                } finally {
+                    batchFinished();
+                }
+            }
+        }
+    }
+
+    private static class DeleteRequest<R> extends Request<R> {
+        DeleteRequest(URI uri, RestResponseHandler<R> responseHandler) {
             super("Delete", uri, null, responseHandler);
         }
     }
@@ -328,15 +544,15 @@ class BatchRestConnector implements RestConnector {
         }
     }
 
-    private static class PatchRequest extends Request<Void> {
-        PatchRequest(URI uri, String jsonBody, RestResponseHandler<Void> responseHandler) {
-            super("Patch", uri, jsonBody, responseHandler);
+    private static class PatchRequest<R> extends Request<R> {
+        PatchRequest(URI uri, RestRequestBody body, RestResponseHandler<R> responseHandler) {
+            super("Patch", uri, body, responseHandler);
         }
     }
 
     private static class PostRequest<R> extends Request<R> {
-        PostRequest(URI uri, String jsonBody, RestResponseHandler<R> responseHandler) {
-            super("Post", uri, jsonBody, responseHandler);
+        PostRequest(URI uri, RestRequestBody body, RestResponseHandler<R> responseHandler) {
+            super("Post", uri, body, responseHandler);
         }
     }
 }
@@ -0,0 +1,242 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.rest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.force.spa.ApiVersion;
+import com.force.spa.metadata.ObjectMetadata;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+/**
+ * A cache of object descriptions (see {@link com.force.spa.RecordAccessor#describeObject(String)}) which lets the
+ * descriptions be revalidated with the server rather than fetched again. A description which is cached is requested
+ * with an If-Modified-Since header and the server answers with a 304 (Not Modified) status and no body unless the
+ * object has changed.
+ * <p/>
+ * Descriptions are cached per instance, user, API version and object, because what a user can see of an object
+ * depends on their profile. They are kept in memory and, optionally, in files in a directory so that they survive
+ * restarts. Problems with the files are logged and otherwise ignored because the server always has the descriptions.
+ * <p/>
+ * Building SOQL for metadata-aware objects needs descriptions far more often than applications ask for them, so a
+ * description which has been fetched or revalidated recently enough is used for that without asking the server (see
+ * {@link RestRecordAccessor#getVisibleObjectMetadata}).
+ * <p/>
+ * Cached descriptions are handed to every caller that asks for them, so callers must treat them as read only. A cache
+ * can be shared by many record accessors (see {@link RestRecordAccessorFactory}) and is thread-safe.
+ */
+public final class DescribeCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DescribeCache.class);
+
+    public static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+    public static final long DEFAULT_REVALIDATION_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final ObjectMapper FILE_MAPPER = new ObjectMapper();
+
+    // The characters allowed in a Salesforce API name, and so the only ones of an object name used in a file name
+    private static final CharMatcher API_NAME_CHARS =
+        CharMatcher.inRange('a', 'z').or(CharMatcher.inRange('A', 'Z')).or(CharMatcher.inRange('0', '9')).or(CharMatcher.is('_'));
+
+    private final Cache<String, Entry> entries;
+    private final File directory;
+    private final long revalidationIntervalMillis;
+
+    /**
+     * Creates a cache which only keeps descriptions in memory.
+     */
+    public DescribeCache() {
+        this(DEFAULT_MAXIMUM_SIZE, null);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maximumSize the maximum number of descriptions to keep in memory
+     * @param directory   the directory in which to keep descriptions across restarts, or <code>null</code> to only keep
+     *                    them in memory. The directory is created if it doesn't exist.
+     */
+    public DescribeCache(long maximumSize, File directory) {
+        this(maximumSize, directory, DEFAULT_REVALIDATION_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maximumSize the maximum number of descriptions to keep in memory
+     * @param directory            the directory in which to keep descriptions across restarts, or <code>null</code>
+     *                             to only keep them in memory. The directory is created if it doesn't exist.
+     * @param revalidationInterval how long a description may be used to build SOQL before it is revalidated. Zero
+     *                             revalidates it every time.
+     * @param unit                 the unit of the interval
+     */
+    public DescribeCache(long maximumSize, File directory, long revalidationInterval, TimeUnit unit) {
+        Validate.isTrue(maximumSize >= 0, "maximumSize must not be negative");
+        Validate.isTrue(directory == null || directory.isDirectory() || directory.mkdirs(), "directory must be a directory");
+        Validate.isTrue(revalidationInterval >= 0, "revalidationInterval must not be negative");
+        Validate.notNull(unit, "unit must not be null");
+
+        this.entries = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+        this.directory = directory;
+        this.revalidationIntervalMillis = unit.toMillis(revalidationInterval);
+    }
+
+    /**
+     * Removes all descriptions from the cache, including any in files.
+     */
+    public void invalidateAll() {
+        entries.invalidateAll();
+        if (directory != null) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (file.getName().endsWith(".json") && !file.delete()) {
+                        LOG.warn("Failed to delete cached description " + file);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the approximate number of descriptions in memory.
+     */
+    public long size() {
+        return entries.size();
+    }
+
+    Entry get(URI instanceUrl, String userId, ApiVersion apiVersion, String name) {
+        String key = getKey(instanceUrl, userId, apiVersion, name);
+        Entry entry = entries.getIfPresent(key);
+        if (entry == null && directory != null) {
+            entry = load(getFile(key, name));
+            if (entry != null) {
+                entries.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Returns a description if it was fetched or revalidated within the revalidation interval.
+     */
+    ObjectMetadata getFresh(URI instanceUrl, String userId, ApiVersion apiVersion, String name) {
+        Entry entry = entries.getIfPresent(getKey(instanceUrl, userId, apiVersion, name));
+        if (entry != null && System.currentTimeMillis() - entry.getValidated() < revalidationIntervalMillis) {
+            return entry.getMetadata();
+        } else {
+            return null;
+        }
+    }
+
+    void put(URI instanceUrl, String userId, ApiVersion apiVersion, String name, ObjectMetadata metadata, Date lastModified) {
+        String key = getKey(instanceUrl, userId, apiVersion, name);
+        Entry entry = new Entry(metadata, lastModified, System.currentTimeMillis());
+        entries.put(key, entry);
+        if (directory != null) {
+            store(getFile(key, name), entry);
+        }
+    }
+
+    private static String getKey(URI instanceUrl, String userId, ApiVersion apiVersion, String name) {
+        return instanceUrl + "|" + userId + "|" + apiVersion + "|" + name;
+    }
+
+    /**
+     * Returns the file for a description. The key is hashed because it contains characters that aren't allowed in file
+     * names, and the object name is kept in front to help whoever looks in the directory. Only the characters of the
+     * name that can be in an API name are kept, so a strange name can't lead outside the directory.
+     */
+    private File getFile(String key, String name) {
+        return new File(directory, API_NAME_CHARS.retainFrom(name) + "-" + Hashing.sha1().hashString(key, Charsets.UTF_8) + ".json");
+    }
+
+    private static Entry load(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            JsonNode node = FILE_MAPPER.readTree(file);
+            return new Entry(
+                FILE_MAPPER.treeToValue(node.get("metadata"), ObjectMetadata.class), new Date(node.get("lastModified").asLong()), 0);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to read cached description " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes a description to its file. The description is written to a temporary file first and then moved into
+     * place so that other processes sharing the directory never see half a file.
+     */
+    private static void store(File file, Entry entry) {
+        ObjectNode node = FILE_MAPPER.createObjectNode();
+        node.put("lastModified", entry.getLastModified().getTime());
+        node.putPOJO("metadata", entry.getMetadata());
+
+        File temporaryFile = null;
+        try {
+            temporaryFile = File.createTempFile("describe", ".tmp", file.getParentFile());
+            FILE_MAPPER.writeValue(temporaryFile, node);
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to write cached description " + file, e);
+            if (temporaryFile != null && temporaryFile.exists() && !temporaryFile.delete()) {
+                LOG.warn("Failed to delete " + temporaryFile);
+            }
+        }
+    }
+
+    /**
+     * A cached description along with the time, according to the server, when it was current and the local time when
+     * it was last fetched or revalidated. A description read from a file has never been validated by this process.
+     */
+    static final class Entry {
+        private final ObjectMetadata metadata;
+        private final Date lastModified;
+        private volatile long validated;
+
+        Entry(ObjectMetadata metadata, Date lastModified, long validated) {
+            this.metadata = metadata;
+            this.lastModified = new Date(lastModified.getTime());
+            this.validated = validated;
+        }
+
+        long getValidated() {
+            return validated;
+        }
+
+        void markValidated() {
+            validated = System.currentTimeMillis();
+        }
+
+        ObjectMetadata getMetadata() {
+            return metadata;
+        }
+
+        Date getLastModified() {
+            return new Date(lastModified.getTime());
+        }
+    }
+}
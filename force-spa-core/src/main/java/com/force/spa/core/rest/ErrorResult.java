@@ -27,6 +27,11 @@ class ErrorResult {
         this.errorCode = errorCode;
     }
 
+    // The sObject Collections resources report the error code as "statusCode".
+    public void setStatusCode(String statusCode) {
+        this.errorCode = statusCode;
+    }
+
     public List<String> getFields() {
         return fields;
     }
@@ -0,0 +1,126 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Implementations of {@link RestRequestBody} for the common cases.
+ */
+final class RequestBodies {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private RequestBodies() {
+        throw new UnsupportedOperationException("Can not be instantiated");
+    }
+
+    /**
+     * Returns a body which serializes a value with a JSON generator writing straight to the output stream.
+     *
+     * @param factory the factory for the generator
+     * @param writer  the writer that serializes the value
+     * @param value   the value
+     * @return the body
+     */
+    static RestRequestBody forValue(final JsonFactory factory, final ObjectWriter writer, final Object value) {
+        return new RestRequestBody() {
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                JsonGenerator generator = factory.createGenerator(outputStream, JsonEncoding.UTF8);
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                writer.writeValue(generator, value);
+                generator.close();
+            }
+
+            @Override
+            public String toString() {
+                return RequestBodies.toString(this);
+            }
+        };
+    }
+
+    /**
+     * Returns a body whose content is written to a JSON generator writing straight to the output stream.
+     *
+     * @param factory the factory for the generator
+     * @param content the content
+     * @return the body
+     */
+    static RestRequestBody forContent(final JsonFactory factory, final JsonContent content) {
+        return new RestRequestBody() {
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                JsonGenerator generator = factory.createGenerator(outputStream, JsonEncoding.UTF8);
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                content.writeTo(generator);
+                generator.close();
+            }
+
+            @Override
+            public String toString() {
+                return RequestBodies.toString(this);
+            }
+        };
+    }
+
+    /**
+     * Returns a body for JSON that is already at hand as a string.
+     *
+     * @param json the JSON
+     * @return the body
+     */
+    static RestRequestBody forString(final String json) {
+        return new RestRequestBody() {
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                outputStream.write(json.getBytes(UTF_8));
+            }
+
+            @Override
+            public String toString() {
+                return json;
+            }
+        };
+    }
+
+    /**
+     * Renders a body as a string, which is only intended for logging.
+     *
+     * @param body the body
+     * @return the JSON of the body
+     */
+    static String toString(RestRequestBody body) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(256);
+        try {
+            body.writeTo(outputStream);
+        } catch (IOException | RuntimeException e) {
+            return "<unavailable: " + e + ">";
+        }
+        return new String(outputStream.toByteArray(), UTF_8);
+    }
+
+    /**
+     * JSON content which is written piece by piece rather than serialized from a single value.
+     */
+    interface JsonContent {
+        /**
+         * Writes the content.
+         *
+         * @param generator the generator to write to
+         * @throws IOException if the content could not be written
+         */
+        void writeTo(JsonGenerator generator) throws IOException;
+    }
+}
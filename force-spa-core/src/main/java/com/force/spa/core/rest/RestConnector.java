@@ -33,7 +33,7 @@ public interface RestConnector {
      *                        just have a completion handler but subtleties of the server batching response layout
      *                        require some additional handling before completion.
      */
-    void delete(URI uri, RestResponseHandler<Void> responseHandler);
+    <T> void delete(URI uri, RestResponseHandler<T> responseHandler);
 
     /**
      * Issues a GET request to a Salesforce REST URI.
@@ -50,6 +50,20 @@ public interface RestConnector {
      */
     <T> void get(URI uri, RestResponseHandler<T> responseHandler);
 
+    /**
+     * Issues a GET request to a Salesforce REST URI of an instance other than the current one, without authorization.
+     * This is only meant for the few resources which don't need authorization, such as the list of supported API
+     * versions ("/services/data"), and allows them to be requested when there is no current authorization, such as in
+     * the background or when a process starts.
+     * <p/>
+     * The request is always synchronous; the response handler has been invoked by the time this method returns.
+     *
+     * @param instanceUrl     the URI of the instance
+     * @param uri             the absolute path, starting with "/services"
+     * @param responseHandler a handler that is invoked to help at key points during response processing
+     */
+    <T> void getWithoutAuthorization(URI instanceUrl, URI uri, RestResponseHandler<T> responseHandler);
+
     /**
      * Issues a PATCH request to a Salesforce REST URI.
      *
@@ -59,13 +73,13 @@ public interface RestConnector {
      *                        "/services/data/vX.X" or the path can be a relative path (the portion after
      *                        "/services/data/vX.X"). If the path is relative then the "/services/data/vX.X" prefix is
      *                        automatically prepended.
-     * @param jsonBody        the JSON encoded body for the update request. See Salesforce REST documentation for more
-     *                        details on the format.
+     * @param body            the JSON encoded body for the update request, which the connector writes when it is ready
+     *                        to send it. See Salesforce REST documentation for more details on the format.
      * @param responseHandler a handler that is invoked to help at key points during response processing. Ideally we'd
      *                        just have a completion handler but subtleties of the server batching response layout
      *                        require some additional handling before completion.
      */
-    void patch(URI uri, String jsonBody, RestResponseHandler<Void> responseHandler);
+    <T> void patch(URI uri, RestRequestBody body, RestResponseHandler<T> responseHandler);
 
     /**
      * Issues a POST request to a Salesforce REST URI.
@@ -76,13 +90,13 @@ public interface RestConnector {
      *                        "/services/data/vX.X" or the path can be a relative path (the portion after
      *                        "/services/data/vX.X"). If the path is relative then the "/services/data/vX.X" prefix is
      *                        automatically prepended.
-     * @param jsonBody        the JSON encoded body for the creation request. See Salesforce REST documentation for more
-     *                        details on the format.
+     * @param body            the JSON encoded body for the creation request, which the connector writes when it is
+     *                        ready to send it. See Salesforce REST documentation for more details on the format.
      * @param responseHandler a handler that is invoked to help at key points during response processing. Ideally we'd
      *                        just have a completion handler but subtleties of the server batching response layout
      *                        require some additional handling before completion.
      */
-    <T> void post(URI uri, String jsonBody, RestResponseHandler<T> responseHandler);
+    <T> void post(URI uri, RestRequestBody body, RestResponseHandler<T> responseHandler);
 
     /**
      * Indicates whether this connector executes synchronously. Synchronous execution means that the request is
@@ -95,9 +109,24 @@ public interface RestConnector {
     /**
      * Waits for all outstanding requests to complete. For synchronous connectors this method will return immediately.
      * For asynchronous or batched connectors this method may need to wait.
+     * <p/>
+     * Connectors may be shared between threads so outstanding requests are those issued by the calling thread, along
+     * with any follow-on requests issued by the response handlers of those requests.
      */
     void join();
 
+    /**
+     * Wraps a task which issues requests through this connector so that they go to the instance, with the API version
+     * and authorization, that are current on the calling thread, whichever thread the task ends up running on. This is
+     * what lets requests be handed to another thread, such as one of an {@link java.util.concurrent.Executor}, when the
+     * authorization connector is bound to the calling thread (as those based on the current inbound request are).
+     *
+     * @param task the task that issues the requests
+     * @return a task which runs the given one with the instance URL, API version and authorization of the calling
+     *         thread
+     */
+    Runnable bindToCurrentAuthorization(Runnable task);
+
     /**
      * Returns the URI for the currently referenced Salesforce instance.
      * <p/>
@@ -13,6 +13,7 @@ import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.force.spa.CreateRecordOperation;
 import com.force.spa.ObjectNotFoundException;
+import com.force.spa.OperationType;
 import com.force.spa.RecordResponseException;
 import com.force.spa.core.utils.CountingJsonParser;
 
@@ -23,7 +24,7 @@ final class RestCreateRecordOperation<T> extends AbstractRestRecordOperation<T,
 
     private final T record;
 
-    private String jsonBody;
+    private RestRequestBody body;
 
     @SuppressWarnings("unchecked")
     public RestCreateRecordOperation(RestRecordAccessor accessor, T record) {
@@ -32,6 +33,11 @@ final class RestCreateRecordOperation<T> extends AbstractRestRecordOperation<T,
         this.record = record;
     }
 
+    @Override
+    public OperationType getOperationType() {
+        return OperationType.CREATE;
+    }
+
     @Override
     public T getRecord() {
         return record;
@@ -40,10 +46,11 @@ final class RestCreateRecordOperation<T> extends AbstractRestRecordOperation<T,
     @Override
     protected void start(RestConnector connector) {
 
-        jsonBody = serializeRecord(record);
+        body = RequestBodies.forValue(
+            getMappingContext().getObjectReader().getFactory(), getMappingContext().getObjectWriterForCreate(), record);
 
         URI uri = URI.create("/sobjects/" + getObjectDescriptor().getName());
-        connector.post(uri, jsonBody, new ResponseHandler() {
+        connector.post(uri, body, new ResponseHandler() {
             @Override
             public String deserialize(CountingJsonParser parser) throws IOException {
                 return deserializeId(parser);
@@ -60,14 +67,6 @@ final class RestCreateRecordOperation<T> extends AbstractRestRecordOperation<T,
         });
     }
 
-    private String serializeRecord(Object record) {
-        try {
-            return getMappingContext().getObjectWriterForCreate().writeValueAsString(record);
-        } catch (IOException e) {
-            throw new RecordResponseException("Failed to serialize record", e);
-        }
-    }
-
     private String deserializeId(JsonParser parser) throws IOException {
         JsonNode node = parser.readValueAsTree();
         if (node.has("success") && !node.get("success").asBoolean()) {
@@ -100,7 +99,7 @@ final class RestCreateRecordOperation<T> extends AbstractRestRecordOperation<T,
     public String toString() {
         String string = "Create " + getObjectDescriptor().getName();
         if (getLogger().isTraceEnabled()) {
-            string += ": " + jsonBody;
+            string += ": " + body;
         }
         return string;
     }
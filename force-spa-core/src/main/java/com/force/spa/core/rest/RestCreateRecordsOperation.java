@@ -0,0 +1,60 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.rest;
+
+import java.net.URI;
+import java.util.List;
+
+import com.force.spa.CreateRecordsOperation;
+import com.force.spa.OperationType;
+
+/**
+ * @param <T> the type of record the operation is working with
+ */
+final class RestCreateRecordsOperation<T> extends AbstractRestRecordsOperation<T> implements CreateRecordsOperation<T> {
+
+    private final List<T> records;
+
+    private RestRequestBody body;
+
+    @SuppressWarnings("unchecked")
+    public RestCreateRecordsOperation(RestRecordAccessor accessor, List<T> records) {
+        super(accessor, (Class<T>) records.get(0).getClass());
+
+        this.records = records;
+    }
+
+    @Override
+    public OperationType getOperationType() {
+        return OperationType.CREATE_RECORDS;
+    }
+
+    @Override
+    public List<T> getRecords() {
+        return records;
+    }
+
+    @Override
+    protected void start(RestConnector connector) {
+
+        if (!checkCollectionsSupported(connector)) {
+            return;
+        }
+
+        body = serializeRecords(getMappingContext().getObjectWriterForCreate(), records, null);
+
+        connector.post(URI.create(COLLECTIONS_PATH), body, new RecordsResponseHandler());
+    }
+
+    @Override
+    public String toString() {
+        String string = "Create " + records.size() + " " + getObjectDescriptor().getName() + " records";
+        if (getLogger().isTraceEnabled()) {
+            string += ": " + body;
+        }
+        return string;
+    }
+}
@@ -8,6 +8,7 @@ package com.force.spa.core.rest;
 import java.net.URI;
 
 import com.force.spa.DeleteRecordOperation;
+import com.force.spa.OperationType;
 
 class RestDeleteRecordOperation<T> extends AbstractRestRecordOperation<T, Void> implements DeleteRecordOperation<T> {
 
@@ -21,6 +22,11 @@ class RestDeleteRecordOperation<T> extends AbstractRestRecordOperation<T, Void>
         this.recordClass = recordClass;
     }
 
+    @Override
+    public OperationType getOperationType() {
+        return OperationType.DELETE;
+    }
+
     @Override
     public String getId() {
         return id;
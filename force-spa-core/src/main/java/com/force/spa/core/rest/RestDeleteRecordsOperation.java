@@ -0,0 +1,76 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.rest;
+
+import java.net.URI;
+import java.util.List;
+
+import com.force.spa.DeleteRecordsOperation;
+import com.force.spa.OperationType;
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+
+/**
+ * @param <T> the type of record the operation is working with
+ */
+final class RestDeleteRecordsOperation<T> extends AbstractRestRecordsOperation<T> implements DeleteRecordsOperation<T> {
+
+    private final List<String> ids;
+    private final Class<T> recordClass;
+
+    public RestDeleteRecordsOperation(RestRecordAccessor accessor, List<String> ids, Class<T> recordClass) {
+        super(accessor, recordClass);
+
+        this.ids = ids;
+        this.recordClass = recordClass;
+    }
+
+    @Override
+    public OperationType getOperationType() {
+        return OperationType.DELETE_RECORDS;
+    }
+
+    @Override
+    public List<String> getIds() {
+        return ids;
+    }
+
+    @Override
+    public Class<T> getRecordClass() {
+        return recordClass;
+    }
+
+    @Override
+    protected void start(RestConnector connector) {
+
+        if (!checkCollectionsSupported(connector)) {
+            return;
+        }
+
+        URI uri = URI.create(COLLECTIONS_PATH + "?ids=" + escapeIds(ids) + "&allOrNone=false");
+        connector.delete(uri, new RecordsResponseHandler());
+    }
+
+    /**
+     * Escapes each id for use in the query string and separates them with commas.
+     */
+    private static String escapeIds(List<String> ids) {
+        Escaper escaper = UrlEscapers.urlFormParameterEscaper();
+        StringBuilder builder = new StringBuilder();
+        for (String id : ids) {
+            if (builder.length() > 0) {
+                builder.append(',');
+            }
+            builder.append(escaper.escape(id));
+        }
+        return builder.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "Delete " + ids.size() + " " + getObjectDescriptor().getName() + " records";
+    }
+}
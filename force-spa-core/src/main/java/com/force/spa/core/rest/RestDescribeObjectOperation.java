@@ -7,10 +7,14 @@ package com.force.spa.core.rest;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.Date;
 
 import com.fasterxml.jackson.core.JsonParser;
+import com.force.spa.ApiVersion;
 import com.force.spa.DescribeObjectOperation;
 import com.force.spa.ObjectNotFoundException;
+import com.force.spa.OperationType;
+import com.force.spa.Statistics;
 import com.force.spa.core.utils.CountingJsonParser;
 import com.force.spa.metadata.ObjectMetadata;
 
@@ -26,15 +30,49 @@ class RestDescribeObjectOperation extends AbstractRestRecordOperation<Void, Obje
         this.name = name;
     }
 
+    @Override
+    public OperationType getOperationType() {
+        return OperationType.DESCRIBE;
+    }
+
+    @Override
+    protected String getObjectName() {
+        return name;
+    }
+
     @Override
     public String getName() {
         return name;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * A description which is already in the cache (see {@link DescribeCache}) is revalidated with a conditional request
+     * and used again if the server says it hasn't been modified.
+     */
     @Override
     protected void start(RestConnector connector) {
+        final DescribeCache describeCache = getRecordAccessor().getDescribeCache();
+        final URI instanceUrl = connector.getInstanceUrl();
+        final ApiVersion apiVersion = connector.getApiVersion();
+        final String userId = getRecordAccessor().getUserId();
+        final DescribeCache.Entry cachedEntry = describeCache.get(instanceUrl, userId, apiVersion, getName());
 
         connector.get(URI.create("/sobjects/" + getName() + "/describe"), new ResponseHandler() {
+            private Date responseDate;
+            private boolean notModified;
+
+            @Override
+            public Date getIfModifiedSince() {
+                return (cachedEntry != null) ? cachedEntry.getLastModified() : null;
+            }
+
+            @Override
+            public void handleResponseDate(Date date) {
+                responseDate = date;
+            }
+
             @Override
             public ObjectMetadata deserialize(CountingJsonParser parser) throws IOException {
                 return deserializeObjectMetadata(parser);
@@ -42,12 +80,26 @@ class RestDescribeObjectOperation extends AbstractRestRecordOperation<Void, Obje
 
             @Override
             public void handleStatus(int status, JsonParser parser) {
-                if (status == 404) {
+                if (status == 304 && cachedEntry != null) {
+                    notModified = true;
+                } else if (status == 404) {
                     throw new ObjectNotFoundException(getExceptionMessage(status, parser));
                 } else {
                     super.handleStatus(status, parser);
                 }
             }
+
+            @Override
+            public void completed(ObjectMetadata result, Statistics statistics) {
+                if (notModified) {
+                    cachedEntry.markValidated();
+                    objectMetadata = cachedEntry.getMetadata();
+                    result = objectMetadata;
+                } else if (result != null && responseDate != null) {
+                    describeCache.put(instanceUrl, userId, apiVersion, getName(), result, responseDate);
+                }
+                super.completed(result, statistics);
+            }
         });
     }
 
@@ -12,7 +12,9 @@ import java.net.URI;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.force.spa.GetRecordOperation;
+import com.force.spa.OperationType;
 import com.force.spa.RecordNotFoundException;
+import com.force.spa.core.ChangeTracker;
 import com.force.spa.core.SoqlBuilder;
 import com.force.spa.core.utils.CountingJsonParser;
 import com.google.common.net.UrlEscapers;
@@ -31,6 +33,11 @@ class RestGetRecordOperation<T> extends AbstractRestRecordOperation<T, T> implem
         this.recordClass = recordClass;
     }
 
+    @Override
+    public OperationType getOperationType() {
+        return OperationType.GET;
+    }
+
     @Override
     public String getId() {
         return id;
@@ -64,7 +71,13 @@ class RestGetRecordOperation<T> extends AbstractRestRecordOperation<T, T> implem
         if (queryResult.getRecords() == null || queryResult.getRecords().size() < 1) {
             throw new RecordNotFoundException(id);
         }
-        return queryResult.getRecords().get(0);
+
+        T record = queryResult.getRecords().get(0);
+        ChangeTracker changeTracker = getChangeTracker();
+        if (changeTracker != null) {
+            changeTracker.track(record);
+        }
+        return record;
     }
 
     @Override
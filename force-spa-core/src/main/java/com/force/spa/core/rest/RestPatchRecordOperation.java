@@ -5,18 +5,17 @@
  */
 package com.force.spa.core.rest;
 
-import java.io.IOException;
 import java.net.URI;
 
+import com.force.spa.OperationType;
 import com.force.spa.PatchRecordOperation;
-import com.force.spa.RecordResponseException;
 
 class RestPatchRecordOperation<T> extends AbstractRestRecordOperation<T, Void> implements PatchRecordOperation<T> {
 
     private final String id;
     private final T record;
 
-    private String jsonBody;
+    private RestRequestBody body;
 
     @SuppressWarnings("unchecked")
     public RestPatchRecordOperation(RestRecordAccessor accessor, String id, T record) {
@@ -26,6 +25,11 @@ class RestPatchRecordOperation<T> extends AbstractRestRecordOperation<T, Void> i
         this.record = record;
     }
 
+    @Override
+    public OperationType getOperationType() {
+        return OperationType.PATCH;
+    }
+
     @Override
     public String getId() {
         return id;
@@ -39,25 +43,18 @@ class RestPatchRecordOperation<T> extends AbstractRestRecordOperation<T, Void> i
     @Override
     protected void start(RestConnector connector) {
 
-        jsonBody = serializeRecord(record);
+        body = RequestBodies.forValue(
+            getMappingContext().getObjectReader().getFactory(), getMappingContext().getObjectWriterForPatch(), record);
 
         URI uri = URI.create("/sobjects/" + getObjectDescriptor().getName() + "/" + id);
-        connector.patch(uri, jsonBody, new ResponseHandler());
-    }
-
-    private String serializeRecord(Object record) {
-        try {
-            return getMappingContext().getObjectWriterForPatch().writeValueAsString(record);
-        } catch (IOException e) {
-            throw new RecordResponseException("Failed to serialize record", e);
-        }
+        connector.patch(uri, body, new ResponseHandler());
     }
 
     @Override
     public String toString() {
         String string = "Patch " + getObjectDescriptor().getName() + " with id " + id;
         if (getLogger().isTraceEnabled()) {
-            string += ": " + jsonBody;
+            string += ": " + body;
         }
         return string;
     }
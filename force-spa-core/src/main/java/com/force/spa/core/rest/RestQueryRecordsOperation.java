@@ -11,11 +11,16 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.commons.lang3.Validate;
+
+import com.force.spa.OperationType;
 import com.force.spa.QueryRecordsExOperation;
 import com.force.spa.QueryRecordsOperation;
 import com.force.spa.Statistics;
-import com.force.spa.TooManyQueryRowsException;
+import com.force.spa.core.ChangeTracker;
 import com.force.spa.core.SoqlBuilder;
 import com.force.spa.core.utils.CountingJsonParser;
 import com.google.common.net.UrlEscapers;
@@ -29,6 +34,7 @@ final class RestQueryRecordsOperation<T, R> extends AbstractRestRecordOperation<
     private final Class<R> resultClass;
     private int startPosition;
     private int maxResults;
+    private long cacheTimeToLiveNanos;
 
     private String soql;
 
@@ -42,6 +48,11 @@ final class RestQueryRecordsOperation<T, R> extends AbstractRestRecordOperation<
         this.maxResults = 0;
     }
 
+    @Override
+    public OperationType getOperationType() {
+        return OperationType.QUERY;
+    }
+
     @Override
     public String getSoqlTemplate() {
         return soqlTemplate;
@@ -78,56 +89,75 @@ final class RestQueryRecordsOperation<T, R> extends AbstractRestRecordOperation<
     }
 
     @Override
-    protected void start(RestConnector connector) {
+    public String getSoql() {
+        return buildSoql();
+    }
 
-        soql = new SoqlBuilder(getRecordAccessor())
-            .object(getObjectDescriptor())
-            .template(soqlTemplate)
-            .offset(startPosition)
-            .limit(maxResults)
-            .build();
+    @Override
+    public void setCacheTimeToLive(long timeToLive, TimeUnit unit) {
+        Validate.isTrue(timeToLive >= 0, "timeToLive must not be negative");
 
-        Statistics.Builder statisticsBuilder = new Statistics.Builder();
-        URI queryUri = URI.create("/query?q=" + UrlEscapers.urlFormParameterEscaper().escape(soql));
-        accumulateRecords(queryUri, connector, new ArrayList<R>(INITIAL_ARRAY_ALLOCATION_SIZE), statisticsBuilder);
+        this.cacheTimeToLiveNanos = unit.toNanos(timeToLive);
     }
 
-    private void accumulateRecords(URI uri, final RestConnector connector, final List<R> records, final Statistics.Builder statisticsBuilder) {
+    @Override
+    public long getCacheTimeToLive(TimeUnit unit) {
+        return unit.convert(cacheTimeToLiveNanos, TimeUnit.NANOSECONDS);
+    }
 
-        connector.get(uri, new RestResponseHandler<QueryResult>() {
-            @Override
-            public QueryResult deserialize(CountingJsonParser parser) throws IOException {
-                return QueryResult.deserialize(parser, resultClass);
-            }
+    @Override
+    protected void start(RestConnector connector) {
+        soql = buildSoql();
 
-            @Override
-            public void completed(QueryResult queryResult, Statistics statistics) {
+        List<R> records = new ArrayList<>(INITIAL_ARRAY_ALLOCATION_SIZE);
+        Statistics.Builder statisticsBuilder = new Statistics.Builder();
 
-                addStatisticsTo(statisticsBuilder, statistics);
-                addQueryResultTo(statisticsBuilder, queryResult);
+        // Pages are fetched in a loop rather than from inside the completion of the previous page so that the stack
+        // doesn't grow with the number of pages.
+        URI uri = buildQueryUri();
+        while (uri != null) {
+            PageResponseHandler responseHandler = new PageResponseHandler(connector, records, statisticsBuilder);
+            connector.get(uri, responseHandler);
+            uri = responseHandler.nextPageUri;
+        }
+    }
 
-                for (Object record : queryResult.getRecords()) {
-                    records.add(resultClass.cast(record));
-                }
+    /**
+     * Opens a cursor over the query results rather than executing the query as a whole.
+     *
+     * @param connector     a REST connector
+     * @param executor      an executor for fetching pages in the background, or <code>null</code> if there isn't one
+     * @param prefetchDepth the maximum number of pages to fetch ahead of the caller
+     * @return a cursor which retrieves the results a page at a time
+     */
+    RestRecordCursor<R> openCursor(RestConnector connector, Executor executor, int prefetchDepth) {
+        soql = buildSoql();
+
+        return new RestRecordCursor<>(connector, buildQueryUri(), resultClass, executor, prefetchDepth);
+    }
 
-                if (queryResult.getNextRecordsUrl() != null) {
-                    if (connector.isSynchronous()) {
-                        accumulateRecords(URI.create(queryResult.getNextRecordsUrl()), connector, records, statisticsBuilder);
-                    } else {
-                        throw new TooManyQueryRowsException(); // Can only get one set of results when asynchronous
-                    }
-                } else {
-                    RestQueryRecordsOperation.this.completed(records, statisticsBuilder.build());
-                }
-            }
+    private String buildSoql() {
+        return new SoqlBuilder(getRecordAccessor())
+            .object(getObjectDescriptor())
+            .template(soqlTemplate)
+            .offset(startPosition)
+            .limit(maxResults)
+            .build();
+    }
 
-            @Override
-            public void failed(Throwable exception, Statistics statistics) {
-                addStatisticsTo(statisticsBuilder, statistics);
+    /**
+     * Tracks the changes of records when change tracking is enabled. Results of an alternate form, such as
+     * <code>JsonNode</code>, aren't records and so aren't tracked.
+     */
+    private void trackChanges(List<R> records) {
+        ChangeTracker changeTracker = getChangeTracker();
+        if (changeTracker != null && getObjectDescriptor().getJavaType().getRawClass().isAssignableFrom(resultClass)) {
+            changeTracker.track(records);
+        }
+    }
 
-                RestQueryRecordsOperation.this.failed(exception, statisticsBuilder.build());
-            }
-        });
+    private URI buildQueryUri() {
+        return URI.create("/query?q=" + UrlEscapers.urlFormParameterEscaper().escape(soql));
     }
 
     private static void addQueryResultTo(Statistics.Builder accumulatedStatistics, QueryResult queryResult) {
@@ -138,9 +168,64 @@ final class RestQueryRecordsOperation<T, R> extends AbstractRestRecordOperation<
     private static void addStatisticsTo(Statistics.Builder accumulatedStatistics, Statistics statistics) {
         accumulatedStatistics.additionalBytesReceived(statistics.getBytesReceived());
         accumulatedStatistics.additionalBytesSent(statistics.getBytesSent());
+        accumulatedStatistics.additionalWireBytesReceived(statistics.getWireBytesReceived());
+        accumulatedStatistics.additionalWireBytesSent(statistics.getWireBytesSent());
         accumulatedStatistics.additionalElapsedNanos(statistics.getElapsedNanos());
     }
 
+    /**
+     * Handles one page of query results. When there are more pages the operation is left to be completed by a later
+     * page. With a synchronous connector the URI of the next page is left in {@link #nextPageUri} for the caller to
+     * fetch. With an asynchronous one the next page is requested right away, which the connector treats as a follow-on
+     * request (for example, a batch connector sends it in a later batch).
+     */
+    private final class PageResponseHandler extends OperationResponseHandler<QueryResult<R>> {
+        private final RestConnector connector;
+        private final List<R> records;
+        private final Statistics.Builder statisticsBuilder;
+        private URI nextPageUri;
+
+        PageResponseHandler(RestConnector connector, List<R> records, Statistics.Builder statisticsBuilder) {
+            this.connector = connector;
+            this.records = records;
+            this.statisticsBuilder = statisticsBuilder;
+        }
+
+        @Override
+        public QueryResult<R> deserialize(CountingJsonParser parser) throws IOException {
+            return QueryResult.deserialize(parser, resultClass);
+        }
+
+        @Override
+        public void completed(QueryResult<R> queryResult, Statistics statistics) {
+
+            addStatisticsTo(statisticsBuilder, statistics);
+            addQueryResultTo(statisticsBuilder, queryResult);
+
+            records.addAll(queryResult.getRecords());
+            trackChanges(queryResult.getRecords());
+
+            if (queryResult.getNextRecordsUrl() != null) {
+                if (connector.isSynchronous()) {
+                    nextPageUri = URI.create(queryResult.getNextRecordsUrl());
+                } else {
+                    connector.get(
+                        URI.create(queryResult.getNextRecordsUrl()),
+                        new PageResponseHandler(connector, records, statisticsBuilder));
+                }
+            } else {
+                RestQueryRecordsOperation.this.completed(records, statisticsBuilder.build());
+            }
+        }
+
+        @Override
+        public void failed(Throwable exception, Statistics statistics) {
+            addStatisticsTo(statisticsBuilder, statistics);
+
+            RestQueryRecordsOperation.this.failed(exception, statisticsBuilder.build());
+        }
+    }
+
     @Override
     public String toString() {
         String string = "Query " + getObjectDescriptor().getName();
@@ -5,23 +5,33 @@
  */
 package com.force.spa.core.rest;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.apache.commons.lang3.Validate;
 
 import com.force.spa.ApiVersion;
+import com.force.spa.AuthorizationConnector;
 import com.force.spa.CreateRecordOperation;
+import com.force.spa.CreateRecordsOperation;
 import com.force.spa.DeleteRecordOperation;
+import com.force.spa.DeleteRecordsOperation;
 import com.force.spa.DescribeObjectOperation;
 import com.force.spa.GetRecordOperation;
 import com.force.spa.PatchRecordOperation;
 import com.force.spa.QueryRecordsOperation;
 import com.force.spa.QueryRecordsExOperation;
 import com.force.spa.RecordAccessorConfig;
+import com.force.spa.RecordCursor;
 import com.force.spa.RecordOperation;
+import com.force.spa.RecordRequestException;
+import com.force.spa.Statistics;
 import com.force.spa.UpdateRecordOperation;
+import com.force.spa.UpdateRecordsOperation;
 import com.force.spa.core.AbstractRecordAccessor;
 import com.force.spa.core.MappingContext;
+import com.force.spa.metadata.ObjectMetadata;
 
 /**
  * An implementation of {@link com.force.spa.RecordAccessor} that is based on the JSON representations of the Salesforce
@@ -32,20 +42,94 @@ public final class RestRecordAccessor extends AbstractRecordAccessor {
     private static final ApiVersion MINIMUM_VERSION_FOR_BATCHING = new ApiVersion(29, 0);
 
     private final RestConnector connector;
+    private final Executor executor;
+    private final DescribeCache describeCache;
 
     public RestRecordAccessor(RecordAccessorConfig config, MappingContext mappingContext, RestConnector connector) {
+        this(config, mappingContext, connector, null);
+    }
+
+    /**
+     * Creates a record accessor which is able to use an {@link Executor} for background work, such as sending batch
+     * requests in parallel (see {@link RecordAccessorConfig#getMaxConcurrentBatches()}) or fetching query result pages
+     * ahead of the caller (see {@link RecordAccessorConfig#getQueryPrefetchDepth()}).
+     *
+     * @param config         the configuration
+     * @param mappingContext the mapping context
+     * @param connector      the connector used to talk to the server
+     * @param executor       the executor for background work, or <code>null</code> to do all work from the calling
+     *                       thread
+     */
+    public RestRecordAccessor(RecordAccessorConfig config, MappingContext mappingContext, RestConnector connector, Executor executor) {
+        this(config, mappingContext, connector, executor, new DescribeCache());
+    }
+
+    /**
+     * Creates a record accessor which keeps object descriptions in a cache that may be shared with other record
+     * accessors (see {@link DescribeCache}).
+     *
+     * @param config         the configuration
+     * @param mappingContext the mapping context
+     * @param connector      the connector used to talk to the server
+     * @param executor       the executor for background work, or <code>null</code> to do all work from the calling
+     *                       thread
+     * @param describeCache  the cache of object descriptions
+     */
+    public RestRecordAccessor(
+        RecordAccessorConfig config, MappingContext mappingContext, RestConnector connector, Executor executor, DescribeCache describeCache) {
+
         super(config, mappingContext);
+
+        Validate.notNull(describeCache, "describeCache must not be null");
+
         this.connector = connector;
+        this.executor = executor;
+        this.describeCache = describeCache;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Operations which have already been cancelled are skipped. When the operations are sent individually through an
+     * asynchronous connector this returns as soon as they have been started, so that the caller can wait on each of
+     * them with a deadline (see {@link RecordOperation#get(long, java.util.concurrent.TimeUnit)}) and cancel the ones
+     * that take too long. Otherwise this waits for all the operations to complete.
+     * <p/>
+     * Operations on multiple records already carry many records in a single request so they are always sent on their
+     * own rather than as part of a batch.
+     * <p/>
+     * An operation which fails to start is failed straight away, along with all the operations after it, which are
+     * never started. The operations started before it carry on as usual.
+     */
     @Override
     public void execute(List<RecordOperation<?>> operations) {
 
-        RestConnector connector = chooseBatchedOrUnbatchedConnector(operations);
+        List<RecordOperation<?>> liveOperations = new ArrayList<>(operations.size());
+        List<RecordOperation<?>> collectionOperations = new ArrayList<>();
         for (RecordOperation<?> operation : operations) {
-            AbstractRestRecordOperation.class.cast(operation).start(connector);
+            if (operation.isCancelled()) {
+                continue;
+            }
+            if (operation instanceof AbstractRestRecordsOperation) {
+                collectionOperations.add(operation);
+            } else {
+                liveOperations.add(operation);
+            }
+        }
+
+        RuntimeException startFailure = start(collectionOperations, this.connector, null);
+
+        RestConnector connector;
+        try {
+            connector = chooseBatchedOrUnbatchedConnector(liveOperations);
+        } catch (RuntimeException e) {
+            start(liveOperations, null, (startFailure != null) ? startFailure : e);
+            return;
+        }
+        start(liveOperations, connector, startFailure);
+        if (connector.isSynchronous() || connector instanceof BatchRestConnector) {
+            connector.join(); // Wait for all the operations to complete
         }
-        connector.join(); // Wait for all the operations to complete
     }
 
     @Override
@@ -65,6 +149,29 @@ public final class RestRecordAccessor extends AbstractRecordAccessor {
         return new RestDeleteRecordOperation<>(this, id, recordClass);
     }
 
+    @Override
+    public <T> CreateRecordsOperation<T> newCreateRecordsOperation(List<T> records) {
+
+        Validate.notEmpty(records, "records must not be empty");
+        Validate.noNullElements(records, "records must not contain null elements");
+        Validate.isTrue(records.size() <= AbstractRestRecordsOperation.MAX_RECORDS,
+            "records must not contain more than %d elements", AbstractRestRecordsOperation.MAX_RECORDS);
+
+        return new RestCreateRecordsOperation<>(this, records);
+    }
+
+    @Override
+    public <T> DeleteRecordsOperation<T> newDeleteRecordsOperation(List<String> ids, Class<T> recordClass) {
+
+        Validate.notEmpty(ids, "ids must not be empty");
+        Validate.noNullElements(ids, "ids must not contain null elements");
+        Validate.isTrue(ids.size() <= AbstractRestRecordsOperation.MAX_RECORDS,
+            "ids must not contain more than %d elements", AbstractRestRecordsOperation.MAX_RECORDS);
+        Validate.notNull(recordClass, "recordClass must not be null");
+
+        return new RestDeleteRecordsOperation<>(this, ids, recordClass);
+    }
+
     @Override
     public DescribeObjectOperation newDescribeObjectOperation(String name) {
 
@@ -119,13 +226,84 @@ public final class RestRecordAccessor extends AbstractRecordAccessor {
         return new RestUpdateRecordOperation<>(this, id, record);
     }
 
+    @Override
+    public <T> UpdateRecordsOperation<T> newUpdateRecordsOperation(List<T> records) {
+
+        Validate.notEmpty(records, "records must not be empty");
+        Validate.noNullElements(records, "records must not contain null elements");
+        Validate.isTrue(records.size() <= AbstractRestRecordsOperation.MAX_RECORDS,
+            "records must not contain more than %d elements", AbstractRestRecordsOperation.MAX_RECORDS);
+
+        return new RestUpdateRecordsOperation<>(this, records);
+    }
+
+    @Override
+    protected <T, R> RecordCursor<R> openRecordCursor(QueryRecordsExOperation<T, R> operation) {
+        return ((RestQueryRecordsOperation<T, R>) operation).openCursor(connector, executor, getConfig().getQueryPrefetchDepth());
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * A description which was fetched or revalidated recently is taken from the {@link DescribeCache} without asking
+     * the server.
+     */
+    @Override
+    protected ObjectMetadata getVisibleObjectMetadata(String name) {
+        ObjectMetadata metadata = describeCache.getFresh(connector.getInstanceUrl(), getUserId(), connector.getApiVersion(), name);
+        return (metadata != null) ? metadata : describeObject(name);
+    }
+
+    DescribeCache getDescribeCache() {
+        return describeCache;
+    }
+
+    String getUserId() {
+        AuthorizationConnector authorizationConnector = getConfig().getAuthorizationConnector();
+        return (authorizationConnector != null) ? authorizationConnector.getUserId() : null;
+    }
+
     public RestConnector getConnector() {  // For unit test purposes only.
         return connector;
     }
 
+    /**
+     * Starts operations in order until one fails to start, then fails that one and the rest so that nobody waits on
+     * them forever.
+     *
+     * @param operations   the operations
+     * @param connector    the connector to start them with
+     * @param startFailure the failure of an earlier operation to start, in which case none of these are started
+     * @return the failure of an operation to start, or <code>null</code> if there wasn't one
+     */
+    private static RuntimeException start(List<RecordOperation<?>> operations, RestConnector connector, RuntimeException startFailure) {
+        RuntimeException exception = startFailure;
+        for (RecordOperation<?> operation : operations) {
+            AbstractRestRecordOperation<?, ?> restOperation = AbstractRestRecordOperation.class.cast(operation);
+            if (exception != null) {
+                failUnstarted(restOperation,
+                    new RecordRequestException("Operation skipped because an earlier operation failed to start", exception));
+                continue;
+            }
+            try {
+                restOperation.start(connector);
+            } catch (RuntimeException e) {
+                exception = e;
+                failUnstarted(restOperation, e);
+            }
+        }
+        return exception;
+    }
+
+    private static void failUnstarted(AbstractRestRecordOperation<?, ?> operation, Throwable exception) {
+        if (!operation.isDone()) {
+            operation.failed(exception, new Statistics.Builder().build());
+        }
+    }
+
     private RestConnector chooseBatchedOrUnbatchedConnector(List<RecordOperation<?>> operations) {
         if (shouldBatch(operations)) {
-            return new BatchRestConnector(connector);
+            return new BatchRestConnector(connector, executor, getConfig().getMaxConcurrentBatches());
         } else {
             return connector;
         }
@@ -5,6 +5,8 @@
  */
 package com.force.spa.core.rest;
 
+import java.util.concurrent.Executor;
+
 import org.apache.commons.lang3.Validate;
 
 import com.force.spa.RecordAccessorConfig;
@@ -20,19 +22,38 @@ public class RestRecordAccessorFactory implements RecordAccessorFactory {
     private final RecordAccessorConfig config;
     private final MappingContext mappingContext;
     private final RestConnector connector;
+    private final Executor executor;
+    private final DescribeCache describeCache;
 
     public RestRecordAccessorFactory(RecordAccessorConfig config, MappingContext mappingContext, RestConnector connector) {
+        this(config, mappingContext, connector, null);
+    }
+
+    public RestRecordAccessorFactory(RecordAccessorConfig config, MappingContext mappingContext, RestConnector connector, Executor executor) {
+        this(config, mappingContext, connector, executor, new DescribeCache());
+    }
+
+    /**
+     * Creates a factory whose record accessors share a cache of object descriptions. A cache with a directory keeps the
+     * descriptions across restarts (see {@link DescribeCache#DescribeCache(long, java.io.File)}).
+     */
+    public RestRecordAccessorFactory(
+        RecordAccessorConfig config, MappingContext mappingContext, RestConnector connector, Executor executor, DescribeCache describeCache) {
+
         Validate.notNull(config, "config must not be null");
         Validate.notNull(mappingContext, "mappingContext must not be null");
         Validate.notNull(connector, "connector must not be null");
+        Validate.notNull(describeCache, "describeCache must not be null");
 
         this.config = config;
         this.mappingContext = mappingContext;
         this.connector = connector;
+        this.executor = executor;
+        this.describeCache = describeCache;
     }
 
     @Override
     public RecordAccessor getRecordAccessor() {
-        return new RestRecordAccessor(config, mappingContext, connector);
+        return new RestRecordAccessor(config, mappingContext, connector, executor, describeCache);
     }
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.rest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.force.spa.RecordCursor;
+import com.force.spa.SpaException;
+import com.force.spa.Statistics;
+import com.force.spa.core.utils.CountingJsonParser;
+
+/**
+ * A {@link RecordCursor} that follows the chain of query result pages returned by the REST API.
+ * <p/>
+ * Without prefetching, a page is only requested once the records of the previous page have all been consumed. With
+ * prefetching, the next page is requested as soon as the previous one has arrived, until there are {@link
+ * #prefetchDepth} pages waiting to be consumed. The fetching carries on in the background, either through an
+ * asynchronous connector or by issuing the requests of a synchronous connector from an {@link Executor}, while the
+ * caller works through the current page. If neither is available pages are fetched on demand.
+ * <p/>
+ * Background fetches from an executor are bound to the authorization of the thread which starts them (see {@link
+ * RestConnector#bindToCurrentAuthorization}), which is the one iterating the cursor or, for the pages after that, the
+ * fetch which found the page, so they carry on with the caller's authorization.
+ *
+ * @param <R> the type of result records
+ */
+final class RestRecordCursor<R> implements RecordCursor<R> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RestRecordCursor.class);
+
+    private final RestConnector connector;
+    private final Class<R> resultClass;
+    private final Executor executor;
+    private final int prefetchDepth;
+
+    private Iterator<R> page = Collections.emptyIterator();
+
+    // The remaining state is shared with the threads that fetch pages and is guarded by "this".
+    private final Queue<PageResponseHandler> fetchedPages = new ArrayDeque<>();
+    private URI nextPageUri;
+    private boolean fetching;
+    private boolean closed;
+
+    /**
+     * Creates a cursor.
+     *
+     * @param connector     the connector used to fetch pages
+     * @param queryUri      the URI of the first page
+     * @param resultClass   the class of the result records
+     * @param executor      an executor used to fetch pages in the background when the connector is synchronous, or
+     *                      <code>null</code> if there isn't one
+     * @param prefetchDepth the maximum number of pages to fetch ahead of the caller
+     */
+    RestRecordCursor(RestConnector connector, URI queryUri, Class<R> resultClass, Executor executor, int prefetchDepth) {
+        this.connector = connector;
+        this.resultClass = resultClass;
+        this.executor = executor;
+        this.prefetchDepth = (connector.isSynchronous() && executor == null) ? 0 : prefetchDepth;
+        this.nextPageUri = queryUri;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!page.hasNext()) {
+            PageResponseHandler fetchedPage = takeFetchedPage();
+            if (fetchedPage == null) {
+                return false;
+            }
+            if (fetchedPage.exception != null) {
+                throw SpaException.valueOf(fetchedPage.exception);
+            }
+            page = fetchedPage.queryResult.getRecords().iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public R next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Query results can't be removed through a cursor");
+    }
+
+    @Override
+    public void close() {
+        page = Collections.emptyIterator();
+        synchronized (this) {
+            closed = true;
+            fetchedPages.clear();
+            nextPageUri = null;
+        }
+    }
+
+    /**
+     * Takes the next page that has been fetched, waiting for it if needed.
+     *
+     * @return the next page or <code>null</code> if there are no more pages
+     */
+    private PageResponseHandler takeFetchedPage() {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                PageResponseHandler fetchedPage;
+                synchronized (this) {
+                    if (closed) {
+                        return null;
+                    }
+                    fetchedPage = fetchedPages.poll();
+                    if (fetchedPage == null) {
+                        if (fetching) {
+                            try {
+                                wait();
+                            } catch (InterruptedException e) {
+                                interrupted = true; // Keep waiting, the page is on its way
+                            }
+                            continue;
+                        }
+                        if (nextPageUri == null) {
+                            return null;
+                        }
+                    }
+                }
+
+                if (fetchedPage != null) {
+                    startFetchIfNeeded(0); // Make room for another page to be fetched ahead
+                    return fetchedPage;
+                }
+                startFetchIfNeeded(1);
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Starts fetching the next page if there is one and fewer than the wanted number of pages are waiting to be
+     * consumed. Only one page is fetched at a time because the location of each page comes from the previous one.
+     *
+     * @param minimumDepth the number of waiting pages wanted regardless of the prefetch depth
+     */
+    private void startFetchIfNeeded(int minimumDepth) {
+        URI uri;
+        synchronized (this) {
+            if (closed || fetching || nextPageUri == null || fetchedPages.size() >= Math.max(prefetchDepth, minimumDepth)) {
+                return;
+            }
+            uri = nextPageUri;
+            nextPageUri = null;
+            fetching = true;
+        }
+
+        final URI pageUri = uri;
+        if (connector.isSynchronous() && prefetchDepth > 0) {
+            try {
+                executor.execute(connector.bindToCurrentAuthorization(new Runnable() {
+                    @Override
+                    public void run() {
+                        fetch(pageUri);
+                    }
+                }));
+                return;
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Executor rejected page fetch, fetching it from the calling thread instead");
+            } catch (RuntimeException e) {
+                // The authorization couldn't be captured so fetch from here, where the failure reaches the caller
+                LOG.debug("Failed to bind page fetch to the current authorization", e);
+            }
+        }
+        fetch(pageUri);
+    }
+
+    private void fetch(URI uri) {
+        PageResponseHandler responseHandler = new PageResponseHandler();
+        try {
+            connector.get(uri, responseHandler);
+        } catch (RuntimeException e) {
+            responseHandler.failed(e, null);
+        }
+    }
+
+    private void pageFetched(PageResponseHandler fetchedPage) {
+        synchronized (this) {
+            fetching = false;
+            if (!closed) {
+                fetchedPages.add(fetchedPage);
+                if (fetchedPage.queryResult != null && fetchedPage.queryResult.getNextRecordsUrl() != null) {
+                    nextPageUri = URI.create(fetchedPage.queryResult.getNextRecordsUrl());
+                }
+            }
+            notifyAll();
+        }
+        if (prefetchDepth > 0) {
+            startFetchIfNeeded(0);
+        }
+    }
+
+    private final class PageResponseHandler extends RestResponseHandler<QueryResult<R>> {
+        private QueryResult<R> queryResult;
+        private Throwable exception;
+
+        @Override
+        public boolean isCancelled() {
+            synchronized (RestRecordCursor.this) {
+                return closed;
+            }
+        }
+
+        @Override
+        public QueryResult<R> deserialize(CountingJsonParser parser) throws IOException {
+            return QueryResult.deserialize(parser, resultClass);
+        }
+
+        @Override
+        public void completed(QueryResult<R> queryResult, Statistics statistics) {
+            this.queryResult = queryResult;
+            pageFetched(this);
+        }
+
+        @Override
+        public void failed(Throwable exception, Statistics statistics) {
+            this.exception = exception;
+            pageFetched(this);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The JSON body of a request issued through a {@link RestConnector}.
+ * <p/>
+ * The body is written when the connector is ready for it, straight into the connection or into a buffer owned by the
+ * connector, so that request bodies never have to be built up as strings. A body may be written more than once, for
+ * example for logging, and must write the same thing each time.
+ */
+public interface RestRequestBody {
+    /**
+     * Writes the body as UTF-8 encoded JSON.
+     *
+     * @param outputStream the stream to write to, which belongs to the connector and must not be closed
+     * @throws IOException if the body can't be written
+     */
+    void writeTo(OutputStream outputStream) throws IOException;
+}
@@ -11,7 +11,9 @@ import java.io.IOException;
 import java.nio.channels.CompletionHandler;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -56,6 +58,48 @@ public abstract class RestResponseHandler<R> implements CompletionHandler<R, Sta
         return null;
     }
 
+    /**
+     * Indicates whether the response is still of interest. Connectors check this before issuing requests that haven't
+     * been sent yet and drop those that are no longer of interest without any further callbacks. Connectors may also
+     * skip processing of a response that is no longer of interest.
+     * <p/>
+     * The default implementation always returns <code>false</code>.
+     */
+    public boolean isCancelled() {
+        return false;
+    }
+
+    /**
+     * Called by asynchronous connectors once a request has been issued. Cancelling the supplied future abandons the
+     * request so that the connector no longer waits for it and discards its response without any further callbacks.
+     * <p/>
+     * The default implementation does nothing.
+     */
+    public void started(Future<?> request) {
+    }
+
+    /**
+     * Returns the time to send in the If-Modified-Since header of a GET request, or <code>null</code> for an
+     * unconditional request. A handler which returns a time must be prepared for a 304 (Not Modified) status, which
+     * comes without a body. Connectors which can't send the header, such as the batch connector, just make the request
+     * unconditional.
+     * <p/>
+     * The default implementation returns <code>null</code>.
+     */
+    public Date getIfModifiedSince() {
+        return null;
+    }
+
+    /**
+     * Called with the date of the response, as given by the server, before the status is handled. This is the time to
+     * use in a later conditional request because it comes from the server's clock. Connectors don't call this if the
+     * response doesn't say.
+     * <p/>
+     * The default implementation does nothing.
+     */
+    public void handleResponseDate(Date date) {
+    }
+
     /**
      * Called to handle an HTTP response status.
      * <p/>
@@ -86,40 +130,9 @@ public abstract class RestResponseHandler<R> implements CompletionHandler<R, Sta
     public String getExceptionMessage(int status, JsonParser parser) {
         if (parser != null) {
             try {
-                boolean entryAppended = false;
-                StringBuilder builder = new StringBuilder(120);
-                for (ErrorResult errorResult : deserializeErrorResults(parser)) {
-                    if (entryAppended) {
-                        builder.append("; ");
-                    }
-
-                    boolean somethingAppendedForThisEntry = false;
-                    if (errorResult.getErrorCode() != null) {
-                        builder.append(errorResult.getErrorCode());
-                        somethingAppendedForThisEntry = true;
-                    }
-
-                    if (errorResult.getMessage() != null) {
-                        if (somethingAppendedForThisEntry) {
-                            builder.append(": ");
-                        }
-                        builder.append(errorResult.getMessage());
-                        somethingAppendedForThisEntry = true;
-                    }
-
-                    if (errorResult.getFields() != null) {
-                        if (somethingAppendedForThisEntry) {
-                            builder.append(": ");
-                        }
-                        builder.append("[");
-                        builder.append(StringUtils.join(errorResult.getFields(), ","));
-                        builder.append("]");
-                    }
-                    entryAppended = true;
-                }
-
-                if (entryAppended) {
-                    return builder.toString();
+                String message = formatErrorResults(deserializeErrorResults(parser));
+                if (message != null) {
+                    return message;
                 }
             } catch (Exception e) {
                 LOG.error("Failed to parser error response", e);
@@ -128,6 +141,47 @@ public abstract class RestResponseHandler<R> implements CompletionHandler<R, Sta
         return "HTTP response status: " + status;
     }
 
+    /**
+     * Formats a list of standard Salesforce REST errors into a single message.
+     *
+     * @param errorResults the errors
+     * @return the message or <code>null</code> if there are no errors
+     */
+    static String formatErrorResults(List<ErrorResult> errorResults) {
+        boolean entryAppended = false;
+        StringBuilder builder = new StringBuilder(120);
+        for (ErrorResult errorResult : errorResults) {
+            if (entryAppended) {
+                builder.append("; ");
+            }
+
+            boolean somethingAppendedForThisEntry = false;
+            if (errorResult.getErrorCode() != null) {
+                builder.append(errorResult.getErrorCode());
+                somethingAppendedForThisEntry = true;
+            }
+
+            if (errorResult.getMessage() != null) {
+                if (somethingAppendedForThisEntry) {
+                    builder.append(": ");
+                }
+                builder.append(errorResult.getMessage());
+                somethingAppendedForThisEntry = true;
+            }
+
+            if (errorResult.getFields() != null) {
+                if (somethingAppendedForThisEntry) {
+                    builder.append(": ");
+                }
+                builder.append("[");
+                builder.append(StringUtils.join(errorResult.getFields(), ","));
+                builder.append("]");
+            }
+            entryAppended = true;
+        }
+        return entryAppended ? builder.toString() : null;
+    }
+
     private static List<ErrorResult> deserializeErrorResults(JsonParser parser) throws IOException {
         establishCurrentToken(parser);
         switch (parser.getCurrentToken()) {
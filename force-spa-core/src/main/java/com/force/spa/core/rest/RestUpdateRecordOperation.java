@@ -8,15 +8,21 @@ package com.force.spa.core.rest;
 import java.io.IOException;
 import java.net.URI;
 
-import com.force.spa.RecordResponseException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.force.spa.OperationType;
+import com.force.spa.Statistics;
 import com.force.spa.UpdateRecordOperation;
+import com.force.spa.core.ChangeTracker;
 
 class RestUpdateRecordOperation<T> extends AbstractRestRecordOperation<T, Void> implements UpdateRecordOperation<T> {
 
     private final String id;
     private final T record;
 
-    private String jsonBody;
+    private RestRequestBody body;
+    private boolean unchanged;
 
     @SuppressWarnings("unchecked")
     public RestUpdateRecordOperation(RestRecordAccessor accessor, String id, T record) {
@@ -26,6 +32,11 @@ class RestUpdateRecordOperation<T> extends AbstractRestRecordOperation<T, Void>
         this.record = record;
     }
 
+    @Override
+    public OperationType getOperationType() {
+        return OperationType.UPDATE;
+    }
+
     @Override
     public String getId() {
         return id;
@@ -36,28 +47,60 @@ class RestUpdateRecordOperation<T> extends AbstractRestRecordOperation<T, Void>
         return record;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * When change tracking is enabled and the record is tracked, only the fields which have changed are sent, and
+     * nothing at all is sent if none have.
+     */
     @Override
     protected void start(RestConnector connector) {
+        ChangeTracker changeTracker = getChangeTracker();
+        final ChangeTracker.ChangeSet changes = (changeTracker != null) ? changeTracker.getChanges(record) : null;
+        if (changes != null && changes.isEmpty()) {
+            unchanged = true;
+            completed(null, new Statistics.Builder().build());
+            return;
+        }
 
-        jsonBody = serializeRecord(record);
+        ObjectWriter writer = getMappingContext().getObjectWriterForUpdate();
+        Object value = record;
+        if (changes != null) {
+            try {
+                value = toChangedFields(writer, changes);
+            } catch (IOException | RuntimeException e) {
+                failed(e, new Statistics.Builder().build());
+                return;
+            }
+        }
+        body = RequestBodies.forValue(getMappingContext().getObjectReader().getFactory(), writer, value);
 
         URI uri = URI.create("/sobjects/" + getObjectDescriptor().getName() + "/" + id);
-        connector.patch(uri, jsonBody, new ResponseHandler());
+        connector.patch(uri, body, new ResponseHandler() {
+            @Override
+            public void completed(Void result, Statistics statistics) {
+                if (changes != null) {
+                    changes.commit();
+                }
+                super.completed(result, statistics);
+            }
+        });
     }
 
-    private String serializeRecord(Object record) {
-        try {
-            return getMappingContext().getObjectWriterForUpdate().writeValueAsString(record);
-        } catch (IOException e) {
-            throw new RecordResponseException("Failed to serialize record", e);
-        }
+    private ObjectNode toChangedFields(ObjectWriter writer, ChangeTracker.ChangeSet changes) throws IOException {
+        TokenBuffer buffer = new TokenBuffer(null);
+        writer.writeValue(buffer, record);
+        ObjectNode node = (ObjectNode) getMappingContext().getObjectReader().readTree(buffer.asParser());
+        return node.remove(changes.getUnchangedPropertyNames());
     }
 
     @Override
     public String toString() {
         String string = "Update " + getObjectDescriptor().getName() + " with id " + id;
-        if (getLogger().isTraceEnabled()) {
-            string += ": " + jsonBody;
+        if (unchanged) {
+            string += " (unchanged)";
+        } else if (getLogger().isTraceEnabled()) {
+            string += ": " + body;
         }
         return string;
     }
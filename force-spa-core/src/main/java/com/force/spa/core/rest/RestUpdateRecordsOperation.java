@@ -0,0 +1,66 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.rest;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.force.spa.OperationType;
+import com.force.spa.UpdateRecordsOperation;
+
+/**
+ * @param <T> the type of record the operation is working with
+ */
+final class RestUpdateRecordsOperation<T> extends AbstractRestRecordsOperation<T> implements UpdateRecordsOperation<T> {
+
+    private final List<T> records;
+    private final List<String> ids;
+
+    private RestRequestBody body;
+
+    @SuppressWarnings("unchecked")
+    public RestUpdateRecordsOperation(RestRecordAccessor accessor, List<T> records) {
+        super(accessor, (Class<T>) records.get(0).getClass());
+
+        this.records = records;
+        this.ids = new ArrayList<>(records.size());
+        for (T record : records) {
+            ids.add(accessor.getRecordId(record));
+        }
+    }
+
+    @Override
+    public OperationType getOperationType() {
+        return OperationType.UPDATE_RECORDS;
+    }
+
+    @Override
+    public List<T> getRecords() {
+        return records;
+    }
+
+    @Override
+    protected void start(RestConnector connector) {
+
+        if (!checkCollectionsSupported(connector)) {
+            return;
+        }
+
+        body = serializeRecords(getMappingContext().getObjectWriterForUpdate(), records, ids);
+
+        connector.patch(URI.create(COLLECTIONS_PATH), body, new RecordsResponseHandler());
+    }
+
+    @Override
+    public String toString() {
+        String string = "Update " + records.size() + " " + getObjectDescriptor().getName() + " records";
+        if (getLogger().isTraceEnabled()) {
+            string += ": " + body;
+        }
+        return string;
+    }
+}
@@ -8,24 +8,22 @@ package com.force.spa.core.rest;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Lock;
 
+import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.force.spa.ApiVersion;
-import com.force.spa.SpaException;
 import com.force.spa.Statistics;
 import com.force.spa.core.utils.CountingJsonParser;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.util.concurrent.UncheckedExecutionException;
 
 /**
- * A cache of information about the highest supported API version of instances.
+ * Discovers the highest API version supported by instances, and remembers them in an {@link ApiVersionCache}.
  */
 public final class RestVersionManager {
 
@@ -33,35 +31,152 @@ public final class RestVersionManager {
 
     static final ApiVersion DEFAULT_API_VERSION = new ApiVersion("28.0");
 
+    private static final URI VERSIONS_URI = URI.create("/services/data");
+
     private final RestConnector connector;
-    private final Cache<URI, ApiVersion> highestSupportedVersionCache = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.HOURS).build();
+    private final ApiVersionCache cache;
 
     public RestVersionManager(RestConnector connector) {
+        this(connector, new ApiVersionCache());
+    }
+
+    /**
+     * Creates a version manager which remembers versions in a cache that may be shared with other version managers.
+     *
+     * @param connector the connector used to discover versions
+     * @param cache     the cache of versions
+     */
+    public RestVersionManager(RestConnector connector, ApiVersionCache cache) {
+        Validate.notNull(connector, "connector must not be null");
+        Validate.notNull(cache, "cache must not be null");
+
         this.connector = connector;
+        this.cache = cache;
     }
 
+    /**
+     * Returns the highest API version supported by the current instance (see {@link RestConnector#getInstanceUrl()}).
+     * The version is discovered on the calling thread the first time. A version which was discovered more than an
+     * hour ago is discovered again, in the background if the cache has an {@link Executor}.
+     *
+     * @return the highest supported API version
+     */
     public ApiVersion getHighestSupportedVersion() {
+        URI instanceUrl = connector.getInstanceUrl();
+        ApiVersionCache.Entry entry = cache.get(instanceUrl);
+        if (entry == null) {
+            Lock lock = cache.getDiscoveryLock(instanceUrl);
+            lock.lock();
+            try {
+                entry = cache.get(instanceUrl);
+                if (entry == null) {
+                    return discover(instanceUrl);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        if (entry.isStale()) {
+            if (cache.getExecutor() != null) {
+                refreshInBackground(instanceUrl);
+            } else {
+                return discover(instanceUrl);
+            }
+        }
+        return entry.getVersion();
+    }
+
+    /**
+     * Discovers the highest API versions supported by a list of instances ahead of time, for example when a process
+     * starts. Instances whose versions are already known and fresh are skipped. The versions are discovered in the
+     * background if the cache has an {@link Executor}, and otherwise one after another on the calling thread.
+     *
+     * @param instanceUrls the instances
+     */
+    public void prewarm(Collection<URI> instanceUrls) {
+        Validate.noNullElements(instanceUrls, "instanceUrls must not contain null elements");
+
+        for (URI instanceUrl : instanceUrls) {
+            ApiVersionCache.Entry entry = cache.get(instanceUrl);
+            if (entry == null || entry.isStale()) {
+                if (cache.getExecutor() != null) {
+                    refreshInBackground(instanceUrl);
+                } else if (cache.beginRefresh(instanceUrl)) {
+                    try {
+                        refresh(instanceUrl);
+                    } finally {
+                        cache.endRefresh(instanceUrl);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Discovers the version of the current instance on the calling thread, using the current authorization. If the
+     * version can't be discovered then a default is guessed, which is kept in memory so that the server isn't asked
+     * over and over again.
+     */
+    private ApiVersion discover(URI instanceUrl) {
+        List<ApiVersion> supportedVersions = getSupportedVersions(instanceUrl, true);
+        if (supportedVersions.isEmpty()) {
+            cache.put(instanceUrl, DEFAULT_API_VERSION, false);
+            return DEFAULT_API_VERSION;
+        } else {
+            ApiVersion highestSupportedVersion = supportedVersions.get(supportedVersions.size() - 1);
+            cache.put(instanceUrl, highestSupportedVersion, true);
+            return highestSupportedVersion;
+        }
+    }
+
+    private void refreshInBackground(final URI instanceUrl) {
+        if (!cache.beginRefresh(instanceUrl)) {
+            return; // Somebody else is on it
+        }
+
         try {
-            return highestSupportedVersionCache.get(connector.getInstanceUrl(), new Callable<ApiVersion>() {
+            cache.getExecutor().execute(new Runnable() {
                 @Override
-                public ApiVersion call() {
-                    List<ApiVersion> supportedVersions = getSupportedVersions();
-                    return supportedVersions.get(supportedVersions.size() - 1);
+                public void run() {
+                    try {
+                        refresh(instanceUrl);
+                    } finally {
+                        cache.endRefresh(instanceUrl);
+                    }
                 }
             });
-        } catch (ExecutionException | UncheckedExecutionException e) {
-            throw SpaException.valueOf(e.getCause());
+        } catch (RejectedExecutionException e) {
+            cache.endRefresh(instanceUrl);
+            LOG.warn("Failed to schedule discovery of supported API versions for " + instanceUrl, e);
         }
     }
 
-    private List<ApiVersion> getSupportedVersions() {
+    /**
+     * Discovers the version of any instance without using the current authorization, which isn't available in the
+     * background and belongs to some other instance anyway. If the version can't be discovered then any version that
+     * is already known is kept for a while longer.
+     */
+    private void refresh(URI instanceUrl) {
+        List<ApiVersion> supportedVersions = getSupportedVersions(instanceUrl, false);
+        if (!supportedVersions.isEmpty()) {
+            cache.put(instanceUrl, supportedVersions.get(supportedVersions.size() - 1), true);
+        } else {
+            ApiVersionCache.Entry entry = cache.get(instanceUrl);
+            if (entry != null) {
+                cache.postponeRefresh(instanceUrl, entry);
+            }
+        }
+    }
+
+    private List<ApiVersion> getSupportedVersions(final URI instanceUrl, boolean authorized) {
 
         if (LOG.isDebugEnabled()) {
-            LOG.debug("Requesting supported API versions for " + connector.getInstanceUrl());
+            LOG.debug("Requesting supported API versions for " + instanceUrl);
         }
 
         final List<ApiVersion> supportedVersions = new ArrayList<>();
-        connector.get(URI.create("/services/data"), new RestResponseHandler<VersionInfo[]>() {
+        RestResponseHandler<VersionInfo[]> responseHandler = new RestResponseHandler<VersionInfo[]>() {
             @Override
             public VersionInfo[] deserialize(CountingJsonParser parser) throws IOException {
                 return parser.readValueAs(VersionInfo[].class);
@@ -69,25 +184,28 @@ public final class RestVersionManager {
 
             @Override
             public void completed(VersionInfo[] versionInfos, Statistics statistics) {
-                if (versionInfos != null && versionInfos.length > 0) {
+                if (versionInfos != null) {
                     for (VersionInfo versionInfo : versionInfos) {
                         supportedVersions.add(new ApiVersion(versionInfo.getVersion()));
                     }
-                } else {
-                    supportedVersions.add(DEFAULT_API_VERSION);
                 }
             }
 
             @Override
             public void failed(Throwable exception, Statistics statistics) {
-                LOG.error("Failed to determine supported API versions for " + connector.getInstanceUrl());
-                supportedVersions.add(DEFAULT_API_VERSION);
+                LOG.error("Failed to determine supported API versions for " + instanceUrl);
             }
-        });
-        connector.join();
+        };
+
+        if (authorized) {
+            connector.get(VERSIONS_URI, responseHandler);
+            connector.join();
+        } else {
+            connector.getWithoutAuthorization(instanceUrl, VERSIONS_URI, responseHandler);
+        }
 
         if (LOG.isDebugEnabled()) {
-            LOG.debug("Supported API versions for " + connector.getInstanceUrl() + ": " + supportedVersions);
+            LOG.debug("Supported API versions for " + instanceUrl + ": " + supportedVersions);
         }
 
         return supportedVersions;
@@ -0,0 +1,48 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.rest;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * The outcome for a single record as reported by the sObject Collections resources.
+ */
+@SuppressWarnings("UnusedDeclaration")
+@JsonIgnoreProperties(ignoreUnknown = true)
+class SaveResult {
+
+    private String id;
+
+    private boolean success;
+
+    private List<ErrorResult> errors;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public List<ErrorResult> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<ErrorResult> errors) {
+        this.errors = errors;
+    }
+}
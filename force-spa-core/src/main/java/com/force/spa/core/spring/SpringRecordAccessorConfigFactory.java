@@ -11,6 +11,7 @@ import org.springframework.stereotype.Component;
 
 import com.force.spa.ApiVersion;
 import com.force.spa.AuthorizationConnector;
+import com.force.spa.OperationListener;
 import com.force.spa.RecordAccessorConfig;
 
 /**
@@ -44,6 +45,23 @@ public class SpringRecordAccessorConfigFactory implements FactoryBean<RecordAcce
         recordAccessorConfig = recordAccessorConfig.withObjectAnnotationRequired(objectAnnotationRequired);
     }
 
+    public void setMaxConcurrentBatches(int maxConcurrentBatches) {
+        recordAccessorConfig = recordAccessorConfig.withMaxConcurrentBatches(maxConcurrentBatches);
+    }
+
+    public void setQueryPrefetchDepth(int queryPrefetchDepth) {
+        recordAccessorConfig = recordAccessorConfig.withQueryPrefetchDepth(queryPrefetchDepth);
+    }
+
+    public void setChangeTrackingEnabled(boolean changeTrackingEnabled) {
+        recordAccessorConfig = recordAccessorConfig.withChangeTrackingEnabled(changeTrackingEnabled);
+    }
+
+    @Autowired(required = false)
+    public void setOperationListener(OperationListener operationListener) {
+        recordAccessorConfig = recordAccessorConfig.withOperationListener(operationListener);
+    }
+
     @Override
     public RecordAccessorConfig getObject() throws Exception {
         return recordAccessorConfig;
@@ -5,6 +5,8 @@
  */
 package com.force.spa.core.spring;
 
+import java.util.concurrent.Executor;
+
 import org.springframework.beans.factory.FactoryBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -34,6 +36,8 @@ public class SpringRestRecordAccessorFactory implements FactoryBean<RecordAccess
     @Autowired
     private RestConnector connector;
 
+    private Executor executor;
+
     private RecordAccessor instance;
 
     public void setConfig(RecordAccessorConfig config) {
@@ -48,9 +52,16 @@ public class SpringRestRecordAccessorFactory implements FactoryBean<RecordAccess
         this.connector = connector;
     }
 
+    /**
+     * Sets an optional executor for background work such as sending batch requests in parallel.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception {
-        instance = new RestRecordAccessorFactory(config, mappingContext, connector).getRecordAccessor();
+        instance = new RestRecordAccessorFactory(config, mappingContext, connector, executor).getRecordAccessor();
     }
 
     @Override
@@ -0,0 +1,158 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.utils;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * A lock-free histogram of non-negative values with a bounded relative error, in the manner of an HDR histogram.
+ * <p/>
+ * Values below 64 are counted exactly. Above that each power of two is split into 32 equal buckets, so a value is
+ * reported to within about 3% whatever its magnitude. Recording a value is a couple of shifts and an atomic increment,
+ * and the memory used only depends on the highest value to be tracked; anything above that is counted as the highest
+ * value.
+ * <p/>
+ * Reads aren't synchronized with writes, so a percentile taken while values are being recorded may or may not take
+ * the latest of them into account.
+ */
+public final class Histogram implements Serializable {
+
+    private static final long serialVersionUID = -3087466281302826385L;
+
+    private static final int PRECISION_BITS = 6;
+    private static final int HALF_BUCKET_COUNT = 1 << (PRECISION_BITS - 1);
+
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalValue = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param highestTrackableValue the highest value that is counted as itself
+     */
+    public Histogram(long highestTrackableValue) {
+        Validate.isTrue(highestTrackableValue > 0, "highestTrackableValue must be positive");
+
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new AtomicLongArray(indexOf(highestTrackableValue) + 1);
+    }
+
+    /**
+     * Records a value.
+     *
+     * @param value the value, which must not be negative
+     */
+    public void recordValue(long value) {
+        Validate.isTrue(value >= 0, "value must not be negative");
+
+        long trackedValue = Math.min(value, highestTrackableValue);
+        counts.incrementAndGet(indexOf(trackedValue));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(trackedValue);
+
+        long currentMax = maxValue.get();
+        while (trackedValue > currentMax && !maxValue.compareAndSet(currentMax, trackedValue)) {
+            currentMax = maxValue.get();
+        }
+    }
+
+    /**
+     * Returns the number of values recorded.
+     */
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * Returns the highest value recorded, or zero if there are none.
+     */
+    public long getMaxValue() {
+        return maxValue.get();
+    }
+
+    /**
+     * Returns the mean of the values recorded, or zero if there are none.
+     */
+    public double getMean() {
+        long count = totalCount.get();
+        return (count != 0) ? (double) totalValue.get() / count : 0.0;
+    }
+
+    /**
+     * Returns the value which the given percentage of the recorded values are at or below, to within the precision of
+     * the histogram. The result is never more than the highest value recorded.
+     *
+     * @param percentile the percentage, from 0 to 100
+     * @return the value at the percentile or zero if no values have been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        Validate.isTrue(percentile >= 0.0 && percentile <= 100.0, "percentile must be between 0 and 100");
+
+        long[] snapshot = new long[counts.length()];
+        long count = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+
+        long targetCount = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long cumulativeCount = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            cumulativeCount += snapshot[i];
+            if (cumulativeCount >= targetCount) {
+                return Math.min(highestValueAt(i), getMaxValue());
+            }
+        }
+        return getMaxValue();
+    }
+
+    /**
+     * Forgets all the values recorded so far.
+     */
+    public void reset() {
+        for (int i = 0, length = counts.length(); i < length; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalValue.set(0);
+        maxValue.set(0);
+    }
+
+    private static int indexOf(long value) {
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - (PRECISION_BITS - 1);
+        if (shift <= 0) {
+            return (int) value; // Small enough to count exactly
+        }
+        return shift * HALF_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    private static long highestValueAt(int index) {
+        int shift = index / HALF_BUCKET_COUNT - 1;
+        if (shift <= 0) {
+            return index;
+        }
+        long mantissa = index - shift * HALF_BUCKET_COUNT;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram{count=" + getTotalCount()
+            + ", p50=" + getValueAtPercentile(50.0)
+            + ", p99=" + getValueAtPercentile(99.0)
+            + ", max=" + getMaxValue() + "}";
+    }
+}
@@ -12,9 +12,13 @@ public final class SanitizeUtils {
     }
 
     /**
-     * Sanitize a SOQL string by removing references to customer data so that we can log or display the value.
+     * Sanitize a SOQL string by removing references to customer data so that we can log or display the value. A
+     * <code>null</code> string, from an operation which never got as far as building its SOQL, stays <code>null</code>.
      */
     public static String sanitizeSoql(String soql) {
+        if (soql == null) {
+            return null;
+        }
         char[] chars = soql.toCharArray();
         StringBuilder builder = new StringBuilder(512);
 
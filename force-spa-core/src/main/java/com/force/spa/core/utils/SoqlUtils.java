@@ -0,0 +1,160 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.utils;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.TimeZone;
+
+import org.apache.commons.lang3.time.FastDateFormat;
+import org.joda.time.LocalDate;
+import org.joda.time.ReadableInstant;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+
+public final class SoqlUtils {
+
+    private static final FastDateFormat DATE_TIME_FORMAT =
+        FastDateFormat.getInstance("yyyy-MM-dd'T'HH:mm:ss'Z'", TimeZone.getTimeZone("UTC"));
+
+    private static final DateTimeFormatter JODA_DATE_TIME_FORMAT = ISODateTimeFormat.dateTimeNoMillis().withZoneUTC();
+
+    private static final DateTimeFormatter JODA_DATE_FORMAT = ISODateTimeFormat.date();
+
+    private SoqlUtils() {
+        throw new UnsupportedOperationException("Can not be instantiated");
+    }
+
+    /**
+     * Converts a Java value to a SOQL literal. Strings are quoted and escaped so that the value can't alter the
+     * structure of the statement it's placed in. Date-times are given in UTC to the second. Collections and arrays
+     * become a parenthesized list suitable for <code>IN</code>.
+     *
+     * @param value the value
+     * @return the literal
+     * @throws IllegalArgumentException if the value has no SOQL literal
+     */
+    public static String toLiteral(Object value) {
+        StringBuilder builder = new StringBuilder();
+        appendLiteral(builder, value);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the SOQL literal for a Java value to a builder (see {@link #toLiteral}).
+     */
+    public static void appendLiteral(StringBuilder builder, Object value) {
+        if (value == null) {
+            builder.append("null");
+        } else if (value instanceof CharSequence || value instanceof Character) {
+            appendQuoted(builder, value.toString());
+        } else if (value instanceof Enum) {
+            appendQuoted(builder, ((Enum<?>) value).name());
+        } else if (value instanceof Boolean
+            || value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+            || value instanceof BigInteger) {
+            builder.append(value);
+        } else if (value instanceof BigDecimal) {
+            builder.append(((BigDecimal) value).toPlainString());
+        } else if (value instanceof Double || value instanceof Float) {
+            double doubleValue = ((Number) value).doubleValue();
+            if (Double.isNaN(doubleValue) || Double.isInfinite(doubleValue)) {
+                throw new IllegalArgumentException("SOQL has no literal for " + value);
+            }
+            builder.append(new BigDecimal(value.toString()).toPlainString());
+        } else if (value instanceof Date) {
+            builder.append(DATE_TIME_FORMAT.format((Date) value));
+        } else if (value instanceof Calendar) {
+            builder.append(DATE_TIME_FORMAT.format(((Calendar) value).getTime()));
+        } else if (value instanceof ReadableInstant) {
+            builder.append(JODA_DATE_TIME_FORMAT.print((ReadableInstant) value));
+        } else if (value instanceof LocalDate) {
+            builder.append(JODA_DATE_FORMAT.print((LocalDate) value));
+        } else if (value instanceof Iterable) {
+            appendList(builder, ((Iterable<?>) value).iterator());
+        } else if (value.getClass().isArray()) {
+            appendList(builder, new ArrayIterator(value));
+        } else {
+            throw new IllegalArgumentException("SOQL has no literal for values of " + value.getClass().getName());
+        }
+    }
+
+    private static void appendQuoted(StringBuilder builder, String value) {
+        builder.append('\'');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\'':
+                case '\"':
+                case '\\':
+                    builder.append('\\').append(c);
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                case '\b':
+                    builder.append("\\b");
+                    break;
+                case '\f':
+                    builder.append("\\f");
+                    break;
+                default:
+                    builder.append(c);
+            }
+        }
+        builder.append('\'');
+    }
+
+    private static void appendList(StringBuilder builder, Iterator<?> values) {
+        if (!values.hasNext()) {
+            throw new IllegalArgumentException("SOQL has no literal for an empty list");
+        }
+
+        builder.append('(');
+        appendLiteral(builder, values.next());
+        while (values.hasNext()) {
+            builder.append(',');
+            appendLiteral(builder, values.next());
+        }
+        builder.append(')');
+    }
+
+    private static final class ArrayIterator implements Iterator<Object> {
+        private final Object array;
+        private final int length;
+        private int index;
+
+        ArrayIterator(Object array) {
+            this.array = array;
+            this.length = Array.getLength(array);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < length;
+        }
+
+        @Override
+        public Object next() {
+            return Array.get(array, index++);
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
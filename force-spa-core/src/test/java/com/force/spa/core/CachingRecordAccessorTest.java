@@ -0,0 +1,189 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.force.spa.AuthorizationConnector;
+import com.force.spa.PatchRecordOperation;
+import com.force.spa.RecordAccessor;
+import com.force.spa.RecordAccessorConfig;
+import com.force.spa.RecordOperation;
+import com.force.spa.Statistics;
+
+public class CachingRecordAccessorTest {
+
+    private static final String ID = "a01i00000000001AAC";
+    private static final String SHORT_ID = "a01i00000000001";
+
+    private final List<RecordOperation<?>> executedOperations = Collections.synchronizedList(new ArrayList<RecordOperation<?>>());
+
+    private AuthorizationConnector authorizationConnector;
+    private RecordAccessor delegate;
+    private CachingRecordAccessor accessor;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        authorizationConnector = mock(AuthorizationConnector.class);
+        when(authorizationConnector.getInstanceUrl()).thenReturn(URI.create("https://na1.salesforce.com"));
+        when(authorizationConnector.getUserId()).thenReturn("005i0000000001AAA");
+
+        delegate = mock(RecordAccessor.class);
+        when(delegate.getConfig()).thenReturn(new RecordAccessorConfig().withAuthorizationConnector(authorizationConnector));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                executedOperations.addAll((List<RecordOperation<?>>) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(delegate).execute(Matchers.<List<RecordOperation<?>>>any());
+
+        accessor = new CachingRecordAccessor(delegate, 100, 1, TimeUnit.HOURS);
+    }
+
+    @Test
+    public void testSecondReadIsAnsweredFromCache() throws Exception {
+        Object record = readThroughCache(ID);
+
+        TestGetRecordOperation operation = new TestGetRecordOperation(ID);
+        accessor.execute(operation);
+
+        assertThat(operation.isDone(), is(true));
+        assertThat(operation.get(), is(sameInstance(record)));
+        assertThat(executedOperations.size(), is(equalTo(1)));
+        assertThat(accessor.getHitCount(), is(equalTo(1L)));
+        assertThat(accessor.getMissCount(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void testRecordsAreCachedPerUser() {
+        readThroughCache(ID);
+
+        when(authorizationConnector.getUserId()).thenReturn("005i0000000002AAA");
+        TestGetRecordOperation operation = new TestGetRecordOperation(ID);
+        accessor.execute(operation);
+
+        assertThat(operation.isDone(), is(false));
+        assertThat(executedOperations.size(), is(equalTo(2)));
+    }
+
+    @Test
+    public void testNothingIsCachedWithoutAuthorizationConnector() {
+        when(delegate.getConfig()).thenReturn(new RecordAccessorConfig());
+        readThroughCache(ID);
+
+        TestGetRecordOperation operation = new TestGetRecordOperation(ID);
+        accessor.execute(operation);
+
+        assertThat(operation.isDone(), is(false));
+        assertThat(executedOperations.size(), is(equalTo(2)));
+    }
+
+    @Test
+    public void testWriteInvalidatesRecord() {
+        readThroughCache(SHORT_ID);
+
+        PatchRecordOperation<?> patch = mock(PatchRecordOperation.class);
+        when(patch.getId()).thenReturn(ID);
+        accessor.execute(patch);
+
+        TestGetRecordOperation operation = new TestGetRecordOperation(ID);
+        accessor.execute(operation);
+
+        assertThat(operation.isDone(), is(false));
+        assertThat(executedOperations, is(equalTo(Arrays.<RecordOperation<?>>asList(executedOperations.get(0), patch, operation))));
+    }
+
+    @Test
+    public void testReadRacingWithWriteIsNotCached() {
+        TestGetRecordOperation read = new TestGetRecordOperation(ID);
+        accessor.execute(read);
+
+        PatchRecordOperation<?> patch = mock(PatchRecordOperation.class);
+        when(patch.getId()).thenReturn(ID);
+        accessor.execute(patch);
+
+        read.completed(new Object(), new Statistics.Builder().build());
+
+        TestGetRecordOperation operation = new TestGetRecordOperation(ID);
+        accessor.execute(operation);
+
+        assertThat(operation.isDone(), is(false));
+        assertThat(accessor.getHitCount(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void testEvictionsAreCounted() {
+        accessor = new CachingRecordAccessor(mockDelegate(), 1, 1, TimeUnit.HOURS);
+
+        readThroughCache("a01i00000000001AAC");
+        readThroughCache("a01i00000000002AAC");
+
+        assertThat(accessor.getEvictionCount(), is(equalTo(1L)));
+        assertThat(accessor.size(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void testVersionsCountTowardsMaximumSize() {
+        accessor = new CachingRecordAccessor(delegate, 2, 1, TimeUnit.HOURS);
+
+        for (int i = 1; i <= 3; i++) {
+            when(authorizationConnector.getUserId()).thenReturn("005i000000000" + i + "AAA");
+            readThroughCache(ID);
+        }
+
+        assertThat(accessor.size(), is(equalTo(2L)));
+        assertThat(accessor.getEvictionCount(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void testWriteInvalidatesVersionsOfAllUsers() {
+        readThroughCache(ID);
+        when(authorizationConnector.getUserId()).thenReturn("005i0000000002AAA");
+        readThroughCache(ID);
+        assertThat(accessor.size(), is(equalTo(2L)));
+
+        PatchRecordOperation<?> patch = mock(PatchRecordOperation.class);
+        when(patch.getId()).thenReturn(ID);
+        accessor.execute(patch);
+
+        assertThat(accessor.size(), is(equalTo(0L)));
+    }
+
+    private Object readThroughCache(String id) {
+        TestGetRecordOperation operation = new TestGetRecordOperation(id);
+        accessor.execute(operation);
+        Object record = new Object();
+        operation.completed(record, new Statistics.Builder().build());
+        return record;
+    }
+
+    private RecordAccessor mockDelegate() {
+        RecordAccessor delegate = mock(RecordAccessor.class);
+        when(delegate.getConfig()).thenReturn(new RecordAccessorConfig().withAuthorizationConnector(authorizationConnector));
+        return delegate;
+    }
+}
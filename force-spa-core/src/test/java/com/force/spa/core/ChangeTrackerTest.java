@@ -0,0 +1,78 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.force.spa.core.testbeans.MutableValueBean;
+
+public class ChangeTrackerTest {
+
+    private final ChangeTracker changeTracker = new ChangeTracker(new MappingContext());
+
+    @Test
+    public void testUnchangedValues() {
+        MutableValueBean bean = newBean();
+        changeTracker.track(bean);
+
+        ChangeTracker.ChangeSet changes = changeTracker.getChanges(bean);
+        assertThat(changes.getUnchangedPropertyNames(), hasItems("Tags", "Scores"));
+    }
+
+    @Test
+    public void testListChangedInPlace() {
+        MutableValueBean bean = newBean();
+        changeTracker.track(bean);
+
+        bean.getTags().add("Gamma");
+
+        ChangeTracker.ChangeSet changes = changeTracker.getChanges(bean);
+        assertThat(changes.isEmpty(), is(false));
+        assertThat(changes.getUnchangedPropertyNames(), not(hasItem("Tags")));
+    }
+
+    @Test
+    public void testArrayChangedInPlace() {
+        MutableValueBean bean = newBean();
+        changeTracker.track(bean);
+
+        bean.getScores()[1] = 5;
+
+        ChangeTracker.ChangeSet changes = changeTracker.getChanges(bean);
+        assertThat(changes.isEmpty(), is(false));
+        assertThat(changes.getUnchangedPropertyNames(), not(hasItem("Scores")));
+    }
+
+    @Test
+    public void testUncopyableValueIsAlwaysChanged() {
+        MutableValueBean bean = newBean();
+        changeTracker.track(bean);
+
+        ChangeTracker.ChangeSet changes = changeTracker.getChanges(bean);
+        changes.commit();
+
+        assertThat(changes.getUnchangedPropertyNames(), not(hasItem("Counter")));
+        assertThat(changeTracker.getChanges(bean).getUnchangedPropertyNames(), not(hasItem("Counter")));
+    }
+
+    private static MutableValueBean newBean() {
+        MutableValueBean bean = new MutableValueBean();
+        bean.setTags(new ArrayList<>(Arrays.asList("Alpha", "Beta")));
+        bean.setScores(new int[]{1, 2, 3});
+        bean.setCounter(new AtomicInteger(1));
+        return bean;
+    }
+}
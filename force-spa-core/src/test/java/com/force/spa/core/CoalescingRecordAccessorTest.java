@@ -0,0 +1,193 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import java.net.URI;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.force.spa.AuthorizationConnector;
+import com.force.spa.CreateRecordOperation;
+import com.force.spa.GetRecordOperation;
+import com.force.spa.PatchRecordOperation;
+import com.force.spa.RecordAccessor;
+import com.force.spa.RecordAccessorConfig;
+import com.force.spa.RecordOperation;
+import com.force.spa.RecordResponseException;
+import com.force.spa.Statistics;
+
+public class CoalescingRecordAccessorTest {
+
+    private final ThreadLocal<String> authorization = new ThreadLocal<String>() {
+        @Override
+        protected String initialValue() {
+            return "Bearer 1";
+        }
+    };
+
+    private final List<List<RecordOperation<?>>> executedBatches = Collections.synchronizedList(new ArrayList<List<RecordOperation<?>>>());
+
+    private RecordAccessor delegate;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        AuthorizationConnector authorizationConnector = mock(AuthorizationConnector.class);
+        when(authorizationConnector.getInstanceUrl()).thenReturn(URI.create("https://na1.salesforce.com"));
+        when(authorizationConnector.getAuthorization()).thenAnswer(new Answer<String>() {
+            @Override
+            public String answer(InvocationOnMock invocation) {
+                return authorization.get();
+            }
+        });
+
+        delegate = mock(RecordAccessor.class);
+        when(delegate.getConfig()).thenReturn(new RecordAccessorConfig().withAuthorizationConnector(authorizationConnector));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                executedBatches.add(new ArrayList<>((List<RecordOperation<?>>) invocation.getArguments()[0]));
+                return null;
+            }
+        }).when(delegate).execute(Matchers.<List<RecordOperation<?>>>any());
+    }
+
+    @Test
+    public void testWritesFromManyThreadsShareBatch() throws Exception {
+        final RecordAccessor accessor = new CoalescingRecordAccessor(delegate, 4, 10, TimeUnit.SECONDS);
+
+        List<RecordOperation<?>> operations = new ArrayList<>();
+        final CountDownLatch finished = new CountDownLatch(4);
+        for (int i = 0; i < 4; i++) {
+            final RecordOperation<?> operation = mock(CreateRecordOperation.class);
+            operations.add(operation);
+            new Thread() {
+                @Override
+                public void run() {
+                    accessor.execute(operation);
+                    finished.countDown();
+                }
+            }.start();
+        }
+
+        assertThat(finished.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(executedBatches.size(), is(equalTo(1)));
+        assertThat(executedBatches.get(0), containsInAnyOrder(operations.toArray()));
+    }
+
+    @Test
+    public void testBatchIsExecutedAfterDelay() {
+        RecordAccessor accessor = new CoalescingRecordAccessor(delegate, 10, TimeUnit.MILLISECONDS);
+
+        RecordOperation<?> operation1 = mock(CreateRecordOperation.class);
+        RecordOperation<?> operation2 = mock(PatchRecordOperation.class);
+        accessor.execute(operation1, operation2);
+
+        assertThat(executedBatches.size(), is(equalTo(1)));
+        assertThat(executedBatches.get(0), is(equalTo(Arrays.<RecordOperation<?>>asList(operation1, operation2))));
+    }
+
+    @Test
+    public void testFullBatchesAreExecutedStraightAway() {
+        RecordAccessor accessor = new CoalescingRecordAccessor(delegate, 2, 10, TimeUnit.MILLISECONDS);
+
+        RecordOperation<?> operation1 = mock(CreateRecordOperation.class);
+        RecordOperation<?> operation2 = mock(CreateRecordOperation.class);
+        RecordOperation<?> operation3 = mock(CreateRecordOperation.class);
+        accessor.execute(operation1, operation2, operation3);
+
+        assertThat(executedBatches.size(), is(equalTo(2)));
+        assertThat(executedBatches.get(0), is(equalTo(Arrays.<RecordOperation<?>>asList(operation1, operation2))));
+        assertThat(executedBatches.get(1), is(equalTo(Arrays.<RecordOperation<?>>asList(operation3))));
+    }
+
+    @Test
+    public void testOtherOperationsPassStraightThrough() {
+        RecordAccessor accessor = new CoalescingRecordAccessor(delegate, 10, TimeUnit.MILLISECONDS);
+
+        RecordOperation<?> write = mock(CreateRecordOperation.class);
+        RecordOperation<?> read = mock(GetRecordOperation.class);
+        accessor.execute(write, read);
+
+        assertThat(executedBatches.size(), is(equalTo(1)));
+        assertThat(executedBatches.get(0), is(equalTo(Arrays.<RecordOperation<?>>asList(write, read))));
+    }
+
+    @Test
+    public void testWritesPassStraightThroughWithoutAuthorizationConnector() {
+        when(delegate.getConfig()).thenReturn(new RecordAccessorConfig());
+        RecordAccessor accessor = new CoalescingRecordAccessor(delegate, 10, TimeUnit.SECONDS);
+
+        RecordOperation<?> write = mock(CreateRecordOperation.class);
+        accessor.execute(write);
+
+        assertThat(executedBatches.size(), is(equalTo(1)));
+        assertThat(executedBatches.get(0), is(equalTo(Arrays.<RecordOperation<?>>asList(write))));
+    }
+
+    @Test
+    public void testDifferentAuthorizationsAreNotMixed() throws Exception {
+        final RecordAccessor accessor = new CoalescingRecordAccessor(delegate, 2, 200, TimeUnit.MILLISECONDS);
+
+        Thread otherUser = new Thread() {
+            @Override
+            public void run() {
+                authorization.set("Bearer 2");
+                accessor.execute(mock(CreateRecordOperation.class));
+            }
+        };
+        otherUser.start();
+        accessor.execute(mock(CreateRecordOperation.class));
+        otherUser.join(5000);
+
+        assertThat(executedBatches.size(), is(equalTo(2)));
+        assertThat(executedBatches.get(0).size(), is(equalTo(1)));
+        assertThat(executedBatches.get(1).size(), is(equalTo(1)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailedBatchFailsOperations() {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                throw new IllegalStateException("Broken");
+            }
+        }).when(delegate).execute(Matchers.<List<RecordOperation<?>>>any());
+        RecordAccessor accessor = new CoalescingRecordAccessor(delegate, 10, TimeUnit.MILLISECONDS);
+
+        RecordOperation<?> operation = mock(CreateRecordOperation.class, withSettings().extraInterfaces(CompletionHandler.class));
+        accessor.execute(operation);
+
+        ArgumentCaptor<Throwable> exception = ArgumentCaptor.forClass(Throwable.class);
+        verify((CompletionHandler<?, Statistics>) operation).failed(exception.capture(), any(Statistics.class));
+        assertThat(exception.getValue(), is(instanceOf(RecordResponseException.class)));
+    }
+}
@@ -8,7 +8,9 @@ package com.force.spa.core;
 import java.util.List;
 
 import com.force.spa.CreateRecordOperation;
+import com.force.spa.CreateRecordsOperation;
 import com.force.spa.DeleteRecordOperation;
+import com.force.spa.DeleteRecordsOperation;
 import com.force.spa.DescribeObjectOperation;
 import com.force.spa.GetRecordOperation;
 import com.force.spa.QueryRecordsExOperation;
@@ -16,7 +18,9 @@ import com.force.spa.RecordOperation;
 import com.force.spa.PatchRecordOperation;
 import com.force.spa.QueryRecordsOperation;
 import com.force.spa.RecordAccessorConfig;
+import com.force.spa.RecordCursor;
 import com.force.spa.UpdateRecordOperation;
+import com.force.spa.UpdateRecordsOperation;
 
 /**
  * A dummy implementation of {@link com.force.spa.RecordAccessor} to help with unit tests.
@@ -39,11 +43,21 @@ public class DummyRecordAccessor extends AbstractRecordAccessor {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public <T> CreateRecordsOperation<T> newCreateRecordsOperation(List<T> records) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public <T> DeleteRecordOperation<T> newDeleteRecordOperation(String id, Class<T> recordClass) {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public <T> DeleteRecordsOperation<T> newDeleteRecordsOperation(List<String> ids, Class<T> recordClass) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public DescribeObjectOperation newDescribeObjectOperation(String name) {
         throw new UnsupportedOperationException();
@@ -73,4 +87,14 @@ public class DummyRecordAccessor extends AbstractRecordAccessor {
     public <T> UpdateRecordOperation<T> newUpdateRecordOperation(String id, T record) {
         throw new UnsupportedOperationException();
     }
+
+    @Override
+    public <T> UpdateRecordsOperation<T> newUpdateRecordsOperation(List<T> records) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected <T, R> RecordCursor<R> openRecordCursor(QueryRecordsExOperation<T, R> operation) {
+        throw new UnsupportedOperationException();
+    }
 }
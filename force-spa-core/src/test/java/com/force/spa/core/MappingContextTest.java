@@ -239,4 +239,32 @@ public class MappingContextTest {
             hasFieldName("Id"),
             hasFieldName("NotAttributes")));
     }
+
+    @Test
+    public void testFieldValuesThroughGetterAndSetter() {
+        FieldDescriptor field = mappingContext.getObjectDescriptor(SimpleBean.class).getField("Description");
+
+        SimpleBean bean = new SimpleBean();
+        field.setValue(bean, "A description");
+
+        assertThat(bean.getDescription(), is(equalTo("A description")));
+        assertThat(field.<String>getValue(bean), is(equalTo("A description")));
+    }
+
+    @Test
+    public void testFieldValuesThroughPrivateField() {
+        FieldDescriptor field = mappingContext.getObjectDescriptor(NoGetterBean.class).getField("Value1");
+
+        NoGetterBean bean = new NoGetterBean();
+        field.setValue(bean, "A value");
+
+        assertThat(field.<String>getValue(bean), is(equalTo("A value")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFieldValueOfWrongType() {
+        FieldDescriptor field = mappingContext.getObjectDescriptor(SimpleBean.class).getField("Description");
+
+        field.setValue(new SimpleBean(), 42);
+    }
 }
@@ -0,0 +1,285 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.force.spa.AuthorizationConnector;
+import com.force.spa.CreateRecordOperation;
+import com.force.spa.QueryRecordsExOperation;
+import com.force.spa.RecordAccessorConfig;
+import com.force.spa.RecordOperation;
+import com.force.spa.Statistics;
+import com.force.spa.core.testbeans.ExplicitlyNamedBean;
+import com.force.spa.core.testbeans.SimpleBean;
+import com.google.common.util.concurrent.AbstractFuture;
+
+public class QueryCachingRecordAccessorTest {
+
+    private static final String SOQL = "select Id,Name from SimpleBean";
+
+    private final List<RecordOperation<?>> executedOperations = Collections.synchronizedList(new ArrayList<RecordOperation<?>>());
+
+    private AuthorizationConnector authorizationConnector;
+    private QueryCachingRecordAccessor accessor;
+
+    @Before
+    public void setUp() {
+        authorizationConnector = mock(AuthorizationConnector.class);
+        when(authorizationConnector.getInstanceUrl()).thenReturn(URI.create("https://na1.salesforce.com"));
+        when(authorizationConnector.getUserId()).thenReturn("005i0000000001AAA");
+
+        accessor = new QueryCachingRecordAccessor(newDelegate(), 100000, 1, TimeUnit.HOURS);
+    }
+
+    @Test
+    public void testSecondQueryIsAnsweredFromCache() throws Exception {
+        List<SimpleBean> records = queryThroughCache(SOQL);
+
+        TestQueryRecordsOperation operation = new TestQueryRecordsOperation(SOQL);
+        accessor.execute(operation);
+
+        assertThat(operation.isDone(), is(true));
+        assertThat(operation.get(), is(equalTo(records)));
+        assertThat(operation.get(), is(not(sameInstance(records))));
+        assertThat(operation.getStatistics().getRowsProcessed(), is(equalTo(1L)));
+        assertThat(executedOperations.size(), is(equalTo(1)));
+        assertThat(accessor.getHitCount(), is(equalTo(1L)));
+        assertThat(accessor.getMissCount(), is(equalTo(1L)));
+    }
+
+    @Test
+    public void testQueriesAreCachedPerUser() {
+        queryThroughCache(SOQL);
+
+        when(authorizationConnector.getUserId()).thenReturn("005i0000000002AAA");
+        TestQueryRecordsOperation operation = new TestQueryRecordsOperation(SOQL);
+        accessor.execute(operation);
+
+        assertThat(operation.isDone(), is(false));
+        assertThat(executedOperations.size(), is(equalTo(2)));
+    }
+
+    @Test
+    public void testNothingIsCachedWithoutAuthorizationConnector() {
+        authorizationConnector = null;
+        accessor = new QueryCachingRecordAccessor(newDelegate(), 100000, 1, TimeUnit.HOURS);
+        queryThroughCache(SOQL);
+
+        TestQueryRecordsOperation operation = new TestQueryRecordsOperation(SOQL);
+        accessor.execute(operation);
+
+        assertThat(operation.isDone(), is(false));
+        assertThat(executedOperations.size(), is(equalTo(2)));
+    }
+
+    @Test
+    public void testWriteInvalidatesQueriesOfSameObject() {
+        queryThroughCache(SOQL);
+
+        CreateRecordOperation<Object> create = newCreateRecordOperation(new SimpleBean());
+        accessor.execute(create);
+
+        TestQueryRecordsOperation operation = new TestQueryRecordsOperation(SOQL);
+        accessor.execute(operation);
+
+        assertThat(operation.isDone(), is(false));
+        assertThat(executedOperations, is(equalTo(Arrays.<RecordOperation<?>>asList(executedOperations.get(0), create, operation))));
+    }
+
+    @Test
+    public void testWriteLeavesQueriesOfOtherObjects() {
+        queryThroughCache(SOQL);
+
+        accessor.execute(newCreateRecordOperation(new ExplicitlyNamedBean()));
+
+        TestQueryRecordsOperation operation = new TestQueryRecordsOperation(SOQL);
+        accessor.execute(operation);
+
+        assertThat(operation.isDone(), is(true));
+    }
+
+    @Test
+    public void testExplicitInvalidation() {
+        queryThroughCache(SOQL);
+
+        accessor.invalidateObject("SimpleBean");
+
+        TestQueryRecordsOperation operation = new TestQueryRecordsOperation(SOQL);
+        accessor.execute(operation);
+
+        assertThat(operation.isDone(), is(false));
+    }
+
+    @Test
+    public void testQueryRacingWithWriteIsNotCached() {
+        TestQueryRecordsOperation query = new TestQueryRecordsOperation(SOQL);
+        accessor.execute(query);
+
+        accessor.execute(newCreateRecordOperation(new SimpleBean()));
+
+        query.completed(Collections.singletonList(new SimpleBean()), new Statistics.Builder().build());
+
+        assertThat(accessor.size(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void testExpiredResultsAreNotUsed() throws Exception {
+        TestQueryRecordsOperation query = new TestQueryRecordsOperation(SOQL);
+        query.setCacheTimeToLive(1, TimeUnit.NANOSECONDS);
+        accessor.execute(query);
+        query.completed(Collections.singletonList(new SimpleBean()), new Statistics.Builder().build());
+        Thread.sleep(1);
+
+        TestQueryRecordsOperation operation = new TestQueryRecordsOperation(SOQL);
+        accessor.execute(operation);
+
+        assertThat(operation.isDone(), is(false));
+    }
+
+    @Test
+    public void testEvictionsAreBoundedByEstimatedSize() {
+        long recordBytes = QueryCachingRecordAccessor.estimateRecordBytes(new MappingContext().getObjectDescriptor(SimpleBean.class));
+        accessor = new QueryCachingRecordAccessor(newDelegate(), 3 * recordBytes, 1, TimeUnit.HOURS);
+
+        for (int i = 0; i < 10; i++) {
+            queryThroughCache(SOQL + " where Name = 'Name" + i + "'", 2);
+        }
+
+        assertThat(accessor.size() * 2 * recordBytes, is(lessThanOrEqualTo(3 * recordBytes)));
+        assertThat(accessor.getEvictionCount(), is(greaterThanOrEqualTo(10 - accessor.size())));
+    }
+
+    private List<SimpleBean> queryThroughCache(String soql) {
+        return queryThroughCache(soql, 1);
+    }
+
+    private List<SimpleBean> queryThroughCache(String soql, int numberOfRecords) {
+        TestQueryRecordsOperation operation = new TestQueryRecordsOperation(soql);
+        accessor.execute(operation);
+        List<SimpleBean> records = new ArrayList<>();
+        for (int i = 0; i < numberOfRecords; i++) {
+            records.add(new SimpleBean());
+        }
+        operation.completed(records, new Statistics.Builder().rowsProcessed(numberOfRecords).build());
+        return records;
+    }
+
+    private DummyRecordAccessor newDelegate() {
+        RecordAccessorConfig config = new RecordAccessorConfig().withAuthorizationConnector(authorizationConnector);
+        return new DummyRecordAccessor(config, new MappingContext()) {
+            @Override
+            public void execute(List<RecordOperation<?>> operations) {
+                executedOperations.addAll(operations);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CreateRecordOperation<Object> newCreateRecordOperation(Object record) {
+        CreateRecordOperation<Object> operation = mock(CreateRecordOperation.class);
+        when(operation.getRecord()).thenReturn(record);
+        return operation;
+    }
+
+    private static final class TestQueryRecordsOperation extends AbstractFuture<List<SimpleBean>>
+        implements QueryRecordsExOperation<SimpleBean, SimpleBean>, CompletionHandler<List<SimpleBean>, Statistics> {
+
+        private final String soql;
+        private volatile Statistics statistics;
+        private long cacheTimeToLiveNanos;
+
+        TestQueryRecordsOperation(String soql) {
+            this.soql = soql;
+        }
+
+        @Override
+        public String getSoqlTemplate() {
+            return soql;
+        }
+
+        @Override
+        public String getSoql() {
+            return soql;
+        }
+
+        @Override
+        public Class<SimpleBean> getRecordClass() {
+            return SimpleBean.class;
+        }
+
+        @Override
+        public Class<SimpleBean> getResultClass() {
+            return SimpleBean.class;
+        }
+
+        @Override
+        public void setStartPosition(int startPosition) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getStartPosition() {
+            return 0;
+        }
+
+        @Override
+        public void setMaxResults(int limit) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getMaxResults() {
+            return 0;
+        }
+
+        @Override
+        public void setCacheTimeToLive(long timeToLive, TimeUnit unit) {
+            cacheTimeToLiveNanos = unit.toNanos(timeToLive);
+        }
+
+        @Override
+        public long getCacheTimeToLive(TimeUnit unit) {
+            return unit.convert(cacheTimeToLiveNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public Statistics getStatistics() {
+            return statistics;
+        }
+
+        @Override
+        public void completed(List<SimpleBean> result, Statistics statistics) {
+            this.statistics = statistics;
+            set(result);
+        }
+
+        @Override
+        public void failed(Throwable exception, Statistics statistics) {
+            this.statistics = statistics;
+            setException(exception);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.force.spa.AuthorizationConnector;
+import com.force.spa.RecordAccessor;
+import com.force.spa.RecordAccessorConfig;
+import com.force.spa.RecordNotFoundException;
+import com.force.spa.RecordOperation;
+import com.force.spa.Statistics;
+
+public class SingleFlightRecordAccessorTest {
+
+    private final List<RecordOperation<?>> executedOperations = Collections.synchronizedList(new ArrayList<RecordOperation<?>>());
+
+    private RecordAccessor delegate;
+    private RecordAccessor accessor;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        AuthorizationConnector authorizationConnector = mock(AuthorizationConnector.class);
+        when(authorizationConnector.getInstanceUrl()).thenReturn(URI.create("https://na1.salesforce.com"));
+        when(authorizationConnector.getUserId()).thenReturn("005i0000000001AAA");
+
+        delegate = mock(RecordAccessor.class);
+        when(delegate.getConfig()).thenReturn(new RecordAccessorConfig().withAuthorizationConnector(authorizationConnector));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                executedOperations.addAll((List<RecordOperation<?>>) invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(delegate).execute(Matchers.<List<RecordOperation<?>>>any());
+
+        accessor = new SingleFlightRecordAccessor(delegate);
+    }
+
+    @Test
+    public void testIdenticalReadsShareRequest() throws Exception {
+        TestGetRecordOperation operation1 = new TestGetRecordOperation("a01i00000000001AAC");
+        TestGetRecordOperation operation2 = new TestGetRecordOperation("a01i00000000001AAC");
+        accessor.execute(operation1);
+        accessor.execute(operation2);
+
+        assertThat(executedOperations, is(equalTo(Arrays.<RecordOperation<?>>asList(operation1))));
+
+        Object result = new Object();
+        operation1.completed(result, new Statistics.Builder().rowsProcessed(1).build());
+        assertThat(operation2.get(), is(sameInstance(result)));
+        assertThat(operation2.getStatistics().getRowsProcessed(), is(equalTo(1L)));
+        assertThat(operation2.getStatistics().getBytesReceived(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void testDifferentReadsAreNotShared() {
+        TestGetRecordOperation operation1 = new TestGetRecordOperation("a01i00000000001AAC");
+        TestGetRecordOperation operation2 = new TestGetRecordOperation("a01i00000000002AAC");
+        accessor.execute(operation1, operation2);
+
+        assertThat(executedOperations, is(equalTo(Arrays.<RecordOperation<?>>asList(operation1, operation2))));
+    }
+
+    @Test
+    public void testReadsAreNotSharedWithoutAuthorizationConnector() {
+        when(delegate.getConfig()).thenReturn(new RecordAccessorConfig());
+
+        TestGetRecordOperation operation1 = new TestGetRecordOperation("a01i00000000001AAC");
+        TestGetRecordOperation operation2 = new TestGetRecordOperation("a01i00000000001AAC");
+        accessor.execute(operation1, operation2);
+
+        assertThat(executedOperations, is(equalTo(Arrays.<RecordOperation<?>>asList(operation1, operation2))));
+    }
+
+    @Test
+    public void testFinishedReadIsNotShared() {
+        TestGetRecordOperation operation1 = new TestGetRecordOperation("a01i00000000001AAC");
+        accessor.execute(operation1);
+        operation1.completed(new Object(), new Statistics.Builder().build());
+
+        TestGetRecordOperation operation2 = new TestGetRecordOperation("a01i00000000001AAC");
+        accessor.execute(operation2);
+
+        assertThat(executedOperations, is(equalTo(Arrays.<RecordOperation<?>>asList(operation1, operation2))));
+    }
+
+    @Test
+    public void testFailureIsShared() throws Exception {
+        TestGetRecordOperation operation1 = new TestGetRecordOperation("a01i00000000001AAC");
+        TestGetRecordOperation operation2 = new TestGetRecordOperation("a01i00000000001AAC");
+        accessor.execute(operation1, operation2);
+
+        operation1.failed(new RecordNotFoundException(), new Statistics.Builder().build());
+        try {
+            operation2.get();
+            fail("Didn't get expected exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(RecordNotFoundException.class)));
+        }
+    }
+
+    @Test
+    public void testCancelledReadFailsFollowers() throws Exception {
+        TestGetRecordOperation operation1 = new TestGetRecordOperation("a01i00000000001AAC");
+        TestGetRecordOperation operation2 = new TestGetRecordOperation("a01i00000000001AAC");
+        accessor.execute(operation1, operation2);
+
+        operation1.cancel(false);
+
+        assertThat(executedOperations, is(equalTo(Arrays.<RecordOperation<?>>asList(operation1))));
+        try {
+            operation2.get();
+            fail("Didn't get expected exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(CancellationException.class)));
+        }
+    }
+}
@@ -13,17 +13,23 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Before;
 import org.junit.Test;
 
 import com.force.spa.RecordAccessorConfig;
 import com.force.spa.core.rest.AbstractRestRecordAccessorTest;
 import com.force.spa.core.testbeans.IndirectToSimpleContainerBean;
+import com.force.spa.core.testbeans.MetadataAwareBean;
 import com.force.spa.core.testbeans.PolymorphicFieldBean;
 import com.force.spa.core.testbeans.PolymorphicToContainerBean;
 import com.force.spa.core.testbeans.RecursiveBean;
 import com.force.spa.core.testbeans.SimpleBean;
 import com.force.spa.core.testbeans.SimpleContainerBean;
+import com.force.spa.metadata.FieldMetadata;
+import com.force.spa.metadata.ObjectMetadata;
 
 public class SoqlBuilderTest extends AbstractRestRecordAccessorTest {
 
@@ -141,6 +147,66 @@ public class SoqlBuilderTest extends AbstractRestRecordAccessorTest {
         }
     }
 
+    @Test
+    public void testRepeatedTemplateIsCached() throws Exception {
+        String soqlTemplate = "select * from SimpleContainerBean where Id = '012345678901234'";
+        SoqlExpansionCache cache = accessor.getMappingContext().getSoqlExpansionCache();
+
+        String soql = new SoqlBuilder(accessor).object(SimpleContainerBean.class).template(soqlTemplate).build();
+        long hitCount = cache.getHitCount();
+        long size = cache.size();
+
+        String soql2 = new SoqlBuilder(accessor).object(SimpleContainerBean.class).template(soqlTemplate).limit(10).build();
+
+        assertThat(soql2, is(equalTo(soql + " LIMIT 10")));
+        assertThat(cache.getHitCount(), is(equalTo(hitCount + 1)));
+        assertThat(cache.size(), is(equalTo(size)));
+    }
+
+    @Test
+    public void testCacheIsOwnedByMappingContext() throws Exception {
+        String soqlTemplate = "select * from SimpleBean";
+        new SoqlBuilder(accessor).object(SimpleBean.class).template(soqlTemplate).build();
+
+        AbstractRecordAccessor otherAccessor = new DummyRecordAccessor(new RecordAccessorConfig(), new MappingContext());
+        SoqlExpansionCache otherCache = otherAccessor.getMappingContext().getSoqlExpansionCache();
+        new SoqlBuilder(otherAccessor).object(SimpleBean.class).template(soqlTemplate).build();
+
+        assertThat(otherCache.getHitCount(), is(equalTo(0L)));
+        assertThat(otherCache.getMissCount(), is(equalTo(2L)));
+    }
+
+    @Test
+    public void testMetadataAwareWildcard() throws Exception {
+        String soqlTemplate = "select * from Account";
+        String expectedSoql = "select Id,Name,Industry from Account";
+
+        AbstractRecordAccessor metadataAccessor = new VisibleFieldsAccessor(accessor.getMappingContext(), "Id", "Name", "Industry");
+        String soql = new SoqlBuilder(metadataAccessor).object(MetadataAwareBean.class).template(soqlTemplate).build();
+        assertThat(soql, is(equalTo(expectedSoql)));
+    }
+
+    @Test
+    public void testMetadataAwareExpansionIsSharedByFingerprint() throws Exception {
+        String soqlTemplate = "select * from Account";
+        SoqlExpansionCache cache = accessor.getMappingContext().getSoqlExpansionCache();
+
+        AbstractRecordAccessor firstAccessor = new VisibleFieldsAccessor(accessor.getMappingContext(), "Id", "Name");
+        String soql = new SoqlBuilder(firstAccessor).object(MetadataAwareBean.class).template(soqlTemplate).build();
+        long hitCount = cache.getHitCount();
+        long size = cache.size();
+
+        AbstractRecordAccessor sameAccessor = new VisibleFieldsAccessor(accessor.getMappingContext(), "name", "id");
+        String sameSoql = new SoqlBuilder(sameAccessor).object(MetadataAwareBean.class).template(soqlTemplate).build();
+        assertThat(sameSoql, is(equalTo(soql)));
+        assertThat(cache.getHitCount(), is(equalTo(hitCount + 1)));
+        assertThat(cache.size(), is(equalTo(size)));
+
+        AbstractRecordAccessor otherAccessor = new VisibleFieldsAccessor(accessor.getMappingContext(), "Id", "Description");
+        String otherSoql = new SoqlBuilder(otherAccessor).object(MetadataAwareBean.class).template(soqlTemplate).build();
+        assertThat(otherSoql, is(equalTo("select Id,Description from Account")));
+    }
+
     @Test
     public void profileSimpleContainerQuery() throws Exception {
         assumeTrue("Profile tests are only run if YourKit is present", isYourKitPresent());
@@ -158,4 +224,26 @@ public class SoqlBuilderTest extends AbstractRestRecordAccessorTest {
             new SoqlBuilder(accessor).object(SimpleContainerBean.class).template(soqlTemplate).build();
         }
     }
+
+    private static final class VisibleFieldsAccessor extends DummyRecordAccessor {
+        private final String[] fieldNames;
+
+        VisibleFieldsAccessor(MappingContext mappingContext, String... fieldNames) {
+            super(new RecordAccessorConfig(), mappingContext);
+            this.fieldNames = fieldNames;
+        }
+
+        @Override
+        protected ObjectMetadata getVisibleObjectMetadata(String name) {
+            List<FieldMetadata> fields = new ArrayList<>();
+            for (String fieldName : fieldNames) {
+                FieldMetadata field = new FieldMetadata();
+                field.setName(fieldName);
+                fields.add(field);
+            }
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setFields(fields);
+            return metadata;
+        }
+    }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core;
+
+import java.nio.channels.CompletionHandler;
+
+import com.force.spa.GetRecordOperation;
+import com.force.spa.Statistics;
+import com.google.common.util.concurrent.AbstractFuture;
+
+/**
+ * A {@link GetRecordOperation} for unit tests of record accessor decorators. It is completed by the test rather than
+ * by a connector.
+ */
+public final class TestGetRecordOperation extends AbstractFuture<Object>
+    implements GetRecordOperation<Object>, CompletionHandler<Object, Statistics> {
+
+    private final String id;
+    private volatile Statistics statistics;
+
+    public TestGetRecordOperation(String id) {
+        this.id = id;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public Class<Object> getRecordClass() {
+        return Object.class;
+    }
+
+    @Override
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public void completed(Object result, Statistics statistics) {
+        this.statistics = statistics;
+        set(result);
+    }
+
+    @Override
+    public void failed(Throwable exception, Statistics statistics) {
+        this.statistics = statistics;
+        setException(exception);
+    }
+}
@@ -5,14 +5,19 @@
  */
 package com.force.spa.core;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Date;
 import java.util.concurrent.TimeUnit;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.force.spa.RecordResponseException;
 import com.force.spa.Statistics;
 import com.force.spa.core.rest.RestConnector;
+import com.force.spa.core.rest.RestRequestBody;
 import com.force.spa.core.rest.RestResponseHandler;
 import com.force.spa.core.utils.CountingJsonParser;
 import com.google.common.base.Stopwatch;
@@ -20,15 +25,30 @@ import com.google.common.base.Stopwatch;
 /**
  * A {@link com.force.spa.core.rest.RestConnector} implementation that is designed for use in unit tests. The
  * asynchronous callback interface of the RestConnector is a pain to mock so this TestRestConnector wraps some
- * synchronous methods that are much easier to mock.
+ * synchronous methods that are much easier to mock. Request bodies are written out to strings for the same reason.
  */
 public abstract class TestRestConnector implements RestConnector {
 
-    public abstract void delete(URI uri);
+    public abstract InputStream delete(URI uri);
 
     public abstract InputStream get(URI uri);
 
-    public abstract void patch(URI uri, String jsonBody);
+    /**
+     * Issues a conditional GET. The default implementation ignores the condition.
+     */
+    public InputStream get(URI uri, Date ifModifiedSince) {
+        return get(uri);
+    }
+
+    /**
+     * Issues a GET to another instance without authorization. The default implementation returns nothing, as if the
+     * request failed.
+     */
+    public InputStream getWithoutAuthorization(URI instanceUrl, URI uri) {
+        return null;
+    }
+
+    public abstract InputStream patch(URI uri, String jsonBody);
 
     public abstract InputStream post(URI uri, String jsonBody);
 
@@ -39,6 +59,11 @@ public abstract class TestRestConnector implements RestConnector {
         return 200;
     }
 
+    @SuppressWarnings("SameReturnValue")
+    public Date getResponseDate() {
+        return null;
+    }
+
     @Override
     public final boolean isSynchronous() {
         return true;
@@ -50,14 +75,23 @@ public abstract class TestRestConnector implements RestConnector {
     }
 
     @Override
-    public final void delete(URI uri, RestResponseHandler<Void> responseHandler) {
+    public final Runnable bindToCurrentAuthorization(Runnable task) {
+        return task; // Nothing is bound to the calling thread
+    }
+
+    @Override
+    public final <T> void delete(URI uri, RestResponseHandler<T> responseHandler) {
+        CountingJsonParser parser = null;
         Stopwatch stopwatch = Stopwatch.createStarted();
         try {
-            delete(uri);
-            responseHandler.handleStatus(getStatus(), null);
-            responseHandler.completed(null, buildStatistics(stopwatch, null, null));
+            InputStream resultStream = delete(uri);
+            parser = (resultStream != null) ? getMappingContext().createParser(resultStream) : null;
+            int status = getStatus();
+            responseHandler.handleStatus(status, parser);
+            T result = (status < 300 && parser != null) ? responseHandler.deserialize(parser) : null;
+            responseHandler.completed(result, buildStatistics(stopwatch, null, parser));
         } catch (Exception e) {
-            responseHandler.failed(mapSelectedExceptions(e), buildStatistics(stopwatch, null, null));
+            responseHandler.failed(mapSelectedExceptions(e), buildStatistics(stopwatch, null, parser));
         }
     }
 
@@ -66,11 +100,16 @@ public abstract class TestRestConnector implements RestConnector {
         CountingJsonParser parser = null;
         Stopwatch stopwatch = Stopwatch.createStarted();
         try {
-            InputStream resultStream = get(uri);
-            parser = getMappingContext().createParser(resultStream);
+            Date ifModifiedSince = responseHandler.getIfModifiedSince();
+            InputStream resultStream = (ifModifiedSince != null) ? get(uri, ifModifiedSince) : get(uri);
+            parser = (resultStream != null) ? getMappingContext().createParser(resultStream) : null;
+            Date responseDate = getResponseDate();
+            if (responseDate != null) {
+                responseHandler.handleResponseDate(responseDate);
+            }
             int status = getStatus();
             responseHandler.handleStatus(status, parser);
-            T result = (status < 300) ? responseHandler.deserialize(parser) : null;
+            T result = (status < 300 && parser != null) ? responseHandler.deserialize(parser) : null;
             responseHandler.completed(result, buildStatistics(stopwatch, null, parser));
         } catch (Exception e) {
             responseHandler.failed(mapSelectedExceptions(e), buildStatistics(stopwatch, null, parser));
@@ -78,22 +117,46 @@ public abstract class TestRestConnector implements RestConnector {
     }
 
     @Override
-    public final void patch(URI uri, String jsonBody, RestResponseHandler<Void> responseHandler) {
+    public final <T> void getWithoutAuthorization(URI instanceUrl, URI uri, RestResponseHandler<T> responseHandler) {
+        CountingJsonParser parser = null;
         Stopwatch stopwatch = Stopwatch.createStarted();
         try {
-            patch(uri, jsonBody);
-            responseHandler.handleStatus(getStatus(), null);
-            responseHandler.completed(null, buildStatistics(stopwatch, jsonBody, null));
+            InputStream resultStream = getWithoutAuthorization(instanceUrl, uri);
+            parser = (resultStream != null) ? getMappingContext().createParser(resultStream) : null;
+            int status = getStatus();
+            responseHandler.handleStatus(status, parser);
+            T result = (status < 300 && parser != null) ? responseHandler.deserialize(parser) : null;
+            responseHandler.completed(result, buildStatistics(stopwatch, null, parser));
         } catch (Exception e) {
-            responseHandler.failed(mapSelectedExceptions(e), buildStatistics(stopwatch, jsonBody, null));
+            responseHandler.failed(mapSelectedExceptions(e), buildStatistics(stopwatch, null, parser));
         }
     }
 
     @Override
-    public final <T> void post(URI uri, String jsonBody, RestResponseHandler<T> responseHandler) {
+    public final <T> void patch(URI uri, RestRequestBody body, RestResponseHandler<T> responseHandler) {
         CountingJsonParser parser = null;
+        String jsonBody = null;
         Stopwatch stopwatch = Stopwatch.createStarted();
         try {
+            jsonBody = toString(body);
+            InputStream resultStream = patch(uri, jsonBody);
+            parser = (resultStream != null) ? getMappingContext().createParser(resultStream) : null;
+            int status = getStatus();
+            responseHandler.handleStatus(status, parser);
+            T result = (status < 300 && parser != null) ? responseHandler.deserialize(parser) : null;
+            responseHandler.completed(result, buildStatistics(stopwatch, jsonBody, parser));
+        } catch (Exception e) {
+            responseHandler.failed(mapSelectedExceptions(e), buildStatistics(stopwatch, jsonBody, parser));
+        }
+    }
+
+    @Override
+    public final <T> void post(URI uri, RestRequestBody body, RestResponseHandler<T> responseHandler) {
+        CountingJsonParser parser = null;
+        String jsonBody = null;
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        try {
+            jsonBody = toString(body);
             InputStream resultStream = post(uri, jsonBody);
             parser = getMappingContext().createParser(resultStream);
             int status = getStatus();
@@ -105,6 +168,12 @@ public abstract class TestRestConnector implements RestConnector {
         }
     }
 
+    private static String toString(RestRequestBody body) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        body.writeTo(outputStream);
+        return new String(outputStream.toByteArray(), Charset.forName("UTF-8"));
+    }
+
     private Statistics buildStatistics(Stopwatch stopwatch, String jsonBody, CountingJsonParser parser) {
         return new Statistics.Builder()
             .bytesSent((jsonBody != null) ? jsonBody.length() : 0)
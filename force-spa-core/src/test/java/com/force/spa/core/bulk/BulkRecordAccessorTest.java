@@ -0,0 +1,360 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.bulk;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+import com.force.spa.ApiVersion;
+import com.force.spa.RecordAccessorConfig;
+import com.force.spa.RecordCursor;
+import com.force.spa.RecordNotFoundException;
+import com.force.spa.RecordRequestException;
+import com.force.spa.RecordResult;
+import com.force.spa.core.DummyRecordAccessor;
+import com.force.spa.core.MappingContext;
+import com.force.spa.core.testbeans.DateTimeBean;
+import com.force.spa.core.testbeans.InsertableUpdatableFieldBean;
+import com.force.spa.core.testbeans.SimpleBean;
+
+public class BulkRecordAccessorTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final FakeBulkConnector connector = new FakeBulkConnector(new ApiVersion("47.0"));
+    private final BulkRecordAccessor accessor = new BulkRecordAccessor(
+        new DummyRecordAccessor(new RecordAccessorConfig(), new MappingContext()), connector, 1, 4, TimeUnit.MILLISECONDS);
+
+    @Test
+    public void testInsert() {
+        connector.respond("POST /jobs/ingest", 200, "{\"id\":\"750x1\",\"state\":\"Open\"}");
+        connector.respond("PUT /jobs/ingest/750x1/batches", 201, "");
+        connector.respond("PATCH /jobs/ingest/750x1", 200, "{\"id\":\"750x1\",\"state\":\"UploadComplete\"}");
+        connector.respond("GET /jobs/ingest/750x1", 200, "{\"id\":\"750x1\",\"state\":\"InProgress\"}");
+        connector.respond("GET /jobs/ingest/750x1", 200, "{\"id\":\"750x1\",\"state\":\"JobComplete\",\"numberRecordsProcessed\":2,\"numberRecordsFailed\":0}");
+
+        List<BulkJobResult> results = accessor.insert(
+            Arrays.asList(newInsertableUpdatableFieldBean("Line \"one\"", "a,b"), newInsertableUpdatableFieldBean("Line\ntwo", null)),
+            InsertableUpdatableFieldBean.class);
+
+        assertThat(results.size(), is(equalTo(1)));
+        BulkJobResult result = results.get(0);
+        assertThat(result.getJobId(), is(equalTo("750x1")));
+        assertThat(result.getNumberRecordsProcessed(), is(equalTo(2L)));
+        assertThat(result.getNumberRecordsFailed(), is(equalTo(0L)));
+        assertThat(connector.requests, contains(
+            "POST /jobs/ingest", "PUT /jobs/ingest/750x1/batches", "PATCH /jobs/ingest/750x1", "GET /jobs/ingest/750x1", "GET /jobs/ingest/750x1"));
+        assertThat(connector.bodies.get(0), is(equalTo(
+            "{\"object\":\"InsertableUpdatableFieldBean\",\"operation\":\"insert\",\"contentType\":\"CSV\",\"lineEnding\":\"LF\"}")));
+        assertThat(connector.bodies.get(1), is(equalTo(
+            "Name,NotUpdatable\n" +
+                "\"Line \"\"one\"\"\",\"a,b\"\n" +
+                "\"Line\ntwo\",\n")));
+        assertThat(connector.bodies.get(2), is(equalTo("{\"state\":\"UploadComplete\"}")));
+    }
+
+    @Test
+    public void testInsertFormatsValuesLikeRest() {
+        connector.respond("POST /jobs/ingest", 200, "{\"id\":\"750x1\"}");
+        connector.respond("PUT /jobs/ingest/750x1/batches", 201, "");
+        connector.respond("PATCH /jobs/ingest/750x1", 200, "{\"id\":\"750x1\"}");
+        connector.respond("GET /jobs/ingest/750x1", 200, "{\"id\":\"750x1\",\"state\":\"JobComplete\",\"numberRecordsProcessed\":1}");
+
+        DateTimeBean bean = new DateTimeBean();
+        bean.setJodaDateAndTime(new DateTime(2013, 4, 1, 12, 30, 15, DateTimeZone.UTC));
+        bean.setJodaDateOnly(new LocalDate(2013, 4, 1));
+        accessor.insert(Collections.singletonList(bean), DateTimeBean.class);
+
+        List<String> lines = Arrays.asList(connector.bodies.get(1).split("\n"));
+        List<String> columns = Arrays.asList(lines.get(0).split(","));
+        List<String> values = Arrays.asList(lines.get(1).split(",", -1));
+        assertThat(values.get(columns.indexOf("JodaDateAndTime")), is(equalTo("2013-04-01T12:30:15.000Z")));
+        assertThat(values.get(columns.indexOf("JodaDateOnly")), is(equalTo("2013-04-01")));
+        assertThat(values.get(columns.indexOf("JavaDateOnly")), is(equalTo("")));
+    }
+
+    @Test
+    public void testRecordsAreSplitAcrossJobs() {
+        BulkRecordAccessor smallJobAccessor = new BulkRecordAccessor(
+            new DummyRecordAccessor(new RecordAccessorConfig(), new MappingContext()), connector, 1, 4, TimeUnit.MILLISECONDS, 35);
+        for (String jobId : Arrays.asList("750x1", "750x2")) {
+            connector.respond("POST /jobs/ingest", 200, "{\"id\":\"" + jobId + "\"}");
+            connector.respond("PUT /jobs/ingest/" + jobId + "/batches", 201, "");
+            connector.respond("PATCH /jobs/ingest/" + jobId, 200, "{\"id\":\"" + jobId + "\"}");
+            connector.respond("GET /jobs/ingest/" + jobId, 200, "{\"id\":\"" + jobId + "\",\"state\":\"JobComplete\",\"numberRecordsProcessed\":2}");
+        }
+
+        List<String> ids = Arrays.asList("a01000000000001", "a01000000000002", "a01000000000003", "a01000000000004");
+        List<BulkJobResult> results = smallJobAccessor.delete(ids, SimpleBean.class);
+
+        assertThat(results.size(), is(equalTo(2)));
+        assertThat(results.get(0).getJobId(), is(equalTo("750x1")));
+        assertThat(results.get(1).getJobId(), is(equalTo("750x2")));
+        assertThat(connector.requests, contains(
+            "POST /jobs/ingest", "PUT /jobs/ingest/750x1/batches", "PATCH /jobs/ingest/750x1",
+            "POST /jobs/ingest", "PUT /jobs/ingest/750x2/batches", "PATCH /jobs/ingest/750x2",
+            "GET /jobs/ingest/750x1", "GET /jobs/ingest/750x2"));
+        assertThat(connector.bodies.get(1), is(equalTo("Id\na01000000000001\na01000000000002\n")));
+        assertThat(connector.bodies.get(4), is(equalTo("Id\na01000000000003\na01000000000004\n")));
+    }
+
+    @Test
+    public void testRecordTooLargeForJobAbortsJob() {
+        BulkRecordAccessor smallJobAccessor = new BulkRecordAccessor(
+            new DummyRecordAccessor(new RecordAccessorConfig(), new MappingContext()), connector, 1, 4, TimeUnit.MILLISECONDS, 10);
+        connector.respond("POST /jobs/ingest", 200, "{\"id\":\"750x1\"}");
+        connector.respond("PATCH /jobs/ingest/750x1", 200, "{\"id\":\"750x1\",\"state\":\"Aborted\"}");
+
+        try {
+            smallJobAccessor.delete(Collections.singletonList("a01000000000001"), SimpleBean.class);
+            fail("Didn't get expected exception");
+        } catch (RecordRequestException e) {
+            assertThat(e.getMessage(), is(equalTo("A record takes 16 bytes of CSV, which is more than a bulk job can take")));
+        }
+        assertThat(connector.requests, contains("POST /jobs/ingest", "PUT /jobs/ingest/750x1/batches", "PATCH /jobs/ingest/750x1"));
+    }
+
+    @Test
+    public void testUpdate() {
+        connector.respond("POST /jobs/ingest", 200, "{\"id\":\"750x1\"}");
+        connector.respond("PUT /jobs/ingest/750x1/batches", 201, "");
+        connector.respond("PATCH /jobs/ingest/750x1", 200, "{\"id\":\"750x1\"}");
+        connector.respond("GET /jobs/ingest/750x1", 200, "{\"id\":\"750x1\",\"state\":\"JobComplete\",\"numberRecordsProcessed\":1}");
+
+        InsertableUpdatableFieldBean bean = newInsertableUpdatableFieldBean("Name 1", null);
+        bean.setId("a01000000000001");
+        accessor.update(Collections.singletonList(bean), InsertableUpdatableFieldBean.class);
+
+        assertThat(connector.bodies.get(0), containsString("\"operation\":\"update\""));
+        assertThat(connector.bodies.get(1), is(equalTo("Id,Name,NotInsertable\na01000000000001,Name 1,#N/A\n")));
+    }
+
+    @Test
+    public void testUpdateWithoutIdAbortsJob() {
+        connector.respond("POST /jobs/ingest", 200, "{\"id\":\"750x1\"}");
+        connector.respond("PATCH /jobs/ingest/750x1", 200, "{\"id\":\"750x1\",\"state\":\"Aborted\"}");
+
+        try {
+            accessor.update(Collections.singletonList(newInsertableUpdatableFieldBean("Name 1", null)), InsertableUpdatableFieldBean.class);
+            fail("Didn't get expected exception");
+        } catch (RecordRequestException e) {
+            assertThat(e.getMessage(), containsString("id"));
+        }
+        assertThat(connector.requests, contains("POST /jobs/ingest", "PUT /jobs/ingest/750x1/batches", "PATCH /jobs/ingest/750x1"));
+        assertThat(connector.bodies.get(2), is(equalTo("{\"state\":\"Aborted\"}")));
+    }
+
+    @Test
+    public void testDelete() {
+        connector.respond("POST /jobs/ingest", 200, "{\"id\":\"750x1\"}");
+        connector.respond("PUT /jobs/ingest/750x1/batches", 201, "");
+        connector.respond("PATCH /jobs/ingest/750x1", 200, "{\"id\":\"750x1\"}");
+        connector.respond("GET /jobs/ingest/750x1", 200, "{\"id\":\"750x1\",\"state\":\"JobComplete\",\"numberRecordsProcessed\":2,\"numberRecordsFailed\":1}");
+        connector.respond("GET /jobs/ingest/750x1/failedResults/", 200,
+            "\"sf__Id\",\"sf__Error\",Id\n\"a01000000000002\",\"ENTITY_IS_DELETED:entity is deleted:--\",\"a01000000000002\"\n");
+
+        List<BulkJobResult> results = accessor.delete(Arrays.asList("a01000000000001", "a01000000000002"), SimpleBean.class);
+        List<RecordResult> failedResults = accessor.getFailedResults(results.get(0));
+
+        assertThat(connector.bodies.get(0), containsString("\"object\":\"SimpleBean\",\"operation\":\"delete\""));
+        assertThat(connector.bodies.get(1), is(equalTo("Id\na01000000000001\na01000000000002\n")));
+        assertThat(failedResults.size(), is(equalTo(1)));
+        assertThat(failedResults.get(0).getId(), is(equalTo("a01000000000002")));
+        assertThat(failedResults.get(0).isSuccess(), is(equalTo(false)));
+        assertThat(failedResults.get(0).getErrorMessage(), is(equalTo("ENTITY_IS_DELETED:entity is deleted:--")));
+    }
+
+    @Test
+    public void testFailedJob() {
+        connector.respond("POST /jobs/ingest", 200, "{\"id\":\"750x1\"}");
+        connector.respond("PUT /jobs/ingest/750x1/batches", 201, "");
+        connector.respond("PATCH /jobs/ingest/750x1", 200, "{\"id\":\"750x1\"}");
+        connector.respond("GET /jobs/ingest/750x1", 200, "{\"id\":\"750x1\",\"state\":\"Failed\",\"errorMessage\":\"InvalidBatch : Field name not found\"}");
+
+        try {
+            accessor.insert(Collections.singletonList(new SimpleBean()), SimpleBean.class);
+            fail("Didn't get expected exception");
+        } catch (RecordRequestException e) {
+            assertThat(e.getMessage(), is(equalTo("Bulk job 750x1 ended in state Failed: InvalidBatch : Field name not found")));
+        }
+    }
+
+    @Test
+    public void testErrorStatus() {
+        connector.respond("POST /jobs/ingest", 404, "[{\"errorCode\":\"NOT_FOUND\",\"message\":\"The requested resource does not exist\"}]");
+
+        try {
+            accessor.insert(Collections.singletonList(new SimpleBean()), SimpleBean.class);
+            fail("Didn't get expected exception");
+        } catch (RecordNotFoundException e) {
+            assertThat(e.getMessage(), is(equalTo("NOT_FOUND: The requested resource does not exist")));
+        }
+    }
+
+    @Test
+    public void testQuery() {
+        connector.respond("POST /jobs/query", 200, "{\"id\":\"750x2\",\"state\":\"UploadComplete\"}");
+        connector.respond("GET /jobs/query/750x2", 200, "{\"id\":\"750x2\",\"state\":\"JobComplete\",\"numberRecordsProcessed\":3}");
+        connector.respond("GET /jobs/query/750x2/results", 200, "abc",
+            "\"Id\",\"Name\",\"Description\"\n\"a01000000000001\",\"Name 1\",\"Two\nlines\"\n\"a01000000000002\",\"Name 2\",\"\"\n");
+        connector.respond("GET /jobs/query/750x2/results?locator=abc", 200, "null",
+            "\"Id\",\"Name\",\"Description\"\r\n\"a01000000000003\",\"Name \"\"3\"\"\",\"x,y\"\r\n");
+
+        List<SimpleBean> beans = new ArrayList<>();
+        try (RecordCursor<SimpleBean> cursor = accessor.query("select * from SimpleBean", SimpleBean.class)) {
+            while (cursor.hasNext()) {
+                beans.add(cursor.next());
+            }
+        }
+
+        assertThat(connector.bodies.get(0), is(equalTo(
+            "{\"operation\":\"query\",\"query\":\"select Id,Name,Description from SimpleBean\",\"contentType\":\"CSV\",\"lineEnding\":\"LF\"}")));
+        assertThat(beans.size(), is(equalTo(3)));
+        assertThat(beans.get(0).getId(), is(equalTo("a01000000000001")));
+        assertThat(beans.get(0).getDescription(), is(equalTo("Two\nlines")));
+        assertThat(beans.get(1).getName(), is(equalTo("Name 2")));
+        assertThat(beans.get(1).getDescription(), is(nullValue()));
+        assertThat(beans.get(2).getName(), is(equalTo("Name \"3\"")));
+        assertThat(beans.get(2).getDescription(), is(equalTo("x,y")));
+        assertThat(connector.openResponses, is(equalTo(0)));
+    }
+
+    @Test
+    public void testQueryNeedsRecentApiVersion() {
+        FakeBulkConnector oldConnector = new FakeBulkConnector(new ApiVersion("46.0"));
+        BulkRecordAccessor oldAccessor = new BulkRecordAccessor(
+            new DummyRecordAccessor(new RecordAccessorConfig(), new MappingContext()), oldConnector);
+        try {
+            oldAccessor.query("select * from SimpleBean", SimpleBean.class);
+            fail("Didn't get expected exception");
+        } catch (RecordRequestException e) {
+            assertThat(e.getMessage(), is(equalTo("Bulk queries require API version 47.0 or later, not 46.0")));
+        }
+        assertThat(oldConnector.requests.isEmpty(), is(equalTo(true)));
+    }
+
+    private static InsertableUpdatableFieldBean newInsertableUpdatableFieldBean(String name, String value) {
+        InsertableUpdatableFieldBean bean = new InsertableUpdatableFieldBean();
+        bean.setName(name);
+        bean.setNotInsertable(value);
+        bean.setNotUpdatable(value);
+        bean.setNotInsertableOrUpdatable(value);
+        return bean;
+    }
+
+    /**
+     * A connector that hands out canned responses and remembers what was sent.
+     */
+    private static class FakeBulkConnector implements BulkConnector {
+        private final ApiVersion apiVersion;
+        private final Map<String, Deque<FakeBulkResponse>> responses = new HashMap<>();
+        private final List<String> requests = new ArrayList<>();
+        private final List<String> bodies = new ArrayList<>();
+        private int openResponses;
+
+        FakeBulkConnector(ApiVersion apiVersion) {
+            this.apiVersion = apiVersion;
+        }
+
+        void respond(String request, int status, String body) {
+            respond(request, status, null, body);
+        }
+
+        void respond(String request, int status, String locator, String body) {
+            if (!responses.containsKey(request)) {
+                responses.put(request, new ArrayDeque<FakeBulkResponse>());
+            }
+            responses.get(request).add(new FakeBulkResponse(status, locator, body));
+        }
+
+        @Override
+        public BulkResponse send(String method, URI uri, BulkRequestBody body) {
+            String request = method + " " + uri;
+            requests.add(request);
+            if (body != null) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                try {
+                    body.writeTo(outputStream);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    bodies.add(new String(outputStream.toByteArray(), UTF_8));
+                }
+            }
+
+            Deque<FakeBulkResponse> queue = responses.get(request);
+            if (queue == null || queue.isEmpty()) {
+                throw new IllegalStateException("Unexpected request: " + request);
+            }
+            FakeBulkResponse response = (queue.size() > 1) ? queue.remove() : queue.peek();
+            openResponses++;
+            return response;
+        }
+
+        @Override
+        public ApiVersion getApiVersion() {
+            return apiVersion;
+        }
+
+        private class FakeBulkResponse implements BulkResponse {
+            private final int status;
+            private final String locator;
+            private final String body;
+
+            FakeBulkResponse(int status, String locator, String body) {
+                this.status = status;
+                this.locator = locator;
+                this.body = body;
+            }
+
+            @Override
+            public int getStatus() {
+                return status;
+            }
+
+            @Override
+            public String getHeader(String name) {
+                return "Sforce-Locator".equals(name) ? locator : null;
+            }
+
+            @Override
+            public InputStream getBody() {
+                return new ByteArrayInputStream(body.getBytes(UTF_8));
+            }
+
+            @Override
+            public void close() {
+                openResponses--;
+            }
+        }
+    }
+}
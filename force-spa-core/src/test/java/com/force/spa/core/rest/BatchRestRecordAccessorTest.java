@@ -12,17 +12,34 @@ import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.force.spa.QueryRecordsOperation;
+import com.force.spa.RecordAccessor;
+import com.force.spa.RecordAccessorConfig;
 import com.force.spa.RecordOperation;
 import com.force.spa.RecordRequestException;
 import com.force.spa.core.testbeans.SecondarySimpleBean;
@@ -121,6 +138,68 @@ public class BatchRestRecordAccessorTest extends AbstractRestRecordAccessorTest
         }
     }
 
+    @Test
+    public void testTwoCreatesWithErrorStatusFirst() throws Throwable {
+        try {
+            SimpleBean bean1 = new SimpleBean();
+            bean1.setName("Name 1");
+            bean1.setDescription("Description 1");
+            RecordOperation<String> createRecordOperation1 = accessor.newCreateRecordOperation(bean1);
+
+            SimpleBean bean2 = new SimpleBean();
+            bean2.setName("Name 2");
+            bean2.setDescription("Description 2");
+            RecordOperation<String> createRecordOperation2 = accessor.newCreateRecordOperation(bean2);
+
+            when(
+                connector.post(any(URI.class), anyString()))
+                .thenReturn(getResourceStream("twoCreatesErrorStatusFirstResponse.json"));
+
+            accessor.execute(createRecordOperation1, createRecordOperation2);
+
+            try {
+                createRecordOperation1.get();
+                fail("Didn't get expected exception");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), is(instanceOf(RecordRequestException.class)));
+                assertThat(e.getCause().getMessage(), containsString("INVALID_BATCH_REQUEST"));
+            }
+
+            assertThat(createRecordOperation2.get(), is(equalTo("a01i00000000002AAC")));
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Test
+    public void testTwoQueriesWithError() throws Throwable {
+        try {
+            when(
+                connector.post(any(URI.class), anyString()))
+                .thenReturn(getResourceStream("twoQueriesErrorResponse.json"));
+
+            String soql = "select * from SimpleBean";
+            QueryRecordsOperation<SimpleBean> operation1 = accessor.newQueryRecordsOperation(soql, SimpleBean.class);
+            QueryRecordsOperation<SimpleBean> operation2 = accessor.newQueryRecordsOperation(soql, SimpleBean.class);
+
+            accessor.execute(operation1, operation2);
+
+            try {
+                operation1.get();
+                fail("Didn't get expected exception");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), is(instanceOf(RecordRequestException.class)));
+                assertThat(e.getCause().getMessage(), containsString("INVALID_TYPE"));
+            }
+
+            List<SimpleBean> beans = operation2.get();
+            assertThat(beans.size(), is(equalTo(2)));
+            assertThat(beans.get(1).getName(), is(equalTo("Name 2")));
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
     @Test
     public void testAmbiguousQueryDeserialization() throws Throwable {
         try {
@@ -157,4 +236,162 @@ public class BatchRestRecordAccessorTest extends AbstractRestRecordAccessorTest
             throw e.getCause();
         }
     }
+
+    @Test
+    public void testQueryPagesFollowInLaterBatch() throws Exception {
+        when(
+            connector.post(any(URI.class), anyString()))
+            .thenReturn(getResourceStream("twoQueriesFirstPagesResponse.json"))
+            .thenReturn(getResourceStream("queryLastPageResponse.json"));
+
+        QueryRecordsOperation<SimpleBean> operation1 = accessor.newQueryRecordsOperation("select * from SimpleBean", SimpleBean.class);
+        QueryRecordsOperation<SimpleBean> operation2 = accessor.newQueryRecordsOperation("select * from SimpleBean", SimpleBean.class);
+        accessor.execute(operation1, operation2);
+
+        List<SimpleBean> beans1 = operation1.get();
+        assertThat(beans1.size(), is(equalTo(3)));
+        assertThat(beans1.get(2).getId(), is(equalTo("a01i00000000003")));
+        assertThat(operation1.getStatistics().getRowsProcessed(), is(equalTo(3L)));
+
+        List<SimpleBean> beans2 = operation2.get();
+        assertThat(beans2.size(), is(equalTo(1)));
+        assertThat(beans2.get(0).getId(), is(equalTo("a01i00000000004")));
+
+        verify(connector, times(2)).post(eq(URI.create("/connect/batch")), anyString());
+        verify(connector).post(eq(URI.create("/connect/batch")), contains("\"url\":\"/services/data/v29.0/query/01gD0000002HU6KIAW-2000\""));
+    }
+
+    @Test
+    public void testCancelledOperationIsLeftOutOfBatch() throws Exception {
+        SimpleBean bean1 = new SimpleBean();
+        bean1.setName("Name 1");
+        bean1.setDescription("Description 1");
+        RecordOperation<String> createRecordOperation1 = accessor.newCreateRecordOperation(bean1);
+
+        SimpleBean cancelledBean = new SimpleBean();
+        cancelledBean.setName("Cancelled");
+        RecordOperation<String> cancelledOperation = accessor.newCreateRecordOperation(cancelledBean);
+
+        SimpleBean bean2 = new SimpleBean();
+        bean2.setName("Name 2");
+        bean2.setDescription("Description 2");
+        RecordOperation<String> createRecordOperation2 = accessor.newCreateRecordOperation(bean2);
+
+        when(
+            connector.post(any(URI.class), anyString()))
+            .thenReturn(getResourceStream("twoCreatesHasErrorsFirstResponse.json"));
+
+        cancelledOperation.cancel(false);
+        accessor.execute(createRecordOperation1, cancelledOperation, createRecordOperation2);
+
+        assertThat(createRecordOperation1.get(), is(equalTo("a01i00000000001AAC")));
+        assertThat(createRecordOperation2.get(), is(equalTo("a01i00000000002AAC")));
+        assertThat(cancelledOperation.isCancelled(), is(true));
+
+        verify(connector).post(URI.create("/connect/batch"), getResourceString("twoCreatesRequest.json"));
+    }
+
+    @Test
+    public void testParallelBatches() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            RecordAccessor parallelAccessor = new RestRecordAccessor(
+                new RecordAccessorConfig().withMaxConcurrentBatches(2), mappingContext, connector, executor);
+
+            BatchAnswer answer = new BatchAnswer(new CountDownLatch(2));
+            when(
+                connector.post(any(URI.class), anyString()))
+                .thenAnswer(answer);
+
+            List<RecordOperation<?>> operations = new ArrayList<>();
+            for (int i = 0; i < 60; i++) {
+                SimpleBean bean = new SimpleBean();
+                bean.setName("Name" + i);
+                operations.add(parallelAccessor.newCreateRecordOperation(bean));
+            }
+
+            parallelAccessor.execute(operations);
+
+            for (int i = 0; i < 60; i++) {
+                assertThat(operations.get(i).get(), is(equalTo((Object) ("Id" + i))));
+            }
+            assertThat(answer.numberOfBatches.get(), is(equalTo(3)));
+            assertThat(answer.maxOutstandingBatches.get(), is(equalTo(2)));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelBatchesWithoutExecutor() throws Exception {
+        RecordAccessor parallelAccessor = new RestRecordAccessor(
+            new RecordAccessorConfig().withMaxConcurrentBatches(2), mappingContext, connector);
+
+        BatchAnswer answer = new BatchAnswer(new CountDownLatch(0));
+        when(
+            connector.post(any(URI.class), anyString()))
+            .thenAnswer(answer);
+
+        List<RecordOperation<?>> operations = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            SimpleBean bean = new SimpleBean();
+            bean.setName("Name" + i);
+            operations.add(parallelAccessor.newCreateRecordOperation(bean));
+        }
+
+        parallelAccessor.execute(operations);
+
+        for (int i = 0; i < 30; i++) {
+            assertThat(operations.get(i).get(), is(equalTo((Object) ("Id" + i))));
+        }
+        assertThat(answer.numberOfBatches.get(), is(equalTo(2)));
+        assertThat(answer.maxOutstandingBatches.get(), is(equalTo(1)));
+    }
+
+    /**
+     * Fabricates a batch response with a successful create result for every request in the batch. The id of each new
+     * record is derived from its name. A latch is used to hold up the first batches until enough of them are
+     * outstanding at the same time.
+     */
+    private static class BatchAnswer implements Answer<InputStream> {
+        private final ObjectMapper objectMapper = new ObjectMapper();
+        private final CountDownLatch latch;
+        private final AtomicInteger numberOfBatches = new AtomicInteger();
+        private final AtomicInteger outstandingBatches = new AtomicInteger();
+        private final AtomicInteger maxOutstandingBatches = new AtomicInteger();
+
+        BatchAnswer(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public InputStream answer(InvocationOnMock invocation) throws Throwable {
+            numberOfBatches.incrementAndGet();
+            int outstanding = outstandingBatches.incrementAndGet();
+            try {
+                while (true) {
+                    int max = maxOutstandingBatches.get();
+                    if (outstanding <= max || maxOutstandingBatches.compareAndSet(max, outstanding)) {
+                        break;
+                    }
+                }
+                latch.countDown();
+                latch.await(5, TimeUnit.SECONDS);
+
+                StringBuilder builder = new StringBuilder("{\"hasErrors\": false, \"results\": [");
+                JsonNode batchRequests = objectMapper.readTree((String) invocation.getArguments()[1]).get("batchRequests");
+                for (int i = 0; i < batchRequests.size(); i++) {
+                    String name = batchRequests.get(i).get("richInput").get("Name").asText();
+                    builder.append((i > 0) ? "," : "");
+                    builder.append("{\"statusCode\": 201, \"result\": {\"id\": \"");
+                    builder.append(name.replace("Name", "Id"));
+                    builder.append("\", \"success\": true, \"errors\": []}}");
+                }
+                builder.append("]}");
+                return new ByteArrayInputStream(builder.toString().getBytes("UTF-8"));
+            } finally {
+                outstandingBatches.decrementAndGet();
+            }
+        }
+    }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.rest;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.force.spa.RecordAccessorConfig;
+import com.force.spa.metadata.ObjectMetadata;
+
+public class DescribeCacheTest extends AbstractRestRecordAccessorTest {
+
+    private static final URI DESCRIBE_URI = URI.create("/sobjects/Account/describe");
+    private static final URI INSTANCE_URL = URI.create("https://na1.salesforce.com");
+    private static final Date RESPONSE_DATE = new Date(1380000000000L);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testUnmodifiedDescriptionIsReused() throws Exception {
+        DescribeCache describeCache = new DescribeCache();
+        ObjectMetadata metadata = describe(describeCache);
+
+        when(connector.get(DESCRIBE_URI, RESPONSE_DATE)).thenReturn(null);
+        when(connector.getStatus()).thenReturn(304);
+        ObjectMetadata revalidatedMetadata = newAccessor(describeCache).describeObject("Account");
+
+        assertThat(revalidatedMetadata, is(sameInstance(metadata)));
+        verify(connector).get(DESCRIBE_URI, RESPONSE_DATE);
+    }
+
+    @Test
+    public void testModifiedDescriptionIsReplaced() throws Exception {
+        DescribeCache describeCache = new DescribeCache();
+        ObjectMetadata metadata = describe(describeCache);
+
+        when(connector.get(DESCRIBE_URI, RESPONSE_DATE)).thenReturn(getResourceStream("describeAccountResponse.json"));
+        ObjectMetadata modifiedMetadata = newAccessor(describeCache).describeObject("Account");
+
+        assertThat(modifiedMetadata, is(not(sameInstance(metadata))));
+        assertThat(modifiedMetadata.getName(), is(equalTo("Account")));
+    }
+
+    @Test
+    public void testDescriptionWithoutResponseDateIsNotCached() throws Exception {
+        when(connector.get(DESCRIBE_URI)).thenReturn(getResourceStream("describeAccountResponse.json"));
+        DescribeCache describeCache = new DescribeCache();
+        newAccessor(describeCache).describeObject("Account");
+
+        assertThat(describeCache.size(), is(equalTo(0L)));
+    }
+
+    @Test
+    public void testDescriptionIsKeptInDirectory() throws Exception {
+        ObjectMetadata metadata = describe(new DescribeCache(10, temporaryFolder.getRoot()));
+
+        when(connector.get(DESCRIBE_URI, RESPONSE_DATE)).thenReturn(null);
+        when(connector.getStatus()).thenReturn(304);
+        ObjectMetadata reloadedMetadata = newAccessor(new DescribeCache(10, temporaryFolder.getRoot())).describeObject("Account");
+
+        assertThat(reloadedMetadata.getName(), is(equalTo(metadata.getName())));
+        assertThat(reloadedMetadata.getFields().size(), is(equalTo(2)));
+        verify(connector).get(DESCRIBE_URI, RESPONSE_DATE);
+    }
+
+    @Test
+    public void testObjectNameCannotLeadOutOfDirectory() throws Exception {
+        File directory = temporaryFolder.newFolder("describes");
+        new DescribeCache(10, directory).put(INSTANCE_URL, null, null, "../../Account", new ObjectMetadata(), RESPONSE_DATE);
+
+        assertThat(directory.list().length, is(equalTo(1)));
+        assertThat(directory.list()[0], startsWith("Account-"));
+        assertThat(new DescribeCache(10, directory).get(INSTANCE_URL, null, null, "../../Account"), is(notNullValue()));
+    }
+
+    @Test
+    public void testInvalidatedDescriptionIsFetchedAgain() throws Exception {
+        DescribeCache describeCache = new DescribeCache(10, temporaryFolder.getRoot());
+        describe(describeCache);
+        describeCache.invalidateAll();
+
+        when(connector.get(DESCRIBE_URI)).thenReturn(getResourceStream("describeAccountResponse.json"));
+        newAccessor(new DescribeCache(10, temporaryFolder.getRoot())).describeObject("Account");
+
+        verify(connector, never()).get(any(URI.class), any(Date.class));
+    }
+
+    @Test
+    public void testRecentDescriptionIsUsedForSoql() throws Exception {
+        DescribeCache describeCache = new DescribeCache();
+        ObjectMetadata metadata = describe(describeCache);
+
+        ObjectMetadata visibleMetadata = newAccessor(describeCache).getVisibleObjectMetadata("Account");
+
+        assertThat(visibleMetadata, is(sameInstance(metadata)));
+        verify(connector, never()).get(any(URI.class), any(Date.class));
+    }
+
+    @Test
+    public void testDescriptionIsRevalidatedForSoqlAfterInterval() throws Exception {
+        DescribeCache describeCache = new DescribeCache(10, null, 0, TimeUnit.MILLISECONDS);
+        ObjectMetadata metadata = describe(describeCache);
+
+        when(connector.get(DESCRIBE_URI, RESPONSE_DATE)).thenReturn(null);
+        when(connector.getStatus()).thenReturn(304);
+        ObjectMetadata visibleMetadata = newAccessor(describeCache).getVisibleObjectMetadata("Account");
+
+        assertThat(visibleMetadata, is(sameInstance(metadata)));
+        verify(connector).get(DESCRIBE_URI, RESPONSE_DATE);
+    }
+
+    private ObjectMetadata describe(DescribeCache describeCache) throws Exception {
+        when(connector.get(DESCRIBE_URI)).thenReturn(getResourceStream("describeAccountResponse.json"));
+        when(connector.getResponseDate()).thenReturn(RESPONSE_DATE);
+
+        ObjectMetadata metadata = newAccessor(describeCache).describeObject("Account");
+
+        assertThat(metadata.getName(), is(equalTo("Account")));
+        assertThat(describeCache.size(), is(equalTo(1L)));
+        return metadata;
+    }
+
+    private RestRecordAccessor newAccessor(DescribeCache describeCache) {
+        return new RestRecordAccessor(new RecordAccessorConfig(), mappingContext, connector, null, describeCache);
+    }
+}
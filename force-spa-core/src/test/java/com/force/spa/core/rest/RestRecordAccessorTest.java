@@ -8,6 +8,7 @@ package com.force.spa.core.rest;
 import static com.force.spa.core.utils.YourKitUtils.clearYourKitData;
 import static com.force.spa.core.utils.YourKitUtils.isYourKitPresent;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.instanceOf;
@@ -18,37 +19,66 @@ import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.anyString;
-import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.net.URI;
+import java.net.URLDecoder;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.commons.io.IOUtils;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.LocalDate;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.force.spa.ApiVersion;
 import com.force.spa.CreateRecordOperation;
+import com.force.spa.CreateRecordsOperation;
 import com.force.spa.DeleteRecordOperation;
+import com.force.spa.DeleteRecordsOperation;
 import com.force.spa.GetRecordOperation;
+import com.force.spa.OperationType;
 import com.force.spa.PatchRecordOperation;
+import com.force.spa.PreparedRecordQuery;
 import com.force.spa.QueryRecordsOperation;
+import com.force.spa.RecordAccessor;
+import com.force.spa.RecordAccessorConfig;
+import com.force.spa.RecordCursor;
+import com.force.spa.RecordOperation;
 import com.force.spa.RecordQuery;
 import com.force.spa.RecordRequestException;
 import com.force.spa.RecordResponseException;
+import com.force.spa.RecordResult;
 import com.force.spa.UpdateRecordOperation;
+import com.force.spa.UpdateRecordsOperation;
 import com.force.spa.beans.NamedRecord;
+import com.force.spa.core.HistogramOperationListener;
 import com.force.spa.core.testbeans.DateTimeBean;
 import com.force.spa.core.testbeans.ExplicitlyNamedBean;
 import com.force.spa.core.testbeans.InsertableUpdatableFieldBean;
@@ -102,6 +132,120 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         verify(connector).post(URI.create("/sobjects/SimpleBean"), getResourceString("simpleCreateRequest.json"));
     }
 
+    @Test
+    public void testOperationGetWithTimeout() throws Exception {
+        SimpleBean bean = new SimpleBean();
+        bean.setName("Name 1");
+        bean.setDescription("Description 1");
+
+        CreateRecordOperation<SimpleBean> operation = accessor.newCreateRecordOperation(bean);
+        try {
+            operation.get(10, TimeUnit.MILLISECONDS);
+            fail("Didn't get expected exception");
+        } catch (TimeoutException e) {
+            assertThat(operation.isDone(), is(false));
+        }
+    }
+
+    @Test
+    public void testOperationListener() throws Exception {
+        HistogramOperationListener listener = new HistogramOperationListener();
+        RecordAccessor listeningAccessor = new RestRecordAccessor(
+            new RecordAccessorConfig().withOperationListener(listener), mappingContext, connector);
+        SimpleBean bean = new SimpleBean();
+        bean.setName("Name 1");
+        bean.setDescription("Description 1");
+
+        when(
+            connector.post(any(URI.class), anyString()))
+            .thenReturn(getResourceStream("createSuccessResponse.json"))
+            .thenReturn(getResourceStream("createErrorResponse.json"));
+
+        listeningAccessor.create(bean);
+        try {
+            listeningAccessor.create(bean);
+            fail("Didn't get expected exception");
+        } catch (RecordResponseException e) {
+            // Expected
+        }
+
+        HistogramOperationListener.OperationMetrics metrics = listener.getMetrics(OperationType.CREATE, "SimpleBean");
+        assertThat(metrics.getCount(), is(equalTo(2L)));
+        assertThat(metrics.getFailureCount(), is(equalTo(1L)));
+        assertThat(metrics.getBatchedCount(), is(equalTo(0L)));
+        assertThat(metrics.getBytesSent().getMaxValue(), is(equalTo(47L)));
+        assertThat(metrics.getElapsedNanos().getValueAtPercentile(50.0), is(greaterThan(0L)));
+        assertThat(listener.getAllMetrics().size(), is(equalTo(1)));
+    }
+
+    @Test
+    public void testCancelledOperationIsNotSent() throws Exception {
+        SimpleBean bean = new SimpleBean();
+        bean.setName("Name 1");
+        bean.setDescription("Description 1");
+
+        CreateRecordOperation<SimpleBean> operation = accessor.newCreateRecordOperation(bean);
+        assertThat(operation.cancel(true), is(true));
+        accessor.execute(operation);
+
+        assertThat(operation.isDone(), is(true));
+        assertThat(operation.isCancelled(), is(true));
+        try {
+            operation.get();
+            fail("Didn't get expected exception");
+        } catch (CancellationException e) {
+            // Expected
+        }
+        verify(connector, never()).post(any(URI.class), anyString());
+    }
+
+    @Test
+    public void testCompletionAfterCancelIsIgnored() throws Exception {
+        DeleteRecordOperation<SimpleBean> operation = accessor.newDeleteRecordOperation("a01i00000000001AAC", SimpleBean.class);
+        final AbstractRestRecordOperation<?, ?> restOperation = (AbstractRestRecordOperation<?, ?>) operation;
+        doAnswer(new Answer<InputStream>() {
+            @Override
+            public InputStream answer(InvocationOnMock invocation) throws Throwable {
+                restOperation.cancel(true); // Lose interest while the request is in flight
+                return null;
+            }
+        }).when(connector).delete(any(URI.class));
+
+        accessor.execute(operation);
+
+        assertThat(operation.isCancelled(), is(true));
+        verify(connector).delete(URI.create("/sobjects/SimpleBean/a01i00000000001AAC"));
+    }
+
+    @Test
+    public void testOperationWhichFailsToStart() throws Exception {
+        RecordOperation<SimpleBean> broken = new RestGetRecordOperation<SimpleBean>((RestRecordAccessor) accessor, "a01i00000000001AAC", SimpleBean.class) {
+            @Override
+            protected void start(RestConnector connector) {
+                throw new IllegalStateException("Broken");
+            }
+        };
+        GetRecordOperation<SimpleBean> skipped = accessor.newGetRecordOperation("a01i00000000002AAC", SimpleBean.class);
+
+        accessor.execute(broken, skipped);
+
+        try {
+            broken.get(5, TimeUnit.SECONDS);
+            fail("Didn't get expected exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(IllegalStateException.class)));
+        }
+        try {
+            skipped.get(5, TimeUnit.SECONDS);
+            fail("Didn't get expected exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(RecordRequestException.class)));
+            assertThat(e.getCause().getCause(), is(instanceOf(IllegalStateException.class)));
+        }
+        verify(connector, never()).post(any(URI.class), anyString());
+        verify(connector, never()).get(any(URI.class));
+    }
+
     @Test
     public void profileSimpleCreate() throws Exception {
         assumeTrue("Profile tests are only run if YourKit is present", isYourKitPresent());
@@ -210,7 +354,7 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         bean.setNotUpdatable("Insertable but not updatable value");
         bean.setNotInsertableOrUpdatable("Not insertable or updatable value");
 
-        doNothing().when(connector).patch(any(URI.class), anyString());
+        doReturn(null).when(connector).patch(any(URI.class), anyString());
 
         accessor.update(bean.getId(), bean);
 
@@ -246,7 +390,7 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         bean.setNotUpdatable("Insertable but not updatable value");
         bean.setNotInsertableOrUpdatable("Not insertable or updatable value");
 
-        doNothing().when(connector).patch(any(URI.class), anyString());
+        doReturn(null).when(connector).patch(any(URI.class), anyString());
 
         accessor.update(bean.getId(), bean);
 
@@ -282,7 +426,7 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         bean.setNotUpdatable("Insertable and Updatable value");
         bean.setNotInsertableOrUpdatable("Insertable and Updatable value");
 
-        doNothing().when(connector).patch(any(URI.class), anyString());
+        doReturn(null).when(connector).patch(any(URI.class), anyString());
 
         accessor.update(bean.getId(), bean);
 
@@ -295,7 +439,7 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         SimpleBean beanChanges = new SimpleBean();
         beanChanges.setDescription("Description 1");
 
-        doNothing().when(connector).patch(any(URI.class), anyString());
+        doReturn(null).when(connector).patch(any(URI.class), anyString());
         accessor.patch("a01i00000000001AAC", beanChanges);
 
         verify(connector).patch(
@@ -307,7 +451,7 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         SimpleBean beanChanges = new SimpleBean();
         beanChanges.setDescription("Description 1");
 
-        doNothing().when(connector).patch(any(URI.class), anyString());
+        doReturn(null).when(connector).patch(any(URI.class), anyString());
 
         PatchRecordOperation<SimpleBean> operation = accessor.newPatchRecordOperation("a01i00000000001AAC", beanChanges);
         accessor.execute(operation);
@@ -325,7 +469,7 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         SimpleBean beanChanges = new SimpleBean();
         beanChanges.setName("Name 2");
 
-        doNothing().when(connector).patch(any(URI.class), anyString());
+        doReturn(null).when(connector).patch(any(URI.class), anyString());
         accessor.update("a01i00000000001AAC", beanChanges);
 
         verify(connector).patch(
@@ -334,7 +478,7 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         SimpleBean beanChanges2 = new SimpleBean();
         beanChanges2.setDescription("Description 1");
 
-        doNothing().when(connector).patch(any(URI.class), anyString());
+        doReturn(null).when(connector).patch(any(URI.class), anyString());
         accessor.patch("a01i00000000001AAC", beanChanges2);
 
         verify(connector).patch(
@@ -346,7 +490,7 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         SimpleBean beanChanges = new SimpleBean();
         beanChanges.setName("Name 2");
 
-        doNothing().when(connector).patch(any(URI.class), anyString());
+        doReturn(null).when(connector).patch(any(URI.class), anyString());
 
         UpdateRecordOperation<SimpleBean> operation = accessor.newUpdateRecordOperation("a01i00000000001AAC", beanChanges);
         accessor.execute(operation);
@@ -361,7 +505,7 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         SimpleBean beanChanges2 = new SimpleBean();
         beanChanges2.setDescription("Description 1");
 
-        doNothing().when(connector).patch(any(URI.class), anyString());
+        doReturn(null).when(connector).patch(any(URI.class), anyString());
 
         PatchRecordOperation<SimpleBean> operation2 = accessor.newPatchRecordOperation("a01i00000000001AAC", beanChanges2);
         accessor.execute(operation2);
@@ -379,7 +523,7 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         SimpleBean beanChanges = new SimpleBean();
         beanChanges.setDescription("Description 1");
 
-        doNothing().when(connector).patch(any(URI.class), anyString());
+        doReturn(null).when(connector).patch(any(URI.class), anyString());
         try {
             accessor.update(beanChanges);
             fail("Didn't get expected exception");
@@ -388,6 +532,50 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         }
     }
 
+    @Test
+    public void testTrackedUpdateSendsOnlyChangedFields() throws Exception {
+        RecordAccessor trackingAccessor = new RestRecordAccessor(
+            new RecordAccessorConfig().withChangeTrackingEnabled(true), mappingContext, connector);
+        when(connector.get(any(URI.class))).thenReturn(getResourceStream("simpleGetResponse.json"));
+        doReturn(null).when(connector).patch(any(URI.class), anyString());
+
+        SimpleBean bean = trackingAccessor.get("a01i00000000001", SimpleBean.class);
+        bean.setName("Name 2");
+        trackingAccessor.update(bean);
+
+        URI uri = URI.create("/sobjects/SimpleBean/a01i00000000001");
+        verify(connector).patch(uri, "{\"Name\":\"Name 2\"}");
+
+        trackingAccessor.update(bean); // Nothing has changed since the last update
+        verify(connector, times(1)).patch(any(URI.class), anyString());
+    }
+
+    @Test
+    public void testTrackedUpdateWithoutChanges() throws Exception {
+        RecordAccessor trackingAccessor = new RestRecordAccessor(
+            new RecordAccessorConfig().withChangeTrackingEnabled(true), mappingContext, connector);
+        when(connector.get(any(URI.class))).thenReturn(getResourceStream("simpleGetResponse.json"));
+
+        SimpleBean bean = trackingAccessor.get("a01i00000000001", SimpleBean.class);
+        UpdateRecordOperation<SimpleBean> operation = trackingAccessor.newUpdateRecordOperation(bean.getId(), bean);
+        trackingAccessor.execute(operation);
+
+        assertThat(operation.get(), is(nullValue()));
+        assertThat(operation.getStatistics().getBytesSent(), is(equalTo(0L)));
+        verify(connector, never()).patch(any(URI.class), anyString());
+    }
+
+    @Test
+    public void testUntrackedUpdateSendsAllFields() throws Exception {
+        when(connector.get(any(URI.class))).thenReturn(getResourceStream("simpleGetResponse.json"));
+        doReturn(null).when(connector).patch(any(URI.class), anyString());
+
+        SimpleBean bean = accessor.get("a01i00000000001", SimpleBean.class);
+        accessor.update(bean);
+
+        verify(connector).patch(any(URI.class), anyString());
+    }
+
     @Test
     public void testStandardFieldPatch() throws Exception {
         StandardFieldBean beanChanges = new StandardFieldBean();
@@ -398,7 +586,7 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         beanChanges.setLastModifiedDate(new DateTime());
         beanChanges.setOwner(NamedRecord.withId("a01i00000000203"));
 
-        doNothing().when(connector).patch(any(URI.class), anyString());
+        doReturn(null).when(connector).patch(any(URI.class), anyString());
         accessor.patch("a01i00000000001AAC", beanChanges);
 
         verify(connector).patch(
@@ -410,7 +598,7 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         SimpleBean bean = new SimpleBean();
         bean.setId("a01i00000000001AAC");
 
-        doNothing().when(connector).delete(any(URI.class));
+        doReturn(null).when(connector).delete(any(URI.class));
         accessor.delete(bean);
 
         verify(connector).delete(URI.create("/sobjects/SimpleBean/a01i00000000001AAC"));
@@ -418,7 +606,7 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
 
     @Test
     public void testSimpleDelete() throws Exception {
-        doNothing().when(connector).delete(any(URI.class));
+        doReturn(null).when(connector).delete(any(URI.class));
         accessor.delete("a01i00000000001AAC", SimpleBean.class);
 
         verify(connector).delete(URI.create("/sobjects/SimpleBean/a01i00000000001AAC"));
@@ -426,7 +614,7 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
 
     @Test
     public void testSimpleDeleteOperation() throws Exception {
-        doNothing().when(connector).delete(any(URI.class));
+        doReturn(null).when(connector).delete(any(URI.class));
 
         DeleteRecordOperation<SimpleBean> operation = accessor.newDeleteRecordOperation("a01i00000000001AAC", SimpleBean.class);
         accessor.execute(operation);
@@ -438,12 +626,144 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         verify(connector).delete(URI.create("/sobjects/SimpleBean/a01i00000000001AAC"));
     }
 
+    @Test
+    public void testCreateRecordsOperation() throws Exception {
+        SimpleBean bean1 = new SimpleBean();
+        bean1.setName("Name 1");
+        bean1.setDescription("Description 1");
+        SimpleBean bean2 = new SimpleBean();
+        bean2.setDescription("Description 2");
+
+        when(connector.getApiVersion()).thenReturn(new ApiVersion("42.0"));
+        when(
+            connector.post(any(URI.class), anyString()))
+            .thenReturn(getResourceStream("createRecordsResponse.json"));
+
+        CreateRecordsOperation<SimpleBean> operation = accessor.newCreateRecordsOperation(Arrays.asList(bean1, bean2));
+        accessor.execute(operation);
+
+        List<RecordResult> results = operation.get();
+        assertThat(results.size(), is(equalTo(2)));
+        assertThat(results.get(0).isSuccess(), is(true));
+        assertThat(results.get(0).getId(), is(equalTo("a01i00000000001AAC")));
+        assertThat(results.get(0).getErrorMessage(), is(nullValue()));
+        assertThat(results.get(1).isSuccess(), is(false));
+        assertThat(results.get(1).getId(), is(nullValue()));
+        assertThat(results.get(1).getErrorMessage(), is(equalTo("REQUIRED_FIELD_MISSING: Required fields are missing: [Name]: [Name]")));
+
+        verify(connector).post(URI.create("/composite/sobjects"), getResourceString("createRecordsRequest.json"));
+    }
+
+    @Test
+    public void testUpdateRecordsOperation() throws Exception {
+        SimpleBean bean1 = new SimpleBean();
+        bean1.setId("a01i00000000001AAC");
+        bean1.setName("Name 1");
+        SimpleBean bean2 = new SimpleBean();
+        bean2.setId("a01i00000000002AAC");
+        bean2.setName("Name 2");
+        bean2.setDescription("Description 2");
+
+        when(connector.getApiVersion()).thenReturn(new ApiVersion("42.0"));
+        when(
+            connector.patch(any(URI.class), anyString()))
+            .thenReturn(getResourceStream("updateRecordsResponse.json"));
+
+        UpdateRecordsOperation<SimpleBean> operation = accessor.newUpdateRecordsOperation(Arrays.asList(bean1, bean2));
+        accessor.execute(operation);
+
+        List<RecordResult> results = operation.get();
+        assertThat(results.size(), is(equalTo(2)));
+        assertThat(results.get(0).isSuccess(), is(true));
+        assertThat(results.get(1).isSuccess(), is(true));
+
+        verify(connector).patch(URI.create("/composite/sobjects"), getResourceString("updateRecordsRequest.json"));
+    }
+
+    @Test
+    public void testUpdateRecordsOperationEscapesIds() throws Exception {
+        SimpleBean bean = new SimpleBean();
+        bean.setId("a01\",\"Name\":\"x\\");
+        bean.setName("Name 1");
+
+        when(connector.getApiVersion()).thenReturn(new ApiVersion("42.0"));
+        when(
+            connector.patch(any(URI.class), anyString()))
+            .thenReturn(getResourceStream("updateRecordsResponse.json"));
+
+        accessor.execute(accessor.newUpdateRecordsOperation(Collections.singletonList(bean)));
+
+        verify(connector).patch(
+            URI.create("/composite/sobjects"),
+            "{\"allOrNone\":false,\"records\":[{\"attributes\":{\"type\":\"SimpleBean\"},"
+                + "\"Id\":\"a01\\\",\\\"Name\\\":\\\"x\\\\\",\"Name\":\"Name 1\",\"Description\":null}]}");
+    }
+
+    @Test
+    public void testDeleteRecordsOperation() throws Exception {
+        when(connector.getApiVersion()).thenReturn(new ApiVersion("42.0"));
+        when(
+            connector.delete(any(URI.class)))
+            .thenReturn(getResourceStream("deleteRecordsResponse.json"));
+
+        DeleteRecordsOperation<SimpleBean> operation =
+            accessor.newDeleteRecordsOperation(Arrays.asList("a01i00000000001AAC", "a01i00000000002AAC"), SimpleBean.class);
+        accessor.execute(operation);
+
+        List<RecordResult> results = operation.get();
+        assertThat(results.size(), is(equalTo(2)));
+        assertThat(results.get(0).isSuccess(), is(true));
+        assertThat(results.get(1).isSuccess(), is(false));
+        assertThat(results.get(1).getId(), is(equalTo("a01i00000000002AAC")));
+        assertThat(results.get(1).getErrorMessage(), is(equalTo("ENTITY_IS_DELETED: entity is deleted: []")));
+
+        verify(connector).delete(URI.create("/composite/sobjects?ids=a01i00000000001AAC,a01i00000000002AAC&allOrNone=false"));
+    }
+
+    @Test
+    public void testDeleteRecordsOperationEscapesIds() throws Exception {
+        when(connector.getApiVersion()).thenReturn(new ApiVersion("42.0"));
+        when(
+            connector.delete(any(URI.class)))
+            .thenReturn(getResourceStream("deleteRecordsResponse.json"));
+
+        accessor.execute(accessor.newDeleteRecordsOperation(Arrays.asList("a01&allOrNone=true", "a01,a02"), SimpleBean.class));
+
+        verify(connector).delete(URI.create("/composite/sobjects?ids=a01%26allOrNone%3Dtrue,a01%2Ca02&allOrNone=false"));
+    }
+
+    @Test
+    public void testRecordsOperationNeedsRecentApiVersion() throws Exception {
+        SimpleBean bean = new SimpleBean();
+        bean.setName("Name 1");
+
+        CreateRecordsOperation<SimpleBean> operation = accessor.newCreateRecordsOperation(Collections.singletonList(bean));
+        accessor.execute(operation);
+        try {
+            operation.get();
+            fail("Didn't get expected exception");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause(), is(instanceOf(RecordRequestException.class)));
+            assertThat(e.getCause().getMessage(), is(equalTo("Operations on multiple records require API version 42.0 or later, not 29.0")));
+        }
+        verify(connector, never()).post(any(URI.class), anyString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyRecordsForOperation() throws Exception {
+        List<SimpleBean> beans = new ArrayList<>();
+        for (int i = 0; i < 201; i++) {
+            beans.add(new SimpleBean());
+        }
+        accessor.newCreateRecordsOperation(beans);
+    }
+
     @Test
     public void testDeleteByBeanButNoId() throws Exception {
         SimpleBean bean = new SimpleBean();
         bean.setDescription("Description 1");
 
-        doNothing().when(connector).delete(any(URI.class));
+        doReturn(null).when(connector).delete(any(URI.class));
 
         try {
             accessor.delete(bean);
@@ -530,6 +850,112 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         assertThat(bean2.getDescription(), is(equalTo("Description 2")));
     }
 
+    @Test
+    public void testPreparedQuery() throws Exception {
+        when(connector.get(any(URI.class)))
+            .thenReturn(getResourceStream("simpleQueryResponse.json"))
+            .thenReturn(getResourceStream("simpleQueryResponse.json"));
+
+        PreparedRecordQuery<SimpleBean> query =
+            accessor.prepareQuery("select * from SimpleBean where Name = :name and Id in :ids", SimpleBean.class);
+        assertThat(query.getParameterNames(), contains("name", "ids"));
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("name", "O'Brien");
+        parameters.put("ids", Arrays.asList("a01i00000000001", "a01i00000000002"));
+        List<SimpleBean> beans = query.bind(parameters).execute();
+        assertThat(beans.size(), is(equalTo(2)));
+
+        parameters.put("name", "x' or Name != '");
+        query.bind(parameters).execute();
+
+        ArgumentCaptor<URI> uriCaptor = ArgumentCaptor.forClass(URI.class);
+        verify(connector, times(2)).get(uriCaptor.capture());
+        assertThat(
+            URLDecoder.decode(uriCaptor.getAllValues().get(0).toString(), "UTF-8"),
+            is(equalTo("/query?q=select Id,Name,Description from SimpleBean where Name = 'O\\'Brien' and Id in ('a01i00000000001','a01i00000000002')")));
+        assertThat(
+            URLDecoder.decode(uriCaptor.getAllValues().get(1).toString(), "UTF-8"),
+            is(equalTo("/query?q=select Id,Name,Description from SimpleBean where Name = 'x\\' or Name != \\'' and Id in ('a01i00000000001','a01i00000000002')")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPreparedQueryWithMissingParameter() throws Exception {
+        accessor.prepareQuery("select * from SimpleBean where Name = :name", SimpleBean.class)
+            .bind(Collections.<String, Object>emptyMap());
+    }
+
+    @Test
+    public void testMultiplePageQuery() throws Exception {
+        when(connector.get(any(URI.class)))
+            .thenReturn(getResourceStream("firstPageQueryResponse.json"))
+            .thenReturn(getResourceStream("lastPageQueryResponse.json"));
+
+        List<SimpleBean> beans = accessor.createQuery("select * from SimpleBean", SimpleBean.class).execute();
+
+        assertThat(beans.size(), is(equalTo(3)));
+        assertThat(beans.get(0).getId(), is(equalTo("a01i00000000001")));
+        assertThat(beans.get(2).getId(), is(equalTo("a01i00000000003")));
+        verify(connector).get(URI.create("/services/data/v29.0/query/01gD0000002HU6KIAW-2000"));
+    }
+
+    @Test
+    public void testQueryCursor() throws Exception {
+        URI lastPageUri = URI.create("/services/data/v29.0/query/01gD0000002HU6KIAW-2000");
+        when(connector.get(any(URI.class)))
+            .thenReturn(getResourceStream("firstPageQueryResponse.json"))
+            .thenReturn(getResourceStream("lastPageQueryResponse.json"));
+
+        RecordCursor<SimpleBean> cursor = accessor.createQuery("select * from SimpleBean", SimpleBean.class).iterate();
+        verify(connector, never()).get(any(URI.class));
+
+        assertThat(cursor.next().getId(), is(equalTo("a01i00000000001")));
+        assertThat(cursor.next().getId(), is(equalTo("a01i00000000002")));
+        verify(connector, never()).get(lastPageUri);
+
+        assertThat(cursor.hasNext(), is(true));
+        assertThat(cursor.next().getId(), is(equalTo("a01i00000000003")));
+        assertThat(cursor.hasNext(), is(false));
+        verify(connector).get(lastPageUri);
+    }
+
+    @Test
+    public void testPrefetchingQueryCursor() throws Exception {
+        URI lastPageUri = URI.create("/services/data/v29.0/query/01gD0000002HU6KIAW-2000");
+        when(connector.get(any(URI.class)))
+            .thenReturn(getResourceStream("firstPageQueryResponse.json"))
+            .thenReturn(getResourceStream("lastPageQueryResponse.json"));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            RestRecordAccessor prefetchingAccessor = new RestRecordAccessor(
+                new RecordAccessorConfig().withQueryPrefetchDepth(1), mappingContext, connector, executor);
+            RecordCursor<SimpleBean> cursor = prefetchingAccessor.createQuery("select * from SimpleBean", SimpleBean.class).iterate();
+
+            assertThat(cursor.next().getId(), is(equalTo("a01i00000000001")));
+            verify(connector, timeout(5000).times(2)).get(any(URI.class)); // Next page fetched while consuming this one
+            verify(connector).get(lastPageUri);
+
+            assertThat(cursor.next().getId(), is(equalTo("a01i00000000002")));
+            assertThat(cursor.next().getId(), is(equalTo("a01i00000000003")));
+            assertThat(cursor.hasNext(), is(false));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testClosedQueryCursor() throws Exception {
+        when(connector.get(any(URI.class))).thenReturn(getResourceStream("firstPageQueryResponse.json"));
+
+        RecordCursor<SimpleBean> cursor = accessor.createQuery("select * from SimpleBean", SimpleBean.class).iterate();
+        assertThat(cursor.next().getId(), is(equalTo("a01i00000000001")));
+        cursor.close();
+
+        assertThat(cursor.hasNext(), is(false));
+        verify(connector).get(any(URI.class));
+    }
+
     @Test
     public void testSimpleQueryOperation() throws Exception {
         when(connector.get(any(URI.class))).thenReturn(getResourceStream("simpleQueryResponse.json"));
@@ -656,7 +1082,7 @@ public class RestRecordAccessorTest extends AbstractRestRecordAccessorTest {
         beanChanges.setJodaDateAndTime(new DateTime(beanChanges.getJavaDateAndTime().getTime(), DateTimeZone.UTC));
         beanChanges.setJodaDateOnly(LocalDate.parse("1999-04-01"));
 
-        doNothing().when(connector).patch(any(URI.class), anyString());
+        doReturn(null).when(connector).patch(any(URI.class), anyString());
         accessor.patch("a01i00000000001AAC", beanChanges);
 
         verify(connector).patch(
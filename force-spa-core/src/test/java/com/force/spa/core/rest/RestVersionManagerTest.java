@@ -11,19 +11,32 @@ import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
 import java.net.URI;
+import java.util.Collections;
 
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import com.force.spa.ApiVersion;
 import com.force.spa.SpaException;
+import com.google.common.util.concurrent.MoreExecutors;
 
 public class RestVersionManagerTest extends AbstractRestRecordAccessorTest {
 
+    private static final URI VERSIONS_URI = URI.create("/services/data");
+    private static final URI OTHER_INSTANCE_URL = URI.create("https://na1.salesforce.com");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void testGetHighestSupportedVersion() throws Exception {
 
@@ -79,4 +92,79 @@ public class RestVersionManagerTest extends AbstractRestRecordAccessorTest {
         RestVersionManager versionManager = new RestVersionManager(connector);
         assertThat(versionManager.getHighestSupportedVersion(), is(equalTo(RestVersionManager.DEFAULT_API_VERSION)));
     }
+
+    @Test
+    public void testGetHighestSupportedVersionIsKeptInFile() throws Exception {
+
+        when(connector.get(any(URI.class)))
+            .thenReturn(getResourceStream("versionsResponse.json"));
+
+        File file = new File(temporaryFolder.getRoot(), "versions.json");
+        new RestVersionManager(connector, new ApiVersionCache(file, null)).getHighestSupportedVersion();
+
+        RestVersionManager versionManager = new RestVersionManager(connector, new ApiVersionCache(file, null));
+        assertThat(versionManager.getHighestSupportedVersion(), is(equalTo(new ApiVersion("29.0"))));
+
+        verify(connector, times(1)).get(VERSIONS_URI);
+    }
+
+    @Test
+    public void testDefaultVersionIsNotKeptInFile() throws Exception {
+
+        when(connector.get(any(URI.class)))
+            .thenReturn(getResourceStream("badVersionsResponse.json"));
+
+        File file = new File(temporaryFolder.getRoot(), "versions.json");
+        new RestVersionManager(connector, new ApiVersionCache(file, null)).getHighestSupportedVersion();
+
+        assertThat(file.exists(), is(false));
+    }
+
+    @Test
+    public void testStaleVersionIsRefreshedInBackground() throws Exception {
+
+        when(connector.getWithoutAuthorization(any(URI.class), any(URI.class)))
+            .thenReturn(getResourceStream("versionsResponse.json"));
+
+        File file = new File(temporaryFolder.getRoot(), "versions.json");
+        FileUtils.writeStringToFile(file, "{\"https://na4.salesforce.com\":{\"version\":\"28.0\",\"discovered\":0}}", "UTF-8");
+
+        ApiVersionCache cache = new ApiVersionCache(file, MoreExecutors.sameThreadExecutor());
+        RestVersionManager versionManager = new RestVersionManager(connector, cache);
+        assertThat(versionManager.getHighestSupportedVersion(), is(equalTo(new ApiVersion("28.0"))));
+        assertThat(versionManager.getHighestSupportedVersion(), is(equalTo(new ApiVersion("29.0"))));
+
+        verify(connector, times(1)).getWithoutAuthorization(URI.create("https://na4.salesforce.com"), VERSIONS_URI);
+        verify(connector, never()).get(any(URI.class));
+    }
+
+    @Test
+    public void testFailedRefreshKeepsStaleVersion() throws Exception {
+
+        File file = new File(temporaryFolder.getRoot(), "versions.json");
+        FileUtils.writeStringToFile(file, "{\"https://na4.salesforce.com\":{\"version\":\"28.0\",\"discovered\":0}}", "UTF-8");
+
+        ApiVersionCache cache = new ApiVersionCache(file, MoreExecutors.sameThreadExecutor());
+        RestVersionManager versionManager = new RestVersionManager(connector, cache);
+        assertThat(versionManager.getHighestSupportedVersion(), is(equalTo(new ApiVersion("28.0"))));
+        assertThat(versionManager.getHighestSupportedVersion(), is(equalTo(new ApiVersion("28.0"))));
+
+        verify(connector, times(1)).getWithoutAuthorization(any(URI.class), any(URI.class));
+    }
+
+    @Test
+    public void testPrewarm() throws Exception {
+
+        when(connector.getWithoutAuthorization(any(URI.class), any(URI.class)))
+            .thenReturn(getResourceStream("versionsResponse.json"));
+
+        ApiVersionCache cache = new ApiVersionCache();
+        new RestVersionManager(connector, cache).prewarm(Collections.singletonList(OTHER_INSTANCE_URL));
+
+        assertThat(cache.get(OTHER_INSTANCE_URL).getVersion(), is(equalTo(new ApiVersion("29.0"))));
+        verify(connector).getWithoutAuthorization(OTHER_INSTANCE_URL, VERSIONS_URI);
+
+        new RestVersionManager(connector, cache).prewarm(Collections.singletonList(OTHER_INSTANCE_URL));
+        verify(connector, times(1)).getWithoutAuthorization(any(URI.class), any(URI.class));
+    }
 }
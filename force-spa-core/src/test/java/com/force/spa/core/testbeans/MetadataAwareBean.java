@@ -0,0 +1,36 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.testbeans;
+
+import com.force.spa.SalesforceField;
+import com.force.spa.SalesforceObject;
+import com.force.spa.beans.NamedRecord;
+
+@SalesforceObject(name = "Account", metadataAware = true)
+public class MetadataAwareBean extends NamedRecord {
+
+    @SalesforceField(name = "Description")
+    private String description;
+
+    @SalesforceField(name = "Industry")
+    private String industry;
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public String getIndustry() {
+        return industry;
+    }
+
+    public void setIndustry(String industry) {
+        this.industry = industry;
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.testbeans;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.force.spa.SalesforceField;
+import com.force.spa.SalesforceObject;
+import com.force.spa.beans.Record;
+
+@SalesforceObject
+public class MutableValueBean extends Record {
+
+    @SalesforceField(name = "Tags")
+    private List<String> tags;
+
+    @SalesforceField(name = "Scores")
+    private int[] scores;
+
+    @SalesforceField(name = "Counter")
+    private AtomicInteger counter;
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
+    public int[] getScores() {
+        return scores;
+    }
+
+    public void setScores(int[] scores) {
+        this.scores = scores;
+    }
+
+    public AtomicInteger getCounter() {
+        return counter;
+    }
+
+    public void setCounter(AtomicInteger counter) {
+        this.counter = counter;
+    }
+}
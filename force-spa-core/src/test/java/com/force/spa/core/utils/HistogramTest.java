@@ -0,0 +1,80 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.utils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+    @Test
+    public void testEmpty() {
+        Histogram histogram = new Histogram(1000);
+
+        assertThat(histogram.getTotalCount(), is(equalTo(0L)));
+        assertThat(histogram.getMaxValue(), is(equalTo(0L)));
+        assertThat(histogram.getValueAtPercentile(99.0), is(equalTo(0L)));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        Histogram histogram = new Histogram(1000);
+        for (int i = 1; i <= 50; i++) {
+            histogram.recordValue(i);
+        }
+
+        assertThat(histogram.getTotalCount(), is(equalTo(50L)));
+        assertThat(histogram.getValueAtPercentile(50.0), is(equalTo(25L)));
+        assertThat(histogram.getValueAtPercentile(100.0), is(equalTo(50L)));
+        assertThat(histogram.getMean(), is(equalTo(25.5)));
+    }
+
+    @Test
+    public void testLargeValuesAreWithinPrecision() {
+        Histogram histogram = new Histogram(1L << 40);
+        for (long i = 1; i <= 10000; i++) {
+            histogram.recordValue(i * 1000000);
+        }
+
+        assertWithinPrecision(histogram.getValueAtPercentile(50.0), 5000000000L);
+        assertWithinPrecision(histogram.getValueAtPercentile(99.0), 9900000000L);
+        assertThat(histogram.getValueAtPercentile(100.0), is(equalTo(10000000000L)));
+    }
+
+    @Test
+    public void testValuesAboveHighestTrackable() {
+        Histogram histogram = new Histogram(1000);
+        histogram.recordValue(5000);
+
+        assertThat(histogram.getMaxValue(), is(equalTo(1000L)));
+        assertThat(histogram.getValueAtPercentile(50.0), is(equalTo(1000L)));
+    }
+
+    @Test
+    public void testReset() {
+        Histogram histogram = new Histogram(1000);
+        histogram.recordValue(10);
+        histogram.reset();
+
+        assertThat(histogram.getTotalCount(), is(equalTo(0L)));
+        assertThat(histogram.getValueAtPercentile(50.0), is(equalTo(0L)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeValue() {
+        new Histogram(1000).recordValue(-1);
+    }
+
+    private static void assertWithinPrecision(long actual, long expected) {
+        assertThat(actual, is(greaterThanOrEqualTo(expected)));
+        assertThat(actual, is(lessThanOrEqualTo(expected + expected / 32)));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.core.utils;
+
+import static com.force.spa.core.utils.SoqlUtils.toLiteral;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.junit.Test;
+
+public class SoqlUtilsTest {
+
+    @Test
+    public void testStringLiterals() {
+        assertThat(toLiteral("plain"), is(equalTo("'plain'")));
+        assertThat(toLiteral("it's \"quoted\"\\\n"), is(equalTo("'it\\'s \\\"quoted\\\"\\\\\\n'")));
+        assertThat(toLiteral('c'), is(equalTo("'c'")));
+        assertThat(toLiteral(Thread.State.NEW), is(equalTo("'NEW'")));
+    }
+
+    @Test
+    public void testScalarLiterals() {
+        assertThat(toLiteral(null), is(equalTo("null")));
+        assertThat(toLiteral(true), is(equalTo("true")));
+        assertThat(toLiteral(42), is(equalTo("42")));
+        assertThat(toLiteral(1.0E10), is(equalTo("10000000000")));
+        assertThat(toLiteral(new BigDecimal("1.50")), is(equalTo("1.50")));
+    }
+
+    @Test
+    public void testDateLiterals() {
+        assertThat(toLiteral(new Date(0)), is(equalTo("1970-01-01T00:00:00Z")));
+        assertThat(toLiteral(new DateTime(2013, 5, 1, 10, 30, DateTimeZone.forOffsetHours(2))), is(equalTo("2013-05-01T08:30:00Z")));
+        assertThat(toLiteral(new LocalDate(2013, 5, 1)), is(equalTo("2013-05-01")));
+    }
+
+    @Test
+    public void testListLiterals() {
+        assertThat(toLiteral(Arrays.asList("a", "b")), is(equalTo("('a','b')")));
+        assertThat(toLiteral(new int[]{1, 2}), is(equalTo("(1,2)")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyList() {
+        toLiteral(Collections.emptyList());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedValue() {
+        toLiteral(new Object());
+    }
+}
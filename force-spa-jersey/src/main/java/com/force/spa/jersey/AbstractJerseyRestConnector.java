@@ -0,0 +1,371 @@
+/*
+ * Copyright, 2012-2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.jersey;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.UriBuilder;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.lang3.time.FastDateFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.force.spa.ApiVersion;
+import com.force.spa.AuthorizationConnector;
+import com.force.spa.RecordAccessorConfig;
+import com.force.spa.RecordRequestException;
+import com.force.spa.RecordResponseException;
+import com.force.spa.Statistics;
+import com.force.spa.core.MappingContext;
+import com.force.spa.core.rest.ApiVersionCache;
+import com.force.spa.core.rest.RestConnector;
+import com.force.spa.core.rest.RestRequestBody;
+import com.force.spa.core.rest.RestResponseHandler;
+import com.force.spa.core.rest.RestVersionManager;
+import com.force.spa.core.utils.CountingJsonParser;
+import com.google.common.base.Stopwatch;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.UniformInterfaceException;
+import com.sun.jersey.api.client.WebResource;
+
+/**
+ * An abstract base class for {@link RestConnector} implementations that use Sun's Jersey 1.x client. It holds the
+ * pieces of request preparation and response handling which don't depend on how the requests are issued.
+ */
+abstract class AbstractJerseyRestConnector implements RestConnector {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractJerseyRestConnector.class);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final FastDateFormat HTTP_DATE_FORMAT =
+        FastDateFormat.getInstance("EEE, dd MMM yyyy HH:mm:ss 'GMT'", TimeZone.getTimeZone("GMT"), Locale.US);
+
+    private final Client client;
+    private final RecordAccessorConfig config;
+    private final MappingContext mappingContext;
+    private final RestVersionManager versionManager;
+    private final int maxRetainedRequestBufferSize;
+    private final ThreadLocal<BoundAuthorization> boundAuthorization = new ThreadLocal<>();
+
+    AbstractJerseyRestConnector(RecordAccessorConfig config, MappingContext mappingContext, Client client, ApiVersionCache versionCache) {
+        this.config = config;
+        this.mappingContext = mappingContext;
+        this.client = client;
+
+        this.versionManager = new RestVersionManager(this, versionCache);
+
+        Object maxRetainedRequestBufferSize = client.getProperties().get(ExtendedClientConfig.PROPERTY_MAX_RETAINED_REQUEST_BUFFER_SIZE);
+        this.maxRetainedRequestBufferSize = (maxRetainedRequestBufferSize instanceof Integer)
+            ? (Integer) maxRetainedRequestBufferSize
+            : ClientFactory.DEFAULT_MAX_RETAINED_REQUEST_BUFFER_SIZE;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Returns <code>null</code> if there isn't an authorization connector to supply the instance URL, in which case
+     * only requests with an explicit instance URL (see {@link #getWithoutAuthorization}) can be made.
+     */
+    @Override
+    public URI getInstanceUrl() {
+        BoundAuthorization bound = boundAuthorization.get();
+        if (bound != null) {
+            return bound.instanceUrl;
+        }
+        AuthorizationConnector authorizationConnector = config.getAuthorizationConnector();
+        return (authorizationConnector != null) ? authorizationConnector.getInstanceUrl() : null;
+    }
+
+    @Override
+    public ApiVersion getApiVersion() {
+        BoundAuthorization bound = boundAuthorization.get();
+        if (bound != null) {
+            return bound.apiVersion;
+        } else if (config.getApiVersion() != null) {
+            return config.getApiVersion();
+        } else {
+            return versionManager.getHighestSupportedVersion();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The instance URL, API version and authorization are captured straight away and stand in for those of the
+     * thread which runs the task while it runs.
+     */
+    @Override
+    public Runnable bindToCurrentAuthorization(final Runnable task) {
+        final BoundAuthorization bound = new BoundAuthorization(getInstanceUrl(), getApiVersion(), getAuthorization());
+        return new Runnable() {
+            @Override
+            public void run() {
+                BoundAuthorization previous = boundAuthorization.get();
+                boundAuthorization.set(bound);
+                try {
+                    task.run();
+                } finally {
+                    if (previous != null) {
+                        boundAuthorization.set(previous);
+                    } else {
+                        boundAuthorization.remove();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The request is issued through the synchronous interface of the client whatever kind of connector this is, and
+     * the client's authorization filter (see {@link ClientFactory}) is told to leave it alone.
+     */
+    @Override
+    public <T> void getWithoutAuthorization(URI instanceUrl, URI uri, RestResponseHandler<T> responseHandler) {
+        if (responseHandler.isCancelled()) {
+            return; // Nobody is interested so don't bother sending it
+        }
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        ClientResponse response;
+        try {
+            WebResource resource = client.resource(buildAbsoluteUri(instanceUrl, uri));
+            resource.setProperty(ClientFactory.PROPERTY_SKIP_AUTHORIZATION, true);
+            response = resource
+                .accept(MediaType.APPLICATION_JSON_TYPE)
+                .get(ClientResponse.class);
+        } catch (Exception e) {
+            handleFailure(e, responseHandler, null, stopwatch);
+            return;
+        }
+        handleResponse(response, responseHandler, null, stopwatch);
+    }
+
+    protected final Client getClient() {
+        return client;
+    }
+
+    protected final RecordAccessorConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the value of the Authorization header for requests from the current thread, or <code>null</code> if
+     * there isn't an authorization connector to supply one.
+     */
+    protected final String getAuthorization() {
+        BoundAuthorization bound = boundAuthorization.get();
+        if (bound != null) {
+            return bound.authorization;
+        }
+        AuthorizationConnector authorizationConnector = config.getAuthorizationConnector();
+        return (authorizationConnector != null) ? authorizationConnector.getAuthorization() : null;
+    }
+
+    protected final URI buildAbsoluteUri(URI relativeUri) {
+        URI instanceUrl = getInstanceUrl();
+        if (instanceUrl == null) {
+            throw new IllegalStateException("No instance URL for " + relativeUri + " because there is no AuthorizationConnector");
+        }
+        return buildAbsoluteUri(instanceUrl, relativeUri);
+    }
+
+    private URI buildAbsoluteUri(URI instanceUrl, URI relativeUri) {
+        UriBuilder builder = UriBuilder.fromUri(relativeUri);
+        if (!relativeUri.getPath().startsWith("/services/data")) {
+            builder.replacePath("/services/data/v" + getApiVersion() + relativeUri.getPath());
+        }
+        builder.uri(instanceUrl);
+        return builder.build();
+    }
+
+    /**
+     * Writes a request body into a pooled buffer and returns it as the entity to send. The entity reads straight out of
+     * the buffer and has a known size, so it can be compressed (see {@link CompressionFilter}) and sent by the client
+     * without copying the bytes. The buffer is given back once the response has been handled (see {@link
+     * ExtendedClientConfig#PROPERTY_MAX_RETAINED_REQUEST_BUFFER_SIZE}).
+     *
+     * @param body the request body
+     * @return the encoded request body
+     * @throws IOException if the body could not be written
+     */
+    protected final RequestEntity serializeRequestBody(RestRequestBody body) throws IOException {
+        return RequestEntity.serialize(body, maxRetainedRequestBufferSize);
+    }
+
+    /**
+     * Formats a time for use in an HTTP header such as If-Modified-Since.
+     */
+    protected static String formatHttpDate(Date date) {
+        return HTTP_DATE_FORMAT.format(date);
+    }
+
+    protected static void logRequestBody(RequestEntity entity) {
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Request body: " + entity);
+        }
+    }
+
+    /**
+     * Processes a response by handing it to the response handler, and then closes the response. The body of a
+     * successful response is deserialized unless the status says there isn't one (204). The status of a response to a
+     * conditional request may be 304 (Not Modified), which is left to the response handler. The request body is
+     * released afterwards.
+     *
+     * @param response        the response
+     * @param responseHandler the response handler
+     * @param entity          the encoded request body, used for statistics
+     * @param stopwatch       the stopwatch that was started when the request was issued
+     */
+    protected final <T> void handleResponse(
+        ClientResponse response, RestResponseHandler<T> responseHandler, RequestEntity entity, Stopwatch stopwatch) {
+
+        CountingJsonParser parser = null;
+        try {
+            parser = parserFor(response);
+            Date responseDate = getResponseDate(response);
+            if (responseDate != null) {
+                responseHandler.handleResponseDate(responseDate);
+            }
+            int status = response.getStatus();
+            responseHandler.handleStatus(status, parser);
+            T result = (status < 300 && status != 204) ? responseHandler.deserialize(parser) : null;
+            responseHandler.completed(result, buildStatistics(stopwatch, entity, parser, response));
+        } catch (Exception e) {
+            responseHandler.failed(mapSelectedExceptions(e), buildStatistics(stopwatch, entity, parser, response));
+        } finally {
+            closeQuietly(response);
+            release(entity);
+        }
+    }
+
+    /**
+     * Reports a request that failed before any response was available, and releases the request body.
+     */
+    protected final <T> void handleFailure(
+        Exception exception, RestResponseHandler<T> responseHandler, RequestEntity entity, Stopwatch stopwatch) {
+
+        try {
+            responseHandler.failed(mapSelectedExceptions(exception), buildStatistics(stopwatch, entity, null, null));
+        } finally {
+            release(entity);
+        }
+    }
+
+    /**
+     * Releases a request body which is no longer needed because the request is over.
+     */
+    protected static void release(RequestEntity entity) {
+        if (entity != null) {
+            entity.release();
+        }
+    }
+
+    private CountingJsonParser parserFor(ClientResponse response) throws IOException {
+        InputStream responseStream = response.getEntityInputStream();
+        if (LOG.isTraceEnabled()) {
+            ByteArrayOutputStream bufferedResponseStream = new ByteArrayOutputStream(8192);
+            IOUtils.copy(responseStream, bufferedResponseStream);
+            byte[] streamBytes = bufferedResponseStream.toByteArray();
+            responseStream = new ByteArrayInputStream(streamBytes);
+
+            LOG.trace("Response body: " + new String(streamBytes, UTF_8));
+        }
+        return mappingContext.createParser(responseStream);
+    }
+
+    /**
+     * Returns the date of a response, or <code>null</code> if the server didn't give one or gave one that can't be
+     * parsed. The date is only needed for later conditional requests so a bad one mustn't fail this request.
+     */
+    private static Date getResponseDate(ClientResponse response) {
+        try {
+            return response.getResponseDate();
+        } catch (RuntimeException e) {
+            LOG.debug("Ignoring unparseable response date", e);
+            return null;
+        }
+    }
+
+    private static void closeQuietly(ClientResponse response) {
+        try {
+            response.close();
+        } catch (ClientHandlerException e) {
+            // Swallow the exception so a close failure doesn't obscure any exception already in the pipe
+        }
+    }
+
+    /**
+     * Builds the statistics for a request. The wire byte counts come from the {@link CompressionFilter}, if the client
+     * has one, and otherwise are taken to be the same as the decoded byte counts.
+     */
+    private static Statistics buildStatistics(Stopwatch stopwatch, RequestEntity entity, CountingJsonParser parser, ClientResponse response) {
+        long bytesSent = (entity != null) ? entity.getLength() : 0;
+        long bytesReceived = (parser != null) ? parser.getCount() : 0;
+        long wireBytesSent = bytesSent;
+        long wireBytesReceived = bytesReceived;
+        if (response != null) {
+            Object sentCount = response.getProperties().get(CompressionFilter.PROPERTY_WIRE_BYTES_SENT);
+            if (sentCount instanceof Long) {
+                wireBytesSent = (Long) sentCount;
+            }
+            Object receivedCounter = response.getProperties().get(CompressionFilter.PROPERTY_WIRE_BYTES_RECEIVED);
+            if (receivedCounter instanceof CountingInputStream) {
+                wireBytesReceived = ((CountingInputStream) receivedCounter).getByteCount();
+            }
+        }
+
+        return new Statistics.Builder()
+            .bytesSent(bytesSent)
+            .bytesReceived(bytesReceived)
+            .wireBytesSent(wireBytesSent)
+            .wireBytesReceived(wireBytesReceived)
+            .elapsedNanos(stopwatch.elapsed(TimeUnit.NANOSECONDS))
+            .build();
+    }
+
+    private static Exception mapSelectedExceptions(Exception exception) {
+        if (exception instanceof JsonParseException) {
+            return new RecordResponseException("Failed to parse response body", exception);
+        } else if (exception instanceof UniformInterfaceException) {
+            return new RecordRequestException(exception.getMessage(), exception);
+        } else {
+            return exception;
+        }
+    }
+
+    /**
+     * The instance URL, API version and authorization captured on one thread for requests issued from another (see
+     * {@link #bindToCurrentAuthorization}).
+     */
+    private static final class BoundAuthorization {
+        private final URI instanceUrl;
+        private final ApiVersion apiVersion;
+        private final String authorization;
+
+        BoundAuthorization(URI instanceUrl, ApiVersion apiVersion, String authorization) {
+            this.instanceUrl = instanceUrl;
+            this.apiVersion = apiVersion;
+            this.authorization = authorization;
+        }
+    }
+}
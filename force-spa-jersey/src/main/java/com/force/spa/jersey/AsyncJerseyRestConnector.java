@@ -0,0 +1,336 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.jersey;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Date;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.force.spa.RecordAccessorConfig;
+import com.force.spa.RecordRequestException;
+import com.force.spa.core.MappingContext;
+import com.force.spa.core.rest.ApiVersionCache;
+import com.force.spa.core.rest.RestConnector;
+import com.force.spa.core.rest.RestRequestBody;
+import com.force.spa.core.rest.RestResponseHandler;
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.sun.jersey.api.client.AsyncWebResource;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.async.TypeListener;
+
+/**
+ * A {@link RestConnector} implementation that uses the asynchronous interface of Sun's Jersey 1.x client to connect to
+ * Salesforce persistence using the REST API.
+ * <p/>
+ * Requests are started immediately and complete on the client's thread pool (see {@link
+ * com.sun.jersey.api.client.config.ClientConfig#PROPERTY_THREADPOOL_SIZE}), so a thread can have many requests
+ * outstanding at the same time. Response handlers are invoked on the client's threads and {@link #join()} waits for
+ * the requests issued by the calling thread, including any follow-on requests issued by their response handlers.
+ * <p/>
+ * The authorization and instance URL are captured from the {@link com.force.spa.AuthorizationConnector} on the calling
+ * thread when the first request is started, so authorization connectors which are bound to the calling thread (such
+ * as those based on the current inbound request) work as expected.
+ * <p/>
+ * Cancelling a request (see {@link RestResponseHandler#started}) stops {@link #join()} from waiting for it. The
+ * underlying HTTP exchange can't be interrupted so it runs on to completion (or the read timeout) in the background and
+ * its response is discarded.
+ */
+final class AsyncJerseyRestConnector extends AbstractJerseyRestConnector {
+
+    private final ThreadLocal<RequestGroup> currentGroup = new ThreadLocal<>();
+
+    AsyncJerseyRestConnector(RecordAccessorConfig config, MappingContext mappingContext, Client client, ApiVersionCache versionCache) {
+        super(config, mappingContext, client, versionCache);
+    }
+
+    @Override
+    public <T> void delete(URI uri, RestResponseHandler<T> responseHandler) {
+        start("DELETE", uri, null, responseHandler);
+    }
+
+    @Override
+    public <T> void get(URI uri, RestResponseHandler<T> responseHandler) {
+        start("GET", uri, null, responseHandler);
+    }
+
+    @Override
+    public <T> void patch(URI uri, RestRequestBody body, RestResponseHandler<T> responseHandler) {
+        if (responseHandler.isCancelled()) {
+            return; // Nobody is interested so don't bother sending it
+        }
+
+        RequestEntity entity;
+        try {
+            entity = serializeRequestBody(body);
+        } catch (IOException e) {
+            handleFailure(new RecordRequestException("Failed to serialize request body", e), responseHandler, null, Stopwatch.createStarted());
+            return;
+        }
+
+        logRequestBody(entity);
+        start("PATCH", uri, entity, responseHandler);
+    }
+
+    @Override
+    public <T> void post(URI uri, RestRequestBody body, RestResponseHandler<T> responseHandler) {
+        if (responseHandler.isCancelled()) {
+            return; // Nobody is interested so don't bother sending it
+        }
+
+        RequestEntity entity;
+        try {
+            entity = serializeRequestBody(body);
+        } catch (IOException e) {
+            handleFailure(new RecordRequestException("Failed to serialize request body", e), responseHandler, null, Stopwatch.createStarted());
+            return;
+        }
+
+        logRequestBody(entity);
+        start("POST", uri, entity, responseHandler);
+    }
+
+    @Override
+    public boolean isSynchronous() {
+        return false;
+    }
+
+    @Override
+    public void join() {
+        RequestGroup group = currentGroup.get();
+        if (group != null) {
+            group.await();
+            if (group.parent == null) {
+                currentGroup.remove();
+            }
+        }
+    }
+
+    @Override
+    public URI getInstanceUrl() {
+        RequestGroup group = currentGroup.get();
+        return (group != null) ? group.instanceUrl : super.getInstanceUrl();
+    }
+
+    private RequestGroup enterGroup() {
+        RequestGroup group = currentGroup.get();
+        if (group != null && group.parent != null) {
+            return group; // Running in a response handler so stick with the originating caller's group
+        }
+
+        // The calling thread might have moved on to work for somebody else without joining, so a top-level group is
+        // only reused when it carries the same authorization.
+        URI instanceUrl = super.getInstanceUrl();
+        String authorization = getAuthorization();
+        if (group == null || !group.isFor(instanceUrl, authorization)) {
+            group = new RequestGroup(instanceUrl, authorization);
+            currentGroup.set(group);
+        }
+        return group;
+    }
+
+    private <T> void start(String method, URI uri, RequestEntity entity, RestResponseHandler<T> responseHandler) {
+        if (responseHandler.isCancelled()) {
+            release(entity);
+            return; // Nobody is interested so don't bother sending it
+        }
+
+        // Prepare the resource before the request is counted as outstanding because preparation may need to issue
+        // (and join) a request of its own to discover the API version. That join can end the current group so the
+        // group is entered again afterwards.
+        AsyncWebResource.Builder resource;
+        try {
+            resource = getConfiguredResource(uri, enterGroup());
+            Date ifModifiedSince = "GET".equals(method) ? responseHandler.getIfModifiedSince() : null;
+            if (ifModifiedSince != null) {
+                resource.header(HttpHeaders.IF_MODIFIED_SINCE, formatHttpDate(ifModifiedSince));
+            }
+        } catch (RuntimeException e) {
+            handleFailure(e, responseHandler, entity, Stopwatch.createStarted());
+            return;
+        }
+
+        ResponseListener<T> listener = new ResponseListener<>(enterGroup(), responseHandler, entity);
+        try {
+            if (entity != null) {
+                resource.method(method, listener, entity);
+            } else {
+                resource.method(method, listener);
+            }
+        } catch (RuntimeException e) {
+            listener.failedToStart(e);
+            return;
+        }
+        responseHandler.started(listener.request);
+    }
+
+    private AsyncWebResource.Builder getConfiguredResource(URI relativeUri, RequestGroup group) {
+        AsyncWebResource.Builder builder = getClient().asyncResource(buildAbsoluteUri(relativeUri))
+            .accept(MediaType.APPLICATION_JSON_TYPE)
+            .type(MediaType.APPLICATION_JSON_TYPE)
+            .header("X-Chatter-Entity-Encoding", false);
+        if (StringUtils.isNotEmpty(group.authorization)) {
+            builder.header(HttpHeaders.AUTHORIZATION, group.authorization);
+        }
+        return builder;
+    }
+
+    /**
+     * Tracks the requests that a single call to {@link #join()} must wait for. Response handlers run with a child group
+     * as the current group so that follow-on requests count against both the child, which lets a handler join its own
+     * requests, and the original group.
+     */
+    private static final class RequestGroup {
+        private final RequestGroup parent;
+        private final URI instanceUrl;
+        private final String authorization;
+        private int outstandingRequests;
+
+        RequestGroup(URI instanceUrl, String authorization) {
+            this.parent = null;
+            this.instanceUrl = instanceUrl;
+            this.authorization = authorization;
+        }
+
+        RequestGroup(RequestGroup parent) {
+            this.parent = parent;
+            this.instanceUrl = parent.instanceUrl;
+            this.authorization = parent.authorization;
+        }
+
+        boolean isFor(URI instanceUrl, String authorization) {
+            return Objects.equals(this.instanceUrl, instanceUrl) && Objects.equals(this.authorization, authorization);
+        }
+
+        void requestStarted() {
+            for (RequestGroup group = this; group != null; group = group.parent) {
+                group.adjustOutstandingRequests(1);
+            }
+        }
+
+        void requestFinished() {
+            for (RequestGroup group = this; group != null; group = group.parent) {
+                group.adjustOutstandingRequests(-1);
+            }
+        }
+
+        synchronized void adjustOutstandingRequests(int delta) {
+            outstandingRequests += delta;
+            if (outstandingRequests == 0) {
+                notifyAll();
+            }
+        }
+
+        synchronized void await() {
+            boolean interrupted = false;
+            while (outstandingRequests > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true; // Response handlers must still be run so keep waiting
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Receives notification from Jersey that a request has finished and hands the response to the response handler.
+     * <p/>
+     * The response handler is given {@link #request} to represent the request. Cancelling it detaches the request from
+     * its group straight away and the response is discarded when it eventually arrives. Jersey's own future is not
+     * used for that because its cancellation drops the late response without closing it, which leaks the connection.
+     */
+    private final class ResponseListener<T> extends TypeListener<ClientResponse> {
+        private final RequestGroup group;
+        private final RestResponseHandler<T> responseHandler;
+        private final RequestEntity entity;
+        private final Stopwatch stopwatch;
+        private final SettableFuture<Void> request = SettableFuture.create();
+
+        ResponseListener(RequestGroup group, RestResponseHandler<T> responseHandler, RequestEntity entity) {
+            super(ClientResponse.class);
+            this.group = group;
+            this.responseHandler = responseHandler;
+            this.entity = entity;
+            this.stopwatch = Stopwatch.createStarted();
+
+            group.requestStarted();
+            request.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    if (request.isCancelled()) {
+                        ResponseListener.this.group.requestFinished();
+                    }
+                }
+            }, MoreExecutors.sameThreadExecutor());
+        }
+
+        @Override
+        public void onComplete(Future<ClientResponse> future) {
+            if (!request.set(null)) {
+                discard(future); // Cancelled, and the group has already been told
+                return;
+            }
+
+            RequestGroup previousGroup = currentGroup.get();
+            currentGroup.set(new RequestGroup(group));
+            try {
+                ClientResponse response;
+                try {
+                    response = future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    handleFailure((cause instanceof Exception) ? (Exception) cause : e, responseHandler, entity, stopwatch);
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    handleFailure(e, responseHandler, entity, stopwatch);
+                    return;
+                }
+                handleResponse(response, responseHandler, entity, stopwatch);
+            } finally {
+                if (previousGroup != null) {
+                    currentGroup.set(previousGroup);
+                } else {
+                    currentGroup.remove();
+                }
+                group.requestFinished();
+            }
+        }
+
+        void failedToStart(RuntimeException exception) {
+            request.set(null);
+            try {
+                handleFailure(exception, responseHandler, entity, stopwatch);
+            } finally {
+                group.requestFinished();
+            }
+        }
+
+        private void discard(Future<ClientResponse> future) {
+            try {
+                future.get().close();
+            } catch (Exception e) {
+                // Nobody is interested in the outcome anymore
+            } finally {
+                release(entity);
+            }
+        }
+    }
+}
@@ -5,9 +5,12 @@
  */
 package com.force.spa.jersey;
 
+import static com.force.spa.jersey.ExtendedClientConfig.PROPERTY_ACCEPT_COMPRESSED_RESPONSES;
 import static com.force.spa.jersey.ExtendedClientConfig.PROPERTY_CONNECTION_TIME_TO_LIVE;
 import static com.force.spa.jersey.ExtendedClientConfig.PROPERTY_MAX_CONNECTIONS_PER_ROUTE;
 import static com.force.spa.jersey.ExtendedClientConfig.PROPERTY_MAX_CONNECTIONS_TOTAL;
+import static com.force.spa.jersey.ExtendedClientConfig.PROPERTY_MAX_RETAINED_REQUEST_BUFFER_SIZE;
+import static com.force.spa.jersey.ExtendedClientConfig.PROPERTY_REQUEST_COMPRESSION_THRESHOLD;
 import static com.force.spa.jersey.ExtendedClientConfig.PROPERTY_SSL_SOCKET_FACTORY;
 import static com.sun.jersey.api.client.config.ClientConfig.PROPERTY_CONNECT_TIMEOUT;
 import static com.sun.jersey.api.client.config.ClientConfig.PROPERTY_READ_TIMEOUT;
@@ -47,6 +50,10 @@ import com.sun.jersey.client.apache4.config.DefaultApacheHttpClient4Config;
  * <p/>
  * By default, the returned instances use a {@link PoolingClientConnectionManager} in order to support multi-threaded
  * use.
+ * <p/>
+ * The returned instances also compress request bodies and accept compressed responses (see {@link
+ * ExtendedClientConfig#PROPERTY_ACCEPT_COMPRESSED_RESPONSES} and {@link
+ * ExtendedClientConfig#PROPERTY_REQUEST_COMPRESSION_THRESHOLD}).
  */
 public final class ClientFactory {
 
@@ -63,6 +70,19 @@ public final class ClientFactory {
     static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
     static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 100;
 
+    // Defaults for compression properties
+    static final boolean DEFAULT_ACCEPT_COMPRESSED_RESPONSES = true;
+    static final int DEFAULT_REQUEST_COMPRESSION_THRESHOLD = 1024;
+
+    // Defaults for request buffer properties
+    static final int DEFAULT_MAX_RETAINED_REQUEST_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * A request property which stops the authorization filter from adding authorization to the request, for requests
+     * to resources that don't need it.
+     */
+    static final String PROPERTY_SKIP_AUTHORIZATION = "com.force.spa.jersey.skipAuthorization";
+
     private final AuthorizationConnector authorizationConnector;
     private final ClientConfig clientConfig;
 
@@ -87,6 +107,7 @@ public final class ClientFactory {
         ApacheHttpClient4 client = ApacheHttpClient4.create(clientConfig);
 
         addAuthorizationFilter(client, authorizationConnector);
+        addCompressionFilter(client, clientConfig);
 
         return client;
     }
@@ -100,6 +121,9 @@ public final class ClientFactory {
         applyDefaultIfAbsent(clientConfig, PROPERTY_CONNECTION_TIME_TO_LIVE, DEFAULT_CONNECTION_TIME_TO_LIVE);
         applyDefaultIfAbsent(clientConfig, PROPERTY_MAX_CONNECTIONS_TOTAL, DEFAULT_MAX_CONNECTIONS_TOTAL);
         applyDefaultIfAbsent(clientConfig, PROPERTY_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_MAX_CONNECTIONS_PER_ROUTE);
+        applyDefaultIfAbsent(clientConfig, PROPERTY_ACCEPT_COMPRESSED_RESPONSES, DEFAULT_ACCEPT_COMPRESSED_RESPONSES);
+        applyDefaultIfAbsent(clientConfig, PROPERTY_REQUEST_COMPRESSION_THRESHOLD, DEFAULT_REQUEST_COMPRESSION_THRESHOLD);
+        applyDefaultIfAbsent(clientConfig, PROPERTY_MAX_RETAINED_REQUEST_BUFFER_SIZE, DEFAULT_MAX_RETAINED_REQUEST_BUFFER_SIZE);
 
         if (hasNoConnectionManagerConfigured(clientConfig)) {
             configureConnectionManager(clientConfig);
@@ -152,6 +176,14 @@ public final class ClientFactory {
         return getProperty(clientConfig, PROPERTY_SSL_SOCKET_FACTORY);
     }
 
+    private static boolean isAcceptCompressedResponses(ClientConfig clientConfig) {
+        return getProperty(clientConfig, PROPERTY_ACCEPT_COMPRESSED_RESPONSES);
+    }
+
+    private static int getRequestCompressionThreshold(ClientConfig clientConfig) {
+        return getProperty(clientConfig, PROPERTY_REQUEST_COMPRESSION_THRESHOLD);
+    }
+
     @SuppressWarnings("unchecked")
     private static <T> T getProperty(ClientConfig clientConfig, String propertyName) {
         return (T) clientConfig.getProperty(propertyName);
@@ -163,7 +195,8 @@ public final class ClientFactory {
             public ClientResponse handle(ClientRequest clientRequest) {
 
                 // Add authorization only if it doesn't already exist. This allows the surrounding code to override.
-                if (!clientRequest.getHeaders().containsKey(HttpHeaders.AUTHORIZATION)) {
+                if (!clientRequest.getHeaders().containsKey(HttpHeaders.AUTHORIZATION)
+                    && !clientRequest.getPropertyAsFeature(PROPERTY_SKIP_AUTHORIZATION)) {
                     String authorization = authorizationConnector.getAuthorization();
                     if (StringUtils.isNotEmpty(authorization)) {
                         clientRequest.getHeaders().putSingle(HttpHeaders.AUTHORIZATION, authorizationConnector.getAuthorization());
@@ -173,4 +206,8 @@ public final class ClientFactory {
             }
         });
     }
+
+    private static void addCompressionFilter(ApacheHttpClient4 client, ClientConfig clientConfig) {
+        client.addFilter(new CompressionFilter(isAcceptCompressedResponses(clientConfig), getRequestCompressionThreshold(clientConfig)));
+    }
 }
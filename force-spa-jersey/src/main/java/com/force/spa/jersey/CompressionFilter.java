@@ -0,0 +1,210 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.jersey;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+
+import com.sun.jersey.api.client.AbstractClientRequestAdapter;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientRequestAdapter;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+
+/**
+ * A {@link ClientFilter} that compresses request bodies and decompresses response bodies, and counts the bytes that
+ * actually go over the wire.
+ * <p/>
+ * Responses are requested with gzip or deflate encoding and are decoded transparently. Request bodies are gzipped when
+ * they are at least as long as a threshold. Only bodies of a known size (strings, byte arrays and {@link
+ * RequestEntity}s) are compressed; streamed bodies are left alone.
+ * <p/>
+ * The number of bytes written to and read from the wire are left in the response properties {@link
+ * #PROPERTY_WIRE_BYTES_SENT} and {@link #PROPERTY_WIRE_BYTES_RECEIVED} so that connectors can report them in their
+ * {@link com.force.spa.Statistics}.
+ */
+final class CompressionFilter extends ClientFilter {
+
+    /**
+     * The response property holding the number of bytes of request body sent over the wire, as a {@link Long}.
+     */
+    static final String PROPERTY_WIRE_BYTES_SENT = "com.force.spa.jersey.wireBytesSent";
+
+    /**
+     * The response property holding a {@link CountingInputStream} that counts the bytes of response body read from
+     * the wire so far.
+     */
+    static final String PROPERTY_WIRE_BYTES_RECEIVED = "com.force.spa.jersey.wireBytesReceived";
+
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+    private static final int NO_CONTENT = 204;
+    private static final int NOT_MODIFIED = 304;
+
+    private final boolean acceptCompressedResponses;
+    private final int requestCompressionThreshold;
+
+    /**
+     * Creates a filter.
+     *
+     * @param acceptCompressedResponses   an indication of whether to ask for compressed responses
+     * @param requestCompressionThreshold the minimum length of a request body that is compressed, or a negative value
+     *                                    to never compress request bodies
+     */
+    CompressionFilter(boolean acceptCompressedResponses, int requestCompressionThreshold) {
+        this.acceptCompressedResponses = acceptCompressedResponses;
+        this.requestCompressionThreshold = requestCompressionThreshold;
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest request) {
+        if (acceptCompressedResponses && !request.getHeaders().containsKey(ACCEPT_ENCODING)) {
+            request.getHeaders().putSingle(ACCEPT_ENCODING, GZIP + ", " + DEFLATE);
+        }
+
+        boolean compressed = shouldCompress(request);
+        if (compressed) {
+            request.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        CountingAdapter adapter = new CountingAdapter(request.getAdapter(), compressed);
+        request.setAdapter(adapter);
+
+        ClientResponse response = getNext().handle(request);
+
+        response.getProperties().put(PROPERTY_WIRE_BYTES_SENT, adapter.getByteCount());
+        InputStream entityStream = response.getEntityInputStream();
+        if (entityStream != null) {
+            CountingInputStream countingStream = new CountingInputStream(entityStream);
+            response.setEntityInputStream(decode(countingStream, response));
+            response.getProperties().put(PROPERTY_WIRE_BYTES_RECEIVED, countingStream);
+        }
+        return response;
+    }
+
+    private boolean shouldCompress(ClientRequest request) {
+        if (requestCompressionThreshold < 0 || request.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            return false;
+        }
+        Object entity = request.getEntity();
+        if (entity instanceof String) {
+            return ((String) entity).length() >= requestCompressionThreshold;
+        } else if (entity instanceof byte[]) {
+            return ((byte[]) entity).length >= requestCompressionThreshold;
+        } else if (entity instanceof RequestEntity) {
+            return ((RequestEntity) entity).getLength() >= requestCompressionThreshold;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Wraps a response body in a decoder for its content encoding. A response which can't have a body (204 and 304) is
+     * left alone, and the decoder isn't created until the body is first read so that an empty body labelled as gzip
+     * or deflate can be read without complaint.
+     */
+    private static InputStream decode(InputStream inputStream, ClientResponse response) {
+        int status = response.getStatus();
+        if (status == NO_CONTENT || status == NOT_MODIFIED) {
+            return inputStream;
+        }
+
+        String encoding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (GZIP.equalsIgnoreCase(encoding) || DEFLATE.equalsIgnoreCase(encoding)) {
+            response.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+            return new DecodingInputStream(inputStream, encoding);
+        } else {
+            return inputStream;
+        }
+    }
+
+    /**
+     * Decodes a gzip or deflate encoded stream, creating the decoder when the first byte is read. An empty stream is
+     * passed through as is, since there is nothing to decode.
+     */
+    private static final class DecodingInputStream extends InputStream {
+        private final PushbackInputStream encodedStream;
+        private final String encoding;
+        private InputStream decodedStream;
+
+        DecodingInputStream(InputStream encodedStream, String encoding) {
+            this.encodedStream = new PushbackInputStream(encodedStream, 1);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return getDecodedStream().read();
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            return getDecodedStream().read(bytes, offset, length);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (decodedStream != null) ? decodedStream.available() : 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (decodedStream != null) {
+                decodedStream.close();
+            } else {
+                encodedStream.close();
+            }
+        }
+
+        private InputStream getDecodedStream() throws IOException {
+            if (decodedStream == null) {
+                int firstByte = encodedStream.read();
+                if (firstByte < 0) {
+                    decodedStream = encodedStream; // Empty body, nothing to decode
+                } else {
+                    encodedStream.unread(firstByte);
+                    decodedStream = GZIP.equalsIgnoreCase(encoding)
+                        ? new GZIPInputStream(encodedStream)
+                        : new InflaterInputStream(encodedStream);
+                }
+            }
+            return decodedStream;
+        }
+    }
+
+    /**
+     * Counts the bytes written to the connection, underneath the compression if there is any.
+     */
+    private static final class CountingAdapter extends AbstractClientRequestAdapter {
+        private final boolean compressed;
+        private CountingOutputStream countingStream;
+
+        CountingAdapter(ClientRequestAdapter adapter, boolean compressed) {
+            super(adapter);
+            this.compressed = compressed;
+        }
+
+        @Override
+        public OutputStream adapt(ClientRequest request, OutputStream outputStream) throws IOException {
+            countingStream = new CountingOutputStream(getAdapter().adapt(request, outputStream));
+            return compressed ? new GZIPOutputStream(countingStream) : countingStream;
+        }
+
+        long getByteCount() {
+            return (countingStream != null) ? countingStream.getByteCount() : 0;
+        }
+    }
+}
@@ -49,4 +49,35 @@ public class ExtendedClientConfig extends DefaultApacheHttpClient4Config {
      * If not specified, Apache defaults are used.
      */
     public static final String PROPERTY_SSL_SOCKET_FACTORY = "com.force.spa.jersey.apacheSslSocketFactory";
+
+    /**
+     * Whether to ask the server for compressed (gzip or deflate) responses. Compressed responses are decoded
+     * transparently.
+     * <p/>
+     * The value MUST be an instance of {@link java.lang.Boolean}.
+     * <p/>
+     * If not specified, the value defaults to true.
+     */
+    public static final String PROPERTY_ACCEPT_COMPRESSED_RESPONSES = "com.force.spa.jersey.acceptCompressedResponses";
+
+    /**
+     * The minimum length of a request body, in characters, for it to be sent gzip compressed. A negative value turns
+     * off request compression.
+     * <p/>
+     * The value MUST be an instance of {@link java.lang.Integer}.
+     * <p/>
+     * If not specified, the value defaults to 1024.
+     */
+    public static final String PROPERTY_REQUEST_COMPRESSION_THRESHOLD = "com.force.spa.jersey.requestCompressionThreshold";
+
+    /**
+     * The largest request body buffer, in bytes, that is kept for reuse once its request is over. Request bodies are
+     * written into pooled buffers that are sent without copying; a buffer that grew beyond this size for an unusually
+     * large request is dropped rather than kept.
+     * <p/>
+     * The value MUST be an instance of {@link java.lang.Integer}.
+     * <p/>
+     * If not specified, the value defaults to 1048576 (1 MB), which holds a batch of 25 requests of typical size.
+     */
+    public static final String PROPERTY_MAX_RETAINED_REQUEST_BUFFER_SIZE = "com.force.spa.jersey.maxRetainedRequestBufferSize";
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.jersey;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.force.spa.ApiVersion;
+import com.force.spa.RecordAccessorConfig;
+import com.force.spa.RecordRequestException;
+import com.force.spa.SpaException;
+import com.force.spa.core.MappingContext;
+import com.force.spa.core.bulk.BulkConnector;
+import com.force.spa.core.bulk.BulkRequestBody;
+import com.force.spa.core.bulk.BulkResponse;
+import com.force.spa.core.rest.ApiVersionCache;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.client.config.ClientConfig;
+
+/**
+ * A {@link BulkConnector} implementation that uses Sun's Jersey 1.x client to connect to the Bulk API 2.0 resources of
+ * Salesforce persistence.
+ * <p/>
+ * Request bodies are sent with chunked transfer encoding so that they are streamed to the connection as they are
+ * written rather than being buffered first. The instance URL and API version are shared with a synchronous {@link
+ * JerseyRestConnector}.
+ */
+final class JerseyBulkConnector implements BulkConnector {
+
+    private static final MediaType TEXT_CSV_TYPE = new MediaType("text", "csv");
+    private static final int CHUNK_SIZE = 65536;
+
+    private final Client client;
+    private final JerseyRestConnector restConnector;
+
+    JerseyBulkConnector(RecordAccessorConfig config, MappingContext mappingContext, Client client) {
+        this.client = client;
+        this.restConnector = new JerseyRestConnector(config, mappingContext, client, new ApiVersionCache());
+    }
+
+    @Override
+    public BulkResponse send(String method, URI uri, final BulkRequestBody body) {
+        WebResource resource = client.resource(restConnector.buildAbsoluteUri(uri));
+        WebResource.Builder builder = resource
+            .accept(MediaType.APPLICATION_JSON_TYPE, TEXT_CSV_TYPE)
+            .header("X-Chatter-Entity-Encoding", false);
+
+        try {
+            ClientResponse response;
+            if (body != null) {
+                resource.setProperty(ClientConfig.PROPERTY_CHUNKED_ENCODING_SIZE, CHUNK_SIZE);
+                StreamingOutput entity = new StreamingOutput() {
+                    @Override
+                    public void write(OutputStream outputStream) throws IOException {
+                        body.writeTo(outputStream);
+                    }
+                };
+                response = builder.type(body.getContentType()).method(method, ClientResponse.class, entity);
+            } else {
+                response = builder.method(method, ClientResponse.class);
+            }
+            return new JerseyBulkResponse(response);
+        } catch (ClientHandlerException e) {
+            // Problems serializing the body surface here wrapped by Jersey
+            if (e.getCause() instanceof SpaException) {
+                throw (SpaException) e.getCause();
+            }
+            throw new RecordRequestException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public ApiVersion getApiVersion() {
+        return restConnector.getApiVersion();
+    }
+
+    private static final class JerseyBulkResponse implements BulkResponse {
+        private final ClientResponse response;
+
+        JerseyBulkResponse(ClientResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public int getStatus() {
+            return response.getStatus();
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return response.getHeaders().getFirst(name);
+        }
+
+        @Override
+        public InputStream getBody() {
+            return response.getEntityInputStream();
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } catch (ClientHandlerException e) {
+                // Swallow the exception so a close failure doesn't obscure any exception already in the pipe
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.jersey;
+
+import org.apache.commons.lang3.Validate;
+
+import com.force.spa.RecordAccessorConfig;
+import com.force.spa.core.MappingContext;
+import com.force.spa.core.bulk.BulkConnector;
+import com.force.spa.core.bulk.BulkConnectorFactory;
+import com.sun.jersey.api.client.Client;
+
+/**
+ * A simple (non-Spring) factory for fully configured instances of {@link JerseyBulkConnector}.
+ */
+public class JerseyBulkConnectorFactory implements BulkConnectorFactory {
+
+    private final RecordAccessorConfig config;
+    private final MappingContext mappingContext;
+    private final Client client;
+
+    public JerseyBulkConnectorFactory(RecordAccessorConfig config, MappingContext mappingContext, Client client) {
+        Validate.notNull(config, "config must not be null");
+        Validate.notNull(mappingContext, "mappingContext must not be null");
+        Validate.notNull(client, "client must not be null");
+
+        this.config = config;
+        this.mappingContext = mappingContext;
+        this.client = client;
+    }
+
+    @Override
+    public BulkConnector getBulkConnector() {
+        return new JerseyBulkConnector(config, mappingContext, client);
+    }
+}
@@ -5,142 +5,126 @@
  */
 package com.force.spa.jersey;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
-import java.nio.charset.Charset;
-import java.util.concurrent.TimeUnit;
+import java.util.Date;
 
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.UriBuilder;
 
-import org.apache.commons.io.IOUtils;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.apache.commons.lang3.StringUtils;
 
-import com.fasterxml.jackson.core.JsonParseException;
-import com.force.spa.ApiVersion;
 import com.force.spa.RecordAccessorConfig;
 import com.force.spa.RecordRequestException;
-import com.force.spa.RecordResponseException;
-import com.force.spa.Statistics;
 import com.force.spa.core.MappingContext;
+import com.force.spa.core.rest.ApiVersionCache;
 import com.force.spa.core.rest.RestConnector;
+import com.force.spa.core.rest.RestRequestBody;
 import com.force.spa.core.rest.RestResponseHandler;
-import com.force.spa.core.rest.RestVersionManager;
-import com.force.spa.core.utils.CountingJsonParser;
 import com.google.common.base.Stopwatch;
 import com.sun.jersey.api.client.Client;
-import com.sun.jersey.api.client.ClientHandlerException;
 import com.sun.jersey.api.client.ClientResponse;
-import com.sun.jersey.api.client.UniformInterfaceException;
 import com.sun.jersey.api.client.WebResource;
 
 /**
  * A {@link RestConnector} implementation that uses Sun's Jersey 1.x client to connect to Salesforce persistence using
  * the REST API.
  */
-final class JerseyRestConnector implements RestConnector {
+final class JerseyRestConnector extends AbstractJerseyRestConnector {
 
-    private static final Logger LOG = LoggerFactory.getLogger(JerseyRestConnector.class);
-
-    private final Client client;
-    private final RecordAccessorConfig config;
-    private final MappingContext mappingContext;
-    private final RestVersionManager versionManager;
-
-    JerseyRestConnector(RecordAccessorConfig config, MappingContext mappingContext, Client client) {
-        this.config = config;
-        this.mappingContext = mappingContext;
-        this.client = client;
-
-        this.versionManager = new RestVersionManager(this);
+    JerseyRestConnector(RecordAccessorConfig config, MappingContext mappingContext, Client client, ApiVersionCache versionCache) {
+        super(config, mappingContext, client, versionCache);
     }
 
     @Override
-    public void delete(URI uri, RestResponseHandler<Void> responseHandler) {
-        CountingJsonParser parser = null;
+    public <T> void delete(URI uri, RestResponseHandler<T> responseHandler) {
+        if (responseHandler.isCancelled()) {
+            return; // Nobody is interested so don't bother sending it
+        }
         Stopwatch stopwatch = Stopwatch.createStarted();
+        ClientResponse response;
         try {
-            ClientResponse response = getConfiguredResource(uri).delete(ClientResponse.class);
-            try {
-                parser = parserFor(response);
-                responseHandler.handleStatus(response.getStatus(), parser);
-                responseHandler.completed(null, buildStatistics(stopwatch, null, parser));
-            } finally {
-                closeQuietly(response);
-            }
+            response = getConfiguredResource(uri).delete(ClientResponse.class);
         } catch (Exception e) {
-            responseHandler.failed(mapSelectedExceptions(e), buildStatistics(stopwatch, null, parser));
+            handleFailure(e, responseHandler, null, stopwatch);
+            return;
         }
+        handleResponse(response, responseHandler, null, stopwatch);
     }
 
     @Override
     public <T> void get(URI uri, RestResponseHandler<T> responseHandler) {
-        CountingJsonParser parser = null;
+        if (responseHandler.isCancelled()) {
+            return; // Nobody is interested so don't bother sending it
+        }
         Stopwatch stopwatch = Stopwatch.createStarted();
+        ClientResponse response;
         try {
-            ClientResponse response = getConfiguredResource(uri).get(ClientResponse.class);
-            try {
-                parser = parserFor(response);
-                responseHandler.handleStatus(response.getStatus(), parser);
-                T result = (response.getStatus() < 300) ? responseHandler.deserialize(parser) : null;
-                responseHandler.completed(result, buildStatistics(stopwatch, null, parser));
-            } finally {
-                closeQuietly(response);
+            WebResource.Builder resource = getConfiguredResource(uri);
+            Date ifModifiedSince = responseHandler.getIfModifiedSince();
+            if (ifModifiedSince != null) {
+                resource.header(HttpHeaders.IF_MODIFIED_SINCE, formatHttpDate(ifModifiedSince));
             }
+            response = resource.get(ClientResponse.class);
         } catch (Exception e) {
-            responseHandler.failed(mapSelectedExceptions(e), buildStatistics(stopwatch, null, parser));
+            handleFailure(e, responseHandler, null, stopwatch);
+            return;
         }
+        handleResponse(response, responseHandler, null, stopwatch);
     }
 
     @Override
-    public void patch(URI uri, String jsonBody, RestResponseHandler<Void> responseHandler) {
-
-        if (LOG.isTraceEnabled()) {
-            LOG.trace("Request body: " + jsonBody);
+    public <T> void patch(URI uri, RestRequestBody body, RestResponseHandler<T> responseHandler) {
+        if (responseHandler.isCancelled()) {
+            return; // Nobody is interested so don't bother sending it
         }
 
-        CountingJsonParser parser = null;
         Stopwatch stopwatch = Stopwatch.createStarted();
+        RequestEntity entity;
         try {
-            ClientResponse response = getConfiguredResource(uri).method("PATCH", ClientResponse.class, jsonBody);
-            try {
-                parser = parserFor(response);
-                responseHandler.handleStatus(response.getStatus(), parser);
-                responseHandler.completed(null, buildStatistics(stopwatch, jsonBody, parser));
-            } finally {
-                closeQuietly(response);
-            }
+            entity = serializeRequestBody(body);
+        } catch (IOException e) {
+            handleFailure(new RecordRequestException("Failed to serialize request body", e), responseHandler, null, stopwatch);
+            return;
+        }
+
+        logRequestBody(entity);
+
+        ClientResponse response;
+        try {
+            response = getConfiguredResource(uri).method("PATCH", ClientResponse.class, entity);
         } catch (Exception e) {
-            responseHandler.failed(mapSelectedExceptions(e), buildStatistics(stopwatch, jsonBody, parser));
+            handleFailure(e, responseHandler, entity, stopwatch);
+            return;
         }
+        handleResponse(response, responseHandler, entity, stopwatch);
     }
 
     @Override
-    public <T> void post(URI uri, String jsonBody, RestResponseHandler<T> responseHandler) {
-
-        if (LOG.isTraceEnabled()) {
-            LOG.trace("Request body: " + jsonBody);
+    public <T> void post(URI uri, RestRequestBody body, RestResponseHandler<T> responseHandler) {
+        if (responseHandler.isCancelled()) {
+            return; // Nobody is interested so don't bother sending it
         }
 
-        CountingJsonParser parser = null;
         Stopwatch stopwatch = Stopwatch.createStarted();
+        RequestEntity entity;
         try {
-            ClientResponse response = getConfiguredResource(uri).post(ClientResponse.class, jsonBody);
-            try {
-                parser = parserFor(response);
-                responseHandler.handleStatus(response.getStatus(), parser);
-                T result = (response.getStatus() < 300) ? responseHandler.deserialize(parser) : null;
-                responseHandler.completed(result, buildStatistics(stopwatch, jsonBody, parser));
-            } finally {
-                closeQuietly(response);
-            }
+            entity = serializeRequestBody(body);
+        } catch (IOException e) {
+            handleFailure(new RecordRequestException("Failed to serialize request body", e), responseHandler, null, stopwatch);
+            return;
+        }
+
+        logRequestBody(entity);
+
+        ClientResponse response;
+        try {
+            response = getConfiguredResource(uri).post(ClientResponse.class, entity);
         } catch (Exception e) {
-            responseHandler.failed(mapSelectedExceptions(e), buildStatistics(stopwatch, null, parser));
+            handleFailure(e, responseHandler, entity, stopwatch);
+            return;
         }
+        handleResponse(response, responseHandler, entity, stopwatch);
     }
 
     @Override
@@ -153,72 +137,20 @@ final class JerseyRestConnector implements RestConnector {
         // Nothing to do for a synchronous connector.
     }
 
-    @Override
-    public URI getInstanceUrl() {
-        return config.getAuthorizationConnector().getInstanceUrl();
-    }
-
-    @Override
-    public ApiVersion getApiVersion() {
-        if (config.getApiVersion() != null) {
-            return config.getApiVersion();
-        } else {
-            return versionManager.getHighestSupportedVersion();
-        }
-    }
-
+    /**
+     * Returns a resource for a request which is ready to go. The authorization is set here rather than left to the
+     * client's authorization filter (see {@link ClientFactory}) so that requests from a task bound to another thread's
+     * authorization (see {@link #bindToCurrentAuthorization}) carry that authorization.
+     */
     private WebResource.Builder getConfiguredResource(URI relativeUri) {
-        return client.resource(buildAbsoluteUri(relativeUri))
+        WebResource.Builder builder = getClient().resource(buildAbsoluteUri(relativeUri))
             .accept(MediaType.APPLICATION_JSON_TYPE)
             .type(MediaType.APPLICATION_JSON_TYPE)
             .header("X-Chatter-Entity-Encoding", false);
-    }
-
-    private URI buildAbsoluteUri(URI relativeUri) {
-        UriBuilder builder = UriBuilder.fromUri(relativeUri);
-        if (!relativeUri.getPath().startsWith("/services/data")) {
-            builder.replacePath("/services/data/v" + getApiVersion() + relativeUri.getPath());
-        }
-        builder.uri(config.getAuthorizationConnector().getInstanceUrl());
-        return builder.build();
-    }
-
-    private CountingJsonParser parserFor(ClientResponse response) throws IOException {
-        InputStream responseStream = response.getEntityInputStream();
-        if (LOG.isTraceEnabled()) {
-            ByteArrayOutputStream bufferedResponseStream = new ByteArrayOutputStream(8192);
-            IOUtils.copy(responseStream, bufferedResponseStream);
-            byte[] streamBytes = bufferedResponseStream.toByteArray();
-            responseStream = new ByteArrayInputStream(streamBytes);
-
-            LOG.trace("Response body: " + new String(streamBytes, Charset.forName("UTF-8")));
-        }
-        return mappingContext.createParser(responseStream);
-    }
-
-    private void closeQuietly(ClientResponse response) {
-        try {
-            response.close();
-        } catch (ClientHandlerException e) {
-            // Swallow the exception so a close failure doesn't obscure any exception already in the pipe
-        }
-    }
-
-    private Statistics buildStatistics(Stopwatch stopwatch, String jsonBody, CountingJsonParser parser) {
-        return new Statistics.Builder()
-            .bytesSent((jsonBody != null) ? jsonBody.length() : 0)
-            .bytesReceived((parser != null) ? parser.getCount() : 0)
-            .elapsedNanos(stopwatch.elapsed(TimeUnit.NANOSECONDS))
-            .build();
-    }
-
-    private static Exception mapSelectedExceptions(Exception exception) {
-        if (exception instanceof JsonParseException) {
-            return new RecordResponseException("Failed to parse response body", exception);
-        } else if (exception instanceof UniformInterfaceException) {
-            return new RecordRequestException(exception.getMessage(), exception);
-        } else {
-            return exception;
+        String authorization = getAuthorization();
+        if (StringUtils.isNotEmpty(authorization)) {
+            builder.header(HttpHeaders.AUTHORIZATION, authorization);
         }
+        return builder;
     }
 }
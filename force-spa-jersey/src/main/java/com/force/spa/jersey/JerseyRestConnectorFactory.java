@@ -9,31 +9,72 @@ import org.apache.commons.lang3.Validate;
 
 import com.force.spa.RecordAccessorConfig;
 import com.force.spa.core.MappingContext;
+import com.force.spa.core.rest.ApiVersionCache;
 import com.force.spa.core.rest.RestConnector;
 import com.force.spa.core.rest.RestConnectorFactory;
 import com.sun.jersey.api.client.Client;
 
 /**
- * A simple (non-Spring) factory for fully configured instances of {@link JerseyRestConnector}.
+ * A simple (non-Spring) factory for fully configured instances of {@link JerseyRestConnector} or {@link
+ * AsyncJerseyRestConnector}.
  */
 public class JerseyRestConnectorFactory implements RestConnectorFactory {
 
     private final RecordAccessorConfig config;
     private final MappingContext mappingContext;
     private final Client client;
+    private final boolean asynchronous;
+    private final ApiVersionCache versionCache;
 
     public JerseyRestConnectorFactory(RecordAccessorConfig config, MappingContext mappingContext, Client client) {
+        this(config, mappingContext, client, false);
+    }
+
+    /**
+     * Creates a factory for connectors which are either synchronous or asynchronous. An asynchronous connector issues
+     * requests through the Jersey client's thread pool so that many requests can be outstanding at the same time.
+     *
+     * @param config         the configuration
+     * @param mappingContext the mapping context
+     * @param client         the Jersey client
+     * @param asynchronous   an indication of whether the connectors should be asynchronous
+     */
+    public JerseyRestConnectorFactory(RecordAccessorConfig config, MappingContext mappingContext, Client client, boolean asynchronous) {
+        this(config, mappingContext, client, asynchronous, new ApiVersionCache());
+    }
+
+    /**
+     * Creates a factory whose connectors share a cache of the API versions supported by instances. A cache with a file
+     * keeps the versions across restarts (see {@link ApiVersionCache#ApiVersionCache(java.io.File,
+     * java.util.concurrent.Executor)}).
+     *
+     * @param config         the configuration
+     * @param mappingContext the mapping context
+     * @param client         the Jersey client
+     * @param asynchronous   an indication of whether the connectors should be asynchronous
+     * @param versionCache   the cache of API versions
+     */
+    public JerseyRestConnectorFactory(
+        RecordAccessorConfig config, MappingContext mappingContext, Client client, boolean asynchronous, ApiVersionCache versionCache) {
+
         Validate.notNull(config, "config must not be null");
-        Validate.notNull(client, "mappingContext must not be null");
+        Validate.notNull(mappingContext, "mappingContext must not be null");
         Validate.notNull(client, "client must not be null");
+        Validate.notNull(versionCache, "versionCache must not be null");
 
         this.config = config;
         this.mappingContext = mappingContext;
         this.client = client;
+        this.asynchronous = asynchronous;
+        this.versionCache = versionCache;
     }
 
     @Override
     public RestConnector getRestConnector() {
-        return new JerseyRestConnector(config, mappingContext, client);
+        if (asynchronous) {
+            return new AsyncJerseyRestConnector(config, mappingContext, client, versionCache);
+        } else {
+            return new JerseyRestConnector(config, mappingContext, client, versionCache);
+        }
     }
 }
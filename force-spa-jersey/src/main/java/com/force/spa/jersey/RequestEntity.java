@@ -0,0 +1,118 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.jersey;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.force.spa.core.rest.RestRequestBody;
+
+/**
+ * An encoded request body, ready to be handed to the client as the entity of a request.
+ * <p/>
+ * The body is written into a buffer taken from a pool shared by all connectors, and the entity reads straight out of
+ * that buffer so the bytes are never copied on their way to the connection. Being a {@link ByteArrayInputStream}, the
+ * client knows its length and sends a proper Content-Length. The buffer goes back to the pool when the entity is
+ * {@link #release() released}, once the response has been handled, unless it has grown beyond the retention limit. An
+ * entity which isn't released just leaves its buffer to the garbage collector.
+ */
+final class RequestEntity extends ByteArrayInputStream {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+    private static final int MAX_POOLED_BUFFERS = 16;
+
+    // Used as a stack so that the most recently used, and so warmest, buffer is handed out next
+    private static final BlockingDeque<Buffer> POOL = new LinkedBlockingDeque<>(MAX_POOLED_BUFFERS);
+
+    private final Buffer buffer;
+    private final int length;
+    private final int maxRetainedBufferSize;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private RequestEntity(Buffer buffer, int maxRetainedBufferSize) {
+        super(buffer.getBytes(), 0, buffer.size());
+        this.buffer = buffer;
+        this.length = buffer.size();
+        this.maxRetainedBufferSize = maxRetainedBufferSize;
+    }
+
+    /**
+     * Writes a request body into a pooled buffer.
+     *
+     * @param body                  the request body
+     * @param maxRetainedBufferSize the largest buffer that goes back to the pool when the entity is released
+     * @return the entity
+     * @throws IOException if the body could not be written
+     */
+    static RequestEntity serialize(RestRequestBody body, int maxRetainedBufferSize) throws IOException {
+        Buffer buffer = POOL.pollFirst();
+        if (buffer == null) {
+            buffer = new Buffer(INITIAL_BUFFER_SIZE);
+        }
+        try {
+            body.writeTo(buffer);
+        } catch (IOException | RuntimeException e) {
+            recycle(buffer, maxRetainedBufferSize);
+            throw e;
+        }
+        return new RequestEntity(buffer, maxRetainedBufferSize);
+    }
+
+    /**
+     * Returns the number of bytes in the body.
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * Gives the buffer back to the pool. The entity must not be used afterwards. Releasing more than once is harmless.
+     */
+    void release() {
+        if (released.compareAndSet(false, true)) {
+            recycle(buffer, maxRetainedBufferSize);
+        }
+    }
+
+    private static void recycle(Buffer buffer, int maxRetainedBufferSize) {
+        if (buffer.getCapacity() <= maxRetainedBufferSize) {
+            buffer.reset();
+            POOL.offerFirst(buffer); // Dropped if the pool is already full
+        }
+    }
+
+    /**
+     * Returns the body as a string, which is only intended for logging.
+     */
+    @Override
+    public String toString() {
+        return released.get() ? "<released>" : new String(buffer.getBytes(), 0, length, UTF_8);
+    }
+
+    /**
+     * A byte array output stream which gives access to its array rather than copying it.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer(int size) {
+            super(size);
+        }
+
+        byte[] getBytes() {
+            return buf;
+        }
+
+        int getCapacity() {
+            return buf.length;
+        }
+    }
+}
@@ -90,6 +90,25 @@ public class SpringClientConfig extends ExtendedClientConfig {
         getProperties().put(ExtendedClientConfig.PROPERTY_CONNECTION_MANAGER, connectionManager);
     }
 
+    /**
+     * Sets whether to ask the server for compressed responses.
+     * <p/>
+     * If not specified, the value defaults to true.
+     */
+    public void setAcceptCompressedResponses(boolean acceptCompressedResponses) {
+        getProperties().put(ExtendedClientConfig.PROPERTY_ACCEPT_COMPRESSED_RESPONSES, acceptCompressedResponses);
+    }
+
+    /**
+     * Sets the minimum length of a request body, in characters, for it to be sent gzip compressed. A negative value
+     * turns off request compression.
+     * <p/>
+     * If not specified, the value defaults to 1024.
+     */
+    public void setRequestCompressionThreshold(int requestCompressionThreshold) {
+        getProperties().put(ExtendedClientConfig.PROPERTY_REQUEST_COMPRESSION_THRESHOLD, requestCompressionThreshold);
+    }
+
     /**
      * Sets additional properties.
      */
@@ -34,6 +34,8 @@ public class SpringRestConnectorFactory implements FactoryBean<RestConnector>, I
     @Autowired
     private Client client;
 
+    private boolean asynchronous;
+
     private RestConnector instance;
 
     public void setConfig(RecordAccessorConfig config) {
@@ -48,9 +50,16 @@ public class SpringRestConnectorFactory implements FactoryBean<RestConnector>, I
         this.client = client;
     }
 
+    /**
+     * Sets whether the connector issues requests asynchronously. The default is "false".
+     */
+    public void setAsynchronous(boolean asynchronous) {
+        this.asynchronous = asynchronous;
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception {
-        instance = new JerseyRestConnectorFactory(config, mappingContext, client).getRestConnector();
+        instance = new JerseyRestConnectorFactory(config, mappingContext, client, asynchronous).getRestConnector();
     }
 
     @Override
@@ -0,0 +1,264 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.jersey;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.force.spa.ApiVersion;
+import com.force.spa.AuthorizationConnector;
+import com.force.spa.RecordAccessorConfig;
+import com.force.spa.Statistics;
+import com.force.spa.core.MappingContext;
+import com.force.spa.core.rest.RestConnector;
+import com.force.spa.core.rest.RestRequestBody;
+import com.force.spa.core.rest.RestResponseHandler;
+import com.force.spa.core.utils.CountingJsonParser;
+import com.sun.jersey.api.client.Client;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class CompressionFilterTest {
+
+    private HttpServer server;
+    private EchoHandler echoHandler;
+    private Client client;
+    private RestConnector connector;
+
+    @Before
+    public void setUp() throws IOException {
+        echoHandler = new EchoHandler();
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/services/data/v29.0/echo", echoHandler);
+        server.createContext("/services/data/v29.0/empty", new EmptyGzipHandler());
+        server.start();
+
+        final URI instanceUrl = URI.create("http://localhost:" + server.getAddress().getPort());
+        AuthorizationConnector authorizationConnector = new AuthorizationConnector() {
+            private static final long serialVersionUID = 4127361209483572011L;
+
+            @Override
+            public String getAuthorization() {
+                return null;
+            }
+
+            @Override
+            public URI getInstanceUrl() {
+                return instanceUrl;
+            }
+
+            @Override
+            public String getUserId() {
+                return null;
+            }
+        };
+        RecordAccessorConfig config = new RecordAccessorConfig()
+            .withAuthorizationConnector(authorizationConnector)
+            .withApiVersion(new ApiVersion("29.0"));
+
+        client = new ClientFactory(authorizationConnector).getClient();
+        connector = new JerseyRestConnectorFactory(config, new MappingContext(), client).getRestConnector();
+    }
+
+    @After
+    public void tearDown() {
+        client.destroy();
+        server.stop(0);
+    }
+
+    @Test
+    public void testLargeRequestAndResponseAreCompressed() {
+        String jsonBody = "{\"Description\":\"" + StringUtils.repeat("repetitive ", 1000) + "\"}";
+        StatisticsHandler handler = new StatisticsHandler();
+        connector.post(URI.create("/echo"), bodyOf(jsonBody), handler);
+
+        assertThat(handler.exception, is(nullValue()));
+        assertThat(echoHandler.requestEncoding, is(equalTo("gzip")));
+        assertThat(echoHandler.acceptEncoding, is(equalTo("gzip, deflate")));
+        assertThat(echoHandler.requestBody, is(equalTo(jsonBody)));
+        assertThat(handler.result.get("Description").asText().length(), is(equalTo(11000)));
+
+        Statistics statistics = handler.statistics;
+        assertThat(statistics.getBytesSent(), is(equalTo((long) jsonBody.length())));
+        assertThat(statistics.getBytesReceived(), is(equalTo((long) jsonBody.length())));
+        assertThat(statistics.getWireBytesSent(), is(lessThan(statistics.getBytesSent() / 5)));
+        assertThat(statistics.getWireBytesReceived(), is(lessThan(statistics.getBytesReceived() / 5)));
+    }
+
+    @Test
+    public void testSmallRequestIsNotCompressed() {
+        String jsonBody = "{\"Description\":\"short\"}";
+        StatisticsHandler handler = new StatisticsHandler();
+        connector.post(URI.create("/echo"), bodyOf(jsonBody), handler);
+
+        assertThat(handler.exception, is(nullValue()));
+        assertThat(echoHandler.requestEncoding, is(nullValue()));
+        assertThat(echoHandler.requestLength, is(equalTo(String.valueOf(jsonBody.length()))));
+        assertThat(echoHandler.requestBody, is(equalTo(jsonBody)));
+        assertThat(handler.result.get("Description").asText(), is(equalTo("short")));
+        assertThat(handler.statistics.getWireBytesSent(), is(equalTo((long) jsonBody.length())));
+    }
+
+    @Test
+    public void testEmptyNotModifiedResponseLabelledGzip() {
+        StatisticsHandler handler = new StatisticsHandler() {
+            @Override
+            public Date getIfModifiedSince() {
+                return new Date(0);
+            }
+        };
+        connector.get(URI.create("/empty?status=304"), handler);
+
+        assertThat(handler.exception, is(nullValue()));
+        assertThat(handler.status, is(equalTo(304)));
+        assertThat(handler.result, is(nullValue()));
+    }
+
+    @Test
+    public void testEmptyNoContentResponseLabelledGzip() {
+        StatisticsHandler handler = new StatisticsHandler();
+        connector.patch(URI.create("/empty?status=204"), bodyOf("{}"), handler);
+
+        assertThat(handler.exception, is(nullValue()));
+        assertThat(handler.status, is(equalTo(204)));
+        assertThat(handler.result, is(nullValue()));
+    }
+
+    @Test
+    public void testEmptyOkResponseLabelledGzip() {
+        StatisticsHandler handler = new StatisticsHandler();
+        connector.get(URI.create("/empty?status=200"), handler);
+
+        assertThat(handler.exception, is(nullValue()));
+        assertThat(handler.status, is(equalTo(200)));
+        assertThat(handler.result, is(nullValue()));
+        assertThat(handler.statistics.getBytesReceived(), is(equalTo(0L)));
+    }
+
+    private static RestRequestBody bodyOf(final String jsonBody) {
+        return new RestRequestBody() {
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                outputStream.write(jsonBody.getBytes(Charset.forName("UTF-8")));
+            }
+        };
+    }
+
+    /**
+     * Echoes the request body back, gzipped if the client will accept that.
+     */
+    private static class EchoHandler implements HttpHandler {
+        private volatile String requestEncoding;
+        private volatile String acceptEncoding;
+        private volatile String requestBody;
+        private volatile String requestLength;
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                requestEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+                acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                requestLength = exchange.getRequestHeaders().getFirst("Content-Length");
+                InputStream requestStream = exchange.getRequestBody();
+                if ("gzip".equals(requestEncoding)) {
+                    requestStream = new GZIPInputStream(requestStream);
+                }
+                requestBody = IOUtils.toString(requestStream, "UTF-8");
+
+                byte[] bytes = requestBody.getBytes("UTF-8");
+                if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+                    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                    try (OutputStream gzipStream = new GZIPOutputStream(compressed)) {
+                        gzipStream.write(bytes);
+                    }
+                    bytes = compressed.toByteArray();
+                    exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                }
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream responseBody = exchange.getResponseBody()) {
+                    responseBody.write(bytes);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * Responds with the status given in the query, no body and a gzip content encoding, as some servers and proxies
+     * do.
+     */
+    private static class EmptyGzipHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+                int status = Integer.parseInt(StringUtils.substringAfter(exchange.getRequestURI().getQuery(), "status="));
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, -1);
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    private static class StatisticsHandler extends RestResponseHandler<JsonNode> {
+        private JsonNode result;
+        private Statistics statistics;
+        private Throwable exception;
+        private int status;
+
+        @Override
+        public void handleStatus(int status, JsonParser parser) {
+            this.status = status;
+            if (status != 304) {
+                super.handleStatus(status, parser);
+            }
+        }
+
+        @Override
+        public JsonNode deserialize(CountingJsonParser parser) throws IOException {
+            return parser.readValueAsTree();
+        }
+
+        @Override
+        public void completed(JsonNode result, Statistics statistics) {
+            this.result = result;
+            this.statistics = statistics;
+        }
+
+        @Override
+        public void failed(Throwable exception, Statistics statistics) {
+            this.exception = exception;
+            this.statistics = statistics;
+        }
+    }
+}
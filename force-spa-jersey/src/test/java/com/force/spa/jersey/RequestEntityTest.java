@@ -0,0 +1,88 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.jersey;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.nio.charset.Charset;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+
+import com.force.spa.core.rest.RestRequestBody;
+
+public class RequestEntityTest {
+
+    @Test
+    public void testEntityReadsTheBody() throws IOException {
+        RequestEntity entity = RequestEntity.serialize(bodyOf("{\"Name\":\"Name 1\"}"), 1024);
+
+        assertThat(entity.getLength(), is(equalTo(17)));
+        assertThat(entity.available(), is(equalTo(17)));
+        assertThat(entity.toString(), is(equalTo("{\"Name\":\"Name 1\"}")));
+        assertThat(IOUtils.toString(entity, "UTF-8"), is(equalTo("{\"Name\":\"Name 1\"}")));
+        entity.release();
+    }
+
+    @Test
+    public void testReleasedBufferIsReused() throws IOException {
+        RequestEntity entity1 = RequestEntity.serialize(bodyOf("first"), 1024 * 1024);
+        byte[] buffer1 = bufferOf(entity1);
+        entity1.release();
+        entity1.release(); // Harmless
+
+        RequestEntity entity2 = RequestEntity.serialize(bodyOf("second"), 1024 * 1024);
+        RequestEntity entity3 = RequestEntity.serialize(bodyOf("third"), 1024 * 1024);
+
+        assertThat(bufferOf(entity2), is(sameInstance(buffer1)));
+        assertThat(bufferOf(entity3), is(not(sameInstance(buffer1))));
+        assertThat(entity2.toString(), is(equalTo("second")));
+        entity2.release();
+        entity3.release();
+    }
+
+    @Test
+    public void testOversizedBufferIsNotReused() throws IOException {
+        RequestEntity entity1 = RequestEntity.serialize(bodyOf(StringUtils.repeat('x', 10000)), 8192);
+        byte[] buffer1 = bufferOf(entity1);
+        entity1.release();
+
+        RequestEntity entity2 = RequestEntity.serialize(bodyOf("small"), 8192);
+        assertThat(bufferOf(entity2), is(not(sameInstance(buffer1))));
+        entity2.release();
+    }
+
+    /**
+     * Gets at the array an entity reads from, which is how buffer reuse shows.
+     */
+    private static byte[] bufferOf(RequestEntity entity) {
+        try {
+            Field field = ByteArrayInputStream.class.getDeclaredField("buf");
+            field.setAccessible(true);
+            return (byte[]) field.get(entity);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static RestRequestBody bodyOf(final String json) {
+        return new RestRequestBody() {
+            @Override
+            public void writeTo(OutputStream outputStream) throws IOException {
+                outputStream.write(json.getBytes(Charset.forName("UTF-8")));
+            }
+        };
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.jersey;
+
+import java.net.URI;
+
+import com.force.spa.AuthorizationConnector;
+
+/**
+ * An authorization connector that, like one based on the current inbound request, only works on the thread that
+ * created it.
+ */
+class ThreadBoundAuthorizationConnector implements AuthorizationConnector {
+    private static final long serialVersionUID = 3027359432183947650L;
+
+    private final transient Thread owner = Thread.currentThread();
+    private final URI instanceUrl;
+    private final String authorization;
+
+    ThreadBoundAuthorizationConnector(URI instanceUrl, String authorization) {
+        this.instanceUrl = instanceUrl;
+        this.authorization = authorization;
+    }
+
+    @Override
+    public String getAuthorization() {
+        checkThread();
+        return authorization;
+    }
+
+    @Override
+    public URI getInstanceUrl() {
+        checkThread();
+        return instanceUrl;
+    }
+
+    @Override
+    public String getUserId() {
+        checkThread();
+        return "005000000000001";
+    }
+
+    private void checkThread() {
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException("No authorization available on this thread");
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.processor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * An annotation processor which generates a <code>com.force.spa.core.GeneratedMemberAccessor</code> for every class
+ * annotated with <code>@SalesforceObject</code> or <code>@Entity</code>, so that field values are read and written
+ * without reflection.
+ * <p/>
+ * The generated accessor can only reach members that are visible from the package of the class, so it covers
+ * non-private fields, getters and setters. Anything else is left to reflection at runtime. Classes which can't be
+ * reached at all (private or local classes) are skipped with a note.
+ * <p/>
+ * Only member access is generated. Object and field descriptors, the expansion of wildcards in SOQL and the reading
+ * and writing of JSON are still built at runtime by <code>com.force.spa.core.MappingContext</code> and Jackson, which
+ * use the generated accessor through the field descriptors.
+ * <p/>
+ * The processor is registered as a service so it runs whenever the module is on the compile classpath.
+ */
+@SupportedAnnotationTypes({"com.force.spa.SalesforceObject", "javax.persistence.Entity"})
+public final class SalesforceObjectProcessor extends AbstractProcessor {
+
+    static final String ACCESSOR_CLASS_NAME_SUFFIX = "_SpaMemberAccessor";
+
+    private static final String ACCESSOR_SUPERCLASS = "com.force.spa.core.GeneratedMemberAccessor";
+
+    private final Set<String> generatedClassNames = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment) {
+        for (TypeElement annotation : annotations) {
+            for (TypeElement type : ElementFilter.typesIn(roundEnvironment.getElementsAnnotatedWith(annotation))) {
+                String accessorClassName = processingEnv.getElementUtils().getBinaryName(type) + ACCESSOR_CLASS_NAME_SUFFIX;
+                if (generatedClassNames.add(accessorClassName)) {
+                    if (isReachable(type)) {
+                        generateAccessor(type, accessorClassName);
+                    } else {
+                        processingEnv.getMessager().printMessage(
+                            Diagnostic.Kind.NOTE, "No member accessor generated because the class isn't reachable from its package", type);
+                    }
+                }
+            }
+        }
+        return false; // Let others see the annotations too
+    }
+
+    private static boolean isReachable(TypeElement type) {
+        for (Element element = type; element instanceof TypeElement; element = element.getEnclosingElement()) {
+            TypeElement enclosingType = (TypeElement) element;
+            if (enclosingType.getModifiers().contains(Modifier.PRIVATE)
+                || enclosingType.getNestingKind() == NestingKind.LOCAL
+                || enclosingType.getNestingKind() == NestingKind.ANONYMOUS) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void generateAccessor(TypeElement type, String accessorClassName) {
+        List<Member> members = findMembers(type);
+        String packageName = getPackage(type).getQualifiedName().toString();
+        String simpleName = accessorClassName.substring(accessorClassName.lastIndexOf('.') + 1);
+        String recordCast = "((" + erasure(type.asType()) + ") record)";
+
+        try {
+            JavaFileObject sourceFile = processingEnv.getFiler().createSourceFile(accessorClassName, type);
+            try (PrintWriter writer = new PrintWriter(sourceFile.openWriter())) {
+                if (!packageName.isEmpty()) {
+                    writer.println("package " + packageName + ";");
+                    writer.println();
+                }
+                writer.println("@javax.annotation.Generated(\"" + SalesforceObjectProcessor.class.getName() + "\")");
+                writer.println("@SuppressWarnings({\"rawtypes\", \"unchecked\"})");
+                writer.println("public final class " + simpleName + " extends " + ACCESSOR_SUPERCLASS + " {");
+                writer.println();
+
+                writer.println("    @Override");
+                writer.println("    public int indexOf(String memberKey) {");
+                writer.println("        switch (memberKey) {");
+                for (int i = 0; i < members.size(); i++) {
+                    writer.println("            case \"" + members.get(i).key + "\": return " + i + ";");
+                }
+                writer.println("            default: return -1;");
+                writer.println("        }");
+                writer.println("    }");
+                writer.println();
+
+                writer.println("    @Override");
+                writer.println("    public Object getValue(Object record, int index) {");
+                writer.println("        switch (index) {");
+                for (int i = 0; i < members.size(); i++) {
+                    if (members.get(i).readExpression != null) {
+                        writer.println("            case " + i + ": return " + recordCast + members.get(i).readExpression + ";");
+                    }
+                }
+                writer.println("            default: throw new IllegalArgumentException(\"Member \" + index + \" can't be read\");");
+                writer.println("        }");
+                writer.println("    }");
+                writer.println();
+
+                writer.println("    @Override");
+                writer.println("    public void setValue(Object record, int index, Object value) {");
+                writer.println("        switch (index) {");
+                for (int i = 0; i < members.size(); i++) {
+                    if (members.get(i).writeExpression != null) {
+                        writer.println("            case " + i + ": " + recordCast + members.get(i).writeExpression + "; return;");
+                    }
+                }
+                writer.println("            default: throw new IllegalArgumentException(\"Member \" + index + \" can't be written\");");
+                writer.println("        }");
+                writer.println("    }");
+                writer.println("}");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Failed to generate member accessor: " + e.getMessage(), type);
+        }
+    }
+
+    private List<Member> findMembers(TypeElement type) {
+        PackageElement typePackage = getPackage(type);
+        List<Member> members = new ArrayList<>();
+        for (Element element : processingEnv.getElementUtils().getAllMembers(type)) {
+            if (!isAccessible(element, typePackage)) {
+                continue;
+            }
+
+            if (element.getKind() == ElementKind.FIELD) {
+                VariableElement field = (VariableElement) element;
+                if (isReachable(field.asType())) {
+                    String name = field.getSimpleName().toString();
+                    String writeExpression = field.getModifiers().contains(Modifier.FINAL)
+                        ? null : "." + name + " = " + castValue(field.asType());
+                    members.add(new Member(name, "." + name, writeExpression));
+                }
+
+            } else if (element.getKind() == ElementKind.METHOD) {
+                ExecutableElement method = (ExecutableElement) element;
+                String name = method.getSimpleName().toString();
+                List<? extends VariableElement> parameters = method.getParameters();
+                if (parameters.isEmpty() && method.getReturnType().getKind() != TypeKind.VOID && isGetter(method)) {
+                    members.add(new Member(name + "()", "." + name + "()", null));
+                } else if (parameters.size() == 1 && isSetter(method) && isReachable(parameters.get(0).asType())) {
+                    TypeMirror parameterType = parameters.get(0).asType();
+                    String key = name + "(" + erasure(parameterType) + ")";
+                    members.add(new Member(key, null, "." + name + "(" + castValue(parameterType) + ")"));
+                }
+            }
+        }
+        return members;
+    }
+
+    private boolean isAccessible(Element element, PackageElement typePackage) {
+        Set<Modifier> modifiers = element.getModifiers();
+        if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        } else if (element.getEnclosingElement().toString().equals(Object.class.getName())) {
+            return false;
+        } else if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        } else {
+            return getPackage(element).equals(typePackage); // Package or protected access from the same package only
+        }
+    }
+
+    /**
+     * Returns an indication of whether a method looks like a getter. Methods which don't follow the naming convention
+     * are included if they are annotated, because an annotation can make them a property.
+     */
+    private static boolean isGetter(ExecutableElement method) {
+        String name = method.getSimpleName().toString();
+        return name.startsWith("get") || name.startsWith("is") || !method.getAnnotationMirrors().isEmpty();
+    }
+
+    private static boolean isSetter(ExecutableElement method) {
+        String name = method.getSimpleName().toString();
+        return name.startsWith("set") || !method.getAnnotationMirrors().isEmpty();
+    }
+
+    /**
+     * Returns an indication of whether a type can be named in the generated code. A private nested type can't.
+     */
+    private boolean isReachable(TypeMirror type) {
+        TypeMirror erasedType = processingEnv.getTypeUtils().erasure(type);
+        if (erasedType.getKind() == TypeKind.ARRAY) {
+            return isReachable(((ArrayType) erasedType).getComponentType());
+        } else if (erasedType.getKind() == TypeKind.DECLARED) {
+            return isReachable((TypeElement) ((DeclaredType) erasedType).asElement());
+        } else {
+            return true;
+        }
+    }
+
+    private String castValue(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return "(" + processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName() + ") value";
+        } else {
+            return "(" + erasure(type) + ") value";
+        }
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private PackageElement getPackage(Element element) {
+        return processingEnv.getElementUtils().getPackageOf(element);
+    }
+
+    /**
+     * A member of a class along with the code to read and write it. The code is appended to a cast of the record.
+     */
+    private static final class Member {
+        private final String key;
+        private final String readExpression;
+        private final String writeExpression;
+
+        Member(String key, String readExpression, String writeExpression) {
+            this.key = key;
+            this.readExpression = readExpression;
+            this.writeExpression = writeExpression;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright, 2013, SALESFORCE.com
+ * All Rights Reserved
+ * Company Confidential
+ */
+package com.force.spa.processor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.force.spa.core.FieldDescriptor;
+import com.force.spa.core.GeneratedMemberAccessor;
+import com.force.spa.core.MappingContext;
+
+public class SalesforceObjectProcessorTest {
+
+    private static final String BEAN_SOURCE =
+        "package beans;\n" +
+            "@com.force.spa.SalesforceObject(name = \"Account\")\n" +
+            "public class AccountBean {\n" +
+            "    public static String lastNameSetter;\n" +
+            "    @com.force.spa.SalesforceField(name = \"Id\") String id;\n" +
+            "    private String name;\n" +
+            "    private int numberOfEmployees;\n" +
+            "    @com.force.spa.SalesforceField(name = \"Name\") public String getName() { return name; }\n" +
+            "    public void setName(String name) {\n" +
+            "        lastNameSetter = new Throwable().getStackTrace()[1].getClassName();\n" +
+            "        this.name = name;\n" +
+            "    }\n" +
+            "    @com.force.spa.SalesforceField(name = \"NumberOfEmployees\") public int getNumberOfEmployees() { return numberOfEmployees; }\n" +
+            "    public void setNumberOfEmployees(int numberOfEmployees) { this.numberOfEmployees = numberOfEmployees; }\n" +
+            "    private static class Hidden { }\n" +
+            "}\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ClassLoader classLoader;
+
+    @Before
+    public void compileBean() throws Exception {
+        File sourceDirectory = temporaryFolder.newFolder("src");
+        File classDirectory = temporaryFolder.newFolder("classes");
+        File sourceFile = new File(sourceDirectory, "beans/AccountBean.java");
+        FileUtils.writeStringToFile(sourceFile, BEAN_SOURCE, "UTF-8");
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, Charset.forName("UTF-8"));
+        fileManager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(classDirectory));
+        fileManager.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singletonList(sourceDirectory));
+        Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjects(sourceFile);
+
+        JavaCompiler.CompilationTask task = compiler.getTask(
+            null, fileManager, null, Arrays.asList("-classpath", System.getProperty("java.class.path")), null, compilationUnits);
+        task.setProcessors(Collections.singletonList(new SalesforceObjectProcessor()));
+        assertThat(task.call(), is(true));
+        fileManager.close();
+
+        classLoader = new URLClassLoader(new URL[]{classDirectory.toURI().toURL()}, getClass().getClassLoader());
+    }
+
+    @Test
+    public void testGeneratedAccessor() throws Exception {
+        Class<?> beanClass = classLoader.loadClass("beans.AccountBean");
+        GeneratedMemberAccessor accessor = (GeneratedMemberAccessor) classLoader.loadClass(
+            "beans.AccountBean" + SalesforceObjectProcessor.ACCESSOR_CLASS_NAME_SUFFIX).newInstance();
+
+        Object bean = beanClass.newInstance();
+        accessor.setValue(bean, accessor.indexOf("setName(java.lang.String)"), "Acme");
+        accessor.setValue(bean, accessor.indexOf("id"), "001i0000000001AAA");
+        accessor.setValue(bean, accessor.indexOf("setNumberOfEmployees(int)"), 42);
+
+        assertThat(accessor.getValue(bean, accessor.indexOf("getName()")), is(equalTo((Object) "Acme")));
+        assertThat(accessor.getValue(bean, accessor.indexOf("id")), is(equalTo((Object) "001i0000000001AAA")));
+        assertThat(accessor.getValue(bean, accessor.indexOf("getNumberOfEmployees()")), is(equalTo((Object) 42)));
+        assertThat(accessor.indexOf("name"), is(equalTo(-1)));
+    }
+
+    @Test
+    public void testFieldDescriptorUsesGeneratedAccessor() throws Exception {
+        Class<?> beanClass = classLoader.loadClass("beans.AccountBean");
+        FieldDescriptor field = new MappingContext().getObjectDescriptor(beanClass).getField("Name");
+        assertThat(field, is(notNullValue()));
+
+        Object bean = beanClass.newInstance();
+        field.setValue(bean, "Acme");
+
+        assertThat(field.<String>getValue(bean), is(equalTo("Acme")));
+        assertThat(beanClass.getField("lastNameSetter").get(null),
+            is(equalTo((Object) ("beans.AccountBean" + SalesforceObjectProcessor.ACCESSOR_CLASS_NAME_SUFFIX))));
+    }
+}